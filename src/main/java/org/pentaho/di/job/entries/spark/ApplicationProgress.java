@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the progress of a Spark application: YARN state together with the stages spark-submit shows on its
+ * console progress bar. Stages Spark hasn't planned yet are unknown, so the percentage only covers the tasks of the
+ * stages started so far.
+ */
+public class ApplicationProgress {
+  private final String applicationId;
+  private final String state;
+  private final List<StageProgress> activeStages;
+  private final int completedStages;
+  private final long completedTasks;
+  private final long totalTasks;
+  private final long timestamp;
+
+  public ApplicationProgress( String applicationId, String state, List<StageProgress> activeStages,
+      int completedStages, long completedTasks, long totalTasks, long timestamp ) {
+    this.applicationId = applicationId;
+    this.state = state;
+    this.activeStages = Collections.unmodifiableList( activeStages );
+    this.completedStages = completedStages;
+    this.completedTasks = completedTasks;
+    this.totalTasks = totalTasks;
+    this.timestamp = timestamp;
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  /**
+   * Returns the YARN application state
+   *
+   * @return state, e.g. ACCEPTED or RUNNING, or null if spark-submit hasn't reported one yet
+   */
+  public String getState() {
+    return state;
+  }
+
+  public List<StageProgress> getActiveStages() {
+    return activeStages;
+  }
+
+  public int getCompletedStages() {
+    return completedStages;
+  }
+
+  /**
+   * Returns tasks completed in the stages started so far
+   */
+  public long getCompletedTasks() {
+    return completedTasks;
+  }
+
+  /**
+   * Returns tasks of the stages started so far
+   */
+  public long getTotalTasks() {
+    return totalTasks;
+  }
+
+  /**
+   * Returns tasks running in the active stages
+   */
+  public int getActiveTasks() {
+    int tasks = 0;
+    for ( StageProgress stage : activeStages ) {
+      tasks += stage.getActiveTasks();
+    }
+    return tasks;
+  }
+
+  /**
+   * Returns the share of the known tasks completed, 100 once the application finished
+   */
+  public int getPercentComplete() {
+    if ( ApplicationReportParser.STATE_FINISHED.equals( state ) ) {
+      return 100;
+    }
+    return totalTasks == 0 ? 0 : (int) ( completedTasks * 100 / totalTasks );
+  }
+
+  /**
+   * Returns when the snapshot was taken, in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return ( state == null ? "SUBMITTING" : state ) + ", " + getPercentComplete() + "% of known tasks complete, "
+        + activeStages.size() + " active stages, " + getActiveTasks() + " active tasks";
+  }
+
+  /**
+   * Progress of a stage as shown by the console progress bar
+   */
+  public static class StageProgress {
+    private final int stageId;
+    private final int completedTasks;
+    private final int activeTasks;
+    private final int totalTasks;
+
+    public StageProgress( int stageId, int completedTasks, int activeTasks, int totalTasks ) {
+      this.stageId = stageId;
+      this.completedTasks = completedTasks;
+      this.activeTasks = activeTasks;
+      this.totalTasks = totalTasks;
+    }
+
+    public int getStageId() {
+      return stageId;
+    }
+
+    public int getCompletedTasks() {
+      return completedTasks;
+    }
+
+    public int getActiveTasks() {
+      return activeTasks;
+    }
+
+    public int getTotalTasks() {
+      return totalTasks;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof StageProgress ) ) {
+        return false;
+      }
+      StageProgress other = (StageProgress) obj;
+      return stageId == other.stageId && completedTasks == other.completedTasks && activeTasks == other.activeTasks
+          && totalTasks == other.totalTasks;
+    }
+
+    @Override
+    public int hashCode() {
+      return ( ( stageId * 31 + completedTasks ) * 31 + activeTasks ) * 31 + totalTasks;
+    }
+
+    @Override
+    public String toString() {
+      return "Stage " + stageId + ": (" + completedTasks + " + " + activeTasks + ") / " + totalTasks;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts application id and application state from the report lines spark-submit prints while the application is
+ * being submitted and run, e.g. "Application report for application_1427875242006_0029 (state: ACCEPTED)".
+ */
+public class ApplicationReportParser {
+  public static final String STATE_ACCEPTED = "ACCEPTED";
+  public static final String STATE_RUNNING = "RUNNING";
+  public static final String STATE_FINISHED = "FINISHED";
+  public static final String STATE_FAILED = "FAILED";
+  public static final String STATE_KILLED = "KILLED";
+
+  private static final Pattern APPLICATION_ID = Pattern.compile( "application_\\d+_\\d+" );
+  private static final Pattern STATE = Pattern.compile( "state: ([A-Z_]+)" );
+
+  private ApplicationReportParser() {
+  }
+
+  /**
+   * Returns the YARN application id mentioned in the line
+   *
+   * @return application id or null if line does not contain one
+   */
+  public static String parseApplicationId( String line ) {
+    if ( line == null || !line.contains( "application_" ) ) {
+      return null;
+    }
+    Matcher matcher = APPLICATION_ID.matcher( line );
+    return matcher.find() ? matcher.group() : null;
+  }
+
+  /**
+   * Returns the application state reported in the line
+   *
+   * @return state, e.g. ACCEPTED or RUNNING, or null if line is not a state report
+   */
+  public static String parseState( String line ) {
+    if ( line == null || !line.contains( "state: " ) ) {
+      return null;
+    }
+    Matcher matcher = STATE.matcher( line );
+    return matcher.find() ? matcher.group( 1 ) : null;
+  }
+
+  /**
+   * Returns if the application won't change its state anymore
+   */
+  public static boolean isFinalState( String state ) {
+    return STATE_FINISHED.equals( state ) || STATE_FAILED.equals( state ) || STATE_KILLED.equals( state );
+  }
+}
@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Application status as reported by the cluster manager, together with the resources the application consumed if the
+ * cluster manager accounts for them.
+ */
+public class ApplicationStatus {
+  public static final String FINAL_STATUS_SUCCEEDED = "SUCCEEDED";
+
+  private String applicationId;
+  private String state;
+  private String finalStatus;
+  private long memorySeconds = -1;
+  private long vcoreSeconds = -1;
+
+  /**
+   * @param state
+   *          application state, e.g. ACCEPTED, RUNNING or FINISHED
+   * @param finalStatus
+   *          final status reported by the application master, e.g. UNDEFINED, SUCCEEDED or FAILED
+   */
+  public ApplicationStatus( String applicationId, String state, String finalStatus ) {
+    this.applicationId = applicationId;
+    this.state = state;
+    this.finalStatus = finalStatus;
+  }
+
+  /**
+   * @param memorySeconds
+   *          megabytes of memory allocated multiplied by the seconds they were allocated for, -1 if unknown
+   * @param vcoreSeconds
+   *          virtual cores allocated multiplied by the seconds they were allocated for, -1 if unknown
+   */
+  public ApplicationStatus( String applicationId, String state, String finalStatus, long memorySeconds,
+      long vcoreSeconds ) {
+    this( applicationId, state, finalStatus );
+    this.memorySeconds = memorySeconds;
+    this.vcoreSeconds = vcoreSeconds;
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public String getFinalStatus() {
+    return finalStatus;
+  }
+
+  /**
+   * Returns aggregate memory allocated to the application so far in megabyte-seconds
+   *
+   * @return megabyte-seconds or -1 if the cluster manager doesn't report them
+   */
+  public long getMemorySeconds() {
+    return memorySeconds;
+  }
+
+  /**
+   * Returns aggregate virtual cores allocated to the application so far in vcore-seconds
+   *
+   * @return vcore-seconds or -1 if the cluster manager doesn't report them
+   */
+  public long getVcoreSeconds() {
+    return vcoreSeconds;
+  }
+
+  /**
+   * Returns if the cluster manager reported resources consumed by the application
+   */
+  public boolean hasResourceUsage() {
+    return memorySeconds >= 0 && vcoreSeconds >= 0;
+  }
+
+  /**
+   * Returns if the application won't change its state anymore
+   */
+  public boolean isFinal() {
+    return ApplicationReportParser.isFinalState( state );
+  }
+
+  /**
+   * Returns if the application has finished successfully
+   */
+  public boolean isSucceeded() {
+    return ApplicationReportParser.STATE_FINISHED.equals( state )
+        && ( finalStatus == null || FINAL_STATUS_SUCCEEDED.equals( finalStatus ) );
+  }
+
+  @Override
+  public String toString() {
+    return applicationId + " " + state + ( finalStatus == null ? "" : " (" + finalStatus + ")" );
+  }
+}
@@ -0,0 +1,107 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single execution coalesced into a micro-batch: the application arguments of the execution and, once the batch
+ * application is over, its outcome.
+ */
+public class BatchItem {
+  private final int id;
+  private final List<String> args;
+  private final CountDownLatch done = new CountDownLatch( 1 );
+  private volatile boolean succeeded;
+  private volatile String message;
+
+  /**
+   * @param id
+   *          position of the item in the batch, used to match outcomes reported by the application
+   * @param args
+   *          application arguments of the execution
+   */
+  public BatchItem( int id, List<String> args ) {
+    this.id = id;
+    this.args = Collections.unmodifiableList( args );
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public List<String> getArgs() {
+    return args;
+  }
+
+  /**
+   * Sets the outcome of the item. Only the first outcome counts, later ones are ignored.
+   *
+   * @param succeeded
+   *          whether the item succeeded
+   * @param message
+   *          optional message reported for the item
+   * @return true if this was the first outcome set
+   */
+  public synchronized boolean complete( boolean succeeded, String message ) {
+    if ( isDone() ) {
+      return false;
+    }
+    this.succeeded = succeeded;
+    this.message = message;
+    done.countDown();
+    return true;
+  }
+
+  public boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  /**
+   * Waits for the outcome of the item
+   *
+   * @param timeoutMs
+   *          maximum time to wait
+   * @return true if the outcome is known
+   */
+  public boolean await( long timeoutMs ) throws InterruptedException {
+    return done.await( timeoutMs, TimeUnit.MILLISECONDS );
+  }
+
+  public boolean isSucceeded() {
+    return succeeded;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return id + " " + args;
+  }
+}
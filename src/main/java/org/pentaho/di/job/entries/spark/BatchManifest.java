@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Micro-batch manifest handed to the batch application, and the outcome lines the application reports back.
+ * <p>
+ * The manifest is a JSON lines file, one item per line: <code>{"id":0,"args":["arg1","arg2"]}</code>. The application
+ * receives the manifest as its only argument: the local path in client deploy mode, the file name of the copy shipped
+ * with <code>--files</code> in cluster deploy mode. For every item processed the application prints
+ * <code>SPARK_BATCH_ITEM &lt;id&gt; SUCCEEDED|FAILED [message]</code> to the driver output. Items without an outcome
+ * line take the outcome of the whole application. In cluster deploy mode spark-submit doesn't relay the driver
+ * output, so every item takes the outcome of the application there.
+ */
+public class BatchManifest {
+  public static final String OUTCOME_MARKER = "SPARK_BATCH_ITEM";
+
+  // ids longer than 9 digits can't be an item and wouldn't parse as int
+  private static final Pattern OUTCOME_PATTERN = Pattern.compile( OUTCOME_MARKER
+      + "\\s+(\\d{1,9})\\s+(SUCCEEDED|FAILED)(?:\\s+(.*))?" );
+
+  private BatchManifest() {
+  }
+
+  /**
+   * Writes the manifest of the items given
+   */
+  @SuppressWarnings( "unchecked" )
+  public static void write( File file, List<BatchItem> items ) throws IOException {
+    Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+    try {
+      for ( BatchItem item : items ) {
+        JSONObject line = new JSONObject();
+        line.put( "id", item.getId() );
+        JSONArray args = new JSONArray();
+        args.addAll( item.getArgs() );
+        line.put( "args", args );
+        writer.write( line.toJSONString() );
+        writer.write( '\n' );
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Applies the outcome reported in the output line given to the matching item
+   *
+   * @return true if the line reported an outcome of one of the items
+   */
+  public static boolean applyOutcome( String line, List<BatchItem> items ) {
+    if ( line == null || !line.contains( OUTCOME_MARKER ) ) {
+      return false;
+    }
+    Matcher matcher = OUTCOME_PATTERN.matcher( line );
+    if ( !matcher.find() ) {
+      return false;
+    }
+    int id = Integer.parseInt( matcher.group( 1 ) );
+    if ( id < 0 || id >= items.size() ) {
+      return false;
+    }
+    return items.get( id ).complete( "SUCCEEDED".equals( matcher.group( 2 ) ), matcher.group( 3 ) );
+  }
+}
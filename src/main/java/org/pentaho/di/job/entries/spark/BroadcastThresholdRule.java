@@ -0,0 +1,56 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Warns about broadcast join threshold too large for the driver memory. Broadcast relations are collected on the
+ * driver first, so a threshold above 10% of the driver heap risks driver OutOfMemoryError.
+ */
+public class BroadcastThresholdRule extends PerformanceRule {
+  static final long DEFAULT_THRESHOLD_MB = 10;
+  static final double MAX_DRIVER_SHARE = 0.10;
+
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    String threshold = entry.getConfigParam( "spark.sql.autoBroadcastJoinThreshold" );
+    long thresholdMb;
+    if ( threshold == null ) {
+      thresholdMb = DEFAULT_THRESHOLD_MB;
+    } else if ( threshold.trim().matches( "-?\\d+" ) ) {
+      // plain numbers are bytes, -1 disables broadcasting
+      thresholdMb = Long.parseLong( threshold.trim() ) / ( 1024 * 1024 );
+    } else {
+      thresholdMb = MemorySize.toMegabytes( threshold, DEFAULT_THRESHOLD_MB );
+    }
+    long driverMb = MemorySize.toMegabytes( entry.getResolvedDriverMemory(), 1024 );
+    if ( thresholdMb > driverMb * MAX_DRIVER_SHARE ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_WARNING, entry, "BroadcastThreshold", thresholdMb,
+          driverMb );
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Map;
+
+import org.pentaho.di.cluster.SlaveServer;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.job.Job;
+import org.pentaho.di.job.JobExecutionConfiguration;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.www.SlaveServerJobStatus;
+import org.pentaho.di.www.SlaveServerStatus;
+import org.pentaho.metastore.api.IMetaStore;
+
+/**
+ * Carte slave server taking submissions. Submissions in flight are the running jobs named with the
+ * {@link DistributedSubmission#JOB_NAME_PREFIX}, memory is the one reported by the Carte status page.
+ */
+public class CarteSubmissionNode implements SubmissionNode {
+  private SlaveServer slaveServer;
+  private Repository repository;
+  private IMetaStore metaStore;
+
+  public CarteSubmissionNode( SlaveServer slaveServer, Repository repository, IMetaStore metaStore ) {
+    this.slaveServer = slaveServer;
+    this.repository = repository;
+    this.metaStore = metaStore;
+  }
+
+  @Override
+  public String getName() {
+    return slaveServer.getName();
+  }
+
+  @Override
+  public NodeLoad getLoad() throws KettleException {
+    SlaveServerStatus status;
+    try {
+      status = slaveServer.getStatus();
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to get the status of " + getName(), e );
+    }
+    int inFlight = 0;
+    for ( SlaveServerJobStatus job : status.getJobStatusList() ) {
+      if ( job.getJobName() != null && job.getJobName().startsWith( DistributedSubmission.JOB_NAME_PREFIX )
+          && ( job.isRunning() || job.isWaiting() ) ) {
+        inFlight++;
+      }
+    }
+    return new NodeLoad( inFlight, status.getMemoryFree(), status.getMemoryTotal() );
+  }
+
+  @Override
+  public String submit( JobMeta jobMeta, Map<String, String> variables ) throws KettleException {
+    JobExecutionConfiguration configuration = new JobExecutionConfiguration();
+    configuration.setRemoteServer( slaveServer );
+    configuration.setRepository( repository );
+    configuration.setVariables( variables );
+    return Job.sendToSlaveServer( jobMeta, configuration, repository, metaStore );
+  }
+
+  @Override
+  public RemoteJobStatus getStatus( String jobName, String id, int fromLine ) throws KettleException {
+    SlaveServerJobStatus status;
+    try {
+      status = slaveServer.getJobStatus( jobName, id, fromLine );
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to get the status of " + jobName + " from " + getName(), e );
+    }
+    return new RemoteJobStatus( status.getLoggingString(), status.getLastLoggingLineNr(), status.isFinished()
+        || status.isStopped(), status.getResult() );
+  }
+
+  @Override
+  public void stop( String jobName, String id ) throws KettleException {
+    try {
+      slaveServer.stopJob( jobName, id );
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to stop " + jobName + " on " + getName(), e );
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parts of a class file needed to reason about a class without loading it: its name, super types, flags, the
+ * types it refers to and its members. Names are internal names, e.g. <code>java/lang/String</code>.
+ * <p>
+ * Referenced types are the ones the JVM may load for the class: class constants and the types in the descriptors of
+ * fields, methods, member references and method types. Other strings of the constant pool, like string literals,
+ * annotation types and generic signatures, aren't resolved when the class runs and are left out.
+ */
+public class ClassFileInfo {
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_INTERFACE = 0x0200;
+  public static final int ACC_ABSTRACT = 0x0400;
+  public static final int ACC_SYNTHETIC = 0x1000;
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final Pattern TYPE_IN_DESCRIPTOR = Pattern.compile( "L([\\w/$]+)[;<]" );
+
+  private int majorVersion;
+  private int accessFlags;
+  private String name;
+  private String superName;
+  private List<String> interfaces = new ArrayList<String>();
+  private Set<String> referencedTypes = new HashSet<String>();
+  private List<String> fieldTypes = new ArrayList<String>();
+  private List<Member> methods = new ArrayList<Member>();
+
+  /**
+   * A method, name and descriptor
+   */
+  public static class Member {
+    private final int accessFlags;
+    private final String name;
+    private final String descriptor;
+
+    public Member( int accessFlags, String name, String descriptor ) {
+      this.accessFlags = accessFlags;
+      this.name = name;
+      this.descriptor = descriptor;
+    }
+
+    public int getAccessFlags() {
+      return accessFlags;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getDescriptor() {
+      return descriptor;
+    }
+  }
+
+  private ClassFileInfo() {
+  }
+
+  /**
+   * Reads a class file
+   *
+   * @throws IOException
+   *           if the stream is not a class file
+   */
+  public static ClassFileInfo read( InputStream is ) throws IOException {
+    DataInputStream in = new DataInputStream( is );
+    if ( in.readInt() != MAGIC ) {
+      throw new IOException( "Not a class file" );
+    }
+    ClassFileInfo info = new ClassFileInfo();
+    in.readUnsignedShort();
+    info.majorVersion = in.readUnsignedShort();
+
+    int count = in.readUnsignedShort();
+    String[] utf8 = new String[count];
+    int[] classNameIndex = new int[count];
+    List<Integer> descriptorIndexes = new ArrayList<Integer>();
+    for ( int i = 1; i < count; i++ ) {
+      int tag = in.readUnsignedByte();
+      switch ( tag ) {
+        case 1: // Utf8
+          utf8[i] = in.readUTF();
+          break;
+        case 7: // Class
+          classNameIndex[i] = in.readUnsignedShort();
+          break;
+        case 16: // MethodType
+          descriptorIndexes.add( in.readUnsignedShort() );
+          break;
+        case 12: // NameAndType
+          in.readUnsignedShort();
+          descriptorIndexes.add( in.readUnsignedShort() );
+          break;
+        case 8: // String
+        case 19: // Module
+        case 20: // Package
+          in.skipBytes( 2 );
+          break;
+        case 15: // MethodHandle
+          in.skipBytes( 3 );
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          in.skipBytes( 4 );
+          break;
+        case 5: // Long
+        case 6: // Double
+          in.skipBytes( 8 );
+          i++;
+          break;
+        default:
+          throw new IOException( "Unknown constant pool tag " + tag );
+      }
+    }
+
+    for ( int i = 1; i < count; i++ ) {
+      if ( classNameIndex[i] > 0 ) {
+        addType( info.referencedTypes, utf8[classNameIndex[i]] );
+      }
+    }
+    for ( int index : descriptorIndexes ) {
+      addDescriptorTypes( info.referencedTypes, utf8[index] );
+    }
+
+    info.accessFlags = in.readUnsignedShort();
+    info.name = utf8[classNameIndex[in.readUnsignedShort()]];
+    int superIndex = in.readUnsignedShort();
+    info.superName = superIndex == 0 ? null : utf8[classNameIndex[superIndex]];
+    int interfaceCount = in.readUnsignedShort();
+    for ( int i = 0; i < interfaceCount; i++ ) {
+      info.interfaces.add( utf8[classNameIndex[in.readUnsignedShort()]] );
+    }
+
+    int fieldCount = in.readUnsignedShort();
+    for ( int i = 0; i < fieldCount; i++ ) {
+      in.readUnsignedShort();
+      in.readUnsignedShort();
+      String descriptor = utf8[in.readUnsignedShort()];
+      addDescriptorTypes( info.fieldTypes, descriptor );
+      addDescriptorTypes( info.referencedTypes, descriptor );
+      skipAttributes( in );
+    }
+    int methodCount = in.readUnsignedShort();
+    for ( int i = 0; i < methodCount; i++ ) {
+      int flags = in.readUnsignedShort();
+      String methodName = utf8[in.readUnsignedShort()];
+      String descriptor = utf8[in.readUnsignedShort()];
+      info.methods.add( new Member( flags, methodName, descriptor ) );
+      addDescriptorTypes( info.referencedTypes, descriptor );
+      skipAttributes( in );
+    }
+    info.referencedTypes.remove( info.name );
+    return info;
+  }
+
+  private static void addDescriptorTypes( Collection<String> types, String descriptor ) {
+    if ( descriptor == null ) {
+      return;
+    }
+    Matcher matcher = TYPE_IN_DESCRIPTOR.matcher( descriptor );
+    while ( matcher.find() ) {
+      types.add( matcher.group( 1 ) );
+    }
+  }
+
+  private static void addType( Set<String> types, String name ) {
+    if ( name.startsWith( "[" ) ) {
+      Matcher matcher = TYPE_IN_DESCRIPTOR.matcher( name );
+      if ( matcher.find() ) {
+        types.add( matcher.group( 1 ) );
+      }
+    } else {
+      types.add( name );
+    }
+  }
+
+  private static void skipAttributes( DataInputStream in ) throws IOException {
+    int attributeCount = in.readUnsignedShort();
+    for ( int i = 0; i < attributeCount; i++ ) {
+      in.readUnsignedShort();
+      int length = in.readInt();
+      if ( in.skipBytes( length ) != length ) {
+        throw new IOException( "Truncated class file" );
+      }
+    }
+  }
+
+  /**
+   * Returns class file major version, e.g. 51 for Java 7
+   */
+  public int getMajorVersion() {
+    return majorVersion;
+  }
+
+  public int getAccessFlags() {
+    return accessFlags;
+  }
+
+  public boolean isInterface() {
+    return ( accessFlags & ACC_INTERFACE ) != 0;
+  }
+
+  public boolean isAbstract() {
+    return ( accessFlags & ACC_ABSTRACT ) != 0;
+  }
+
+  public boolean isSynthetic() {
+    return ( accessFlags & ACC_SYNTHETIC ) != 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the binary name used by Class.forName, e.g. <code>com.acme.Outer$Inner</code>
+   */
+  public String getClassName() {
+    return name.replace( '/', '.' );
+  }
+
+  public String getSuperName() {
+    return superName;
+  }
+
+  public List<String> getInterfaces() {
+    return Collections.unmodifiableList( interfaces );
+  }
+
+  /**
+   * Returns the types the class refers to in its class constants and descriptors
+   */
+  public Set<String> getReferencedTypes() {
+    return Collections.unmodifiableSet( referencedTypes );
+  }
+
+  /**
+   * Returns the types of the fields declared
+   */
+  public List<String> getFieldTypes() {
+    return Collections.unmodifiableList( fieldTypes );
+  }
+
+  public List<Member> getMethods() {
+    return Collections.unmodifiableList( methods );
+  }
+}
@@ -0,0 +1,255 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.job.JobMeta;
+
+/**
+ * Routes a submission to the least loaded of a pool of nodes and streams its log back until it finishes. Nodes are
+ * ranked by Spark submissions in flight, then by free memory; unreachable nodes are skipped. If a node can't take the
+ * submission, it fails over to the next node. A node that stops answering while running the submission might still be
+ * running it, so the submission isn't sent elsewhere: the job on the node is asked to stop and the run fails.
+ */
+public class DistributedSubmission {
+  /**
+   * Prefix of the name of the jobs running routed submissions, used to count submissions in flight on a node
+   */
+  public static final String JOB_NAME_PREFIX = "Spark submit: ";
+
+  // submissions routed from this JVM which the node might not report yet
+  private static final ConcurrentMap<String, AtomicInteger> PENDING = new ConcurrentHashMap<String, AtomicInteger>();
+
+  private LogChannelInterface log;
+  private List<SubmissionNode> nodes;
+  private long pollInterval;
+  private int maxPollFailures;
+  private final Object lock = new Object();
+  private volatile boolean cancelled;
+  private volatile SubmissionNode node;
+
+  /**
+   * @param nodes
+   *          nodes to choose from, in order of preference when equally loaded
+   * @param pollInterval
+   *          milliseconds between status requests
+   * @param maxPollFailures
+   *          consecutive failed status requests after which a node is considered lost
+   */
+  public DistributedSubmission( LogChannelInterface log, List<SubmissionNode> nodes, long pollInterval,
+      int maxPollFailures ) {
+    this.log = log;
+    this.nodes = nodes;
+    this.pollInterval = pollInterval;
+    this.maxPollFailures = Math.max( 1, maxPollFailures );
+  }
+
+  /**
+   * Runs the job on the least loaded node, failing over to the next ones while they refuse the submission
+   *
+   * @return result of the job, a stopped result if the submission was cancelled, a failed result if the node running
+   *         it stopped answering
+   */
+  public Result run( JobMeta jobMeta, Map<String, String> variables ) throws KettleException, InterruptedException {
+    List<SubmissionNode> ranked = rank();
+    if ( ranked.isEmpty() ) {
+      throw new KettleException( "None of the slave servers is reachable" );
+    }
+    String jobName = jobMeta.getName();
+    for ( SubmissionNode candidate : ranked ) {
+      if ( cancelled ) {
+        break;
+      }
+      AtomicInteger pending = getPending( candidate );
+      pending.incrementAndGet();
+      String id;
+      try {
+        log.logBasic( "Routing submission to " + candidate.getName() );
+        id = candidate.submit( jobMeta, variables );
+      } catch ( KettleException e ) {
+        log.logError( "Unable to submit to " + candidate.getName() + ", failing over: " + e.getMessage() );
+        continue;
+      } finally {
+        pending.decrementAndGet();
+      }
+      node = candidate;
+      Result result = follow( candidate, jobName, id );
+      if ( result != null ) {
+        return result;
+      }
+      return lost( candidate, jobName, id );
+    }
+    if ( cancelled ) {
+      Result result = new Result();
+      result.setStopped( true );
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+    throw new KettleException( "The submission failed on every slave server" );
+  }
+
+  /**
+   * Returns reachable nodes, least loaded first
+   */
+  List<SubmissionNode> rank() {
+    final Map<SubmissionNode, NodeLoad> loads = new HashMap<SubmissionNode, NodeLoad>();
+    List<SubmissionNode> reachable = new ArrayList<SubmissionNode>();
+    for ( SubmissionNode candidate : nodes ) {
+      try {
+        NodeLoad load = candidate.getLoad().plus( getPending( candidate ).get() );
+        if ( log.isDetailed() ) {
+          log.logDetailed( candidate.getName() + ": " + load );
+        }
+        loads.put( candidate, load );
+        reachable.add( candidate );
+      } catch ( KettleException e ) {
+        log.logBasic( candidate.getName() + " is unreachable, skipping it: " + e.getMessage() );
+      }
+    }
+    // stable, equally loaded nodes keep their configured order
+    Collections.sort( reachable, new Comparator<SubmissionNode>() {
+      @Override
+      public int compare( SubmissionNode o1, SubmissionNode o2 ) {
+        return loads.get( o1 ).compareTo( loads.get( o2 ) );
+      }
+    } );
+    return reachable;
+  }
+
+  /**
+   * Streams the job log until the job finishes
+   *
+   * @return result of the job, null if the node stopped answering
+   */
+  private Result follow( SubmissionNode candidate, String jobName, String id ) throws InterruptedException {
+    int line = 0;
+    int failures = 0;
+    boolean stopRequested = false;
+    while ( true ) {
+      if ( cancelled && !stopRequested ) {
+        stopRequested = true;
+        try {
+          candidate.stop( jobName, id );
+        } catch ( KettleException e ) {
+          log.logError( "Unable to stop the submission on " + candidate.getName() + ": " + e.getMessage() );
+        }
+      }
+      try {
+        RemoteJobStatus status = candidate.getStatus( jobName, id, line );
+        failures = 0;
+        logLines( candidate, status.getLog() );
+        line = status.getLastLine();
+        if ( status.isFinished() ) {
+          if ( status.getResult() != null ) {
+            return status.getResult();
+          }
+          Result result = new Result();
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+      } catch ( KettleException e ) {
+        if ( ++failures >= maxPollFailures ) {
+          return null;
+        }
+        log.logBasic( "Unable to get the submission status from " + candidate.getName() + ": " + e.getMessage() );
+      }
+      synchronized ( lock ) {
+        if ( !cancelled || stopRequested ) {
+          lock.wait( pollInterval );
+        }
+      }
+    }
+  }
+
+  /**
+   * Tries to stop the job on a node that stopped answering, the outcome of the submission is unknown
+   *
+   * @return a failed result
+   */
+  private Result lost( SubmissionNode candidate, String jobName, String id ) {
+    log.logError( candidate.getName() + " stopped answering, the outcome of the submission is unknown" );
+    try {
+      candidate.stop( jobName, id );
+    } catch ( KettleException e ) {
+      log.logError( "Unable to stop the submission on " + candidate.getName() + ", it might still be running: " + e
+          .getMessage() );
+    }
+    Result result = new Result();
+    result.setNrErrors( 1 );
+    result.setResult( false );
+    return result;
+  }
+
+  private void logLines( SubmissionNode candidate, String lines ) {
+    if ( Const.isEmpty( lines ) ) {
+      return;
+    }
+    for ( String line : lines.split( "\r?\n" ) ) {
+      if ( !line.trim().isEmpty() ) {
+        log.logBasic( "[" + candidate.getName() + "] " + line );
+      }
+    }
+  }
+
+  private static AtomicInteger getPending( SubmissionNode candidate ) {
+    AtomicInteger pending = PENDING.get( candidate.getName() );
+    if ( pending == null ) {
+      PENDING.putIfAbsent( candidate.getName(), new AtomicInteger() );
+      pending = PENDING.get( candidate.getName() );
+    }
+    return pending;
+  }
+
+  /**
+   * Stops the submission, the job running on the node is stopped too
+   */
+  public void cancel() {
+    cancelled = true;
+    synchronized ( lock ) {
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Returns the node running the submission, null before it's routed
+   */
+  public SubmissionNode getNode() {
+    return node;
+  }
+}
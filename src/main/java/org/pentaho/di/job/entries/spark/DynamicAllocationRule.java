@@ -0,0 +1,43 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Reports dynamic allocation enabled without the external shuffle service, so executors can't be released without
+ * losing their shuffle files. Spark 3 shuffle tracking is accepted instead of the service.
+ */
+public class DynamicAllocationRule extends PerformanceRule {
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    if ( isEnabled( entry, "spark.dynamicAllocation.enabled" )
+        && !isEnabled( entry, "spark.shuffle.service.enabled" )
+        && !isEnabled( entry, "spark.dynamicAllocation.shuffleTracking.enabled" ) ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_ERROR, entry, "DynamicAllocation" );
+    }
+  }
+}
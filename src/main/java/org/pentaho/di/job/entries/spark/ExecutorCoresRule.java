@@ -0,0 +1,43 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Warns about executors running more than 5 tasks at once, which degrades HDFS client throughput.
+ */
+public class ExecutorCoresRule extends PerformanceRule {
+  static final int MAX_CORES = 5;
+
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    int cores = getInt( entry, "spark.executor.cores", 1 );
+    if ( cores > MAX_CORES ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_WARNING, entry, "ExecutorCores", cores, MAX_CORES );
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Computes SHA-256 digests of file content. Digests are remembered by file URI, size and modification time, so an
+ * unchanged file is read only once per JVM.
+ */
+public class FileDigest {
+  private static final Cache<String, String> CACHE = CacheBuilder.newBuilder().maximumSize( 1000 ).build();
+
+  private FileDigest() {
+  }
+
+  /**
+   * Returns hex encoded digest of the file content
+   *
+   * @param path
+   *          local path or any URL Kettle VFS understands
+   */
+  public static String digest( String path, VariableSpace space ) throws KettleException {
+    try {
+      return digest( KettleVFS.getFileObject( path, space ) );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read " + path, e );
+    }
+  }
+
+  /**
+   * Returns hex encoded digest of the file content
+   */
+  public static String digest( FileObject file ) throws IOException {
+    String key = file.getName().getURI() + "|" + file.getContent().getSize() + "|"
+        + file.getContent().getLastModifiedTime();
+    String digest = CACHE.getIfPresent( key );
+    if ( digest == null ) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      InputStream is = file.getContent().getInputStream();
+      try {
+        byte[] buffer = new byte[65536];
+        int n;
+        while ( ( n = is.read( buffer ) ) > 0 ) {
+          hasher.putBytes( buffer, 0, n );
+        }
+      } finally {
+        is.close();
+      }
+      digest = hasher.hash().toString();
+      CACHE.put( key, digest );
+    }
+    return digest;
+  }
+}
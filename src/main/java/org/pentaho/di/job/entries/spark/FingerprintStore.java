@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Remembers the input fingerprint of the last successful run of every job entry.
+ */
+public class FingerprintStore {
+  private static final String FINGERPRINT = "fingerprint";
+  private static final String SUCCEEDED = "succeeded";
+
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder fingerprints are kept in
+   */
+  public FingerprintStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static FingerprintStore getDefault() {
+    return new FingerprintStore( StateDirectory.get( "fingerprints" ) );
+  }
+
+  /**
+   * Returns the fingerprint of the last successful run
+   *
+   * @param key
+   *          key identifying the job entry
+   * @return fingerprint or null if there was no successful run yet
+   */
+  public String getFingerprint( String key ) throws KettleException {
+    File file = getFile( key );
+    try {
+      Properties record = StateDirectory.readProperties( file );
+      return record == null ? null : record.getProperty( FINGERPRINT );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read fingerprint " + file, e );
+    }
+  }
+
+  /**
+   * Records the fingerprint of a successful run
+   */
+  public void put( String key, String fingerprint ) throws KettleException {
+    Properties record = new Properties();
+    record.setProperty( FINGERPRINT, fingerprint );
+    record.setProperty( SUCCEEDED, String.valueOf( System.currentTimeMillis() ) );
+    File file = getFile( key );
+    try {
+      StateDirectory.writeProperties( file, record );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write fingerprint " + file, e );
+    }
+  }
+
+  private File getFile( String key ) {
+    return new File( directory, key + ".properties" );
+  }
+}
@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Alternate master and/or YARN queue an application can be submitted to when the configured one doesn't start it in
+ * time.
+ */
+public class HedgeTarget {
+  public static final String QUEUE_PARAM = "spark.yarn.queue";
+
+  private String master;
+  private String queue;
+
+  /**
+   * @param master
+   *          master URL, empty to keep the configured one
+   * @param queue
+   *          YARN queue, empty to keep the configured one
+   */
+  public HedgeTarget( String master, String queue ) {
+    this.master = master;
+    this.queue = queue;
+  }
+
+  public String getMaster() {
+    return master;
+  }
+
+  public String getQueue() {
+    return queue;
+  }
+
+  /**
+   * Rewrites spark-submit command to submit to this target
+   *
+   * @param cmds
+   *          spark-submit command as returned by {@link JobEntrySparkSubmit#getCmds()}
+   * @return new command
+   */
+  public List<String> apply( List<String> cmds ) {
+    List<String> result = new ArrayList<String>( cmds.size() + 2 );
+    boolean queueSet = false;
+    for ( int i = 0; i < cmds.size(); i++ ) {
+      String cmd = cmds.get( i );
+      result.add( cmd );
+      if ( i + 1 == cmds.size() ) {
+        continue;
+      }
+      if ( "--master".equals( cmd ) && !Const.isEmpty( master ) ) {
+        result.add( master );
+        i++;
+      } else if ( "--conf".equals( cmd ) && !Const.isEmpty( queue ) && cmds.get( i + 1 ).startsWith( QUEUE_PARAM + "=" ) ) {
+        result.add( QUEUE_PARAM + "=" + queue );
+        queueSet = true;
+        i++;
+      }
+    }
+    if ( !queueSet && !Const.isEmpty( queue ) ) {
+      // right after <script> --master <url>
+      int pos = Math.min( 3, result.size() );
+      result.add( pos, "--conf" );
+      result.add( pos + 1, QUEUE_PARAM + "=" + queue );
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append( Const.isEmpty( master ) ? "<configured master>" : master );
+    if ( !Const.isEmpty( queue ) ) {
+      sb.append( " queue " ).append( queue );
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+/**
+ * Submits an application and, if it isn't RUNNING within the timeout, submits it once more to the next alternate
+ * target. The first submission reaching RUNNING state wins, all the others are cancelled. Submissions failing before
+ * reaching RUNNING state are dropped and the next target is tried right away. A target that can't be submitted to is
+ * skipped once another submission is running, so the submissions made so far are never left behind.
+ */
+public class HedgedSubmission implements SparkSubmission.StateListener {
+  private static final long POLL_INTERVAL = 500;
+
+  private LogChannelInterface log;
+  private Launcher launcher;
+  private List<HedgeTarget> targets;
+  private long timeout;
+  private SparkApplicationClient client;
+  private List<SparkSubmission> submissions = new ArrayList<SparkSubmission>();
+  private int launched; // targets tried so far
+  private final Object lock = new Object();
+  private volatile boolean cancelled;
+
+  /**
+   * @param targets
+   *          targets in order they should be tried, the first one is the primary submission
+   * @param timeout
+   *          milliseconds to wait for a submission to reach RUNNING before hedging
+   * @param client
+   *          client used to kill losing applications, may be null
+   */
+  public HedgedSubmission( LogChannelInterface log, Launcher launcher, List<HedgeTarget> targets, long timeout,
+      SparkApplicationClient client ) {
+    this.log = log;
+    this.launcher = launcher;
+    this.targets = targets;
+    this.timeout = timeout;
+    this.client = client;
+  }
+
+  /**
+   * Submits to the targets until one of them starts running
+   *
+   * @return the winning submission, or the last failed one if none of them started
+   */
+  public SparkSubmission run() throws KettleException, InterruptedException {
+    synchronized ( lock ) {
+      launchNext();
+      long nextHedge = System.currentTimeMillis() + timeout;
+      while ( true ) {
+        if ( cancelled ) {
+          cancelAll( null );
+          return submissions.get( 0 );
+        }
+
+        SparkSubmission winner = null;
+        SparkSubmission lastFailed = null;
+        boolean anyAlive = false;
+        for ( SparkSubmission submission : submissions ) {
+          if ( submission.isCancelled() ) {
+            continue;
+          }
+          if ( ApplicationReportParser.STATE_RUNNING.equals( submission.getState() ) || submission.isSucceeded() ) {
+            winner = submission;
+            break;
+          }
+          if ( submission.isFinished() ) {
+            lastFailed = submission;
+          } else {
+            anyAlive = true;
+          }
+        }
+
+        if ( winner != null ) {
+          if ( submissions.size() > 1 ) {
+            log.logBasic( "Submission to " + winner.getName() + " won, cancelling the others" );
+          }
+          cancelAll( winner );
+          return winner;
+        }
+
+        long now = System.currentTimeMillis();
+        if ( !anyAlive || now >= nextHedge ) {
+          if ( launched < targets.size() ) {
+            // a target that can't be submitted to is skipped right away
+            if ( launchNext() ) {
+              nextHedge = now + timeout;
+            }
+            continue;
+          } else if ( !anyAlive ) {
+            return lastFailed;
+          }
+        }
+
+        long wait = launched < targets.size() ? Math.min( POLL_INTERVAL, nextHedge - now ) : POLL_INTERVAL;
+        lock.wait( Math.max( 1, wait ) );
+      }
+    }
+  }
+
+  /**
+   * Submits to the next target
+   *
+   * @return false if the submission failed while others are still around to wait on
+   * @throws KettleException
+   *           if the primary submission failed
+   */
+  private boolean launchNext() throws KettleException {
+    HedgeTarget target = targets.get( launched++ );
+    if ( !submissions.isEmpty() ) {
+      log.logBasic( "Application is not running after " + timeout + " ms, hedging submission to " + target );
+    }
+    SparkSubmission submission;
+    try {
+      submission = launcher.launch( target );
+    } catch ( KettleException e ) {
+      if ( submissions.isEmpty() ) {
+        throw e;
+      }
+      log.logError( "Unable to hedge submission to " + target + ": " + e.getMessage() );
+      return false;
+    }
+    submission.addStateListener( this );
+    submissions.add( submission );
+    return true;
+  }
+
+  private void cancelAll( SparkSubmission except ) {
+    for ( SparkSubmission submission : submissions ) {
+      if ( submission != except && !submission.isCancelled() ) {
+        submission.cancel( client );
+      }
+    }
+  }
+
+  /**
+   * Stops hedging and cancels all the submissions made so far
+   */
+  public void cancel() {
+    cancelled = true;
+    synchronized ( lock ) {
+      lock.notifyAll();
+    }
+  }
+
+  @Override
+  public void onStateChanged( SparkSubmission submission, String oldState, String newState ) {
+    if ( log.isDetailed() ) {
+      log.logDetailed( "Submission to " + submission.getName() + " changed state to " + newState );
+    }
+    synchronized ( lock ) {
+      lock.notifyAll();
+    }
+  }
+
+  public List<SparkSubmission> getSubmissions() {
+    return submissions;
+  }
+
+  public static interface Launcher {
+    /**
+     * Submits the application to the target and starts pumping spark-submit output
+     */
+    public SparkSubmission launch( HedgeTarget target ) throws KettleException;
+  }
+}
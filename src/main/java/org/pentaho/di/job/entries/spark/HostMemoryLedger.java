@@ -0,0 +1,106 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory reserved on this host by client mode submissions of all entries running in the JVM. A submission holds the
+ * larger of its requested driver memory and the resident memory last sampled of its process tree, so a driver that
+ * has just started counts in full before its JVM grows. Checking the limit and reserving is a single step, entries
+ * admitted at the same time can't all see the same free memory.
+ */
+public class HostMemoryLedger {
+  private static final List<Reservation> RESERVATIONS = new ArrayList<Reservation>();
+
+  private HostMemoryLedger() {
+  }
+
+  /**
+   * Reserves memory unless the reservation would exceed the limit. A submission is always admitted when nothing else
+   * is reserved, there is nothing to wait for.
+   *
+   * @param requestedBytes
+   *          driver memory the submission asks for
+   * @param limitBytes
+   *          memory the reservations may hold together, 0 or less for no limit
+   * @return the reservation to release once the submission finishes, or null if the memory isn't available now
+   */
+  public static synchronized Reservation reserve( long requestedBytes, long limitBytes ) {
+    if ( limitBytes > 0 && !RESERVATIONS.isEmpty() && getReservedBytes() + requestedBytes > limitBytes ) {
+      return null;
+    }
+    Reservation reservation = new Reservation( requestedBytes );
+    RESERVATIONS.add( reservation );
+    return reservation;
+  }
+
+  /**
+   * Returns memory held by all the reservations
+   */
+  public static synchronized long getReservedBytes() {
+    long reserved = 0;
+    for ( Reservation reservation : RESERVATIONS ) {
+      reserved += reservation.getBytes();
+    }
+    return reserved;
+  }
+
+  private static synchronized void release( Reservation reservation ) {
+    RESERVATIONS.remove( reservation );
+  }
+
+  /**
+   * Memory held by a submission
+   */
+  public static class Reservation {
+    private final long requestedBytes;
+    private volatile ProcessTreeSampler sampler;
+
+    private Reservation( long requestedBytes ) {
+      this.requestedBytes = requestedBytes;
+    }
+
+    /**
+     * Sets the sampler of the submission's process tree, its resident memory counts once it exceeds the request
+     */
+    public void setSampler( ProcessTreeSampler sampler ) {
+      this.sampler = sampler;
+    }
+
+    /**
+     * Returns the larger of the requested and the last sampled resident memory
+     */
+    public long getBytes() {
+      ProcessTreeSampler current = sampler;
+      ProcessTreeSample sample = current == null ? null : current.getLastSample();
+      return sample == null ? requestedBytes : Math.max( requestedBytes, sample.getRssBytes() );
+    }
+
+    public void release() {
+      HostMemoryLedger.release( this );
+    }
+  }
+}
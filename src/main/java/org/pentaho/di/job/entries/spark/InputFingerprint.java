@@ -0,0 +1,144 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Fingerprint of everything a Spark run depends on: the spark-submit command, application jar content and the
+ * listing (names, sizes and modification times) of the input files. Folders are listed in parallel, every folder
+ * contributes a digest of its children, so memory use doesn't grow with the number of files.
+ */
+public class InputFingerprint {
+  private static final ForkJoinPool POOL =
+      new ForkJoinPool( Math.max( 4, 2 * Runtime.getRuntime().availableProcessors() ) );
+
+  private InputFingerprint() {
+  }
+
+  /**
+   * Computes the fingerprint
+   *
+   * @param cmds
+   *          resolved spark-submit command, covering class, arguments and configuration
+   * @param jar
+   *          application jar path
+   * @param inputPaths
+   *          input files and folders, local paths or any URL Kettle VFS understands
+   * @return hex encoded fingerprint
+   */
+  public static String compute( List<String> cmds, String jar, List<String> inputPaths, VariableSpace space )
+    throws KettleException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for ( String cmd : cmds ) {
+      hasher.putString( cmd, Charsets.UTF_8 ).putByte( (byte) 0 );
+    }
+    hasher.putString( FileDigest.digest( jar, space ), Charsets.UTF_8 );
+    for ( String inputPath : inputPaths ) {
+      hasher.putString( inputPath, Charsets.UTF_8 ).putByte( (byte) 0 );
+      try {
+        FileObject input = KettleVFS.getFileObject( inputPath, space );
+        hasher.putString( input.exists() ? POOL.invoke( new ListingTask( input ) ) : "missing", Charsets.UTF_8 );
+      } catch ( ListingException e ) {
+        throw new KettleException( "Unable to list " + inputPath, e.getCause() );
+      } catch ( IOException e ) {
+        throw new KettleException( "Unable to list " + inputPath, e );
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Lists a file or folder, returning "size|modification time" for files and digest of the listing for folders
+   */
+  private static class ListingTask extends RecursiveTask<String> {
+    private static final long serialVersionUID = 1L;
+    private static final Comparator<FileObject> BY_NAME = new Comparator<FileObject>() {
+      @Override
+      public int compare( FileObject o1, FileObject o2 ) {
+        return o1.getName().getBaseName().compareTo( o2.getName().getBaseName() );
+      }
+    };
+
+    private FileObject file;
+
+    ListingTask( FileObject file ) {
+      this.file = file;
+    }
+
+    @Override
+    protected String compute() {
+      try {
+        if ( file.getType() != FileType.FOLDER ) {
+          return file.getContent().getSize() + "|" + file.getContent().getLastModifiedTime();
+        }
+
+        FileObject[] children = file.getChildren();
+        Arrays.sort( children, BY_NAME );
+        List<ListingTask> folders = new ArrayList<ListingTask>();
+        for ( FileObject child : children ) {
+          if ( child.getType() == FileType.FOLDER ) {
+            folders.add( new ListingTask( child ) );
+          }
+        }
+        invokeAll( folders );
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        int folder = 0;
+        for ( FileObject child : children ) {
+          hasher.putString( child.getName().getBaseName(), Charsets.UTF_8 ).putByte( (byte) 0 );
+          String listing = child.getType() == FileType.FOLDER ? folders.get( folder++ ).join()
+              : child.getContent().getSize() + "|" + child.getContent().getLastModifiedTime();
+          hasher.putString( listing, Charsets.UTF_8 ).putByte( (byte) 0 );
+        }
+        return hasher.hash().toString();
+      } catch ( IOException e ) {
+        throw new ListingException( e );
+      }
+    }
+  }
+
+  private static class ListingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    ListingException( IOException cause ) {
+      super( cause );
+    }
+  }
+}
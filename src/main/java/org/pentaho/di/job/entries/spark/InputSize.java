@@ -0,0 +1,220 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Total size of input files and folders, local or on any file system Kettle VFS understands, HDFS included. Folders
+ * are listed in parallel and sizes are kept for a minute, shared by all job entries in the JVM, so entries reading
+ * the same inputs in a row list them once. Hidden files and files starting with an underscore, like _SUCCESS markers,
+ * are skipped the way Spark skips them.
+ */
+public class InputSize {
+  /**
+   * System property (e.g. set in kettle.properties) overriding the number of seconds sizes are kept
+   */
+  public static final String TTL_PROPERTY = "SPARK_INPUT_SIZE_CACHE_SECONDS";
+
+  private static final ForkJoinPool POOL =
+      new ForkJoinPool( Math.max( 4, 2 * Runtime.getRuntime().availableProcessors() ) );
+  private static final Cache<String, Long> CACHE = CacheBuilder.newBuilder().maximumSize( 1000 )
+      .expireAfterWrite( Const.toInt( System.getProperty( TTL_PROPERTY ), 60 ), TimeUnit.SECONDS ).build();
+
+  private InputSize() {
+  }
+
+  /**
+   * Returns the size of an input, 0 if it doesn't exist
+   *
+   * @param inputPath
+   *          file or folder, local path or any URL Kettle VFS understands
+   * @return size in bytes
+   */
+  public static long measure( final String inputPath, final VariableSpace space ) throws KettleException {
+    try {
+      return CACHE.get( inputPath, new Callable<Long>() {
+        @Override
+        public Long call() throws IOException, KettleException {
+          FileObject input = KettleVFS.getFileObject( inputPath, space );
+          return input.exists() ? POOL.invoke( new SizeTask( input ) ) : 0L;
+        }
+      } );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( "Unable to list " + inputPath, e.getCause() );
+    } catch ( UncheckedExecutionException e ) {
+      throw new KettleException( "Unable to list " + inputPath, e.getCause() instanceof ListingException
+          ? e.getCause().getCause() : e.getCause() );
+    }
+  }
+
+  /**
+   * Returns the sizes of inputs, listed in parallel
+   *
+   * @return size in bytes of every input, in the order given
+   */
+  public static List<Long> measure( List<String> inputPaths, final VariableSpace space ) throws KettleException {
+    List<MeasureTask> tasks = new ArrayList<MeasureTask>();
+    for ( String inputPath : inputPaths ) {
+      tasks.add( new MeasureTask( inputPath, space ) );
+    }
+    try {
+      POOL.invoke( new MeasureAllTask( tasks ) );
+    } catch ( MeasureException e ) {
+      throw e.getCause();
+    }
+    List<Long> sizes = new ArrayList<Long>();
+    for ( MeasureTask task : tasks ) {
+      sizes.add( task.join() );
+    }
+    return sizes;
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  private static boolean isHidden( FileObject file ) {
+    String name = file.getName().getBaseName();
+    return name.startsWith( "." ) || name.startsWith( "_" );
+  }
+
+  private static class MeasureAllTask extends RecursiveTask<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private List<MeasureTask> tasks;
+
+    MeasureAllTask( List<MeasureTask> tasks ) {
+      this.tasks = tasks;
+    }
+
+    @Override
+    protected Void compute() {
+      invokeAll( tasks );
+      return null;
+    }
+  }
+
+  private static class MeasureTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private String inputPath;
+    private VariableSpace space;
+
+    MeasureTask( String inputPath, VariableSpace space ) {
+      this.inputPath = inputPath;
+      this.space = space;
+    }
+
+    @Override
+    protected Long compute() {
+      try {
+        return measure( inputPath, space );
+      } catch ( KettleException e ) {
+        throw new MeasureException( e );
+      }
+    }
+  }
+
+  /**
+   * Sums sizes of the files in a folder and its subfolders, skipping hidden ones
+   */
+  private static class SizeTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private FileObject file;
+
+    SizeTask( FileObject file ) {
+      this.file = file;
+    }
+
+    @Override
+    protected Long compute() {
+      try {
+        if ( file.getType() != FileType.FOLDER ) {
+          return file.getContent().getSize();
+        }
+
+        long size = 0;
+        List<SizeTask> folders = new ArrayList<SizeTask>();
+        for ( FileObject child : file.getChildren() ) {
+          if ( isHidden( child ) ) {
+            continue;
+          }
+          if ( child.getType() == FileType.FOLDER ) {
+            folders.add( new SizeTask( child ) );
+          } else {
+            size += child.getContent().getSize();
+          }
+        }
+        for ( SizeTask folder : invokeAll( folders ) ) {
+          size += folder.join();
+        }
+        return size;
+      } catch ( IOException e ) {
+        throw new ListingException( e );
+      }
+    }
+  }
+
+  private static class ListingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    ListingException( IOException cause ) {
+      super( cause );
+    }
+  }
+
+  private static class MeasureException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    MeasureException( KettleException cause ) {
+      super( cause );
+    }
+
+    @Override
+    public synchronized KettleException getCause() {
+      return (KettleException) super.getCause();
+    }
+  }
+}
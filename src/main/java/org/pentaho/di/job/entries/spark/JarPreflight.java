@@ -0,0 +1,212 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Checks an application jar before it is submitted: the main class has to be in the jar with a public static
+ * <code>main(String[])</code> method, and every class reachable from it has to refer only to classes found in the
+ * jar, the JDK or the cluster. The cluster provides the given packages and the classes of the local Spark
+ * distribution together with the additional jars submitted with the application; references aren't checked when these
+ * aren't known, since most dependencies of a thin jar would then look missing.
+ * <p>
+ * Classes in the package of the main class and its subpackages are the application's own, a class they use that
+ * can't be found is a problem. The other classes of the jar are bundled libraries, which often refer to optional
+ * dependencies they never load unless asked to, so classes missing for them are only warnings.
+ */
+public class JarPreflight {
+  static final String MAIN_DESCRIPTOR = "([Ljava/lang/String;)V";
+  static final int MAX_REPORTED = 20;
+  /**
+   * Changes whenever the check finds different problems in the same jar, so results remembered are checked again
+   */
+  public static final int VERSION = 2;
+
+  private static final ClassLoader PLATFORM = ClassLoader.getSystemClassLoader().getParent();
+
+  private List<String> providedPrefixes = new ArrayList<String>();
+  private Set<String> providedClasses;
+
+  /**
+   * @param providedPackages
+   *          packages provided by the cluster, e.g. org.apache.spark
+   * @param providedClasses
+   *          class entries of the Spark distribution and the additional jars, e.g.
+   *          org/apache/spark/SparkContext.class, empty if unknown
+   */
+  public JarPreflight( List<String> providedPackages, Set<String> providedClasses ) {
+    for ( String providedPackage : providedPackages ) {
+      providedPrefixes.add( providedPackage.trim().replace( '.', '/' ) + "/" );
+    }
+    this.providedClasses = providedClasses;
+  }
+
+  /**
+   * Checks the jar, ignoring warnings
+   *
+   * @see #check(InputStream, String, List)
+   */
+  public List<String> check( InputStream jar, String mainClass ) throws IOException {
+    return check( jar, mainClass, new ArrayList<String>() );
+  }
+
+  /**
+   * Checks the jar
+   *
+   * @param mainClass
+   *          class spark-submit runs, empty for the Main-Class of the jar manifest
+   * @param warnings
+   *          receives classes missing for the libraries bundled in the jar
+   * @return problems found, empty if the jar is fine
+   */
+  public List<String> check( InputStream jar, String mainClass, List<String> warnings ) throws IOException {
+    Map<String, ClassFileInfo> classes = new HashMap<String, ClassFileInfo>();
+    JarInputStream in = new JarInputStream( jar );
+    JarEntry entry;
+    while ( ( entry = in.getNextJarEntry() ) != null ) {
+      String name = entry.getName();
+      // multi-release and module descriptors aren't classes of the application
+      if ( name.endsWith( ".class" ) && !name.startsWith( "META-INF/" ) && !name.endsWith( "module-info.class" ) ) {
+        ClassFileInfo info = ClassFileInfo.read( in );
+        classes.put( info.getName(), info );
+      }
+    }
+
+    List<String> problems = new ArrayList<String>();
+    if ( mainClass == null || mainClass.trim().isEmpty() ) {
+      Manifest manifest = in.getManifest();
+      mainClass = manifest == null ? null : manifest.getMainAttributes().getValue( Attributes.Name.MAIN_CLASS );
+      if ( mainClass == null || mainClass.trim().isEmpty() ) {
+        problems.add( "No main class is given and the jar manifest names none" );
+        return problems;
+      }
+    }
+    String main = mainClass.trim().replace( '.', '/' );
+    ClassFileInfo info = classes.get( main );
+    if ( info == null ) {
+      if ( !isProvided( main ) ) {
+        problems.add( "Main class " + mainClass.trim() + " is not in the jar" );
+      }
+      return problems;
+    }
+    if ( !hasMainMethod( info, classes ) ) {
+      problems.add( "Main class " + mainClass.trim() + " has no public static void main(String[]) method" );
+    }
+    if ( !providedClasses.isEmpty() ) {
+      addMissingReferences( problems, warnings, main, classes );
+    }
+    return problems;
+  }
+
+  private static boolean hasMainMethod( ClassFileInfo info, Map<String, ClassFileInfo> classes ) {
+    // static methods are inherited, a Scala object extending App gets main from its super class
+    for ( ClassFileInfo type = info; type != null; type = classes.get( type.getSuperName() ) ) {
+      for ( ClassFileInfo.Member method : type.getMethods() ) {
+        int flags = ClassFileInfo.ACC_PUBLIC | ClassFileInfo.ACC_STATIC;
+        if ( "main".equals( method.getName() ) && MAIN_DESCRIPTOR.equals( method.getDescriptor() )
+            && ( method.getAccessFlags() & flags ) == flags ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Walks the classes of the jar reachable from the main class, reporting references resolved nowhere: as problems
+   * when the application's own classes use them, as warnings when only bundled libraries do
+   */
+  private void addMissingReferences( List<String> problems, List<String> warnings, String main,
+      Map<String, ClassFileInfo> classes ) {
+    int end = main.lastIndexOf( '/' );
+    String ownPackage = end < 0 ? "" : main.substring( 0, end + 1 );
+    Map<String, String> missing = new TreeMap<String, String>();
+    Map<String, String> missingForLibraries = new TreeMap<String, String>();
+    Set<String> visited = new HashSet<String>( Collections.singleton( main ) );
+    Deque<String> queue = new ArrayDeque<String>( visited );
+    while ( !queue.isEmpty() ) {
+      String name = queue.poll();
+      boolean own = name.startsWith( ownPackage );
+      for ( String type : classes.get( name ).getReferencedTypes() ) {
+        if ( classes.containsKey( type ) ) {
+          if ( visited.add( type ) ) {
+            queue.add( type );
+          }
+        } else if ( !missing.containsKey( type ) && !isProvided( type ) && !isPlatform( type ) ) {
+          if ( own ) {
+            missing.put( type, name );
+            missingForLibraries.remove( type );
+          } else if ( !missingForLibraries.containsKey( type ) ) {
+            missingForLibraries.put( type, name );
+          }
+        }
+      }
+    }
+    report( problems, missing );
+    report( warnings, missingForLibraries );
+  }
+
+  private static void report( List<String> messages, Map<String, String> missing ) {
+    int reported = 0;
+    for ( Map.Entry<String, String> reference : missing.entrySet() ) {
+      if ( reported++ == MAX_REPORTED ) {
+        messages.add( "... and " + ( missing.size() - MAX_REPORTED ) + " more missing classes" );
+        break;
+      }
+      messages.add( "Class " + reference.getKey().replace( '/', '.' ) + " used by " + reference.getValue().replace(
+          '/', '.' ) + " is neither in the jar nor provided by the cluster" );
+    }
+  }
+
+  private boolean isProvided( String name ) {
+    for ( String prefix : providedPrefixes ) {
+      if ( name.startsWith( prefix ) ) {
+        return true;
+      }
+    }
+    return providedClasses.contains( name + ".class" );
+  }
+
+  private static boolean isPlatform( String name ) {
+    String resource = name + ".class";
+    return PLATFORM == null ? ClassLoader.getSystemResource( resource ) != null
+        : PLATFORM.getResource( resource ) != null;
+  }
+}
@@ -26,13 +26,29 @@ import static org.pentaho.di.job.entry.validator.AndValidator.putValidators;
 import static org.pentaho.di.job.entry.validator.JobEntryValidatorUtils.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.cluster.SlaveServer;
+import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Result;
@@ -41,13 +57,18 @@ import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.metrics.MetricsSnapshotType;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.Job;
 import org.pentaho.di.job.JobEntryListener;
+import org.pentaho.di.job.JobHopMeta;
 import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.job.entries.special.JobEntrySpecial;
 import org.pentaho.di.job.entry.JobEntryBase;
 import org.pentaho.di.job.entry.JobEntryCopy;
 import org.pentaho.di.job.entry.JobEntryInterface;
@@ -75,6 +96,96 @@ import org.w3c.dom.Node;
 public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobEntryInterface, JobEntryListener {
   private static Class<?> PKG = JobEntrySparkSubmit.class; // for i18n purposes, needed by Translator2!!
 
+  private static final String[] JOB_SUBMITTED_PATTERNS = new String[] { "tracking URL:" };
+
+  /**
+   * Variable set to "Y" when the run was skipped because its inputs didn't change, "N" otherwise
+   */
+  public static final String CACHED_VARIABLE = "SPARK_SUBMIT_CACHED";
+  /**
+   * Variable set to the number of bytes the thin jar saved on the upload
+   */
+  public static final String THIN_JAR_SAVED_VARIABLE = "SPARK_SUBMIT_THIN_JAR_SAVED";
+  /**
+   * Variable set to Y when the Python environment was built before, N when it was built by the current run
+   */
+  public static final String PYTHON_ENV_CACHED_VARIABLE = "SPARK_SUBMIT_PYTHON_ENV_CACHED";
+  /**
+   * Folder the Python environment archive is unpacked into next to the driver and executors
+   */
+  public static final String PYTHON_ENV_ALIAS = "pyenv";
+  /**
+   * Variable set to DEADLINE or HANG when the submission was killed for taking too long, empty otherwise
+   */
+  public static final String TIMEOUT_VARIABLE = "SPARK_SUBMIT_TIMEOUT";
+  /**
+   * Variable set to the file holding diagnostics captured before a timed out submission was killed
+   */
+  public static final String DIAGNOSTICS_VARIABLE = "SPARK_SUBMIT_DIAGNOSTICS";
+  /**
+   * Variables set to the resources the application consumed as accounted by the cluster manager, empty if unknown
+   */
+  public static final String MEMORY_SECONDS_VARIABLE = "SPARK_SUBMIT_MEMORY_MB_SECONDS";
+  public static final String VCORE_SECONDS_VARIABLE = "SPARK_SUBMIT_VCORE_SECONDS";
+  /**
+   * Metrics snapped with "job/entry" subject when the application finishes, so expensive jobs can be ranked
+   */
+  public static final Metrics METRIC_MEMORY_SECONDS = new Metrics( MetricsSnapshotType.SUM,
+      "SPARK_MEMORY_MB_SECONDS", "Spark application memory in megabyte-seconds" );
+  public static final Metrics METRIC_VCORE_SECONDS = new Metrics( MetricsSnapshotType.SUM,
+      "SPARK_VCORE_SECONDS", "Spark application virtual cores in vcore-seconds" );
+  /**
+   * Variables summarizing the spark-submit process tree sampled during client mode runs
+   */
+  public static final String PEAK_RSS_VARIABLE = "SPARK_SUBMIT_PEAK_RSS_BYTES";
+  public static final String AVERAGE_RSS_VARIABLE = "SPARK_SUBMIT_AVERAGE_RSS_BYTES";
+  public static final String CPU_MILLIS_VARIABLE = "SPARK_SUBMIT_CPU_MILLIS";
+  public static final String AVERAGE_CPU_VARIABLE = "SPARK_SUBMIT_AVERAGE_CPU_PERCENT";
+  public static final String PEAK_THREADS_VARIABLE = "SPARK_SUBMIT_PEAK_THREADS";
+  public static final String PEAK_FILE_DESCRIPTORS_VARIABLE = "SPARK_SUBMIT_PEAK_FILE_DESCRIPTORS";
+  /**
+   * Upper bound of derived partition counts, huge inputs with small partitions would swamp the driver with tasks
+   */
+  static final long MAX_PARTITIONS = 100000;
+  /**
+   * Variables set by supervised streaming applications after every micro-batch
+   */
+  public static final String STREAMING_INPUT_RATE_VARIABLE = "SPARK_STREAMING_INPUT_ROWS_PER_SECOND";
+  public static final String STREAMING_PROCESSED_RATE_VARIABLE = "SPARK_STREAMING_PROCESSED_ROWS_PER_SECOND";
+  public static final String STREAMING_BATCH_DURATION_VARIABLE = "SPARK_STREAMING_BATCH_DURATION_MS";
+  public static final String STREAMING_STATE_MEMORY_VARIABLE = "SPARK_STREAMING_STATE_MEMORY_BYTES";
+  public static final String STREAMING_LAGGING_VARIABLE = "SPARK_STREAMING_LAGGING";
+  public static final String STREAMING_RESTARTS_VARIABLE = "SPARK_STREAMING_RESTARTS";
+  /**
+   * Variables set whenever spark-submit reports progress of the application
+   */
+  public static final String APPLICATION_STATE_VARIABLE = "SPARK_APPLICATION_STATE";
+  public static final String PROGRESS_PERCENT_VARIABLE = "SPARK_PROGRESS_PERCENT";
+  public static final String ACTIVE_STAGES_VARIABLE = "SPARK_ACTIVE_STAGES";
+  public static final String ACTIVE_TASKS_VARIABLE = "SPARK_ACTIVE_TASKS";
+
+  private static final String KRYO_SERIALIZER = "org.apache.spark.serializer.KryoSerializer";
+
+  private static final long SESSION_START_TIMEOUT = 300000;
+  private static final int DEFAULT_SESSION_CONCURRENCY = 4;
+  private static final int DEFAULT_SESSION_IDLE_TIMEOUT = 600;
+  private static final int DEFAULT_MAX_RESTARTS = 3;
+  private static final int DEFAULT_RESTART_DELAY = 10;
+  private static final long MAX_RESTART_DELAY = 600000;
+  private static final int DEFAULT_LAG_BATCHES = 5;
+  private static final long PROGRESS_SUMMARY_INTERVAL = 60000;
+  private static final int DEFAULT_SAMPLE_INTERVAL = 5;
+  private static final long REMOTE_POLL_INTERVAL = 2000;
+  private static final int MAX_REMOTE_POLL_FAILURES = 3;
+  private static final int MAX_WATCH_FAILURES = 3;
+  private static final String K8S_NAMESPACE = "spark.kubernetes.namespace";
+  private static final String K8S_DRIVER_POD_NAME = "spark.kubernetes.driver.pod.name";
+  private static final String K8S_TOKEN = "spark.kubernetes.authenticate.submission.oauthToken";
+  private static final String K8S_TOKEN_FILE = "spark.kubernetes.authenticate.submission.oauthTokenFile";
+  private static final String PACKAGES_PARAM = "spark.jars.packages";
+  private static final String EXCLUDES_PARAM = "spark.jars.excludes";
+  private static final String REPOSITORIES_PARAM = "spark.jars.repositories";
+
   private String scriptPath; // the path for the spark-submit utility
   private String master = "yarn-cluster"; // the URL for the Spark master
   private List<String> configParams = new ArrayList<String>(); // configuration options, "key=value"
@@ -84,8 +195,75 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
   private boolean blockExecution = true; // wait for job to complete
   private String executorMemory; // memory allocation config param for the executor
   private String driverMemory; // memory allocation config param for the driver
+  private String resourceManagerUrl; // the URL of YARN ResourceManager web services
+  private String hedgeTimeout; // seconds to wait for RUNNING state before submitting to an alternate target
+  private List<String> hedgeMasters = new ArrayList<String>(); // alternate masters, empty to keep the configured one
+  private List<String> hedgeQueues = new ArrayList<String>(); // alternate YARN queues, empty to keep the configured one
+  private String candidateQueues; // comma separated YARN queues to choose from by available capacity
+  private boolean reattachRunning; // attach to the application submitted by a previous run if it is still running
+  private List<String> inputPaths = new ArrayList<String>(); // input files and folders of the application
+  private boolean memoize; // skip the run if neither the inputs nor the application changed since the last success
+  private String partitionSize; // target input bytes per partition partition counts are derived from, e.g. 128m
+  private boolean microBatch; // coalesce executions into a single application
+  private String batchWindow; // seconds to collect executions into a micro-batch
+  private String batchSize; // maximum number of executions in a micro-batch
+  private boolean sharedSession; // run the class inside a warm session driver instead of a new application
+  private String sessionConcurrency; // maximum number of runs executing in the session at the same time
+  private String sessionIdleTimeout; // seconds the session stays idle before it is shut down
+  private boolean registerKryo; // generate Kryo configuration from the classes found in the jar
+  private boolean thinJar; // strip classes provided by the cluster from the jar before submitting it
+  private boolean preflight; // check the main class and the classes it uses before submitting the jar
+  private String providedPackages; // comma separated packages provided by the cluster, empty for the default ones
+  private boolean cachePackages; // resolve spark.jars.packages through the local package cache
+  private String tuningProfile; // name of the metastore tuning profile the entry's own settings override
+  private boolean supervise; // keep a streaming application running, restarting it on failure
+  private String maxRestarts; // restarts allowed after consecutive failures without progress
+  private String restartDelay; // seconds before the first restart, doubled for every next one
+  private String lagBatches; // consecutive lagging micro-batches reported as a sustained lag
+  private String resultMarker; // prefix of driver output lines holding results
+  private String resultFile; // local file the application appends results to
+  private String pyFiles; // comma separated .py, .zip and .egg files put on the PYTHONPATH of a Python application
+  private String pythonRequirements; // requirements or lock file the Python environment archive is built from
+  private String pythonExecutable; // interpreter installing the Python requirements
+  private String pythonArchiveLocation; // cluster folder Python environment archives are published to
+  private String deadline; // seconds the entry may run before the submission is killed
+  private String hangTimeout; // seconds without new output, state or progress change before the submission is killed
+  private String sampleInterval; // seconds between /proc samples of the spark-submit process tree in client mode
+  private String hostMemoryLimit; // resident memory client mode submissions sampled on this host may hold, e.g. 16g
+  private List<String> remoteServers = new ArrayList<String>(); // slave servers to route the submission to
 
   protected Process proc; // the process for the spark-submit command
+  private SparkApplicationClient applicationClient; // overrides the client created from resourceManagerUrl
+  private SchedulerProbe schedulerProbe; // overrides the probe created from resourceManagerUrl
+  private SubmissionStore submissionStore; // overrides the default submission store
+  private FingerprintStore fingerprintStore; // overrides the default fingerprint store
+  private KryoRegistrationStore kryoRegistrationStore; // overrides the default Kryo registration store
+  private List<String> generatedConfParams = new ArrayList<String>(); // config params generated for the current run
+  private ThinJarStore thinJarStore; // overrides the default thin jar store
+  private PreflightStore preflightStore; // overrides the default preflight result store
+  private PackageCache packageCache; // overrides the default package cache
+  private boolean packagesResolved; // packages of the current run were resolved through the package cache
+  private PythonEnvironmentStore pythonEnvironmentStore; // overrides the default Python environment store
+  private String submittedArchive; // Python environment archive submitted in the current run
+  private File pythonSite; // local folder holding the Python environment of the current run
+  private File diagnosticsDirectory; // overrides the default folder diagnostics of timed out submissions go to
+  private volatile String timeoutMessage; // why the watchdog killed the submission of the current run
+  private HostMemoryLedger.Reservation hostReservation; // host memory held by the current client mode run
+  private String submittedJar; // jar submitted in the current run, when it differs from the configured one
+  private TuningProfile resolvedProfile; // tuning profile resolved for the current run
+  private ResultChannel resultChannel; // results of the current run
+  private List<SlaveServer> slaveServers; // slave servers known when the entry was loaded
+  private List<SubmissionNode> submissionNodes; // overrides the nodes created from remoteServers
+  private volatile ApplicationProgress progress; // progress of the current run
+  private List<ProgressTracker.ProgressListener> progressListeners =
+      new CopyOnWriteArrayList<ProgressTracker.ProgressListener>();
+  private List<SubmissionEventBus.Listener> eventListeners = new CopyOnWriteArrayList<SubmissionEventBus.Listener>();
+  private List<SubmissionEventBus.Subscription> eventSubscriptions = // listener subscriptions of the current run
+      new CopyOnWriteArrayList<SubmissionEventBus.Subscription>();
+  @VisibleForTesting
+  long statusPollInterval = 5000; // milliseconds between application status requests
+  @VisibleForTesting
+  long podSeenTimeout = 300000; // milliseconds a submitted driver pod may take to show up on the API server
 
   public JobEntrySparkSubmit( String n ) {
     super( n, "" );
@@ -123,6 +301,58 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
     retval.append( "      " ).append( XMLHandler.addTagValue( "driverMemory", driverMemory ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "executorMemory", executorMemory ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "blockExecution", blockExecution ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "resourceManagerUrl", resourceManagerUrl ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "hedgeTimeout", hedgeTimeout ) );
+    retval.append( "      " ).append( XMLHandler.openTag( "hedgeMasters" ) ).append( Const.CR );
+    for ( String hedgeMaster : hedgeMasters ) {
+      retval.append( "            " ).append( XMLHandler.addTagValue( "master", hedgeMaster ) );
+    }
+    retval.append( "      " ).append( XMLHandler.closeTag( "hedgeMasters" ) ).append( Const.CR );
+    retval.append( "      " ).append( XMLHandler.openTag( "hedgeQueues" ) ).append( Const.CR );
+    for ( String hedgeQueue : hedgeQueues ) {
+      retval.append( "            " ).append( XMLHandler.addTagValue( "queue", hedgeQueue ) );
+    }
+    retval.append( "      " ).append( XMLHandler.closeTag( "hedgeQueues" ) ).append( Const.CR );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "candidateQueues", candidateQueues ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "reattachRunning", reattachRunning ) );
+    retval.append( "      " ).append( XMLHandler.openTag( "inputPaths" ) ).append( Const.CR );
+    for ( String inputPath : inputPaths ) {
+      retval.append( "            " ).append( XMLHandler.addTagValue( "path", inputPath ) );
+    }
+    retval.append( "      " ).append( XMLHandler.closeTag( "inputPaths" ) ).append( Const.CR );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "memoize", memoize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "partitionSize", partitionSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "microBatch", microBatch ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "batchWindow", batchWindow ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "batchSize", batchSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "sharedSession", sharedSession ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "sessionConcurrency", sessionConcurrency ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "sessionIdleTimeout", sessionIdleTimeout ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "registerKryo", registerKryo ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "thinJar", thinJar ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "preflight", preflight ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "providedPackages", providedPackages ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cachePackages", cachePackages ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "tuningProfile", tuningProfile ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "supervise", supervise ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "maxRestarts", maxRestarts ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "restartDelay", restartDelay ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "lagBatches", lagBatches ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "resultMarker", resultMarker ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "resultFile", resultFile ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "pyFiles", pyFiles ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "pythonRequirements", pythonRequirements ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "pythonExecutable", pythonExecutable ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "pythonArchiveLocation", pythonArchiveLocation ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "deadline", deadline ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "hangTimeout", hangTimeout ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "sampleInterval", sampleInterval ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "hostMemoryLimit", hostMemoryLimit ) );
+    retval.append( "      " ).append( XMLHandler.openTag( "remoteServers" ) ).append( Const.CR );
+    for ( String remoteServer : remoteServers ) {
+      retval.append( "            " ).append( XMLHandler.addTagValue( "server", remoteServer ) );
+    }
+    retval.append( "      " ).append( XMLHandler.closeTag( "remoteServers" ) ).append( Const.CR );
     return retval.toString();
   }
 
@@ -148,6 +378,58 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
       driverMemory = XMLHandler.getTagValue( entrynode, "driverMemory" );
       executorMemory = XMLHandler.getTagValue( entrynode, "executorMemory" );
       blockExecution = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "blockExecution" ) );
+      resourceManagerUrl = XMLHandler.getTagValue( entrynode, "resourceManagerUrl" );
+      hedgeTimeout = XMLHandler.getTagValue( entrynode, "hedgeTimeout" );
+      Node hedgeMastersNode = XMLHandler.getSubNode( entrynode, "hedgeMasters" );
+      for ( Node masterNode : XMLHandler.getNodes( hedgeMastersNode, "master" ) ) {
+        hedgeMasters.add( masterNode.getTextContent() );
+      }
+      Node hedgeQueuesNode = XMLHandler.getSubNode( entrynode, "hedgeQueues" );
+      for ( Node queueNode : XMLHandler.getNodes( hedgeQueuesNode, "queue" ) ) {
+        hedgeQueues.add( queueNode.getTextContent() );
+      }
+      candidateQueues = XMLHandler.getTagValue( entrynode, "candidateQueues" );
+      reattachRunning = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "reattachRunning" ) );
+      Node inputPathsNode = XMLHandler.getSubNode( entrynode, "inputPaths" );
+      for ( Node pathNode : XMLHandler.getNodes( inputPathsNode, "path" ) ) {
+        inputPaths.add( pathNode.getTextContent() );
+      }
+      memoize = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "memoize" ) );
+      partitionSize = XMLHandler.getTagValue( entrynode, "partitionSize" );
+      microBatch = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "microBatch" ) );
+      batchWindow = XMLHandler.getTagValue( entrynode, "batchWindow" );
+      batchSize = XMLHandler.getTagValue( entrynode, "batchSize" );
+      sharedSession = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "sharedSession" ) );
+      sessionConcurrency = XMLHandler.getTagValue( entrynode, "sessionConcurrency" );
+      sessionIdleTimeout = XMLHandler.getTagValue( entrynode, "sessionIdleTimeout" );
+      registerKryo = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "registerKryo" ) );
+      thinJar = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "thinJar" ) );
+      preflight = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "preflight" ) );
+      providedPackages = XMLHandler.getTagValue( entrynode, "providedPackages" );
+      cachePackages = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "cachePackages" ) );
+      tuningProfile = XMLHandler.getTagValue( entrynode, "tuningProfile" );
+      supervise = "Y".equalsIgnoreCase( XMLHandler.getTagValue( entrynode, "supervise" ) );
+      maxRestarts = XMLHandler.getTagValue( entrynode, "maxRestarts" );
+      restartDelay = XMLHandler.getTagValue( entrynode, "restartDelay" );
+      lagBatches = XMLHandler.getTagValue( entrynode, "lagBatches" );
+      resultMarker = XMLHandler.getTagValue( entrynode, "resultMarker" );
+      resultFile = XMLHandler.getTagValue( entrynode, "resultFile" );
+      pyFiles = XMLHandler.getTagValue( entrynode, "pyFiles" );
+      pythonRequirements = XMLHandler.getTagValue( entrynode, "pythonRequirements" );
+      pythonExecutable = XMLHandler.getTagValue( entrynode, "pythonExecutable" );
+      pythonArchiveLocation = XMLHandler.getTagValue( entrynode, "pythonArchiveLocation" );
+      deadline = XMLHandler.getTagValue( entrynode, "deadline" );
+      hangTimeout = XMLHandler.getTagValue( entrynode, "hangTimeout" );
+      sampleInterval = XMLHandler.getTagValue( entrynode, "sampleInterval" );
+      hostMemoryLimit = XMLHandler.getTagValue( entrynode, "hostMemoryLimit" );
+      Node remoteServersNode = XMLHandler.getSubNode( entrynode, "remoteServers" );
+      for ( Node serverNode : XMLHandler.getNodes( remoteServersNode, "server" ) ) {
+        remoteServers.add( serverNode.getTextContent() );
+      }
+      this.slaveServers = slaveServers;
+      if ( metaStore != null ) {
+        setMetaStore( metaStore );
+      }
     } catch ( KettleXMLException xe ) {
       throw new KettleXMLException( "Unable to load job entry of type 'SparkSubmit' from XML node", xe );
     }
@@ -170,6 +452,54 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
       driverMemory = rep.getJobEntryAttributeString( id_jobentry, "driverMemory" );
       executorMemory = rep.getJobEntryAttributeString( id_jobentry, "executorMemory" );
       blockExecution = rep.getJobEntryAttributeBoolean( id_jobentry, "blockExecution" );
+      resourceManagerUrl = rep.getJobEntryAttributeString( id_jobentry, "resourceManagerUrl" );
+      hedgeTimeout = rep.getJobEntryAttributeString( id_jobentry, "hedgeTimeout" );
+      for ( int i = 0; i < rep.countNrJobEntryAttributes( id_jobentry, "hedgeMaster" ); i++ ) {
+        hedgeMasters.add( rep.getJobEntryAttributeString( id_jobentry, i, "hedgeMaster" ) );
+      }
+      for ( int i = 0; i < rep.countNrJobEntryAttributes( id_jobentry, "hedgeQueue" ); i++ ) {
+        hedgeQueues.add( rep.getJobEntryAttributeString( id_jobentry, i, "hedgeQueue" ) );
+      }
+      candidateQueues = rep.getJobEntryAttributeString( id_jobentry, "candidateQueues" );
+      reattachRunning = rep.getJobEntryAttributeBoolean( id_jobentry, "reattachRunning" );
+      for ( int i = 0; i < rep.countNrJobEntryAttributes( id_jobentry, "inputPath" ); i++ ) {
+        inputPaths.add( rep.getJobEntryAttributeString( id_jobentry, i, "inputPath" ) );
+      }
+      memoize = rep.getJobEntryAttributeBoolean( id_jobentry, "memoize" );
+      partitionSize = rep.getJobEntryAttributeString( id_jobentry, "partitionSize" );
+      microBatch = rep.getJobEntryAttributeBoolean( id_jobentry, "microBatch" );
+      batchWindow = rep.getJobEntryAttributeString( id_jobentry, "batchWindow" );
+      batchSize = rep.getJobEntryAttributeString( id_jobentry, "batchSize" );
+      sharedSession = rep.getJobEntryAttributeBoolean( id_jobentry, "sharedSession" );
+      sessionConcurrency = rep.getJobEntryAttributeString( id_jobentry, "sessionConcurrency" );
+      sessionIdleTimeout = rep.getJobEntryAttributeString( id_jobentry, "sessionIdleTimeout" );
+      registerKryo = rep.getJobEntryAttributeBoolean( id_jobentry, "registerKryo" );
+      thinJar = rep.getJobEntryAttributeBoolean( id_jobentry, "thinJar" );
+      preflight = rep.getJobEntryAttributeBoolean( id_jobentry, "preflight" );
+      providedPackages = rep.getJobEntryAttributeString( id_jobentry, "providedPackages" );
+      cachePackages = rep.getJobEntryAttributeBoolean( id_jobentry, "cachePackages" );
+      tuningProfile = rep.getJobEntryAttributeString( id_jobentry, "tuningProfile" );
+      supervise = rep.getJobEntryAttributeBoolean( id_jobentry, "supervise" );
+      maxRestarts = rep.getJobEntryAttributeString( id_jobentry, "maxRestarts" );
+      restartDelay = rep.getJobEntryAttributeString( id_jobentry, "restartDelay" );
+      lagBatches = rep.getJobEntryAttributeString( id_jobentry, "lagBatches" );
+      resultMarker = rep.getJobEntryAttributeString( id_jobentry, "resultMarker" );
+      resultFile = rep.getJobEntryAttributeString( id_jobentry, "resultFile" );
+      pyFiles = rep.getJobEntryAttributeString( id_jobentry, "pyFiles" );
+      pythonRequirements = rep.getJobEntryAttributeString( id_jobentry, "pythonRequirements" );
+      pythonExecutable = rep.getJobEntryAttributeString( id_jobentry, "pythonExecutable" );
+      pythonArchiveLocation = rep.getJobEntryAttributeString( id_jobentry, "pythonArchiveLocation" );
+      deadline = rep.getJobEntryAttributeString( id_jobentry, "deadline" );
+      hangTimeout = rep.getJobEntryAttributeString( id_jobentry, "hangTimeout" );
+      sampleInterval = rep.getJobEntryAttributeString( id_jobentry, "sampleInterval" );
+      hostMemoryLimit = rep.getJobEntryAttributeString( id_jobentry, "hostMemoryLimit" );
+      for ( int i = 0; i < rep.countNrJobEntryAttributes( id_jobentry, "remoteServer" ); i++ ) {
+        remoteServers.add( rep.getJobEntryAttributeString( id_jobentry, i, "remoteServer" ) );
+      }
+      this.slaveServers = slaveServers;
+      if ( metaStore != null ) {
+        setMetaStore( metaStore );
+      }
     } catch ( KettleException dbe ) {
       throw new KettleException( "Unable to load job entry of type 'SparkSubmit' from the repository for id_jobentry="
           + id_jobentry, dbe );
@@ -192,6 +522,50 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
       rep.saveJobEntryAttribute( id_job, getObjectId(), "driverMemory", driverMemory );
       rep.saveJobEntryAttribute( id_job, getObjectId(), "executorMemory", executorMemory );
       rep.saveJobEntryAttribute( id_job, getObjectId(), "blockExecution", blockExecution );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "resourceManagerUrl", resourceManagerUrl );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "hedgeTimeout", hedgeTimeout );
+      for ( int i = 0; i < hedgeMasters.size(); i++ ) {
+        rep.saveJobEntryAttribute( id_job, getObjectId(), i, "hedgeMaster", hedgeMasters.get( i ) );
+      }
+      for ( int i = 0; i < hedgeQueues.size(); i++ ) {
+        rep.saveJobEntryAttribute( id_job, getObjectId(), i, "hedgeQueue", hedgeQueues.get( i ) );
+      }
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "candidateQueues", candidateQueues );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "reattachRunning", reattachRunning );
+      for ( int i = 0; i < inputPaths.size(); i++ ) {
+        rep.saveJobEntryAttribute( id_job, getObjectId(), i, "inputPath", inputPaths.get( i ) );
+      }
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "memoize", memoize );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "partitionSize", partitionSize );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "microBatch", microBatch );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "batchWindow", batchWindow );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "batchSize", batchSize );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "sharedSession", sharedSession );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "sessionConcurrency", sessionConcurrency );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "sessionIdleTimeout", sessionIdleTimeout );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "registerKryo", registerKryo );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "thinJar", thinJar );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "preflight", preflight );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "providedPackages", providedPackages );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "cachePackages", cachePackages );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "tuningProfile", tuningProfile );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "supervise", supervise );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "maxRestarts", maxRestarts );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "restartDelay", restartDelay );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "lagBatches", lagBatches );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "resultMarker", resultMarker );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "resultFile", resultFile );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "pyFiles", pyFiles );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "pythonRequirements", pythonRequirements );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "pythonExecutable", pythonExecutable );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "pythonArchiveLocation", pythonArchiveLocation );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "deadline", deadline );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "hangTimeout", hangTimeout );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "sampleInterval", sampleInterval );
+      rep.saveJobEntryAttribute( id_job, getObjectId(), "hostMemoryLimit", hostMemoryLimit );
+      for ( int i = 0; i < remoteServers.size(); i++ ) {
+        rep.saveJobEntryAttribute( id_job, getObjectId(), i, "remoteServer", remoteServers.get( i ) );
+      }
     } catch ( KettleDatabaseException dbe ) {
       throw new KettleException( "Unable to save job entry of type 'SparkSubmit' to the repository for id_job="
           + id_job, dbe );
@@ -367,220 +741,2934 @@ public class JobEntrySparkSubmit extends JobEntryBase implements Cloneable, JobE
   }
 
   /**
-   * Returns the spark-submit command as a list of strings. e.g. <path to spark-submit> --class <main-class> --master
-   * <master-url> --deploy-mode <deploy-mode> --conf <key>=<value> <application-jar> \ [application-arguments]
+   * Returns the URL of YARN ResourceManager web services, e.g. http://rm-host:8088
    *
-   * @return The spark-submit command
+   * @return The ResourceManager URL
    */
-  public List<String> getCmds() {
-    List<String> cmds = new ArrayList<String>();
-
-    cmds.add( environmentSubstitute( scriptPath ) );
-    cmds.add( "--master" );
-    cmds.add( environmentSubstitute( master ) );
-
-    if ( !Const.isEmpty( className ) ) {
-      cmds.add( "--class" );
-      cmds.add( environmentSubstitute( className ) );
-    }
+  public String getResourceManagerUrl() {
+    return resourceManagerUrl;
+  }
 
-    for ( String confParam : configParams ) {
-      cmds.add( "--conf" );
-      cmds.add( environmentSubstitute( confParam ) );
-    }
+  /**
+   * Sets the URL of YARN ResourceManager web services
+   *
+   * @param resourceManagerUrl
+   *          ResourceManager URL
+   */
+  public void setResourceManagerUrl( String resourceManagerUrl ) {
+    this.resourceManagerUrl = resourceManagerUrl;
+  }
 
-    if ( !Const.isEmpty( driverMemory ) ) {
-      cmds.add( "--driver-memory" );
-      cmds.add( environmentSubstitute( driverMemory ) );
-    }
+  /**
+   * Returns the number of seconds to wait for the application to reach RUNNING state before submitting it to the next
+   * alternate target
+   *
+   * @return hedge timeout in seconds, empty if hedging is disabled
+   */
+  public String getHedgeTimeout() {
+    return hedgeTimeout;
+  }
 
-    if ( !Const.isEmpty( executorMemory ) ) {
-      cmds.add( "--executor-memory" );
-      cmds.add( environmentSubstitute( executorMemory ) );
-    }
+  /**
+   * Sets the number of seconds to wait for the application to reach RUNNING state before submitting it to the next
+   * alternate target
+   *
+   * @param hedgeTimeout
+   *          hedge timeout in seconds
+   */
+  public void setHedgeTimeout( String hedgeTimeout ) {
+    this.hedgeTimeout = hedgeTimeout;
+  }
 
-    cmds.add( jar );
+  /**
+   * Returns alternate master URLs, matched by position with hedge queues
+   *
+   * @return list of master URLs
+   */
+  public List<String> getHedgeMasters() {
+    return hedgeMasters;
+  }
 
-    if ( !Const.isEmpty( args ) ) {
-      String[] argArray = environmentSubstitute( args ).split( " " );
-      for ( String anArgArray : argArray ) {
-        if ( !Const.isEmpty( anArgArray ) ) {
-          cmds.add( anArgArray );
-        }
-      }
-    }
+  /**
+   * Sets alternate master URLs
+   */
+  public void setHedgeMasters( List<String> hedgeMasters ) {
+    this.hedgeMasters = hedgeMasters;
+  }
 
-    return cmds;
+  /**
+   * Returns alternate YARN queues, matched by position with hedge masters
+   *
+   * @return list of queues
+   */
+  public List<String> getHedgeQueues() {
+    return hedgeQueues;
   }
 
-  @VisibleForTesting
-  protected boolean validate ( ) {
-    boolean valid = true;
-    if ( Const.isEmpty( scriptPath ) || !new File( environmentSubstitute( scriptPath ) ).exists() ) {
-      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SparkSubmitPathInvalid" ) );
-      valid = false;
-    }
+  /**
+   * Sets alternate YARN queues
+   */
+  public void setHedgeQueues( List<String> hedgeQueues ) {
+    this.hedgeQueues = hedgeQueues;
+  }
 
-    if ( Const.isEmpty( master ) ) {
-      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.MasterURLEmpty" ) );
-      valid = false;
-    }
-    if ( Const.isEmpty( jar ) ) {
-      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.JarPathEmpty" ) );
-      valid = false;
+  /**
+   * Returns the targets to submit to in order: the configured master and queue first, followed by the alternate ones
+   *
+   * @return list of targets
+   */
+  public List<HedgeTarget> getHedgeTargets() {
+    List<HedgeTarget> targets = new ArrayList<HedgeTarget>();
+    targets.add( new HedgeTarget( null, null ) );
+    for ( int i = 0; i < Math.max( hedgeMasters.size(), hedgeQueues.size() ); i++ ) {
+      String hedgeMaster = i < hedgeMasters.size() ? environmentSubstitute( hedgeMasters.get( i ) ) : null;
+      String hedgeQueue = i < hedgeQueues.size() ? environmentSubstitute( hedgeQueues.get( i ) ) : null;
+      if ( !Const.isEmpty( hedgeMaster ) || !Const.isEmpty( hedgeQueue ) ) {
+        targets.add( new HedgeTarget( hedgeMaster, hedgeQueue ) );
+      }
     }
-
-    return valid;
+    return targets;
   }
 
   /**
-   * Executes the spark-submit command and returns a Result
+   * Returns comma separated list of YARN queues to choose from at submit time, based on their available capacity
    *
-   * @return The Result of the operation
+   * @return candidate queues, empty to submit to the configured queue
    */
-  public Result execute( Result result, int nr ) {
-
-    if ( !validate() ) {
-      result.setResult( false );
-      return result;
-    }
+  public String getCandidateQueues() {
+    return candidateQueues;
+  }
 
-    List<String> cmds = getCmds();
+  /**
+   * Sets comma separated list of YARN queues to choose from at submit time
+   *
+   * @param candidateQueues
+   *          candidate queues
+   */
+  public void setCandidateQueues( String candidateQueues ) {
+    this.candidateQueues = candidateQueues;
+  }
 
-    logBasic( "Submitting Spark Script" );
+  /**
+   * Returns if the entry attaches to the application submitted by a previous run with the same command if that
+   * application is still running, instead of submitting it again
+   *
+   * @return reattach mode
+   */
+  public boolean isReattachRunning() {
+    return reattachRunning;
+  }
 
-    if ( log.isDetailed() ) {
-      logDetailed( cmds.toString() );
-    }
+  /**
+   * Sets if the entry attaches to the still running application submitted by a previous run with the same command
+   *
+   * @param reattachRunning
+   *          reattach mode
+   */
+  public void setReattachRunning( boolean reattachRunning ) {
+    this.reattachRunning = reattachRunning;
+  }
 
-    try {
-      // Build the environment variable list...
-      ProcessBuilder procBuilder = new ProcessBuilder( cmds );
-      Map<String, String> env = procBuilder.environment();
-      String[] variables = listVariables();
-      for ( String variable : variables ) {
-        env.put( variable, getVariable( variable ) );
-      }
-      proc = procBuilder.start();
-
-      String[] jobSubmittedPatterns = new String[] { "tracking URL:" };
-
-      final AtomicBoolean jobSubmitted = new AtomicBoolean( false );
-
-      // any error message?
-      PatternMatchingStreamLogger errorLogger =
-          new PatternMatchingStreamLogger( log, proc.getErrorStream(), jobSubmittedPatterns, jobSubmitted );
-
-      // any output?
-      PatternMatchingStreamLogger outputLogger =
-          new PatternMatchingStreamLogger( log, proc.getInputStream(), jobSubmittedPatterns, jobSubmitted );
-
-      if ( !blockExecution ) {
-        PatternMatchingStreamLogger.PatternMatchedListener cb =
-            new PatternMatchingStreamLogger.PatternMatchedListener() {
-              @Override
-              public void onPatternFound( String pattern ) {
-                log.logDebug( "Found match in output, considering job submitted, stopping spark-submit" );
-                jobSubmitted.set( true );
-                proc.destroy();
-              }
-            };
-        errorLogger.addPatternMatchedListener( cb );
-        outputLogger.addPatternMatchedListener( cb );
-      }
+  /**
+   * Returns input files and folders of the application, local paths or any URL Kettle VFS understands
+   *
+   * @return list of input paths
+   */
+  public List<String> getInputPaths() {
+    return inputPaths;
+  }
 
-      // kick them off
-      Thread errorLoggerThread = new Thread( errorLogger );
-      errorLoggerThread.start();
-      Thread outputLoggerThread = new Thread( outputLogger );
-      outputLoggerThread.start();
+  /**
+   * Sets input files and folders of the application
+   */
+  public void setInputPaths( List<String> inputPaths ) {
+    this.inputPaths = inputPaths;
+  }
 
-      // Stop on job stop
-      final AtomicBoolean processFinished = new AtomicBoolean( false );
-      new Thread( new Runnable() {
-        @Override
-        public void run() {
-          while ( !getParentJob().isStopped() && !processFinished.get() ) {
-            try {
-              Thread.sleep( 5000 );
-            } catch ( InterruptedException e ) {
-              e.printStackTrace();
-            }
-          }
-          proc.destroy();
-        }
-      } ).start();
+  /**
+   * Returns the target size of input partitions, shuffle partitions and default parallelism are derived from the
+   * total size of the inputs divided by it
+   *
+   * @return memory size, e.g. 128m, empty to not derive partitioning
+   */
+  public String getPartitionSize() {
+    return partitionSize;
+  }
 
-      proc.waitFor();
-      processFinished.set( true );
+  /**
+   * Sets the target size of input partitions
+   *
+   * @param partitionSize
+   *          memory size, e.g. 128m, empty to not derive partitioning
+   */
+  public void setPartitionSize( String partitionSize ) {
+    this.partitionSize = partitionSize;
+  }
 
-      if ( log.isDetailed() ) {
-        logDetailed( "Spark submit finished" );
-      }
+  /**
+   * Returns if the run is skipped when neither the application nor its inputs changed since the last successful run
+   *
+   * @return memoization mode
+   */
+  public boolean isMemoize() {
+    return memoize;
+  }
 
-      // wait until loggers read all data from stdout and stderr
-      errorLoggerThread.join();
-      outputLoggerThread.join();
+  /**
+   * Sets if the run is skipped when neither the application nor its inputs changed since the last successful run
+   *
+   * @param memoize
+   *          memoization mode
+   */
+  public void setMemoize( boolean memoize ) {
+    this.memoize = memoize;
+  }
 
-      // close the streams
-      // otherwise you get "Too many open files, java.io.IOException" after a lot of iterations
-      proc.getErrorStream().close();
-      proc.getOutputStream().close();
+  /**
+   * Returns if executions are coalesced into micro-batches run as a single application
+   *
+   * @return micro-batching mode
+   */
+  public boolean isMicroBatch() {
+    return microBatch;
+  }
 
-      // What's the exit status?
-      int exitCode;
-      if ( blockExecution ) {
-        exitCode = proc.exitValue();
-      } else {
-        exitCode = jobSubmitted.get() ? 0 : proc.exitValue();
-      }
+  /**
+   * Sets if executions are coalesced into micro-batches run as a single application
+   *
+   * @param microBatch
+   *          micro-batching mode
+   */
+  public void setMicroBatch( boolean microBatch ) {
+    this.microBatch = microBatch;
+  }
 
-      result.setExitStatus( exitCode );
-      if ( exitCode != 0 ) {
-        if ( log.isDetailed() ) {
-          logDetailed( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ExitStatus", result.getExitStatus() ) );
-        }
+  /**
+   * Returns the number of seconds executions are collected into a micro-batch, counted from the first one
+   *
+   * @return batch window in seconds
+   */
+  public String getBatchWindow() {
+    return batchWindow;
+  }
 
-        result.setNrErrors( 1 );
-      }
+  /**
+   * Sets the number of seconds executions are collected into a micro-batch
+   *
+   * @param batchWindow
+   *          batch window in seconds
+   */
+  public void setBatchWindow( String batchWindow ) {
+    this.batchWindow = batchWindow;
+  }
 
-      result.setResult( exitCode == 0 );
-    } catch ( Exception e ) {
-      result.setNrErrors( 1 );
-      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingScript", e.getMessage() ) );
-      logError( Const.getStackTracker( e ) );
-      result.setResult( false );
-    }
+  /**
+   * Returns the maximum number of executions in a micro-batch
+   *
+   * @return batch size, empty for no limit
+   */
+  public String getBatchSize() {
+    return batchSize;
+  }
 
-    return result;
+  /**
+   * Sets the maximum number of executions in a micro-batch
+   *
+   * @param batchSize
+   *          batch size, empty for no limit
+   */
+  public void setBatchSize( String batchSize ) {
+    this.batchSize = batchSize;
   }
 
-  public boolean evaluates() {
-    return true;
+  /**
+   * Returns if the class runs inside a warm session driver shared with other entries instead of a new application
+   *
+   * @return shared session mode
+   */
+  public boolean isSharedSession() {
+    return sharedSession;
   }
 
   /**
-   * Checks that the minimum options have been provided.
+   * Sets if the class runs inside a warm session driver shared with other entries
+   *
+   * @param sharedSession
+   *          shared session mode
    */
-  @Override
-  public void check( List<CheckResultInterface> remarks, JobMeta jobMeta, VariableSpace space, Repository repository,
-      IMetaStore metaStore ) {
-    andValidator().validate( this, "scriptPath", remarks, putValidators( notBlankValidator() ) );
-    andValidator().validate( this, "scriptPath", remarks, putValidators( fileExistsValidator() ) );
-    andValidator().validate( this, "master", remarks, putValidators( notBlankValidator() ) );
-    andValidator().validate( this, "jar", remarks, putValidators( notBlankValidator() ) );
-    andValidator().validate( this, "className", remarks, putValidators( notBlankValidator() ) );
+  public void setSharedSession( boolean sharedSession ) {
+    this.sharedSession = sharedSession;
   }
 
-  public static void main( String[] args ) {
-    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
-    new JobEntrySparkSubmit().check( remarks, null, new Variables(), null, null );
-    System.out.printf( "Remarks: %s\n", remarks );
+  /**
+   * Returns the maximum number of runs executing in the shared session at the same time
+   *
+   * @return session concurrency
+   */
+  public String getSessionConcurrency() {
+    return sessionConcurrency;
+  }
+
+  /**
+   * Sets the maximum number of runs executing in the shared session at the same time
+   *
+   * @param sessionConcurrency
+   *          session concurrency
+   */
+  public void setSessionConcurrency( String sessionConcurrency ) {
+    this.sessionConcurrency = sessionConcurrency;
+  }
+
+  /**
+   * Returns the number of seconds the shared session stays idle before it is shut down
+   *
+   * @return idle timeout in seconds
+   */
+  public String getSessionIdleTimeout() {
+    return sessionIdleTimeout;
+  }
+
+  /**
+   * Sets the number of seconds the shared session stays idle before it is shut down
+   *
+   * @param sessionIdleTimeout
+   *          idle timeout in seconds
+   */
+  public void setSessionIdleTimeout( String sessionIdleTimeout ) {
+    this.sessionIdleTimeout = sessionIdleTimeout;
+  }
+
+  /**
+   * Returns if Kryo serializer and class registrations are generated from the classes found in the jar
+   *
+   * @return Kryo registration mode
+   */
+  public boolean isRegisterKryo() {
+    return registerKryo;
+  }
+
+  /**
+   * Sets if Kryo serializer and class registrations are generated from the classes found in the jar
+   *
+   * @param registerKryo
+   *          Kryo registration mode
+   */
+  public void setRegisterKryo( boolean registerKryo ) {
+    this.registerKryo = registerKryo;
+  }
+
+  /**
+   * Returns if classes provided by the cluster are stripped from the jar before it is submitted
+   *
+   * @return thin jar mode
+   */
+  public boolean isThinJar() {
+    return thinJar;
+  }
+
+  /**
+   * Sets if classes provided by the cluster are stripped from the jar before it is submitted
+   *
+   * @param thinJar
+   *          thin jar mode
+   */
+  public void setThinJar( boolean thinJar ) {
+    this.thinJar = thinJar;
+  }
+
+  /**
+   * Returns if the main class and the classes it uses are checked before the jar is submitted
+   *
+   * @return preflight mode
+   */
+  public boolean isPreflight() {
+    return preflight;
+  }
+
+  /**
+   * Sets if the main class and the classes it uses are checked before the jar is submitted
+   *
+   * @param preflight
+   *          preflight mode
+   */
+  public void setPreflight( boolean preflight ) {
+    this.preflight = preflight;
+  }
+
+  /**
+   * Returns packages provided by the cluster, which are left out of the thin jar
+   *
+   * @return comma separated packages, empty for the default ones
+   */
+  public String getProvidedPackages() {
+    return providedPackages;
+  }
+
+  /**
+   * Sets packages provided by the cluster, which are left out of the thin jar
+   *
+   * @param providedPackages
+   *          comma separated packages, empty for the default ones
+   */
+  public void setProvidedPackages( String providedPackages ) {
+    this.providedPackages = providedPackages;
+  }
+
+  /**
+   * Returns if packages set in spark.jars.packages are resolved through the local package cache
+   *
+   * @return package cache mode
+   */
+  public boolean isCachePackages() {
+    return cachePackages;
+  }
+
+  /**
+   * Sets if packages set in spark.jars.packages are resolved through the local package cache
+   *
+   * @param cachePackages
+   *          package cache mode
+   */
+  public void setCachePackages( boolean cachePackages ) {
+    this.cachePackages = cachePackages;
+  }
+
+  /**
+   * Returns the name of the metastore tuning profile whose settings the entry's own settings override
+   *
+   * @return profile name or null if no profile is used
+   */
+  public String getTuningProfile() {
+    return tuningProfile;
+  }
+
+  /**
+   * Sets the name of the metastore tuning profile whose settings the entry's own settings override
+   *
+   * @param tuningProfile
+   *          profile name or null if no profile is used
+   */
+  public void setTuningProfile( String tuningProfile ) {
+    this.tuningProfile = tuningProfile;
+  }
+
+  /**
+   * Returns if the application is supervised as a long-running streaming application
+   *
+   * @return supervisor mode
+   */
+  public boolean isSupervise() {
+    return supervise;
+  }
+
+  /**
+   * Sets if the application is supervised as a long-running streaming application
+   *
+   * @param supervise
+   *          supervisor mode
+   */
+  public void setSupervise( boolean supervise ) {
+    this.supervise = supervise;
+  }
+
+  /**
+   * Returns the number of restarts allowed after consecutive failures without progress
+   *
+   * @return number of restarts
+   */
+  public String getMaxRestarts() {
+    return maxRestarts;
+  }
+
+  /**
+   * Sets the number of restarts allowed after consecutive failures without progress
+   *
+   * @param maxRestarts
+   *          number of restarts
+   */
+  public void setMaxRestarts( String maxRestarts ) {
+    this.maxRestarts = maxRestarts;
+  }
+
+  /**
+   * Returns the delay before the first restart, doubled for every next one
+   *
+   * @return delay in seconds
+   */
+  public String getRestartDelay() {
+    return restartDelay;
+  }
+
+  /**
+   * Sets the delay before the first restart, doubled for every next one
+   *
+   * @param restartDelay
+   *          delay in seconds
+   */
+  public void setRestartDelay( String restartDelay ) {
+    this.restartDelay = restartDelay;
+  }
+
+  /**
+   * Returns the number of consecutive lagging micro-batches reported as a sustained lag
+   *
+   * @return number of micro-batches, 0 to never report lag
+   */
+  public String getLagBatches() {
+    return lagBatches;
+  }
+
+  /**
+   * Sets the number of consecutive lagging micro-batches reported as a sustained lag
+   *
+   * @param lagBatches
+   *          number of micro-batches, 0 to never report lag
+   */
+  public void setLagBatches( String lagBatches ) {
+    this.lagBatches = lagBatches;
+  }
+
+  /**
+   * Returns the prefix of driver output lines holding results of the application
+   *
+   * @return marker or null if results aren't read from the output
+   */
+  public String getResultMarker() {
+    return resultMarker;
+  }
+
+  /**
+   * Sets the prefix of driver output lines holding results of the application
+   *
+   * @param resultMarker
+   *          marker or null if results aren't read from the output
+   */
+  public void setResultMarker( String resultMarker ) {
+    this.resultMarker = resultMarker;
+  }
+
+  /**
+   * Returns the local file the application appends results to
+   *
+   * @return path or null if there is no result file
+   */
+  public String getResultFile() {
+    return resultFile;
+  }
+
+  /**
+   * Sets the local file the application appends results to
+   *
+   * @param resultFile
+   *          path or null if there is no result file
+   */
+  public void setResultFile( String resultFile ) {
+    this.resultFile = resultFile;
+  }
+
+  /**
+   * Returns files put on the PYTHONPATH of a Python application
+   *
+   * @return comma separated .py, .zip and .egg files
+   */
+  public String getPyFiles() {
+    return pyFiles;
+  }
+
+  /**
+   * Sets files put on the PYTHONPATH of a Python application
+   *
+   * @param pyFiles
+   *          comma separated .py, .zip and .egg files
+   */
+  public void setPyFiles( String pyFiles ) {
+    this.pyFiles = pyFiles;
+  }
+
+  /**
+   * Returns the requirements or lock file the Python environment archive is built from
+   *
+   * @return path or null if no environment is built
+   */
+  public String getPythonRequirements() {
+    return pythonRequirements;
+  }
+
+  /**
+   * Sets the requirements or lock file the Python environment archive is built from
+   *
+   * @param pythonRequirements
+   *          path or null if no environment is built
+   */
+  public void setPythonRequirements( String pythonRequirements ) {
+    this.pythonRequirements = pythonRequirements;
+  }
+
+  /**
+   * Returns the interpreter installing the Python requirements
+   *
+   * @return interpreter, empty for python3
+   */
+  public String getPythonExecutable() {
+    return pythonExecutable;
+  }
+
+  /**
+   * Sets the interpreter installing the Python requirements
+   *
+   * @param pythonExecutable
+   *          interpreter, empty for python3
+   */
+  public void setPythonExecutable( String pythonExecutable ) {
+    this.pythonExecutable = pythonExecutable;
+  }
+
+  /**
+   * Returns the folder the cluster reads Python environment archives from
+   *
+   * @return folder URL or null to upload the archive with every submission
+   */
+  public String getPythonArchiveLocation() {
+    return pythonArchiveLocation;
+  }
+
+  /**
+   * Sets the folder the cluster reads Python environment archives from
+   *
+   * @param pythonArchiveLocation
+   *          folder URL or null to upload the archive with every submission
+   */
+  public void setPythonArchiveLocation( String pythonArchiveLocation ) {
+    this.pythonArchiveLocation = pythonArchiveLocation;
+  }
+
+  /**
+   * Returns seconds the entry may run before the submission and the application are killed
+   *
+   * @return seconds, empty for no deadline
+   */
+  public String getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Sets seconds the entry may run before the submission and the application are killed
+   *
+   * @param deadline
+   *          seconds, empty for no deadline
+   */
+  public void setDeadline( String deadline ) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * Returns seconds the submission may print no new output and report no state or progress change before it and the
+   * application are killed
+   *
+   * @return seconds, empty to not detect hangs
+   */
+  public String getHangTimeout() {
+    return hangTimeout;
+  }
+
+  /**
+   * Sets seconds the submission may print no new output and report no state or progress change before it and the
+   * application are killed
+   *
+   * @param hangTimeout
+   *          seconds, empty to not detect hangs
+   */
+  public void setHangTimeout( String hangTimeout ) {
+    this.hangTimeout = hangTimeout;
+  }
+
+  /**
+   * Returns seconds between samples of CPU, memory, threads and open files of the spark-submit process and its
+   * descendants, taken in client mode on Linux
+   *
+   * @return seconds, empty to not sample
+   */
+  public String getSampleInterval() {
+    return sampleInterval;
+  }
+
+  /**
+   * Sets seconds between samples of CPU, memory, threads and open files of the spark-submit process and its
+   * descendants, taken in client mode on Linux
+   *
+   * @param sampleInterval
+   *          seconds, empty to not sample
+   */
+  public void setSampleInterval( String sampleInterval ) {
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * Returns resident memory the sampled client mode submissions running on this host may hold together, a new
+   * submission waits until its driver memory fits
+   *
+   * @return memory size, e.g. "16g", empty for no limit
+   */
+  public String getHostMemoryLimit() {
+    return hostMemoryLimit;
+  }
+
+  /**
+   * Sets resident memory the sampled client mode submissions running on this host may hold together, a new
+   * submission waits until its driver memory fits
+   *
+   * @param hostMemoryLimit
+   *          memory size, e.g. "16g", empty for no limit
+   */
+  public void setHostMemoryLimit( String hostMemoryLimit ) {
+    this.hostMemoryLimit = hostMemoryLimit;
+  }
+
+  /**
+   * Returns if the application is a Python file rather than a jar
+   */
+  public boolean isPythonApplication() {
+    String path = environmentSubstitute( jar );
+    return path != null && path.toLowerCase().endsWith( ".py" );
+  }
+
+  /**
+   * Returns names of the slave servers the submission is routed to, the least loaded one is picked on every run
+   *
+   * @return slave server names, empty to submit from this JVM
+   */
+  public List<String> getRemoteServers() {
+    return remoteServers;
+  }
+
+  /**
+   * Sets names of the slave servers the submission is routed to
+   */
+  public void setRemoteServers( List<String> remoteServers ) {
+    this.remoteServers = remoteServers;
+  }
+
+  /**
+   * Creates the channel reading results of the application, results become variables and result rows
+   *
+   * @return channel or null if neither marker nor result file is set
+   */
+  @VisibleForTesting
+  ResultChannel createResultChannel() {
+    String marker = environmentSubstitute( resultMarker );
+    String file = environmentSubstitute( resultFile );
+    if ( Const.isEmpty( marker ) && Const.isEmpty( file ) ) {
+      return null;
+    }
+    return new ResultChannel( Const.isEmpty( marker ) ? null : marker, Const.isEmpty( file ) ? null : new File(
+        file ), new ResultChannel.VariableListener() {
+          @Override
+          public void onVariable( String name, String value ) {
+            setResultVariable( name, value );
+          }
+        } );
+  }
+
+  /**
+   * Resolves the tuning profile referenced by the entry, once per job run
+   *
+   * @param metaStore
+   *          metastore holding the profile
+   * @return profile or null if the entry doesn't reference one
+   * @throws KettleException
+   *           if the profile can't be read or doesn't exist
+   */
+  public TuningProfile resolveTuningProfile( IMetaStore metaStore ) throws KettleException {
+    resolvedProfile = null;
+    resolvedProfile = findTuningProfile( metaStore );
+    return resolvedProfile;
+  }
+
+  /**
+   * Reads the tuning profile referenced by the entry without using it for the current run
+   *
+   * @return profile or null if the entry doesn't reference one
+   */
+  private TuningProfile findTuningProfile( IMetaStore metaStore ) throws KettleException {
+    String name = environmentSubstitute( tuningProfile );
+    if ( Const.isEmpty( name ) ) {
+      return null;
+    }
+    if ( metaStore == null ) {
+      throw new KettleException( "No metastore to read tuning profile " + name + " from" );
+    }
+    String runId = getParentJob() == null ? null : getParentJob().getContainerObjectId();
+    return new TuningProfileStore( metaStore ).resolve( runId, name );
+  }
+
+  /**
+   * Returns config params of the resolved tuning profile followed by the entry's own ones, so the latter win
+   *
+   * @return config params with variables substituted
+   */
+  private List<String> getEffectiveConfigParams() {
+    List<String> params = new ArrayList<String>();
+    if ( resolvedProfile != null ) {
+      for ( String param : resolvedProfile.toConfigParams() ) {
+        params.add( environmentSubstitute( param ) );
+      }
+    }
+    for ( String param : configParams ) {
+      params.add( environmentSubstitute( param ) );
+    }
+    if ( packagesResolved ) {
+      // the resolved jars are passed in spark.jars instead
+      for ( Iterator<String> it = params.iterator(); it.hasNext(); ) {
+        String param = it.next();
+        int pos = param == null ? -1 : param.indexOf( '=' );
+        String name = pos > 0 ? param.substring( 0, pos ).trim() : null;
+        if ( PACKAGES_PARAM.equals( name ) || EXCLUDES_PARAM.equals( name ) || REPOSITORIES_PARAM.equals( name ) ) {
+          it.remove();
+        }
+      }
+    }
+    return params;
+  }
+
+  /**
+   * Returns the value of a Spark configuration property set in config params
+   *
+   * @param name
+   *          property name, e.g. spark.executor.cores
+   * @return value with variables substituted or null if property is not set
+   */
+  public String getConfigParam( String name ) {
+    String value = null;
+    for ( String param : getEffectiveConfigParams() ) {
+      int pos = param == null ? -1 : param.indexOf( '=' );
+      if ( pos > 0 && param.substring( 0, pos ).trim().equals( name ) ) {
+        value = param.substring( pos + 1 ).trim();
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Returns executor memory set either in the memory allocation field or in config params
+   *
+   * @return executor memory with variables substituted or null if not set
+   */
+  public String getResolvedExecutorMemory() {
+    return Const.isEmpty( executorMemory ) ? getConfigParam( "spark.executor.memory" )
+        : environmentSubstitute( executorMemory );
+  }
+
+  /**
+   * Returns driver memory set either in the memory allocation field or in config params
+   *
+   * @return driver memory with variables substituted or null if not set
+   */
+  public String getResolvedDriverMemory() {
+    return Const.isEmpty( driverMemory ) ? getConfigParam( "spark.driver.memory" )
+        : environmentSubstitute( driverMemory );
+  }
+
+  /**
+   * Returns the probe used to get queue capacity
+   *
+   * @return scheduler probe or null if ResourceManager URL is not set
+   */
+  public SchedulerProbe getSchedulerProbe() {
+    if ( schedulerProbe != null ) {
+      return schedulerProbe;
+    }
+    return Const.isEmpty( resourceManagerUrl ) ? null
+        : new YarnSchedulerProbe( environmentSubstitute( resourceManagerUrl ) );
+  }
+
+  @VisibleForTesting
+  void setSchedulerProbe( SchedulerProbe schedulerProbe ) {
+    this.schedulerProbe = schedulerProbe;
+  }
+
+  /**
+   * Chooses the candidate queue with the most capacity available for this application
+   *
+   * @return selected queue or null if no candidates are set or none of them could be selected
+   */
+  public String selectQueue() {
+    if ( Const.isEmpty( candidateQueues ) ) {
+      return null;
+    }
+    SchedulerProbe probe = getSchedulerProbe();
+    if ( probe == null ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ResourceManagerUrlEmpty" ) );
+      return null;
+    }
+
+    List<String> candidates = new ArrayList<String>();
+    for ( String candidate : environmentSubstitute( candidateQueues ).split( "," ) ) {
+      candidates.add( candidate.trim() );
+    }
+
+    // executors and driver with default memory overhead
+    long executors = Const.toInt( getConfigParam( "spark.executor.instances" ), 2 );
+    long executorMb = MemorySize.toMegabytes( getResolvedExecutorMemory(), 1024 );
+    long driverMb = MemorySize.toMegabytes( getResolvedDriverMemory(), 1024 );
+    long requiredMemoryMb = executors * ( executorMb + Math.max( 384, executorMb / 10 ) )
+        + driverMb + Math.max( 384, driverMb / 10 );
+    long requiredVcores = executors * Const.toInt( getConfigParam( "spark.executor.cores" ), 1 ) + 1;
+
+    try {
+      List<QueueCapacity> capacities = SchedulerProbeCache.probe( probe );
+      if ( log.isDetailed() ) {
+        logDetailed( "Queue capacity: " + capacities );
+      }
+      String queue = QueueSelector.select( candidates, capacities, requiredMemoryMb, requiredVcores );
+      if ( queue != null ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.QueueSelected", queue ) );
+      }
+      return queue;
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ProbingScheduler", e.getMessage() ) );
+      return null;
+    }
+  }
+
+  /**
+   * Returns the store remembering applications submitted by this and previous runs
+   */
+  public SubmissionStore getSubmissionStore() {
+    if ( submissionStore == null ) {
+      submissionStore = SubmissionStore.getDefault();
+    }
+    return submissionStore;
+  }
+
+  @VisibleForTesting
+  void setSubmissionStore( SubmissionStore submissionStore ) {
+    this.submissionStore = submissionStore;
+  }
+
+  /**
+   * Returns the store remembering input fingerprints of successful runs
+   */
+  public FingerprintStore getFingerprintStore() {
+    if ( fingerprintStore == null ) {
+      fingerprintStore = FingerprintStore.getDefault();
+    }
+    return fingerprintStore;
+  }
+
+  @VisibleForTesting
+  void setFingerprintStore( FingerprintStore fingerprintStore ) {
+    this.fingerprintStore = fingerprintStore;
+  }
+
+  /**
+   * Returns the input paths set, with variables substituted
+   */
+  private List<String> getDeclaredInputPaths() {
+    List<String> paths = new ArrayList<String>();
+    for ( String inputPath : inputPaths ) {
+      if ( !Const.isEmpty( inputPath ) ) {
+        paths.add( environmentSubstitute( inputPath ) );
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Computes the fingerprint of the application and its inputs
+   *
+   * @return fingerprint or null if it couldn't be computed or there are no inputs to tell new data by
+   */
+  private String computeFingerprint() {
+    List<String> paths = getDeclaredInputPaths();
+    if ( paths.isEmpty() ) {
+      // the same command may well read new data every time, don't skip it forever
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.MemoizeWithoutInputs" ) );
+      return null;
+    }
+    try {
+      long start = System.currentTimeMillis();
+      String fingerprint = InputFingerprint.compute( getCmds(), environmentSubstitute( jar ), paths, this );
+      if ( log.isDetailed() ) {
+        logDetailed( "Input fingerprint " + fingerprint + " computed in " + ( System.currentTimeMillis() - start )
+            + " ms" );
+      }
+      return fingerprint;
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ComputingFingerprint", e.getMessage() ) );
+      return null;
+    }
+  }
+
+  /**
+   * Derives partitioning config params from the total size of the inputs, params set explicitly are kept
+   *
+   * @return the derived config params, empty if there is nothing to derive
+   */
+  @VisibleForTesting
+  List<String> getPartitionConfParams() throws KettleException {
+    List<String> params = new ArrayList<String>();
+    long targetBytes = MemorySize.toMegabytes( environmentSubstitute( partitionSize ), 0 ) * 1024 * 1024;
+    if ( targetBytes <= 0 ) {
+      return params;
+    }
+    List<String> paths = getDeclaredInputPaths();
+    if ( paths.isEmpty() ) {
+      return params;
+    }
+
+    long start = System.currentTimeMillis();
+    List<Long> sizes = InputSize.measure( paths, this );
+    long totalBytes = 0;
+    for ( int i = 0; i < paths.size(); i++ ) {
+      totalBytes += sizes.get( i );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "JobEntrySparkSubmit.InputSize", paths.get( i ), sizes.get( i ) ) );
+      }
+    }
+
+    // a multiple of the cores keeps the last wave of tasks from running on a few cores only
+    long partitions = Math.max( 1, ( totalBytes + targetBytes - 1 ) / targetBytes );
+    int executors = PerformanceRule.getExecutorCount( this );
+    if ( executors != Integer.MAX_VALUE ) {
+      long cores = (long) executors * Const.toInt( getConfigParam( "spark.executor.cores" ), 1 );
+      partitions = ( partitions + cores - 1 ) / cores * cores;
+    }
+    partitions = Math.min( partitions, MAX_PARTITIONS );
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PartitionsDerived", totalBytes, paths.size(),
+        targetBytes, partitions, System.currentTimeMillis() - start ) );
+
+    addDerivedParam( params, "spark.sql.files.maxPartitionBytes", String.valueOf( targetBytes ) );
+    addDerivedParam( params, "spark.sql.shuffle.partitions", String.valueOf( partitions ) );
+    addDerivedParam( params, "spark.default.parallelism", String.valueOf( partitions ) );
+    return params;
+  }
+
+  private void addDerivedParam( List<String> params, String name, String value ) {
+    String explicit = getConfigParam( name );
+    if ( explicit != null ) {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.DerivedParamOverridden", name, value, explicit ) );
+    } else {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.DerivedParam", name, value ) );
+      params.add( name + "=" + value );
+    }
+  }
+
+  public KryoRegistrationStore getKryoRegistrationStore() {
+    if ( kryoRegistrationStore == null ) {
+      kryoRegistrationStore = KryoRegistrationStore.getDefault();
+    }
+    return kryoRegistrationStore;
+  }
+
+  @VisibleForTesting
+  void setKryoRegistrationStore( KryoRegistrationStore kryoRegistrationStore ) {
+    this.kryoRegistrationStore = kryoRegistrationStore;
+  }
+
+  public ThinJarStore getThinJarStore() {
+    if ( thinJarStore == null ) {
+      thinJarStore = ThinJarStore.getDefault();
+    }
+    return thinJarStore;
+  }
+
+  @VisibleForTesting
+  void setThinJarStore( ThinJarStore thinJarStore ) {
+    this.thinJarStore = thinJarStore;
+  }
+
+  public PythonEnvironmentStore getPythonEnvironmentStore() {
+    if ( pythonEnvironmentStore == null ) {
+      pythonEnvironmentStore = PythonEnvironmentStore.getDefault();
+    }
+    return pythonEnvironmentStore;
+  }
+
+  @VisibleForTesting
+  void setPythonEnvironmentStore( PythonEnvironmentStore pythonEnvironmentStore ) {
+    this.pythonEnvironmentStore = pythonEnvironmentStore;
+  }
+
+  @VisibleForTesting
+  PythonEnvironmentBuilder createPythonEnvironmentBuilder() {
+    return new PythonEnvironmentBuilder( environmentSubstitute( pythonExecutable ) );
+  }
+
+  /**
+   * Returns the archive of the Python environment built from the requirements file, building it unless an environment
+   * was built from the same requirements with the same interpreter before. When an archive location is set, the
+   * archive is published there once and referred to by its URL. Whether the environment was reused is set to the
+   * SPARK_SUBMIT_PYTHON_ENV_CACHED variable.
+   *
+   * @return archive path or URL passed with --archives
+   * @throws KettleException
+   *           if the environment can't be built or published
+   */
+  public String getPythonArchive() throws KettleException {
+    String requirements = environmentSubstitute( pythonRequirements );
+    PythonEnvironmentBuilder builder = createPythonEnvironmentBuilder();
+    String key = Hashing.sha256().hashString( FileDigest.digest( requirements, this ) + "|" + builder.getPython(),
+        Charsets.UTF_8 ).toString();
+    File environment = getPythonEnvironmentStore().get( key );
+    setResultVariable( PYTHON_ENV_CACHED_VARIABLE, environment != null ? "Y" : "N" );
+    if ( environment != null ) {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PythonEnvironmentReused", key.substring( 0, 12 ) ) );
+    } else {
+      long start = System.currentTimeMillis();
+      try {
+        File tmp = getPythonEnvironmentStore().createTempDir( key );
+        try {
+          builder.build( new File( requirements ), new File( tmp,
+              PythonEnvironmentStore.SITE ), new File( tmp, PythonEnvironmentStore.ARCHIVE ) );
+        } catch ( IOException e ) {
+          getPythonEnvironmentStore().discard( tmp );
+          throw e;
+        }
+        environment = getPythonEnvironmentStore().put( key, tmp );
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PythonEnvironmentBuilt", key.substring( 0, 12 ),
+          new File( environment, PythonEnvironmentStore.ARCHIVE ).length() / 1024, System.currentTimeMillis()
+              - start ) );
+    }
+    pythonSite = new File( environment, PythonEnvironmentStore.SITE );
+
+    String location = environmentSubstitute( pythonArchiveLocation );
+    if ( Const.isEmpty( location ) ) {
+      return new File( environment, PythonEnvironmentStore.ARCHIVE ).getAbsolutePath();
+    }
+    return PythonEnvironmentStore.publish( environment, key, location, this );
+  }
+
+  /**
+   * Returns config params putting the unpacked Python environment on the PYTHONPATH of the driver and executors
+   */
+  @VisibleForTesting
+  List<String> getPythonConfParams() {
+    List<String> params = new ArrayList<String>();
+    for ( String name : new String[] { "spark.executorEnv.PYTHONPATH", "spark.yarn.appMasterEnv.PYTHONPATH",
+      "spark.kubernetes.driverEnv.PYTHONPATH" } ) {
+      String configured = getConfigParam( name );
+      params.add( name + "=" + PYTHON_ENV_ALIAS + ( Const.isEmpty( configured ) ? "" : ":" + configured ) );
+    }
+    return params;
+  }
+
+  public File getDiagnosticsDirectory() {
+    if ( diagnosticsDirectory == null ) {
+      diagnosticsDirectory = StateDirectory.get( "diagnostics" );
+    }
+    return diagnosticsDirectory;
+  }
+
+  @VisibleForTesting
+  void setDiagnosticsDirectory( File diagnosticsDirectory ) {
+    this.diagnosticsDirectory = diagnosticsDirectory;
+  }
+
+  /**
+   * Starts enforcing the deadline and detecting hangs of the submission
+   *
+   * @param started
+   *          when the entry started
+   * @return the watch or null if neither deadline nor hang timeout is set
+   */
+  private SubmissionWatchdog.Watch watchSubmission( SparkSubmission submission, final SparkApplicationClient client,
+      long started ) {
+    timeoutMessage = null;
+    long deadlineMillis = Const.toInt( environmentSubstitute( deadline ), 0 ) * 1000L;
+    long hangMillis = Const.toInt( environmentSubstitute( hangTimeout ), 0 ) * 1000L;
+    if ( deadlineMillis <= 0 && hangMillis <= 0 ) {
+      return null;
+    }
+    setResultVariable( TIMEOUT_VARIABLE, "" );
+    return SubmissionWatchdog.watch( submission, started, deadlineMillis, hangMillis,
+        new SubmissionWatchdog.TimeoutListener() {
+          @Override
+          public void onTimeout( SparkSubmission source, SubmissionWatchdog.Reason reason, long elapsed ) {
+            killTimedOut( source, client, reason, elapsed );
+          }
+        } );
+  }
+
+  /**
+   * Starts sampling the spark-submit process tree if the driver runs on this host. Trees are always sampled under a
+   * host memory limit, the memory they grow to counts against it.
+   *
+   * @return the sampler or null if sampling is off or not supported
+   */
+  private ProcessTreeSampler sampleSubmission( SparkSubmission submission ) {
+    long interval = Const.toInt( environmentSubstitute( sampleInterval ), 0 ) * 1000L;
+    if ( interval <= 0 && MemorySize.toMegabytes( environmentSubstitute( hostMemoryLimit ), 0 ) > 0 ) {
+      interval = DEFAULT_SAMPLE_INTERVAL * 1000L;
+    }
+    if ( interval <= 0 || !isClientMode() || !ProcessTreeSampler.isSupported() ) {
+      return null;
+    }
+    int pid = ProcessTreeSampler.getPid( submission.getProcess() );
+    if ( pid < 0 ) {
+      return null;
+    }
+    ProcessTreeSampler sampler = createSampler( pid );
+    sampler.start( interval );
+    if ( hostReservation != null ) {
+      hostReservation.setSampler( sampler );
+    }
+    return sampler;
+  }
+
+  @VisibleForTesting
+  ProcessTreeSampler createSampler( int pid ) {
+    return new ProcessTreeSampler( ProcessTreeSampler.PROC, pid );
+  }
+
+  /**
+   * Publishes peaks and averages of the sampled process tree as variables and in the log
+   */
+  private void recordSamples( ProcessTreeSampler sampler ) {
+    if ( sampler == null || sampler.getSampleCount() == 0 ) {
+      return;
+    }
+    setResultVariable( PEAK_RSS_VARIABLE, String.valueOf( sampler.getPeakRssBytes() ) );
+    setResultVariable( AVERAGE_RSS_VARIABLE, String.valueOf( sampler.getAverageRssBytes() ) );
+    setResultVariable( CPU_MILLIS_VARIABLE, String.valueOf( sampler.getCpuMillis() ) );
+    setResultVariable( AVERAGE_CPU_VARIABLE, String.valueOf( sampler.getAverageCpuPercent() ) );
+    setResultVariable( PEAK_THREADS_VARIABLE, String.valueOf( sampler.getPeakThreads() ) );
+    setResultVariable( PEAK_FILE_DESCRIPTORS_VARIABLE, String.valueOf( sampler.getPeakFileDescriptors() ) );
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ProcessTreeUsage", sampler.getPeakRssBytes()
+        / ( 1024 * 1024 ), sampler.getAverageRssBytes() / ( 1024 * 1024 ), sampler.getCpuMillis() / 1000, sampler
+        .getAverageCpuPercent(), sampler.getPeakThreads(), sampler.getPeakFileDescriptors() ) );
+    if ( log.isDetailed() ) {
+      for ( ProcessTreeSample sample : sampler.getSamples() ) {
+        logDetailed( sample.toString() );
+      }
+    }
+  }
+
+  /**
+   * Reserves the driver memory of a client mode run in the host memory ledger, waiting until it fits under the host
+   * memory limit if one is set. Runs without a limit are still reserved, so they count against the limits of others.
+   *
+   * @return false if the job was stopped while waiting
+   */
+  private boolean admitOnHost() throws InterruptedException {
+    hostReservation = null;
+    if ( !isClientMode() ) {
+      return true;
+    }
+    long limitMb = MemorySize.toMegabytes( environmentSubstitute( hostMemoryLimit ), 0 );
+    long neededMb = MemorySize.toMegabytes( getResolvedDriverMemory(), 1024 );
+    boolean waiting = false;
+    while ( true ) {
+      hostReservation = HostMemoryLedger.reserve( neededMb * 1024 * 1024, limitMb * 1024 * 1024 );
+      if ( hostReservation != null ) {
+        return true;
+      }
+      if ( !waiting ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.WaitingForHostMemory", HostMemoryLedger
+            .getReservedBytes() / ( 1024 * 1024 ), neededMb, limitMb ) );
+        waiting = true;
+      }
+      if ( getParentJob().isStopped() ) {
+        return false;
+      }
+      Thread.sleep( statusPollInterval );
+    }
+  }
+
+  /**
+   * Captures diagnostics of a timed out submission and kills it together with the application
+   */
+  private void killTimedOut( SparkSubmission submission, SparkApplicationClient client,
+      SubmissionWatchdog.Reason reason, long elapsed ) {
+    timeoutMessage = BaseMessages.getString( PKG, reason == SubmissionWatchdog.Reason.DEADLINE
+        ? "JobEntrySparkSubmit.DeadlineExceeded" : "JobEntrySparkSubmit.HangDetected", elapsed / 1000 );
+    logError( timeoutMessage );
+    setResultVariable( TIMEOUT_VARIABLE, reason.name() );
+    String report = SubmissionDiagnostics.capture( submission, timeoutMessage );
+    try {
+      File file = SubmissionDiagnostics.write( getDiagnosticsDirectory(), getName(), report );
+      setResultVariable( DIAGNOSTICS_VARIABLE, file.getAbsolutePath() );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.DiagnosticsSaved", file.getAbsolutePath() ) );
+    } catch ( IOException e ) {
+      logError( report );
+    }
+    submission.cancel( client );
+  }
+
+  public PackageCache getPackageCache() {
+    if ( packageCache == null ) {
+      packageCache = PackageCache.getDefault();
+    }
+    return packageCache;
+  }
+
+  @VisibleForTesting
+  void setPackageCache( PackageCache packageCache ) {
+    this.packageCache = packageCache;
+  }
+
+  /**
+   * Resolves packages set in spark.jars.packages through the package cache and adds the jars resolved to spark.jars
+   * instead, so spark-submit doesn't resolve them again. Packages are left to spark-submit when they can't be resolved
+   * or an Ivy settings file defines where they come from.
+   *
+   * @return true if the packages were resolved
+   */
+  @VisibleForTesting
+  boolean resolvePackages() {
+    String packages = getConfigParam( PACKAGES_PARAM );
+    if ( Const.isEmpty( packages ) || !Const.isEmpty( getConfigParam( "spark.jars.ivySettings" ) ) ) {
+      return false;
+    }
+    try {
+      long start = System.currentTimeMillis();
+      List<File> resolved = getPackageCache().resolve( PackageCache.split( packages ), PackageCache.split(
+          getConfigParam( EXCLUDES_PARAM ) ), PackageCache.split( getConfigParam( REPOSITORIES_PARAM ) ) );
+      StringBuilder jars = new StringBuilder( Const.nullToEmpty( getConfigParam( "spark.jars" ) ) );
+      for ( File jar : resolved ) {
+        jars.append( jars.length() > 0 ? "," : "" ).append( jar.getAbsolutePath() );
+      }
+      generatedConfParams.add( "spark.jars=" + jars );
+      packagesResolved = true;
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PackagesResolved", resolved.size(), System
+          .currentTimeMillis() - start ) );
+      return true;
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ResolvingPackages", e.getMessage() ) );
+      return false;
+    }
+  }
+
+  /**
+   * Returns packages left out of the thin jar
+   */
+  public List<String> getProvidedPackageList() {
+    String packages = environmentSubstitute( providedPackages );
+    if ( Const.isEmpty( packages ) ) {
+      return ThinJarBuilder.DEFAULT_PROVIDED_PACKAGES;
+    }
+    List<String> list = new ArrayList<String>();
+    for ( String providedPackage : packages.split( "," ) ) {
+      if ( !Const.isEmpty( providedPackage.trim() ) ) {
+        list.add( providedPackage.trim() );
+      }
+    }
+    return list;
+  }
+
+  public PreflightStore getPreflightStore() {
+    if ( preflightStore == null ) {
+      preflightStore = PreflightStore.getDefault();
+    }
+    return preflightStore;
+  }
+
+  @VisibleForTesting
+  void setPreflightStore( PreflightStore preflightStore ) {
+    this.preflightStore = preflightStore;
+  }
+
+  /**
+   * Checks that the main class can run and that the classes it uses resolve within the jar or the cluster. Results
+   * are remembered by jar digest, main class and Spark distribution, so an unchanged jar is checked only once.
+   *
+   * @return true if no problem was found
+   */
+  @VisibleForTesting
+  boolean preflightJar() {
+    String jarPath = environmentSubstitute( jar );
+    String mainClass = Const.nullToEmpty( environmentSubstitute( className ) );
+    try {
+      List<String> packages = getProvidedPackageList();
+      List<File> sparkJarDirs = ThinJarBuilder.getSparkJarDirectories( environmentSubstitute( scriptPath ) );
+      List<File> extraJars = getExtraJars();
+      String key = Hashing.sha256().hashString( FileDigest.digest( jarPath, this ) + "|" + mainClass + "|" + packages
+          + "|" + ThinJarBuilder.getSignature( sparkJarDirs ) + "|" + getSignature( extraJars ) + "|"
+          + JarPreflight.VERSION, Charsets.UTF_8 ).toString();
+      List<String> problems = getPreflightStore().getProblems( key );
+      List<String> warnings = getPreflightStore().getWarnings( key );
+      if ( problems == null ) {
+        warnings = new ArrayList<String>();
+        long start = System.currentTimeMillis();
+        Set<String> classes = new HashSet<String>( ThinJarBuilder.getProvidedClasses( sparkJarDirs ) );
+        if ( extraJars == null ) {
+          // classes the application gets from elsewhere are unknown, references can't be checked
+          logDetailed( "Additional jars are not all local, references of the application jar are not checked" );
+          classes.clear();
+        } else if ( !classes.isEmpty() ) {
+          classes.addAll( ThinJarBuilder.getClasses( extraJars ) );
+        }
+        JarPreflight checker = new JarPreflight( packages, classes );
+        InputStream is = KettleVFS.getInputStream( jarPath, this );
+        try {
+          problems = checker.check( is, mainClass, warnings );
+        } finally {
+          is.close();
+        }
+        if ( log.isDetailed() ) {
+          logDetailed( "Checked " + jarPath + " in " + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+        getPreflightStore().put( key, problems, warnings );
+      }
+      for ( String warning : warnings ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PreflightWarning", warning ) );
+      }
+      for ( String problem : problems ) {
+        logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PreflightProblem", problem ) );
+      }
+      if ( problems.isEmpty() ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PreflightPassed" ) );
+      }
+      return problems.isEmpty();
+    } catch ( Exception e ) {
+      // not being able to check the jar doesn't mean it's broken, leave it to spark-submit
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.Preflight", e.getMessage() ) );
+      return true;
+    }
+  }
+
+  /**
+   * Returns the jars the application gets on its class path besides the application jar: spark.jars, including the
+   * ones the package cache resolved spark.jars.packages to
+   *
+   * @return local jars or null if some jars aren't local files or spark-submit resolves packages by itself
+   */
+  @VisibleForTesting
+  List<File> getExtraJars() {
+    String jars = getConfigParam( "spark.jars" );
+    for ( String param : generatedConfParams ) {
+      if ( param.startsWith( "spark.jars=" ) ) {
+        jars = param.substring( "spark.jars=".length() );
+      }
+    }
+    if ( !packagesResolved && !Const.isEmpty( getConfigParam( PACKAGES_PARAM ) ) ) {
+      return null;
+    }
+    List<File> files = new ArrayList<File>();
+    for ( String path : Const.nullToEmpty( jars ).split( "," ) ) {
+      path = path.trim();
+      if ( path.isEmpty() ) {
+        continue;
+      }
+      File file;
+      if ( path.startsWith( "file:" ) ) {
+        try {
+          file = new File( new URI( path ) );
+        } catch ( URISyntaxException e ) {
+          return null;
+        } catch ( IllegalArgumentException e ) {
+          return null;
+        }
+      } else if ( path.indexOf( ':' ) > 1 ) {
+        // hdfs:, local: and the like, the jar isn't on this host
+        return null;
+      } else {
+        file = new File( path );
+      }
+      if ( !file.isFile() ) {
+        return null;
+      }
+      files.add( file );
+    }
+    return files;
+  }
+
+  private static String getSignature( List<File> jars ) {
+    if ( jars == null ) {
+      return "unknown";
+    }
+    StringBuilder signature = new StringBuilder();
+    for ( File jar : jars ) {
+      signature.append( jar.getAbsolutePath() ).append( ':' ).append( jar.length() ).append( ':' ).append( jar
+          .lastModified() ).append( '|' );
+    }
+    return signature.toString();
+  }
+
+  /**
+   * Returns the jar stripped of the classes provided by the cluster, building it unless a jar built from the same
+   * content against the same Spark distribution is found in the store. Bytes saved are set to the
+   * SPARK_SUBMIT_THIN_JAR_SAVED variable.
+   *
+   * @return local path of the thin jar or null to submit the configured jar
+   */
+  public String getThinJar() {
+    String jarPath = environmentSubstitute( jar );
+    try {
+      FileObject source = KettleVFS.getFileObject( jarPath, this );
+      String jarName = source.getName().getBaseName();
+      long sourceSize = source.getContent().getSize();
+      List<String> packages = getProvidedPackageList();
+      List<File> sparkJarDirs = ThinJarBuilder.getSparkJarDirectories( environmentSubstitute( scriptPath ) );
+      String key = Hashing.sha256().hashString( FileDigest.digest( source ) + "|" + packages + "|"
+          + ThinJarBuilder.getSignature( sparkJarDirs ), Charsets.UTF_8 ).toString();
+
+      File thin = getThinJarStore().get( key, jarName );
+      if ( thin != null ) {
+        long saved = sourceSize - thin.length();
+        setResultVariable( THIN_JAR_SAVED_VARIABLE, String.valueOf( saved ) );
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ThinJarReused", saved / 1024 ) );
+        return thin.getAbsolutePath();
+      }
+
+      long start = System.currentTimeMillis();
+      ThinJarBuilder builder = new ThinJarBuilder( packages, ThinJarBuilder.getProvidedClasses( sparkJarDirs ) );
+      File tmp = getThinJarStore().createTempFile( key, jarName );
+      int removed;
+      InputStream is = source.getContent().getInputStream();
+      try {
+        removed = builder.build( is, tmp );
+      } catch ( IOException e ) {
+        tmp.delete();
+        throw e;
+      } finally {
+        is.close();
+      }
+      thin = getThinJarStore().put( key, jarName, tmp );
+      long saved = sourceSize - thin.length();
+      setResultVariable( THIN_JAR_SAVED_VARIABLE, String.valueOf( saved ) );
+      long elapsed = System.currentTimeMillis() - start;
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ThinJarBuilt", removed, saved / 1024, elapsed ) );
+      return thin.getAbsolutePath();
+    } catch ( Exception e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.BuildingThinJar", e.getMessage() ) );
+      return null;
+    }
+  }
+
+  /**
+   * Returns Kryo config params for the classes found in the jar. Nothing is generated when another serializer or
+   * Kryo registrations are configured explicitly.
+   *
+   * @return config params to add, "key=value"
+   */
+  public List<String> getKryoConfParams() {
+    List<String> params = new ArrayList<String>();
+    String serializer = getConfigParam( "spark.serializer" );
+    if ( serializer != null && !KRYO_SERIALIZER.equals( serializer ) ) {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.KryoSkipped", "spark.serializer" ) );
+      return params;
+    }
+    for ( String configured : new String[] { "spark.kryo.classesToRegister", "spark.kryo.registrator" } ) {
+      if ( getConfigParam( configured ) != null ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.KryoSkipped", configured ) );
+        return params;
+      }
+    }
+
+    String jarPath = environmentSubstitute( jar );
+    List<String> classes;
+    try {
+      String digest = FileDigest.digest( jarPath, this );
+      classes = getKryoRegistrationStore().getClasses( digest );
+      if ( classes == null ) {
+        long start = System.currentTimeMillis();
+        InputStream is = KettleVFS.getInputStream( jarPath, this );
+        try {
+          classes = KryoRegistrationScanner.scan( is );
+        } finally {
+          is.close();
+        }
+        if ( log.isDetailed() ) {
+          logDetailed( "Scanned " + jarPath + " for Kryo registrations in " + ( System.currentTimeMillis() - start )
+              + " ms" );
+        }
+        getKryoRegistrationStore().put( digest, classes );
+      }
+    } catch ( Exception e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ScanningJar", e.getMessage() ) );
+      return params;
+    }
+
+    if ( classes.isEmpty() ) {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.KryoNothingFound" ) );
+      return params;
+    }
+    if ( serializer == null ) {
+      params.add( "spark.serializer=" + KRYO_SERIALIZER );
+    }
+    StringBuilder value = new StringBuilder();
+    for ( String className : classes ) {
+      value.append( value.length() == 0 ? "" : "," ).append( className );
+    }
+    params.add( "spark.kryo.classesToRegister=" + value );
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.KryoRegistered", classes.size(), value ) );
+    return params;
+  }
+
+  /**
+   * Records the fingerprint of a successful run
+   *
+   * @param fingerprint
+   *          fingerprint computed before the run, null if memoization is off
+   */
+  private void recordFingerprint( String fingerprint ) {
+    if ( fingerprint == null ) {
+      return;
+    }
+    try {
+      getFingerprintStore().put( getEntryKey(), fingerprint );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.RecordingFingerprint", e.getMessage() ) );
+    }
+  }
+
+  /**
+   * Returns the key identifying this entry in the job
+   */
+  private String getEntryKey() {
+    return SubmissionStore.key( Arrays.asList( getParentJob() == null ? null : getParentJob().getJobname(),
+        getName() ) );
+  }
+
+  /**
+   * Sets variable in the parent job, so the following job entries can see it
+   */
+  protected void setResultVariable( String name, String value ) {
+    setVariable( name, value );
+    if ( getParentJob() != null ) {
+      getParentJob().setVariable( name, value );
+    }
+  }
+
+  /**
+   * Returns the key identifying submissions of this entry with the command given
+   *
+   * @param cmds
+   *          resolved spark-submit command
+   */
+  public String getSubmissionKey( List<String> cmds ) {
+    List<String> values = new ArrayList<String>( cmds );
+    values.add( getParentJob() == null ? null : getParentJob().getJobname() );
+    values.add( getName() );
+    return SubmissionStore.key( values );
+  }
+
+  /**
+   * Looks for the application submitted by a previous run with the same key which is still running
+   *
+   * @return application id or null if there is no such application
+   */
+  private String findRunningApplication( String submissionKey, SparkApplicationClient client ) {
+    if ( client == null ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ReattachWithoutResourceManager" ) );
+      return null;
+    }
+    try {
+      String applicationId = getSubmissionStore().getApplicationId( submissionKey );
+      if ( applicationId == null ) {
+        return null;
+      }
+      ApplicationStatus status = client.getApplicationStatus( applicationId );
+      if ( status != null && !status.isFinal() ) {
+        return applicationId;
+      }
+      getSubmissionStore().remove( submissionKey );
+    } catch ( KettleException e ) {
+      logError(
+          BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.CheckingPreviousSubmission", e.getMessage() ) );
+    }
+    return null;
+  }
+
+  /**
+   * Asks the cluster manager for the resources the finished application consumed and records them
+   */
+  private void recordResourceUsage( SparkApplicationClient client, String applicationId ) {
+    setResultVariable( MEMORY_SECONDS_VARIABLE, "" );
+    setResultVariable( VCORE_SECONDS_VARIABLE, "" );
+    if ( client == null || applicationId == null ) {
+      return;
+    }
+    try {
+      recordResourceUsage( client.getApplicationStatus( applicationId ) );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ReadingResourceUsage", applicationId, e
+          .getMessage() ) );
+    }
+  }
+
+  /**
+   * Publishes the resources consumed by the application as variables, in the log and as metrics of the entry
+   *
+   * @param status
+   *          final status of the application, resources aren't recorded when it's null or doesn't carry them
+   */
+  private void recordResourceUsage( ApplicationStatus status ) {
+    if ( status == null || !status.hasResourceUsage() ) {
+      setResultVariable( MEMORY_SECONDS_VARIABLE, "" );
+      setResultVariable( VCORE_SECONDS_VARIABLE, "" );
+      return;
+    }
+    setResultVariable( MEMORY_SECONDS_VARIABLE, String.valueOf( status.getMemorySeconds() ) );
+    setResultVariable( VCORE_SECONDS_VARIABLE, String.valueOf( status.getVcoreSeconds() ) );
+    String jobName = getParentJob() == null ? null : getParentJob().getJobname();
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ResourceUsage", jobName, getName(), status
+        .getApplicationId(), status.getMemorySeconds(), status.getVcoreSeconds() ) );
+    String subject = jobName + "/" + getName();
+    log.snap( METRIC_MEMORY_SECONDS, subject, status.getMemorySeconds() );
+    log.snap( METRIC_VCORE_SECONDS, subject, status.getVcoreSeconds() );
+  }
+
+  private void recordSubmission( String submissionKey, String applicationId ) {
+    try {
+      getSubmissionStore().put( submissionKey, applicationId );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.RecordingSubmission", e.getMessage() ) );
+    }
+  }
+
+  /**
+   * Follows the application submitted by a previous run instead of submitting it again
+   */
+  private Result reattach( Result result, String submissionKey, String applicationId, SparkApplicationClient client ) {
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Reattaching", applicationId ) );
+    if ( !blockExecution ) {
+      result.setExitStatus( 0 );
+      result.setResult( true );
+      return result;
+    }
+
+    try {
+      ApplicationStatus status = client.getApplicationStatus( applicationId );
+      while ( status != null && !status.isFinal() ) {
+        if ( getParentJob().isStopped() ) {
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+        Thread.sleep( statusPollInterval );
+        status = client.getApplicationStatus( applicationId );
+      }
+      getSubmissionStore().remove( submissionKey );
+      recordResourceUsage( status );
+
+      boolean succeeded = status != null && status.isSucceeded();
+      if ( log.isDetailed() ) {
+        logDetailed( "Application finished: " + ( status == null ? applicationId : status ) );
+      }
+      result.setExitStatus( succeeded ? 0 : 1 );
+      result.setNrErrors( succeeded ? 0 : 1 );
+      result.setResult( succeeded );
+    } catch ( Exception e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingScript", e.getMessage() ) );
+      logError( Const.getStackTracker( e ) );
+      result.setResult( false );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the client used to talk to the cluster manager
+   *
+   * @return application client or null if ResourceManager URL is not set
+   */
+  public SparkApplicationClient getApplicationClient() {
+    if ( applicationClient != null ) {
+      return applicationClient;
+    }
+    String apiServerUrl = KubernetesApplicationClient.getApiServerUrl( environmentSubstitute( master ) );
+    if ( apiServerUrl != null ) {
+      return createKubernetesClient( apiServerUrl );
+    }
+    return Const.isEmpty( resourceManagerUrl ) ? null
+        : new YarnRestApplicationClient( environmentSubstitute( resourceManagerUrl ) );
+  }
+
+  private KubernetesApplicationClient createKubernetesClient( String apiServerUrl ) {
+    String namespace = getConfigParam( K8S_NAMESPACE );
+    String token = getConfigParam( K8S_TOKEN );
+    String tokenFile = getConfigParam( K8S_TOKEN_FILE );
+    if ( Const.isEmpty( token ) && !Const.isEmpty( tokenFile ) ) {
+      try {
+        token = new String( Files.readAllBytes( new File( tokenFile ).toPath() ), "UTF-8" ).trim();
+      } catch ( IOException e ) {
+        logError( "Unable to read Kubernetes token from " + tokenFile, e );
+      }
+    }
+    return new KubernetesApplicationClient( apiServerUrl, Const.isEmpty( namespace ) ? "default" : namespace,
+        Const.isEmpty( token ) ? null : token );
+  }
+
+  /**
+   * Returns if the driver runs within spark-submit on this host
+   */
+  public boolean isClientMode() {
+    String resolvedMaster = environmentSubstitute( master );
+    if ( resolvedMaster != null && resolvedMaster.startsWith( "yarn-" ) ) {
+      return "yarn-client".equals( resolvedMaster );
+    }
+    return !"cluster".equals( getConfigParam( "spark.submit.deployMode" ) );
+  }
+
+  /**
+   * Returns if the application runs in cluster mode on Kubernetes, where its driver pod is followed instead of
+   * spark-submit
+   */
+  public boolean isKubernetesCluster() {
+    return KubernetesApplicationClient.getApiServerUrl( environmentSubstitute( master ) ) != null
+        && "cluster".equals( getConfigParam( "spark.submit.deployMode" ) );
+  }
+
+  /**
+   * Returns a unique driver pod name derived from the entry name, valid as Kubernetes object name
+   */
+  @VisibleForTesting
+  String generateDriverPodName() {
+    String base = getName() == null ? "" : getName().toLowerCase().replaceAll( "[^a-z0-9-]+", "-" );
+    if ( base.length() > 40 ) {
+      base = base.substring( 0, 40 );
+    }
+    base = base.replaceAll( "^-+|-+$", "" );
+    return ( base.isEmpty() ? "spark" : base ) + "-" + UUID.randomUUID().toString().substring( 0, 8 ) + "-driver";
+  }
+
+  @VisibleForTesting
+  void setApplicationClient( SparkApplicationClient applicationClient ) {
+    this.applicationClient = applicationClient;
+  }
+
+  /**
+   * Returns the spark-submit command as a list of strings. e.g. <path to spark-submit> --class <main-class> --master
+   * <master-url> --deploy-mode <deploy-mode> --conf <key>=<value> <application-jar> \ [application-arguments]
+   *
+   * @return The spark-submit command
+   */
+  public List<String> getCmds() {
+    List<String> cmds = new ArrayList<String>();
+
+    cmds.add( environmentSubstitute( scriptPath ) );
+    cmds.add( "--master" );
+    cmds.add( environmentSubstitute( master ) );
+
+    if ( !Const.isEmpty( className ) ) {
+      cmds.add( "--class" );
+      cmds.add( environmentSubstitute( className ) );
+    }
+
+    for ( String confParam : getEffectiveConfigParams() ) {
+      cmds.add( "--conf" );
+      cmds.add( confParam );
+    }
+
+    for ( String confParam : generatedConfParams ) {
+      cmds.add( "--conf" );
+      cmds.add( confParam );
+    }
+
+    if ( !Const.isEmpty( driverMemory ) ) {
+      cmds.add( "--driver-memory" );
+      cmds.add( environmentSubstitute( driverMemory ) );
+    }
+
+    if ( !Const.isEmpty( executorMemory ) ) {
+      cmds.add( "--executor-memory" );
+      cmds.add( environmentSubstitute( executorMemory ) );
+    }
+
+    if ( !Const.isEmpty( pyFiles ) ) {
+      cmds.add( "--py-files" );
+      cmds.add( environmentSubstitute( pyFiles ) );
+    }
+
+    if ( submittedArchive != null ) {
+      // --archives replaces archives set in config params
+      String archives = getConfigParam( "spark.archives" );
+      if ( Const.isEmpty( archives ) ) {
+        archives = getConfigParam( "spark.yarn.dist.archives" );
+      }
+      cmds.add( "--archives" );
+      cmds.add( ( Const.isEmpty( archives ) ? "" : archives + "," ) + submittedArchive + "#" + PYTHON_ENV_ALIAS );
+    }
+
+    cmds.add( submittedJar != null ? submittedJar : jar );
+    cmds.addAll( getAppArgs() );
+
+    return cmds;
+  }
+
+  /**
+   * Returns the application arguments with variables substituted
+   */
+  private List<String> getAppArgs() {
+    List<String> appArgs = new ArrayList<String>();
+    if ( !Const.isEmpty( args ) ) {
+      String[] argArray = environmentSubstitute( args ).split( " " );
+      for ( String anArgArray : argArray ) {
+        if ( !Const.isEmpty( anArgArray ) ) {
+          appArgs.add( anArgArray );
+        }
+      }
+    }
+    return appArgs;
+  }
+
+  /**
+   * Returns the spark-submit command of a micro-batch application, the manifest is passed as the only argument. A
+   * driver running in the cluster can't open the local path, it gets the file name of the copy shipped with --files.
+   *
+   * @param baseCmds
+   *          spark-submit command without application arguments
+   * @param manifest
+   *          the batch manifest
+   */
+  private List<String> getBatchCmds( List<String> baseCmds, File manifest ) {
+    List<String> cmds = new ArrayList<String>( baseCmds );
+    cmds.add( cmds.size() - 1, "--files" );
+    cmds.add( cmds.size() - 1, manifest.getAbsolutePath() );
+    cmds.add( isClientMode() ? manifest.getAbsolutePath() : manifest.getName() );
+    return cmds;
+  }
+
+  /**
+   * Adds this execution to a micro-batch and waits for its outcome unless execution is not blocking
+   */
+  private Result executeInBatch( Result result, String fingerprint ) {
+    String queue = selectQueue();
+    List<String> cmds = queue == null ? getCmds() : new HedgeTarget( null, queue ).apply( getCmds() );
+    final List<String> baseCmds = new ArrayList<String>( cmds.subList( 0, cmds.size() - getAppArgs().size() ) );
+    final boolean blocking = blockExecution;
+    List<String> key = new ArrayList<String>( baseCmds );
+    key.add( String.valueOf( blocking ) );
+    long window = Const.toInt( environmentSubstitute( batchWindow ), 0 ) * 1000L;
+    int size = Const.toInt( environmentSubstitute( batchSize ), 0 );
+
+    BatchItem item = MicroBatcher.add( SubmissionStore.key( key ), getAppArgs(), window, size,
+        new MicroBatcher.BatchRunner() {
+          @Override
+          public void run( List<BatchItem> items ) throws Exception {
+            runBatch( baseCmds, blocking, items );
+          }
+        } );
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.AddedToBatch", item.getId() ) );
+
+    if ( !blockExecution ) {
+      result.setExitStatus( 0 );
+      result.setResult( true );
+      return result;
+    }
+
+    try {
+      while ( !item.await( statusPollInterval ) ) {
+        if ( getParentJob().isStopped() ) {
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+
+    if ( !item.isSucceeded() ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.BatchItemFailed", item.getId(),
+          Const.nullToEmpty( item.getMessage() ) ) );
+    } else {
+      recordFingerprint( fingerprint );
+    }
+    result.setExitStatus( item.isSucceeded() ? 0 : 1 );
+    result.setNrErrors( item.isSucceeded() ? 0 : 1 );
+    result.setResult( item.isSucceeded() );
+    return result;
+  }
+
+  /**
+   * Returns the spark-submit command starting a warm session driver, without the session token. The driver always
+   * runs in client mode, so the plugin can reach its control port.
+   */
+  private List<String> getSessionCmds() {
+    List<String> cmds = new ArrayList<String>();
+    cmds.add( environmentSubstitute( scriptPath ) );
+    cmds.add( "--master" );
+    String resolvedMaster = environmentSubstitute( master );
+    if ( "yarn-cluster".equals( resolvedMaster ) ) {
+      cmds.add( "yarn-client" );
+    } else {
+      cmds.add( resolvedMaster );
+      if ( !resolvedMaster.startsWith( "yarn-" ) ) {
+        cmds.add( "--deploy-mode" );
+        cmds.add( "client" );
+      }
+    }
+    cmds.add( "--class" );
+    cmds.add( WarmSessionServer.class.getName() );
+    for ( String confParam : getEffectiveConfigParams() ) {
+      cmds.add( "--conf" );
+      cmds.add( confParam );
+    }
+    for ( String confParam : generatedConfParams ) {
+      cmds.add( "--conf" );
+      cmds.add( confParam );
+    }
+    if ( !Const.isEmpty( driverMemory ) ) {
+      cmds.add( "--driver-memory" );
+      cmds.add( environmentSubstitute( driverMemory ) );
+    }
+    if ( !Const.isEmpty( executorMemory ) ) {
+      cmds.add( "--executor-memory" );
+      cmds.add( environmentSubstitute( executorMemory ) );
+    }
+    cmds.add( "--jars" );
+    cmds.add( submittedJar != null ? submittedJar : environmentSubstitute( jar ) );
+    cmds.add( getSessionServerJar() );
+    cmds.add( String.valueOf( Const.toInt( environmentSubstitute( sessionConcurrency ),
+        DEFAULT_SESSION_CONCURRENCY ) ) );
+    cmds.add( String.valueOf( getSessionIdleTimeoutSeconds() ) );
+    return cmds;
+  }
+
+  private int getSessionIdleTimeoutSeconds() {
+    return Const.toInt( environmentSubstitute( sessionIdleTimeout ), DEFAULT_SESSION_IDLE_TIMEOUT );
+  }
+
+  /**
+   * Returns the path of the plugin jar, which holds the session driver
+   */
+  private static String getSessionServerJar() {
+    try {
+      return new File( WarmSessionServer.class.getProtectionDomain().getCodeSource().getLocation().toURI() )
+          .getPath();
+    } catch ( URISyntaxException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Returns the nodes the submission may be routed to, in the configured order
+   *
+   * @throws KettleException
+   *           if a slave server isn't defined
+   */
+  public List<SubmissionNode> getSubmissionNodes() throws KettleException {
+    if ( submissionNodes != null ) {
+      return submissionNodes;
+    }
+    List<SubmissionNode> nodes = new ArrayList<SubmissionNode>();
+    for ( String remoteServer : remoteServers ) {
+      String name = environmentSubstitute( remoteServer );
+      if ( Const.isEmpty( name ) ) {
+        continue;
+      }
+      SlaveServer slaveServer = findSlaveServer( name );
+      if ( slaveServer == null ) {
+        throw new KettleException( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.UnknownSlaveServer",
+            name ) );
+      }
+      nodes.add( new CarteSubmissionNode( slaveServer, getRepository(), getMetaStore() ) );
+    }
+    return nodes;
+  }
+
+  @VisibleForTesting
+  void setSubmissionNodes( List<SubmissionNode> submissionNodes ) {
+    this.submissionNodes = submissionNodes;
+  }
+
+  private SlaveServer findSlaveServer( String name ) {
+    if ( getParentJob() != null && getParentJob().getJobMeta() != null ) {
+      SlaveServer slaveServer = getParentJob().getJobMeta().findSlaveServer( name );
+      if ( slaveServer != null ) {
+        return slaveServer;
+      }
+    }
+    if ( slaveServers != null ) {
+      for ( SlaveServer slaveServer : slaveServers ) {
+        if ( name.equalsIgnoreCase( slaveServer.getName() ) ) {
+          return slaveServer;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the job run on the slave server: a copy of this entry, without remote servers, after START
+   */
+  @VisibleForTesting
+  JobMeta getRemoteJobMeta() {
+    JobEntrySparkSubmit entry = (JobEntrySparkSubmit) clone();
+    entry.setRemoteServers( new ArrayList<String>() );
+    entry.setSubmissionNodes( null );
+
+    JobMeta jobMeta = new JobMeta();
+    jobMeta.setName( DistributedSubmission.JOB_NAME_PREFIX + getName() );
+    JobEntryCopy start = new JobEntryCopy( new JobEntrySpecial( "START", true, false ) );
+    JobEntryCopy submit = new JobEntryCopy( entry );
+    jobMeta.addJobEntry( start );
+    jobMeta.addJobEntry( submit );
+    JobHopMeta hop = new JobHopMeta( start, submit );
+    hop.setUnconditional();
+    jobMeta.addJobHop( hop );
+    return jobMeta;
+  }
+
+  /**
+   * Returns the variables passed to the remote job, internal ones are set by the slave server itself
+   */
+  @VisibleForTesting
+  Map<String, String> getRemoteVariables() {
+    Map<String, String> variables = new HashMap<String, String>();
+    for ( String name : listVariables() ) {
+      if ( !name.startsWith( "Internal." ) ) {
+        variables.put( name, getVariable( name ) );
+      }
+    }
+    return variables;
+  }
+
+  /**
+   * Runs the entry as a job on the least loaded slave server and follows it until it finishes
+   */
+  private Result executeRemotely( Result result ) {
+    final DistributedSubmission submission;
+    try {
+      List<SubmissionNode> nodes = getSubmissionNodes();
+      if ( nodes.isEmpty() ) {
+        throw new KettleException( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.NoRemoteServers" ) );
+      }
+      submission = new DistributedSubmission( log, nodes, REMOTE_POLL_INTERVAL, MAX_REMOTE_POLL_FAILURES );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingRemotely", e.getMessage() ) );
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+
+    final AtomicBoolean finished = new AtomicBoolean( false );
+    // Stop on job stop
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        while ( !getParentJob().isStopped() && !finished.get() ) {
+          try {
+            Thread.sleep( statusPollInterval );
+          } catch ( InterruptedException e ) {
+            return;
+          }
+        }
+        if ( !finished.get() ) {
+          submission.cancel();
+        }
+      }
+    } ).start();
+
+    try {
+      Result remote = submission.run( getRemoteJobMeta(), getRemoteVariables() );
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.RemoteSubmissionFinished",
+          submission.getNode().getName() ) );
+      result.setExitStatus( remote.getExitStatus() );
+      result.setNrErrors( remote.getNrErrors() );
+      result.setResult( remote.getResult() );
+      result.setStopped( remote.isStopped() );
+      if ( remote.getRows() != null ) {
+        result.getRows().addAll( remote.getRows() );
+      }
+    } catch ( Exception e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingRemotely", e.getMessage() ) );
+      logError( Const.getStackTracker( e ) );
+      result.setResult( false );
+    } finally {
+      finished.set( true );
+    }
+    return result;
+  }
+
+  /**
+   * Lets spark-submit return once the driver pod is created and follows the pod through the shared watch of the API
+   * server. Stopping the job deletes the pod.
+   */
+  private Result executeOnKubernetes( Result result, String fingerprint ) {
+    KubernetesApplicationClient client =
+        createKubernetesClient( KubernetesApplicationClient.getApiServerUrl( environmentSubstitute( master ) ) );
+    String podName = getConfigParam( K8S_DRIVER_POD_NAME );
+    if ( Const.isEmpty( podName ) ) {
+      podName = generateDriverPodName();
+      generatedConfParams.add( K8S_DRIVER_POD_NAME + "=" + podName );
+    }
+    generatedConfParams.add( "spark.kubernetes.submission.waitAppCompletion=false" );
+    List<String> cmds = getCmds();
+    logBasic( "Submitting Spark Script" );
+    if ( log.isDetailed() ) {
+      logDetailed( cmds.toString() );
+    }
+
+    // watched before the pod exists, so none of its changes is missed
+    KubernetesPodWatch watch = client.getWatch();
+    if ( blockExecution ) {
+      watch.watch( podName );
+    }
+    try {
+      SparkSubmission submission = createSubmission( environmentSubstitute( master ), cmds );
+      proc = submission.getProcess();
+      submission.start();
+      int exitCode = submission.waitFor();
+      if ( exitCode != 0 || !blockExecution ) {
+        if ( exitCode != 0 && log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ExitStatus", exitCode ) );
+        }
+        result.setExitStatus( exitCode );
+        result.setNrErrors( exitCode == 0 ? 0 : 1 );
+        result.setResult( exitCode == 0 );
+        return result;
+      }
+
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.FollowingDriverPod", podName ) );
+      long seenDeadline = System.currentTimeMillis() + podSeenTimeout;
+      KettleException reported = null;
+      ApplicationStatus status = watch.awaitFinal( podName, statusPollInterval );
+      while ( status == null || !status.isFinal() ) {
+        if ( getParentJob().isStopped() ) {
+          logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.DeletingDriverPod", podName ) );
+          client.killApplication( podName );
+          watch.awaitFinal( podName, statusPollInterval );
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+        KettleException error = watch.getLastError();
+        if ( error != null && error != reported ) {
+          logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.WatchingDriverPod", podName, error
+              .getMessage() ) );
+          reported = error;
+        }
+        if ( watch.getFailures() >= MAX_WATCH_FAILURES ) {
+          logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.LostDriverPod", podName ) );
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+        if ( status == null && System.currentTimeMillis() > seenDeadline ) {
+          logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.DriverPodNotSeen", podName,
+              podSeenTimeout / 1000 ) );
+          result.setNrErrors( 1 );
+          result.setResult( false );
+          return result;
+        }
+        status = watch.awaitFinal( podName, statusPollInterval );
+      }
+
+      boolean succeeded = status.isSucceeded();
+      if ( log.isDetailed() ) {
+        logDetailed( "Application finished: " + status );
+      }
+      result.setExitStatus( succeeded ? 0 : 1 );
+      result.setNrErrors( succeeded ? 0 : 1 );
+      result.setResult( succeeded );
+      if ( succeeded ) {
+        recordFingerprint( fingerprint );
+      }
+    } catch ( Exception e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingScript", e.getMessage() ) );
+      logError( Const.getStackTracker( e ) );
+      result.setResult( false );
+    } finally {
+      if ( blockExecution ) {
+        watch.unwatch( podName );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs the application under a streaming supervisor until it finishes, fails for good or the job is stopped
+   */
+  private Result executeSupervised( Result result ) {
+    final List<String> cmds = getCmds();
+    logBasic( "Submitting Spark Script" );
+    if ( log.isDetailed() ) {
+      logDetailed( cmds.toString() );
+    }
+    setResultVariable( STREAMING_RESTARTS_VARIABLE, "0" );
+    setResultVariable( STREAMING_LAGGING_VARIABLE, "N" );
+
+    int restarts = Const.toInt( environmentSubstitute( maxRestarts ), DEFAULT_MAX_RESTARTS );
+    long delay = Const.toInt( environmentSubstitute( restartDelay ), DEFAULT_RESTART_DELAY ) * 1000L;
+    int lag = Const.toInt( environmentSubstitute( lagBatches ), DEFAULT_LAG_BATCHES );
+    final StreamingSupervisor supervisor = new StreamingSupervisor( log, new StreamingSupervisor.Launcher() {
+      @Override
+      public SparkSubmission launch() throws KettleException {
+        try {
+          SparkSubmission submission = createSubmission( environmentSubstitute( master ), cmds );
+          proc = submission.getProcess();
+          return submission;
+        } catch ( IOException e ) {
+          throw new KettleException( e );
+        }
+      }
+    }, new StreamingSupervisor.Listener() {
+      @Override
+      public void onProgress( StreamingProgress progress ) {
+        setResultVariable( STREAMING_INPUT_RATE_VARIABLE, String.valueOf( progress.getInputRowsPerSecond() ) );
+        setResultVariable( STREAMING_PROCESSED_RATE_VARIABLE, String.valueOf( progress
+            .getProcessedRowsPerSecond() ) );
+        setResultVariable( STREAMING_BATCH_DURATION_VARIABLE, String.valueOf( progress.getBatchDurationMs() ) );
+        setResultVariable( STREAMING_STATE_MEMORY_VARIABLE, String.valueOf( progress.getStateMemoryBytes() ) );
+        setResultVariable( STREAMING_LAGGING_VARIABLE, progress.isLagging() ? "Y" : "N" );
+      }
+
+      @Override
+      public void onLag( StreamingProgress progress, int batches ) {
+        logMinimal( BaseMessages.getString( PKG, "JobEntrySparkSubmit.StreamingLag", batches, progress
+            .getInputRowsPerSecond(), progress.getProcessedRowsPerSecond() ) );
+      }
+
+      @Override
+      public void onRestart( int restart, int exitCode, long delayMs ) {
+        setResultVariable( STREAMING_RESTARTS_VARIABLE, String.valueOf( restart ) );
+        logMinimal( BaseMessages.getString( PKG, "JobEntrySparkSubmit.StreamingRestart", exitCode, delayMs / 1000,
+            restart ) );
+      }
+    }, getApplicationClient(), restarts, delay, MAX_RESTART_DELAY, lag, PROGRESS_SUMMARY_INTERVAL );
+
+    final AtomicBoolean finished = new AtomicBoolean( false );
+    // Stop on job stop
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        while ( !getParentJob().isStopped() && !finished.get() ) {
+          try {
+            Thread.sleep( statusPollInterval );
+          } catch ( InterruptedException e ) {
+            return;
+          }
+        }
+        if ( !finished.get() ) {
+          supervisor.stop();
+        }
+      }
+    } ).start();
+
+    try {
+      int exitCode = supervisor.run();
+      result.setExitStatus( exitCode );
+      result.setNrErrors( exitCode == 0 ? 0 : 1 );
+      result.setResult( exitCode == 0 );
+    } catch ( Exception e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingScript", e.getMessage() ) );
+      logError( Const.getStackTracker( e ) );
+      result.setResult( false );
+    } finally {
+      finished.set( true );
+    }
+    return result;
+  }
+
+  /**
+   * Runs the class inside the warm session shared by entries submitting the same jar with the same configuration
+   */
+  private Result executeInSession( final Result result, String fingerprint ) {
+    final List<String> sessionCmds = getSessionCmds();
+    final String group = getParentJob().getContainerObjectId() + "/" + getName();
+    final String resolvedClassName = environmentSubstitute( className );
+    final List<String> appArgs = getAppArgs();
+
+    final WarmSession session;
+    try {
+      session = WarmSessionPool.acquire( SubmissionStore.key( sessionCmds ), new WarmSessionPool.Launcher() {
+        @Override
+        public WarmSession launch() throws KettleException {
+          String token = UUID.randomUUID().toString();
+          // the token goes right after the plugin jar, before the session settings
+          List<String> cmds = new ArrayList<String>( sessionCmds );
+          cmds.add( cmds.size() - 2, token );
+          logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.StartingSession" ) );
+          try {
+            return WarmSession.launch( createSubmission( "session", cmds ), token, SESSION_START_TIMEOUT,
+                getSessionIdleTimeoutSeconds() * 1000L );
+          } catch ( IOException e ) {
+            throw new KettleException( e );
+          }
+        }
+      } );
+    } catch ( KettleException e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.StartingSession", e.getMessage() ) );
+      result.setResult( false );
+      return result;
+    }
+
+    logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.RunningInSession", resolvedClassName,
+        session.getPort() ) );
+    final AtomicBoolean runFinished = new AtomicBoolean( false );
+    final AtomicBoolean succeeded = new AtomicBoolean( false );
+    Runnable run = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          session.run( group, resolvedClassName, appArgs );
+          succeeded.set( true );
+        } catch ( KettleException e ) {
+          logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SessionRunFailed", e.getMessage() ) );
+        } finally {
+          runFinished.set( true );
+          session.release();
+        }
+      }
+    };
+
+    if ( !blockExecution ) {
+      new Thread( run, "warm-session-run-" + group ).start();
+      result.setExitStatus( 0 );
+      result.setResult( true );
+      return result;
+    }
+
+    // Cancel the run on job stop
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        while ( !getParentJob().isStopped() && !runFinished.get() ) {
+          try {
+            Thread.sleep( statusPollInterval );
+          } catch ( InterruptedException e ) {
+            return;
+          }
+        }
+        if ( !runFinished.get() ) {
+          session.cancel( group );
+        }
+      }
+    } ).start();
+    run.run();
+
+    result.setExitStatus( succeeded.get() ? 0 : 1 );
+    result.setNrErrors( succeeded.get() ? 0 : 1 );
+    result.setResult( succeeded.get() );
+    if ( succeeded.get() ) {
+      recordFingerprint( fingerprint );
+    }
+    return result;
+  }
+
+  /**
+   * Runs the micro-batch given as a single application and sets outcomes of its items
+   */
+  private void runBatch( List<String> baseCmds, boolean blocking, final List<BatchItem> items ) throws Exception {
+    File manifest = File.createTempFile( "spark-batch-", ".json" );
+    try {
+      BatchManifest.write( manifest, items );
+      List<String> cmds = getBatchCmds( baseCmds, manifest );
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SubmittingBatch", items.size() ) );
+      if ( log.isDetailed() ) {
+        logDetailed( cmds.toString() );
+      }
+
+      final SparkSubmission submission = createSubmission( "batch", cmds );
+      submission.addLineListener( new PatternMatchingStreamLogger.LineListener() {
+        @Override
+        public void onLine( String line ) {
+          BatchManifest.applyOutcome( line, items );
+        }
+      } );
+      if ( !blocking ) {
+        submission.addPatternMatchedListener( new PatternMatchingStreamLogger.PatternMatchedListener() {
+          @Override
+          public void onPatternFound( String pattern ) {
+            log.logDebug( "Found match in output, considering batch submitted, stopping spark-submit" );
+            submission.detach();
+          }
+        } );
+      }
+      submission.start();
+      int exitCode = submission.waitFor();
+      boolean succeeded = exitCode == 0 || ( !blocking && submission.isSubmitted() );
+      for ( BatchItem item : items ) {
+        item.complete( succeeded, succeeded ? null : BaseMessages.getString( PKG,
+            "JobEntrySparkSubmit.ExitStatus", exitCode ) );
+      }
+    } finally {
+      if ( !manifest.delete() ) {
+        manifest.deleteOnExit();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  protected boolean validate ( ) {
+    boolean valid = true;
+    if ( Const.isEmpty( scriptPath ) || !new File( environmentSubstitute( scriptPath ) ).exists() ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SparkSubmitPathInvalid" ) );
+      valid = false;
+    }
+
+    if ( Const.isEmpty( master ) ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.MasterURLEmpty" ) );
+      valid = false;
+    }
+    if ( Const.isEmpty( jar ) ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.JarPathEmpty" ) );
+      valid = false;
+    }
+    if ( sharedSession && Const.isEmpty( className ) ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SessionClassNameEmpty" ) );
+      valid = false;
+    }
+    if ( sharedSession && isPythonApplication() ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SessionPythonApplication" ) );
+      valid = false;
+    }
+
+    return valid;
+  }
+
+  /**
+   * Starts spark-submit process passing job variables as environment variables
+   *
+   * @param cmds
+   *          spark-submit command
+   * @return started process
+   */
+  @VisibleForTesting
+  protected Process startProcess( List<String> cmds ) throws IOException {
+    // Build the environment variable list...
+    ProcessBuilder procBuilder = new ProcessBuilder( cmds );
+    Map<String, String> env = procBuilder.environment();
+    String[] variables = listVariables();
+    for ( String variable : variables ) {
+      env.put( variable, getVariable( variable ) );
+    }
+    if ( pythonSite != null ) {
+      // a driver running in client mode reads the environment locally
+      String pythonPath = env.get( "PYTHONPATH" );
+      env.put( "PYTHONPATH", pythonSite.getAbsolutePath() + ( Const.isEmpty( pythonPath ) ? ""
+          : File.pathSeparator + pythonPath ) );
+    }
+    return procBuilder.start();
+  }
+
+  private SparkSubmission createSubmission( String name, List<String> cmds ) throws IOException {
+    SparkSubmission submission = new SparkSubmission( name, log, startProcess( cmds ), JOB_SUBMITTED_PATTERNS );
+    if ( resultChannel != null ) {
+      submission.addLineFilter( resultChannel );
+    }
+    submission.addProgressListener( new ProgressTracker.ProgressListener() {
+      @Override
+      public void onProgress( ApplicationProgress newProgress ) {
+        updateProgress( newProgress );
+      }
+    } );
+    for ( SubmissionEventBus.Listener listener : eventListeners ) {
+      eventSubscriptions.add( submission.getEvents().subscribe( listener ) );
+    }
+    return submission;
+  }
+
+  /**
+   * Publishes progress of the application as variables, the log and to the listeners
+   */
+  private void updateProgress( ApplicationProgress newProgress ) {
+    ApplicationProgress previous = progress;
+    progress = newProgress;
+    setResultVariable( APPLICATION_STATE_VARIABLE, newProgress.getState() == null ? "" : newProgress.getState() );
+    setResultVariable( PROGRESS_PERCENT_VARIABLE, String.valueOf( newProgress.getPercentComplete() ) );
+    setResultVariable( ACTIVE_STAGES_VARIABLE, String.valueOf( newProgress.getActiveStages().size() ) );
+    setResultVariable( ACTIVE_TASKS_VARIABLE, String.valueOf( newProgress.getActiveTasks() ) );
+    if ( previous == null || newProgress.getState() != null && !newProgress.getState().equals( previous.getState() ) ) {
+      logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ApplicationProgress", newProgress ) );
+    } else if ( log.isDetailed()
+        && newProgress.getPercentComplete() / 10 != previous.getPercentComplete() / 10 ) {
+      logDetailed( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ApplicationProgress", newProgress ) );
+    }
+    for ( ProgressTracker.ProgressListener listener : progressListeners ) {
+      listener.onProgress( newProgress );
+    }
+  }
+
+  /**
+   * Returns the latest progress of the application submitted by the current run
+   *
+   * @return progress or null if spark-submit hasn't reported any yet
+   */
+  public ApplicationProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Registers a listener notified whenever spark-submit reports progress of the application
+   */
+  public void addProgressListener( ProgressTracker.ProgressListener listener ) {
+    progressListeners.add( listener );
+  }
+
+  public void removeProgressListener( ProgressTracker.ProgressListener listener ) {
+    progressListeners.remove( listener );
+  }
+
+  /**
+   * Registers a listener notified about lifecycle events of every spark-submit process the entry starts. Listeners
+   * are called on a shared dispatcher thread, never on the threads reading spark-submit output.
+   */
+  public void addSubmissionEventListener( SubmissionEventBus.Listener listener ) {
+    eventListeners.add( listener );
+  }
+
+  public void removeSubmissionEventListener( SubmissionEventBus.Listener listener ) {
+    eventListeners.remove( listener );
+  }
+
+  /**
+   * Executes the spark-submit command and returns a Result
+   *
+   * @return The Result of the operation
+   */
+  public Result execute( Result result, int nr ) {
+    try {
+      return executeSubmission( result );
+    } finally {
+      // runs failing before FINISHED is published would keep their listeners subscribed
+      for ( SubmissionEventBus.Subscription subscription : eventSubscriptions ) {
+        subscription.closeWhenDrained();
+      }
+      eventSubscriptions.clear();
+    }
+  }
+
+  private Result executeSubmission( Result result ) {
+
+    if ( !validate() ) {
+      result.setResult( false );
+      return result;
+    }
+
+    if ( !remoteServers.isEmpty() ) {
+      return executeRemotely( result );
+    }
+
+    progress = null;
+    final long started = System.currentTimeMillis();
+
+    try {
+      TuningProfile profile = resolveTuningProfile( getMetaStore() );
+      if ( profile != null ) {
+        logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.UsingTuningProfile", profile.getName() ) );
+      }
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ResolvingTuningProfile", e.getMessage() ) );
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+
+    boolean python = isPythonApplication();
+    generatedConfParams = registerKryo && !python ? getKryoConfParams() : new ArrayList<String>();
+    submittedJar = null;
+    submittedArchive = null;
+    pythonSite = null;
+
+    final String fingerprint = memoize ? computeFingerprint() : null;
+    if ( memoize ) {
+      try {
+        boolean cached = fingerprint != null && fingerprint.equals( getFingerprintStore().getFingerprint(
+            getEntryKey() ) );
+        setResultVariable( CACHED_VARIABLE, cached ? "Y" : "N" );
+        if ( cached ) {
+          logBasic( BaseMessages.getString( PKG, "JobEntrySparkSubmit.InputsUnchanged" ) );
+          result.setExitStatus( 0 );
+          result.setResult( true );
+          return result;
+        }
+      } catch ( KettleException e ) {
+        logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.ComputingFingerprint", e.getMessage() ) );
+      }
+    }
+
+    // before the preflight check, which looks into the resolved jars
+    packagesResolved = false;
+    if ( cachePackages ) {
+      resolvePackages();
+    }
+
+    if ( preflight && !python && !preflightJar() ) {
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+
+    try {
+      generatedConfParams.addAll( getPartitionConfParams() );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.MeasuringInputs", e.getMessage() ) );
+    }
+
+    if ( thinJar && !python ) {
+      submittedJar = getThinJar();
+    }
+
+    if ( !Const.isEmpty( pythonRequirements ) ) {
+      try {
+        submittedArchive = getPythonArchive();
+        generatedConfParams.addAll( getPythonConfParams() );
+      } catch ( KettleException e ) {
+        logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.BuildingPythonEnvironment", e
+            .getMessage() ) );
+        result.setNrErrors( 1 );
+        result.setResult( false );
+        return result;
+      }
+    }
+
+    if ( microBatch ) {
+      return executeInBatch( result, fingerprint );
+    }
+    if ( sharedSession ) {
+      return executeInSession( result, fingerprint );
+    }
+    if ( supervise ) {
+      return executeSupervised( result );
+    }
+    if ( isKubernetesCluster() ) {
+      return executeOnKubernetes( result, fingerprint );
+    }
+
+    final SparkApplicationClient client = getApplicationClient();
+    final String submissionKey = reattachRunning ? getSubmissionKey( getCmds() ) : null;
+    if ( submissionKey != null ) {
+      String runningApplicationId = findRunningApplication( submissionKey, client );
+      if ( runningApplicationId != null ) {
+        return reattach( result, submissionKey, runningApplicationId, client );
+      }
+    }
+
+    String queue = selectQueue();
+    final List<String> cmds = queue == null ? getCmds() : new HedgeTarget( null, queue ).apply( getCmds() );
+
+    try {
+      if ( !admitOnHost() ) {
+        result.setNrErrors( 1 );
+        result.setResult( false );
+        return result;
+      }
+    } catch ( InterruptedException e ) {
+      result.setNrErrors( 1 );
+      result.setResult( false );
+      return result;
+    }
+
+    logBasic( "Submitting Spark Script" );
+
+    if ( log.isDetailed() ) {
+      logDetailed( cmds.toString() );
+    }
+
+    final AtomicBoolean processFinished = new AtomicBoolean( false );
+    resultChannel = createResultChannel();
+    try {
+      if ( resultChannel != null ) {
+        resultChannel.start();
+      }
+      final List<HedgeTarget> targets = getHedgeTargets();
+      final long timeout = Const.toInt( environmentSubstitute( hedgeTimeout ), 0 ) * 1000L;
+      final HedgedSubmission hedge;
+      if ( timeout > 0 && targets.size() > 1 ) {
+        hedge = new HedgedSubmission( log, new HedgedSubmission.Launcher() {
+          @Override
+          public SparkSubmission launch( HedgeTarget target ) throws KettleException {
+            List<String> targetCmds = target.apply( cmds );
+            if ( log.isDetailed() ) {
+              logDetailed( targetCmds.toString() );
+            }
+            try {
+              SparkSubmission submission = createSubmission( target.toString(), targetCmds );
+              submission.start();
+              return submission;
+            } catch ( IOException e ) {
+              throw new KettleException( e );
+            }
+          }
+        }, targets, timeout, client );
+      } else {
+        hedge = null;
+      }
+
+      // Stop on job stop
+      new Thread( new Runnable() {
+        @Override
+        public void run() {
+          while ( !getParentJob().isStopped() && !processFinished.get() ) {
+            try {
+              Thread.sleep( 5000 );
+            } catch ( InterruptedException e ) {
+              e.printStackTrace();
+            }
+          }
+          if ( hedge != null ) {
+            hedge.cancel();
+          }
+          if ( proc != null ) {
+            proc.destroy();
+          }
+        }
+      } ).start();
+
+      final SparkSubmission submission;
+      if ( hedge != null ) {
+        submission = hedge.run();
+        proc = submission.getProcess();
+        if ( submissionKey != null && submission.getApplicationId() != null ) {
+          recordSubmission( submissionKey, submission.getApplicationId() );
+        }
+        // application is running, there is nothing to hedge anymore
+        if ( !blockExecution && ApplicationReportParser.STATE_RUNNING.equals( submission.getState() ) ) {
+          log.logDebug( "Application is running, stopping spark-submit" );
+          submission.detach();
+        }
+      } else {
+        submission = createSubmission( environmentSubstitute( master ), cmds );
+        proc = submission.getProcess();
+        if ( !blockExecution ) {
+          submission.addPatternMatchedListener( new PatternMatchingStreamLogger.PatternMatchedListener() {
+            @Override
+            public void onPatternFound( String pattern ) {
+              log.logDebug( "Found match in output, considering job submitted, stopping spark-submit" );
+              submission.detach();
+            }
+          } );
+        }
+
+        if ( submissionKey != null ) {
+          submission.addStateListener( new SparkSubmission.StateListener() {
+            @Override
+            public void onStateChanged( SparkSubmission source, String oldState, String newState ) {
+              if ( oldState == null && source.getApplicationId() != null ) {
+                recordSubmission( submissionKey, source.getApplicationId() );
+              }
+            }
+          } );
+        }
+
+        // kick them off
+        submission.start();
+      }
+
+      SubmissionWatchdog.Watch watch = watchSubmission( submission, client, started );
+      ProcessTreeSampler sampler = sampleSubmission( submission );
+      int exitCode;
+      try {
+        exitCode = submission.waitFor();
+      } finally {
+        if ( watch != null ) {
+          watch.cancel();
+        }
+        if ( sampler != null ) {
+          sampler.stop();
+        }
+      }
+      processFinished.set( true );
+      if ( resultChannel != null ) {
+        result.setRows( resultChannel.close() );
+      }
+      recordSamples( sampler );
+
+      if ( log.isDetailed() ) {
+        logDetailed( "Spark submit finished" );
+      }
+
+      // application is over unless spark-submit was stopped
+      if ( submissionKey != null && blockExecution && !getParentJob().isStopped() ) {
+        getSubmissionStore().remove( submissionKey );
+      }
+      if ( blockExecution ) {
+        recordResourceUsage( client, submission.getApplicationId() );
+      }
+
+      // What's the exit status?
+      if ( !blockExecution && submission.isSubmitted() ) {
+        exitCode = 0;
+      }
+      if ( timeoutMessage != null ) {
+        result.setLogText( timeoutMessage );
+        exitCode = exitCode == 0 ? 1 : exitCode;
+      }
+
+      result.setExitStatus( exitCode );
+      if ( exitCode != 0 ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ExitStatus", result.getExitStatus() ) );
+        }
+
+        result.setNrErrors( 1 );
+      }
+
+      result.setResult( exitCode == 0 );
+
+      if ( exitCode == 0 && blockExecution ) {
+        recordFingerprint( fingerprint );
+      }
+    } catch ( Exception e ) {
+      result.setNrErrors( 1 );
+      logError( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Error.SubmittingScript", e.getMessage() ) );
+      logError( Const.getStackTracker( e ) );
+      result.setResult( false );
+    } finally {
+      processFinished.set( true );
+      if ( resultChannel != null ) {
+        resultChannel.stop();
+        resultChannel = null;
+      }
+      if ( hostReservation != null ) {
+        hostReservation.release();
+        hostReservation = null;
+      }
+    }
+
+    return result;
+  }
+
+  public boolean evaluates() {
+    return true;
+  }
+
+  /**
+   * Checks that the minimum options have been provided and reports Spark configuration performance anti-patterns.
+   */
+  @Override
+  public void check( List<CheckResultInterface> remarks, JobMeta jobMeta, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    andValidator().validate( this, "scriptPath", remarks, putValidators( notBlankValidator() ) );
+    andValidator().validate( this, "scriptPath", remarks, putValidators( fileExistsValidator() ) );
+    andValidator().validate( this, "master", remarks, putValidators( notBlankValidator() ) );
+    andValidator().validate( this, "jar", remarks, putValidators( notBlankValidator() ) );
+    // Python applications have no main class
+    if ( !isPythonApplication() ) {
+      andValidator().validate( this, "className", remarks, putValidators( notBlankValidator() ) );
+    }
+    if ( memoize && getDeclaredInputPaths().isEmpty() ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+          "JobEntrySparkSubmit.MemoizeWithoutInputs" ), this ) );
+    }
+    TuningProfile profile = null;
+    try {
+      profile = findTuningProfile( metaStore != null ? metaStore : getMetaStore() );
+    } catch ( KettleException e ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+          "JobEntrySparkSubmit.Error.ResolvingTuningProfile", e.getMessage() ), this ) );
+    }
+    // rules see the profile settings, on a copy so a running job keeps the profile resolved for it
+    JobEntrySparkSubmit checked = (JobEntrySparkSubmit) clone();
+    checked.resolvedProfile = profile;
+    PerformanceRules.check( checked, remarks );
+  }
+
+  public static void main( String[] args ) {
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    new JobEntrySparkSubmit().check( remarks, null, new Variables(), null, null );
+    System.out.printf( "Remarks: %s\n", remarks );
   }
 
   @Override
   public void afterExecution( Job arg0, JobEntryCopy arg1, JobEntryInterface arg2, Result arg3 ) {
-    proc.destroy();
+    if ( proc != null ) {
+      proc.destroy();
+    }
   }
 
   @Override
@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Finds the classes of an application jar worth registering with Kryo by reading their bytecode, no class is loaded.
+ * <p>
+ * Classes driving Spark (referring to any <code>org.apache.spark</code> type) and closures (Scala anonymous functions
+ * and implementations of Spark Java function interfaces) are scanned for the application types they use. Those types
+ * and, transitively, the application types of their fields are registered when they are serializable, concrete and
+ * neither closures nor Scala companion objects.
+ */
+public class KryoRegistrationScanner {
+  private static final String SPARK_PACKAGE = "org/apache/spark/";
+  private static final String SPARK_FUNCTION_PACKAGE = "org/apache/spark/api/java/function/";
+  private static final Set<String> SERIALIZABLE_TYPES = new HashSet<String>( Arrays.asList(
+      "java/io/Serializable", "scala/Serializable", "scala/Product" ) );
+
+  private Map<String, ClassFileInfo> classes = new HashMap<String, ClassFileInfo>();
+
+  /**
+   * Scans the jar given
+   *
+   * @param jar
+   *          jar content
+   * @return binary names of the classes to register, sorted
+   */
+  public static List<String> scan( InputStream jar ) throws IOException {
+    KryoRegistrationScanner scanner = new KryoRegistrationScanner();
+    ZipInputStream zip = new ZipInputStream( jar );
+    ZipEntry entry;
+    while ( ( entry = zip.getNextEntry() ) != null ) {
+      String name = entry.getName();
+      if ( !entry.isDirectory() && name.endsWith( ".class" ) && !name.startsWith( "META-INF/" ) ) {
+        ClassFileInfo info = ClassFileInfo.read( zip );
+        scanner.classes.put( info.getName(), info );
+      }
+    }
+    return scanner.getRegistrations();
+  }
+
+  private List<String> getRegistrations() {
+    Deque<String> pending = new ArrayDeque<String>();
+    for ( ClassFileInfo info : classes.values() ) {
+      if ( isClosure( info ) || usesSpark( info ) ) {
+        pending.addAll( info.getReferencedTypes() );
+      }
+    }
+
+    Set<String> visited = new HashSet<String>();
+    List<String> registrations = new ArrayList<String>();
+    while ( !pending.isEmpty() ) {
+      String name = pending.pop();
+      ClassFileInfo info = classes.get( name );
+      if ( info == null || !visited.add( name ) || isClosure( info ) || usesSpark( info ) ) {
+        continue;
+      }
+      if ( isSerializable( name, new HashSet<String>() ) ) {
+        if ( !info.isInterface() && !info.isAbstract() && !info.isSynthetic() && !name.endsWith( "$" ) ) {
+          registrations.add( info.getClassName() );
+        }
+        pending.addAll( info.getFieldTypes() );
+      }
+    }
+    Collections.sort( registrations );
+    return registrations;
+  }
+
+  private boolean isSerializable( String name, Set<String> seen ) {
+    if ( SERIALIZABLE_TYPES.contains( name ) ) {
+      return true;
+    }
+    ClassFileInfo info = classes.get( name );
+    if ( info == null || !seen.add( name ) ) {
+      return false;
+    }
+    for ( String type : info.getInterfaces() ) {
+      if ( isSerializable( type, seen ) ) {
+        return true;
+      }
+    }
+    return info.getSuperName() != null && isSerializable( info.getSuperName(), seen );
+  }
+
+  private static boolean isClosure( ClassFileInfo info ) {
+    String name = info.getName();
+    if ( name.contains( "$$anonfun" ) || name.contains( "$$Lambda" ) ) {
+      return true;
+    }
+    String superName = info.getSuperName();
+    if ( superName != null && superName.startsWith( "scala/runtime/Abstract" ) && superName.contains( "Function" ) ) {
+      return true;
+    }
+    for ( String type : info.getInterfaces() ) {
+      if ( type.startsWith( SPARK_FUNCTION_PACKAGE ) || type.startsWith( "scala/Function" ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean usesSpark( ClassFileInfo info ) {
+    for ( String type : info.getReferencedTypes() ) {
+      if ( type.startsWith( SPARK_PACKAGE ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Remembers Kryo registrations found in application jars by jar digest, so every jar is scanned only once.
+ */
+public class KryoRegistrationStore {
+  private static final String CLASSES = "classes";
+  private static final String SCANNED = "scanned";
+
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder registrations are kept in
+   */
+  public KryoRegistrationStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static KryoRegistrationStore getDefault() {
+    return new KryoRegistrationStore( StateDirectory.get( "kryo" ) );
+  }
+
+  /**
+   * Returns classes found in the jar with the digest given
+   *
+   * @return class names or null if the jar wasn't scanned yet
+   */
+  public List<String> getClasses( String jarDigest ) throws KettleException {
+    File file = getFile( jarDigest );
+    try {
+      Properties record = StateDirectory.readProperties( file );
+      if ( record == null ) {
+        return null;
+      }
+      String classes = record.getProperty( CLASSES, "" );
+      return Const.isEmpty( classes ) ? new ArrayList<String>() : new ArrayList<String>( Arrays.asList( classes
+          .split( "," ) ) );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read Kryo registrations " + file, e );
+    }
+  }
+
+  /**
+   * Records classes found in the jar with the digest given
+   */
+  public void put( String jarDigest, List<String> classes ) throws KettleException {
+    StringBuilder value = new StringBuilder();
+    for ( String className : classes ) {
+      if ( value.length() > 0 ) {
+        value.append( ',' );
+      }
+      value.append( className );
+    }
+    Properties record = new Properties();
+    record.setProperty( CLASSES, value.toString() );
+    record.setProperty( SCANNED, String.valueOf( System.currentTimeMillis() ) );
+    File file = getFile( jarDigest );
+    try {
+      StateDirectory.writeProperties( file, record );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write Kryo registrations " + file, e );
+    }
+  }
+
+  private File getFile( String jarDigest ) {
+    return new File( directory, jarDigest + ".properties" );
+  }
+}
@@ -0,0 +1,225 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Application client for Spark applications running in cluster mode on Kubernetes, the application is identified by
+ * the name of its driver pod. Pod phases are mapped to YARN application states: Pending to ACCEPTED, Running to
+ * RUNNING, Succeeded to FINISHED, Failed to FAILED and a deleted pod to KILLED.
+ * <p>
+ * Status of the pods being watched is served from the {@link KubernetesPodWatch} shared by all the clients of the
+ * same API server and namespace, so following many applications costs a single connection.
+ */
+public class KubernetesApplicationClient implements SparkApplicationClient {
+  public static final String MASTER_PREFIX = "k8s://";
+  public static final String PHASE_PENDING = "Pending";
+  public static final String PHASE_RUNNING = "Running";
+  public static final String PHASE_SUCCEEDED = "Succeeded";
+  public static final String PHASE_FAILED = "Failed";
+
+  private static final int TIMEOUT = 10000;
+
+  private String apiServerUrl;
+  private String namespace;
+  private String token;
+
+  /**
+   * @param apiServerUrl
+   *          API server address, e.g. https://k8s-host:6443
+   * @param namespace
+   *          namespace the driver pods run in
+   * @param token
+   *          bearer token, null to connect without one
+   */
+  public KubernetesApplicationClient( String apiServerUrl, String namespace, String token ) {
+    this.apiServerUrl = apiServerUrl.endsWith( "/" ) ? apiServerUrl.substring( 0, apiServerUrl.length() - 1 )
+        : apiServerUrl;
+    this.namespace = namespace;
+    this.token = token;
+  }
+
+  /**
+   * Returns the API server address of a Spark master URL, which defaults to https like spark-submit does
+   *
+   * @param master
+   *          master URL, e.g. k8s://https://k8s-host:6443
+   * @return address or null if master isn't a Kubernetes one
+   */
+  public static String getApiServerUrl( String master ) {
+    if ( master == null || !master.startsWith( MASTER_PREFIX ) ) {
+      return null;
+    }
+    String url = master.substring( MASTER_PREFIX.length() );
+    return url.contains( "://" ) ? url : "https://" + url;
+  }
+
+  public String getApiServerUrl() {
+    return apiServerUrl;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  String getToken() {
+    return token;
+  }
+
+  /**
+   * Returns the watch following the driver pods of the namespace
+   */
+  public KubernetesPodWatch getWatch() {
+    return KubernetesPodWatch.get( this );
+  }
+
+  @Override
+  public ApplicationStatus getApplicationStatus( String podName ) throws KettleException {
+    ApplicationStatus status = getWatch().getStatus( podName );
+    if ( status != null ) {
+      return status;
+    }
+    JSONObject pod = getJson( getPodsPath() + "/" + podName );
+    return pod == null ? null : toStatus( pod, false );
+  }
+
+  /**
+   * Deletes the driver pod, the application stops with it
+   */
+  @Override
+  public void killApplication( String podName ) throws KettleException {
+    try {
+      HttpURLConnection connection = openConnection( getPodsPath() + "/" + podName, TIMEOUT );
+      connection.setRequestMethod( "DELETE" );
+      int code = connection.getResponseCode();
+      connection.disconnect();
+      if ( code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_ACCEPTED
+          && code != HttpURLConnection.HTTP_NOT_FOUND ) {
+        throw new KettleException( "API server responded with HTTP " + code + " to delete request for " + podName );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to delete driver pod " + podName, e );
+    }
+  }
+
+  /**
+   * Returns path of the pods collection of the namespace
+   */
+  String getPodsPath() {
+    return "/api/v1/namespaces/" + namespace + "/pods";
+  }
+
+  /**
+   * Maps the pod to the status of the application it drives
+   *
+   * @param deleted
+   *          if the pod was deleted
+   */
+  static ApplicationStatus toStatus( JSONObject pod, boolean deleted ) {
+    String name = getString( getObject( pod, "metadata" ), "name" );
+    String phase = getString( getObject( pod, "status" ), "phase" );
+    if ( PHASE_SUCCEEDED.equals( phase ) ) {
+      return new ApplicationStatus( name, ApplicationReportParser.STATE_FINISHED,
+          ApplicationStatus.FINAL_STATUS_SUCCEEDED );
+    }
+    if ( PHASE_FAILED.equals( phase ) ) {
+      return new ApplicationStatus( name, ApplicationReportParser.STATE_FAILED, "FAILED" );
+    }
+    if ( deleted ) {
+      return new ApplicationStatus( name, ApplicationReportParser.STATE_KILLED, "KILLED" );
+    }
+    if ( PHASE_RUNNING.equals( phase ) ) {
+      return new ApplicationStatus( name, ApplicationReportParser.STATE_RUNNING, null );
+    }
+    return new ApplicationStatus( name, PHASE_PENDING.equals( phase ) ? ApplicationReportParser.STATE_ACCEPTED
+        : phase, null );
+  }
+
+  static JSONObject getObject( JSONObject parent, String key ) {
+    Object value = parent == null ? null : parent.get( key );
+    return value instanceof JSONObject ? (JSONObject) value : null;
+  }
+
+  static String getString( JSONObject parent, String key ) {
+    Object value = parent == null ? null : parent.get( key );
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Requests JSON document from the API server
+   *
+   * @return document or null if the resource doesn't exist
+   */
+  JSONObject getJson( String path ) throws KettleException {
+    try {
+      HttpURLConnection connection = openConnection( path, TIMEOUT );
+      try {
+        int code = connection.getResponseCode();
+        if ( code == HttpURLConnection.HTTP_NOT_FOUND ) {
+          return null;
+        }
+        if ( code != HttpURLConnection.HTTP_OK ) {
+          throw new KettleException( "API server responded with HTTP " + code + " to " + path );
+        }
+        InputStream is = connection.getInputStream();
+        try {
+          Object json = new JSONParser().parse( new InputStreamReader( is, "UTF-8" ) );
+          if ( !( json instanceof JSONObject ) ) {
+            throw new KettleException( "Unexpected response from API server to " + path );
+          }
+          return (JSONObject) json;
+        } finally {
+          is.close();
+        }
+      } finally {
+        connection.disconnect();
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to request " + path + " from API server", e );
+    } catch ( ParseException e ) {
+      throw new KettleException( "Unable to parse API server response to " + path, e );
+    }
+  }
+
+  HttpURLConnection openConnection( String path, int readTimeout ) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL( apiServerUrl + path ).openConnection();
+    connection.setConnectTimeout( TIMEOUT );
+    connection.setReadTimeout( readTimeout );
+    connection.setRequestProperty( "Accept", "application/json" );
+    if ( token != null ) {
+      connection.setRequestProperty( "Authorization", "Bearer " + token );
+    }
+    return connection;
+  }
+}
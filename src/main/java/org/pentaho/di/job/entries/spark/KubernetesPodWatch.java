@@ -0,0 +1,317 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Follows Spark driver pods of a namespace through a single watch connection to the API server, shared by all the
+ * entries of this JVM submitting there. The API server ends every watch after a minute, it is resumed while some pod is
+ * watched and the connection is released otherwise. A reading HttpURLConnection can't be safely closed from another
+ * thread, so the watch isn't torn down as soon as the last pod is unwatched.
+ * <p>
+ * Driver pods are listed first, the watch then continues from the listed resource version, so no change is missed
+ * between the two. A broken watch is resumed from the last seen version, an expired version lists the pods again.
+ * Failures and expired versions are retried with a backoff; the last failure and the number of failures in a row are
+ * kept for the entries waiting on the watch to report and give up on.
+ */
+public class KubernetesPodWatch implements Runnable {
+  private static final ConcurrentMap<String, KubernetesPodWatch> WATCHES =
+      new ConcurrentHashMap<String, KubernetesPodWatch>();
+
+  private static final String DRIVER_SELECTOR = "labelSelector=spark-role%3Ddriver";
+  private static final int WATCH_TIMEOUT = 60; // seconds the API server keeps a watch open
+  private static final long MIN_BACKOFF = 1000;
+  private static final long MAX_BACKOFF = 30000;
+  private static final int HTTP_GONE = 410;
+
+  private final KubernetesApplicationClient client;
+  private final Map<String, Integer> watched = new HashMap<String, Integer>();
+  private final Map<String, ApplicationStatus> statuses = new HashMap<String, ApplicationStatus>();
+  private Thread thread;
+  private volatile int connections;
+  private KettleException lastError;
+  private int failures; // consecutive failures to list or watch the pods
+
+  KubernetesPodWatch( KubernetesApplicationClient client ) {
+    this.client = client;
+  }
+
+  /**
+   * Returns the watch of the API server and namespace the client talks to
+   */
+  public static KubernetesPodWatch get( KubernetesApplicationClient client ) {
+    String key = client.getApiServerUrl() + " " + client.getNamespace() + " " + client.getToken();
+    KubernetesPodWatch watch = WATCHES.get( key );
+    if ( watch == null ) {
+      WATCHES.putIfAbsent( key, new KubernetesPodWatch( client ) );
+      watch = WATCHES.get( key );
+    }
+    return watch;
+  }
+
+  /**
+   * Starts following the pod, every call has to be paired with {@link #unwatch(String)}
+   */
+  public synchronized void watch( String podName ) {
+    Integer count = watched.get( podName );
+    watched.put( podName, count == null ? 1 : count + 1 );
+    if ( thread == null ) {
+      lastError = null;
+      failures = 0;
+      thread = new Thread( this, "kubernetes-pod-watch-" + client.getApiServerUrl() );
+      thread.setDaemon( true );
+      thread.start();
+    }
+  }
+
+  public synchronized void unwatch( String podName ) {
+    Integer count = watched.get( podName );
+    if ( count == null ) {
+      return;
+    }
+    if ( count > 1 ) {
+      watched.put( podName, count - 1 );
+      return;
+    }
+    watched.remove( podName );
+    statuses.remove( podName );
+  }
+
+  /**
+   * Returns the latest status of a watched pod
+   *
+   * @return status or null if the pod isn't watched or hasn't been seen yet
+   */
+  public synchronized ApplicationStatus getStatus( String podName ) {
+    return statuses.get( podName );
+  }
+
+  /**
+   * Waits until the watched pod reaches a final state
+   *
+   * @param timeout
+   *          milliseconds to wait at most
+   * @return the latest status, null if the pod hasn't been seen yet
+   */
+  public synchronized ApplicationStatus awaitFinal( String podName, long timeout ) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    ApplicationStatus status = statuses.get( podName );
+    long remaining = timeout;
+    while ( ( status == null || !status.isFinal() ) && remaining > 0 ) {
+      wait( remaining );
+      status = statuses.get( podName );
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return status;
+  }
+
+  /**
+   * Returns the error of the last failed attempt to list or watch the pods
+   *
+   * @return the error or null if the watch works
+   */
+  public synchronized KettleException getLastError() {
+    return lastError;
+  }
+
+  /**
+   * Returns the number of failed attempts to list or watch the pods since the watch last worked
+   */
+  public synchronized int getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the number of watch connections opened so far
+   */
+  public int getConnections() {
+    return connections;
+  }
+
+  @Override
+  public void run() {
+    String resourceVersion = null;
+    long backoff = MIN_BACKOFF;
+    while ( isActive() ) {
+      try {
+        if ( resourceVersion == null ) {
+          resourceVersion = list();
+        }
+        resourceVersion = follow( resourceVersion );
+        recover();
+        if ( resourceVersion != null ) {
+          backoff = MIN_BACKOFF;
+          continue;
+        }
+        // an expired version is listed again after the backoff too, a throttling API server keeps expiring them
+      } catch ( KettleException e ) {
+        resourceVersion = null;
+        fail( e );
+      }
+      if ( !isActive() ) {
+        break;
+      }
+      try {
+        Thread.sleep( backoff );
+      } catch ( InterruptedException ie ) {
+        break;
+      }
+      backoff = Math.min( backoff * 2, MAX_BACKOFF );
+    }
+  }
+
+  private synchronized void recover() {
+    lastError = null;
+    failures = 0;
+  }
+
+  private synchronized void fail( KettleException e ) {
+    lastError = e;
+    failures++;
+    // waiting entries decide whether to give up
+    notifyAll();
+  }
+
+  /**
+   * Returns if some pod is watched, the thread is released otherwise
+   */
+  private synchronized boolean isActive() {
+    if ( watched.isEmpty() ) {
+      thread = null;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Lists the driver pods
+   *
+   * @return resource version to watch from
+   */
+  private String list() throws KettleException {
+    JSONObject list = client.getJson( client.getPodsPath() + "?" + DRIVER_SELECTOR );
+    if ( list == null ) {
+      throw new KettleException( "Namespace " + client.getNamespace() + " doesn't exist" );
+    }
+    Object items = list.get( "items" );
+    if ( items instanceof JSONArray ) {
+      for ( Object item : (JSONArray) items ) {
+        if ( item instanceof JSONObject ) {
+          update( (JSONObject) item, false );
+        }
+      }
+    }
+    return KubernetesApplicationClient.getString( KubernetesApplicationClient.getObject( list, "metadata" ),
+        "resourceVersion" );
+  }
+
+  /**
+   * Reads watch events until the API server ends the watch
+   *
+   * @return resource version to continue from, null if it expired
+   */
+  private String follow( String resourceVersion ) throws KettleException {
+    String path = client.getPodsPath() + "?" + DRIVER_SELECTOR + "&watch=true&timeoutSeconds=" + WATCH_TIMEOUT
+        + ( resourceVersion == null ? "" : "&resourceVersion=" + resourceVersion );
+    try {
+      HttpURLConnection watchConnection = client.openConnection( path, ( WATCH_TIMEOUT + 30 ) * 1000 );
+      connections++;
+      try {
+        int code = watchConnection.getResponseCode();
+        if ( code == HTTP_GONE ) {
+          return null;
+        }
+        if ( code != HttpURLConnection.HTTP_OK ) {
+          throw new KettleException( "API server responded with HTTP " + code + " to " + path );
+        }
+        BufferedReader reader = new BufferedReader( new InputStreamReader( watchConnection.getInputStream(),
+            "UTF-8" ) );
+        try {
+          String line;
+          while ( ( line = reader.readLine() ) != null ) {
+            if ( line.trim().isEmpty() ) {
+              continue;
+            }
+            Object event = new JSONParser().parse( line );
+            if ( !( event instanceof JSONObject ) ) {
+              continue;
+            }
+            String type = KubernetesApplicationClient.getString( (JSONObject) event, "type" );
+            JSONObject object = KubernetesApplicationClient.getObject( (JSONObject) event, "object" );
+            if ( "ERROR".equals( type ) ) {
+              // the version is too old to watch from, typically 410 Gone
+              return null;
+            }
+            if ( object != null ) {
+              update( object, "DELETED".equals( type ) );
+              String version = KubernetesApplicationClient.getString( KubernetesApplicationClient.getObject( object,
+                  "metadata" ), "resourceVersion" );
+              if ( version != null ) {
+                resourceVersion = version;
+              }
+            }
+          }
+        } finally {
+          reader.close();
+        }
+        return resourceVersion;
+      } finally {
+        watchConnection.disconnect();
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to watch driver pods on " + client.getApiServerUrl(), e );
+    } catch ( ParseException e ) {
+      throw new KettleException( "Unable to parse watch event from " + client.getApiServerUrl(), e );
+    }
+  }
+
+  private synchronized void update( JSONObject pod, boolean deleted ) {
+    ApplicationStatus status = KubernetesApplicationClient.toStatus( pod, deleted );
+    String name = status.getApplicationId();
+    if ( name == null || !watched.containsKey( name ) ) {
+      return;
+    }
+    ApplicationStatus previous = statuses.get( name );
+    // a pod removed after it finished keeps its final state
+    if ( previous != null && previous.isFinal() && deleted ) {
+      return;
+    }
+    statuses.put( name, status );
+    notifyAll();
+  }
+}
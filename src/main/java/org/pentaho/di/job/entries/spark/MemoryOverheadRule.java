@@ -0,0 +1,55 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Warns about memory overhead set below 10% of the heap, which gets containers killed by YARN for exceeding memory
+ * limits. Spark reserves 10% (at least 384 MB) unless the overhead is set explicitly.
+ */
+public class MemoryOverheadRule extends PerformanceRule {
+  static final double MIN_OVERHEAD = 0.10;
+
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    check( entry, remarks, "executor", entry.getResolvedExecutorMemory() );
+    check( entry, remarks, "driver", entry.getResolvedDriverMemory() );
+  }
+
+  private void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks, String role, String memory ) {
+    String overhead = entry.getConfigParam( "spark." + role + ".memoryOverhead" );
+    if ( overhead == null ) {
+      overhead = entry.getConfigParam( "spark.yarn." + role + ".memoryOverhead" );
+    }
+    long overheadMb = MemorySize.toMegabytes( overhead, -1 );
+    long memoryMb = MemorySize.toMegabytes( memory, 1024 );
+    if ( overheadMb >= 0 && overheadMb < memoryMb * MIN_OVERHEAD ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_WARNING, entry, "MemoryOverhead", role, overheadMb,
+          memoryMb );
+    }
+  }
+}
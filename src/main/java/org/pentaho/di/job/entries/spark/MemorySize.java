@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Locale;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Parses memory sizes the way spark-submit does, e.g. "512m" or "4g".
+ */
+public class MemorySize {
+  private MemorySize() {
+  }
+
+  /**
+   * Converts memory size to megabytes, numbers without suffix are considered megabytes
+   *
+   * @param size
+   *          memory size, e.g. "512m", "4g", "1t", "2048"
+   * @param defaultMb
+   *          value returned if the size is empty or can't be parsed
+   * @return size in megabytes
+   */
+  public static long toMegabytes( String size, long defaultMb ) {
+    if ( Const.isEmpty( size ) ) {
+      return defaultMb;
+    }
+    String value = size.trim().toLowerCase( Locale.ENGLISH );
+    if ( value.endsWith( "b" ) && value.length() > 1 && !Character.isDigit( value.charAt( value.length() - 2 ) ) ) {
+      value = value.substring( 0, value.length() - 1 );
+    }
+    long multiplier = 1;
+    long divisor = 1;
+    char unit = value.isEmpty() ? ' ' : value.charAt( value.length() - 1 );
+    switch ( unit ) {
+      case 'k':
+        divisor = 1024;
+        break;
+      case 'm':
+        break;
+      case 'g':
+        multiplier = 1024;
+        break;
+      case 't':
+        multiplier = 1024 * 1024;
+        break;
+      default:
+        unit = ' ';
+    }
+    if ( unit != ' ' ) {
+      value = value.substring( 0, value.length() - 1 ).trim();
+    }
+    try {
+      return Long.parseLong( value ) * multiplier / divisor;
+    } catch ( NumberFormatException e ) {
+      return defaultMb;
+    }
+  }
+}
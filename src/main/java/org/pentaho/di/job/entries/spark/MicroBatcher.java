@@ -0,0 +1,215 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Coalesces executions sharing the same batch key into micro-batches. A batch is handed to its runner when it holds
+ * the maximum number of items or when the time window opened by its first item elapses, whichever comes first.
+ * Batches still pending when the JVM shuts down are run from a shutdown hook, so executions which didn't wait for
+ * their outcome are not lost.
+ */
+public class MicroBatcher {
+  /**
+   * Runs the batch, sets the outcome of the items it can. Items left without outcome are considered failed.
+   */
+  public static interface BatchRunner {
+    public void run( List<BatchItem> items ) throws Exception;
+  }
+
+  private static final Map<String, Batch> PENDING = new HashMap<String, Batch>();
+  private static final Set<Future<?>> RUNNING = Collections.newSetFromMap(
+      new ConcurrentHashMap<Future<?>, Boolean>() );
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "spark-batch-timer" ).build() );
+  private static final ExecutorService RUNNERS = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "spark-batch-%d" ).build() );
+
+  static {
+    Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+      @Override
+      public void run() {
+        flushAll();
+        awaitRunning();
+      }
+    }, "spark-batch-shutdown" ) );
+  }
+
+  private MicroBatcher() {
+  }
+
+  /**
+   * Adds an execution to the pending batch with the key given, opening a new batch if there is none
+   *
+   * @param key
+   *          batch key, executions with the same key run in the same application
+   * @param args
+   *          application arguments of the execution
+   * @param windowMs
+   *          time window of the batch in milliseconds, counted from its first item
+   * @param maxItems
+   *          maximum number of items in the batch, 0 for no limit
+   * @param runner
+   *          runs the batch if this execution opens it
+   * @return the item added, its outcome is set once the batch is over
+   */
+  public static BatchItem add( final String key, List<String> args, long windowMs, int maxItems,
+      BatchRunner runner ) {
+    Batch full = null;
+    BatchItem item;
+    synchronized ( PENDING ) {
+      Batch batch = PENDING.get( key );
+      if ( batch == null ) {
+        batch = new Batch( runner );
+        PENDING.put( key, batch );
+        if ( windowMs > 0 ) {
+          final Batch opened = batch;
+          batch.timer = TIMER.schedule( new Runnable() {
+            @Override
+            public void run() {
+              flush( key, opened );
+            }
+          }, windowMs, TimeUnit.MILLISECONDS );
+        }
+      }
+      item = new BatchItem( batch.items.size(), args );
+      batch.items.add( item );
+      if ( windowMs <= 0 || ( maxItems > 0 && batch.items.size() >= maxItems ) ) {
+        PENDING.remove( key );
+        full = batch;
+      }
+    }
+    if ( full != null ) {
+      dispatch( full );
+    }
+    return item;
+  }
+
+  private static void flush( String key, Batch batch ) {
+    synchronized ( PENDING ) {
+      if ( PENDING.get( key ) != batch ) {
+        return;
+      }
+      PENDING.remove( key );
+    }
+    dispatch( batch );
+  }
+
+  /**
+   * Runs all the pending batches without waiting for their windows to elapse
+   */
+  public static void flushAll() {
+    List<Batch> batches;
+    synchronized ( PENDING ) {
+      batches = new ArrayList<Batch>( PENDING.values() );
+      PENDING.clear();
+    }
+    for ( Batch batch : batches ) {
+      dispatch( batch );
+    }
+  }
+
+  private static void dispatch( final Batch batch ) {
+    if ( batch.timer != null ) {
+      batch.timer.cancel( false );
+    }
+    final List<BatchItem> items = new ArrayList<BatchItem>( batch.items );
+    Future<?> future = RUNNERS.submit( new Runnable() {
+      @Override
+      public void run() {
+        String message = null;
+        try {
+          batch.runner.run( items );
+        } catch ( Exception e ) {
+          message = e.getMessage();
+        } finally {
+          for ( BatchItem item : items ) {
+            item.complete( false, message == null ? "No outcome reported for the item" : message );
+          }
+        }
+      }
+    } );
+    RUNNING.add( future );
+    cleanUp();
+  }
+
+  private static void cleanUp() {
+    for ( Future<?> future : RUNNING ) {
+      if ( future.isDone() ) {
+        RUNNING.remove( future );
+      }
+    }
+  }
+
+  private static void awaitRunning() {
+    for ( Future<?> future : RUNNING ) {
+      try {
+        future.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch ( ExecutionException e ) {
+        // outcome is already set on the items
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static int getPendingCount() {
+    synchronized ( PENDING ) {
+      int count = 0;
+      for ( Batch batch : PENDING.values() ) {
+        count += batch.items.size();
+      }
+      return count;
+    }
+  }
+
+  private static class Batch {
+    private final BatchRunner runner;
+    private final List<BatchItem> items = new ArrayList<BatchItem>();
+    private ScheduledFuture<?> timer;
+
+    private Batch( BatchRunner runner ) {
+      this.runner = runner;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Load of a submission node: submissions in flight first, then free memory.
+ */
+public class NodeLoad implements Comparable<NodeLoad> {
+  private final int inFlight;
+  private final long memoryFree;
+  private final long memoryTotal;
+
+  /**
+   * @param inFlight
+   *          Spark submissions running on the node
+   * @param memoryFree
+   *          free memory in bytes
+   * @param memoryTotal
+   *          total memory in bytes
+   */
+  public NodeLoad( int inFlight, long memoryFree, long memoryTotal ) {
+    this.inFlight = inFlight;
+    this.memoryFree = memoryFree;
+    this.memoryTotal = memoryTotal;
+  }
+
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  public long getMemoryFree() {
+    return memoryFree;
+  }
+
+  public long getMemoryTotal() {
+    return memoryTotal;
+  }
+
+  /**
+   * Returns a copy with more submissions in flight
+   */
+  public NodeLoad plus( int submissions ) {
+    return new NodeLoad( inFlight + submissions, memoryFree, memoryTotal );
+  }
+
+  /**
+   * Orders the least loaded node first
+   */
+  @Override
+  public int compareTo( NodeLoad other ) {
+    if ( inFlight != other.inFlight ) {
+      return inFlight < other.inFlight ? -1 : 1;
+    }
+    return memoryFree == other.memoryFree ? 0 : memoryFree > other.memoryFree ? -1 : 1;
+  }
+
+  @Override
+  public String toString() {
+    return inFlight + " in flight, " + memoryFree / ( 1024 * 1024 ) + " of " + memoryTotal / ( 1024 * 1024 )
+        + " MB free";
+  }
+}
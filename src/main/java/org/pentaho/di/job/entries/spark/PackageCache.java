@@ -0,0 +1,682 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves Maven coordinates set in spark.jars.packages into a local content-addressed repository, so a package is
+ * downloaded once per host rather than by Ivy on every submission, and submissions keep working when the repositories
+ * can't be reached. Dependencies are followed through POM files the way Maven does, the nearest declaration winning;
+ * version ranges and imported BOMs are reported as unresolvable, leaving resolution to spark-submit. Every resolution
+ * and eviction holds a lock on a file in the cache folder, so concurrent entries, also in other JVMs sharing the
+ * folder, don't race. Any URL Java can read may be used as repository, so a local file:// Maven repository can drive
+ * tests and air-gapped installations.
+ */
+public class PackageCache {
+  /**
+   * Repository consulted after the local Maven repository when no repositories are configured
+   */
+  public static final String DEFAULT_REPOSITORY = "https://repo1.maven.org/maven2/";
+
+  /**
+   * Resolutions not used for this long are evicted together with the jars no other resolution refers to
+   */
+  public static final long DEFAULT_MAX_UNUSED = 30L * 24 * 60 * 60 * 1000;
+
+  /**
+   * Spark modules spark-submit leaves out of package resolution, as the cluster provides them
+   */
+  static final List<String> PROVIDED_SPARK_MODULES = Arrays.asList( "catalyst_", "core_", "graphx_", "kvstore_",
+      "launcher_", "mllib_", "mllib-local_", "network-common_", "network-shuffle_", "repl_", "sketch_", "sql_",
+      "streaming_", "tags_", "unsafe_" );
+
+  private static final String RESOLUTIONS = "resolutions";
+  private static final String BLOBS = "blobs";
+  private static final String INDEX = "artifacts.properties";
+  private static final String LOCK = "lock";
+  private static final String COORDINATES = "coordinates";
+  private static final String JARS = "jars";
+  private static final String LAST_USED = "lastUsed";
+  private static final int TIMEOUT = 30000;
+  private static final int MAX_PARENTS = 20;
+  private static final Pattern PROPERTY = Pattern.compile( "\\$\\{([^}]+)\\}" );
+
+  // file locks are held by the whole JVM, so threads of this JVM are serialized here first
+  private static final Object JVM_LOCK = new Object();
+
+  private File directory;
+  private long maxUnused = DEFAULT_MAX_UNUSED;
+
+  /**
+   * @param directory
+   *          folder the resolved jars are kept in
+   */
+  public PackageCache( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the cache kept in the plugin's state directory
+   */
+  public static PackageCache getDefault() {
+    return new PackageCache( StateDirectory.get( "packages" ) );
+  }
+
+  /**
+   * Resolves packages into the default cache ahead of time, e.g. while deploying to hosts that can't reach the
+   * repositories at run time. Lists are given the way spark.jars.packages, spark.jars.excludes and
+   * spark.jars.repositories take them.
+   *
+   * @return jars resolved
+   */
+  public static List<File> prewarm( String packages, String excludes, String repositories ) throws KettleException {
+    return getDefault().resolve( split( packages ), split( excludes ), split( repositories ) );
+  }
+
+  /**
+   * Pre-warms the default cache from the command line, taking the spark-submit options naming packages
+   */
+  public static void main( String[] args ) throws KettleException {
+    String packages = null;
+    String excludes = null;
+    String repositories = null;
+    for ( int i = 0; i + 1 < args.length; i += 2 ) {
+      if ( "--packages".equals( args[i] ) ) {
+        packages = args[i + 1];
+      } else if ( "--exclude-packages".equals( args[i] ) ) {
+        excludes = args[i + 1];
+      } else if ( "--repositories".equals( args[i] ) ) {
+        repositories = args[i + 1];
+      }
+    }
+    if ( Const.isEmpty( packages ) ) {
+      System.err.println( "Usage: PackageCache --packages groupId:artifactId:version,... "
+          + "[--exclude-packages groupId:artifactId,...] [--repositories url,...]" );
+      System.exit( 1 );
+    }
+    for ( File jar : prewarm( packages, excludes, repositories ) ) {
+      System.out.println( jar );
+    }
+  }
+
+  /**
+   * Sets how long a resolution may stay unused before it is evicted
+   */
+  public void setMaxUnused( long maxUnused ) {
+    this.maxUnused = maxUnused;
+  }
+
+  /**
+   * Returns jars of the packages and their dependencies, downloading them unless the same packages were resolved
+   * against the same repositories before
+   *
+   * @param coordinates
+   *          packages as groupId:artifactId:version
+   * @param excludes
+   *          dependencies left out as groupId:artifactId
+   * @param repositories
+   *          repository URLs, the local Maven repository and Maven Central if empty
+   * @return jars in resolution order
+   * @throws KettleException
+   *           if a package or dependency can't be resolved
+   */
+  public List<File> resolve( List<String> coordinates, List<String> excludes, List<String> repositories )
+    throws KettleException {
+    File resolutionFile = new File( new File( directory, RESOLUTIONS ), Hashing.sha256().hashString( Joiner.on(
+        '\n' ).join( coordinates ) + "\n\n" + Joiner.on( '\n' ).join( excludes ) + "\n\n" + Joiner.on( '\n' ).join(
+        repositories ), Charsets.UTF_8 ).toString() + ".properties" );
+    try {
+      synchronized ( JVM_LOCK ) {
+        RandomAccessFile lock = lock();
+        try {
+          Properties resolution = StateDirectory.readProperties( resolutionFile );
+          List<File> jars = resolution == null ? null : getJars( resolution );
+          boolean downloaded = jars == null;
+          if ( downloaded ) {
+            List<String> paths = new Resolution( getRepositories( repositories ), excludes ).resolve( coordinates );
+            resolution = new Properties();
+            resolution.setProperty( COORDINATES, Joiner.on( ',' ).join( coordinates ) );
+            resolution.setProperty( JARS, Joiner.on( ',' ).join( paths ) );
+            jars = getJars( resolution );
+          }
+          resolution.setProperty( LAST_USED, String.valueOf( now() ) );
+          resolutionFile.getParentFile().mkdirs();
+          StateDirectory.writeProperties( resolutionFile, resolution );
+          if ( downloaded ) {
+            evictUnused();
+          }
+          return jars;
+        } finally {
+          lock.close();
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to resolve " + coordinates, e );
+    }
+  }
+
+  /**
+   * Removes resolutions not used for longer than the maximum and the jars no remaining resolution refers to
+   *
+   * @return number of jars removed
+   */
+  public int evict() throws KettleException {
+    try {
+      synchronized ( JVM_LOCK ) {
+        RandomAccessFile lock = lock();
+        try {
+          return evictUnused();
+        } finally {
+          lock.close();
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to evict packages from " + directory, e );
+    }
+  }
+
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Splits a comma separated list, dropping blank items
+   */
+  static List<String> split( String list ) {
+    List<String> items = new ArrayList<String>();
+    if ( list != null ) {
+      for ( String item : list.split( "," ) ) {
+        if ( !item.trim().isEmpty() ) {
+          items.add( item.trim() );
+        }
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Locks the cache folder, closing the file returned releases the lock
+   */
+  private RandomAccessFile lock() throws IOException {
+    directory.mkdirs();
+    RandomAccessFile file = new RandomAccessFile( new File( directory, LOCK ), "rw" );
+    try {
+      file.getChannel().lock();
+      return file;
+    } catch ( IOException e ) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns jars of a resolution or null if some of them were removed meanwhile
+   */
+  private List<File> getJars( Properties resolution ) {
+    List<File> jars = new ArrayList<File>();
+    for ( String path : split( resolution.getProperty( JARS ) ) ) {
+      File jar = new File( new File( directory, BLOBS ), path );
+      if ( !jar.isFile() ) {
+        return null;
+      }
+      jars.add( jar );
+    }
+    return jars;
+  }
+
+  /**
+   * Returns the repositories consulted. Unlike spark-submit, the default ones aren't consulted after the configured
+   * ones, so air-gapped hosts don't wait for Maven Central to time out; packages found there only are left to
+   * spark-submit.
+   */
+  private List<String> getRepositories( List<String> configured ) {
+    List<String> repositories = new ArrayList<String>();
+    for ( String repository : configured ) {
+      repositories.add( repository.endsWith( "/" ) ? repository : repository + "/" );
+    }
+    if ( !repositories.isEmpty() ) {
+      return repositories;
+    }
+    File local = new File( System.getProperty( "user.home" ), ".m2" + File.separator + "repository" );
+    if ( local.isDirectory() ) {
+      repositories.add( local.toURI().toString() );
+    }
+    repositories.add( DEFAULT_REPOSITORY );
+    return repositories;
+  }
+
+  private int evictUnused() throws IOException {
+    Set<String> used = new HashSet<String>();
+    File[] resolutions = new File( directory, RESOLUTIONS ).listFiles();
+    for ( File file : resolutions == null ? new File[0] : resolutions ) {
+      Properties resolution = file.getName().endsWith( ".properties" ) ? StateDirectory.readProperties( file ) : null;
+      if ( resolution == null || now() - Const.toLong( resolution.getProperty( LAST_USED ), 0 ) > maxUnused ) {
+        file.delete();
+      } else {
+        used.addAll( split( resolution.getProperty( JARS ) ) );
+      }
+    }
+
+    int evicted = 0;
+    File blobs = new File( directory, BLOBS );
+    File[] digests = blobs.listFiles();
+    for ( File digest : digests == null ? new File[0] : digests ) {
+      File[] jars = digest.listFiles();
+      if ( jars == null ) {
+        // left behind by an interrupted download
+        digest.delete();
+        continue;
+      }
+      for ( File jar : jars ) {
+        if ( !used.contains( digest.getName() + "/" + jar.getName() ) && jar.delete() ) {
+          evicted++;
+        }
+      }
+      digest.delete();
+    }
+
+    if ( evicted > 0 ) {
+      File indexFile = new File( directory, INDEX );
+      Properties index = StateDirectory.readProperties( indexFile );
+      if ( index != null ) {
+        for ( String artifact : index.stringPropertyNames() ) {
+          if ( !new File( blobs, index.getProperty( artifact ) ).isFile() ) {
+            index.remove( artifact );
+          }
+        }
+        StateDirectory.writeProperties( indexFile, index );
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Replaces ${...} references with property values, leaving unknown ones in place
+   */
+  private static String interpolate( String value, Map<String, String> properties ) {
+    for ( int i = 0; value != null && value.contains( "${" ) && i < MAX_PARENTS; i++ ) {
+      Matcher matcher = PROPERTY.matcher( value );
+      StringBuffer sb = new StringBuffer();
+      boolean replaced = false;
+      while ( matcher.find() ) {
+        String replacement = properties.get( matcher.group( 1 ) );
+        replaced |= replacement != null;
+        matcher.appendReplacement( sb, Matcher.quoteReplacement( replacement == null ? matcher.group()
+            : replacement ) );
+      }
+      matcher.appendTail( sb );
+      value = sb.toString();
+      if ( !replaced ) {
+        break;
+      }
+    }
+    return value;
+  }
+
+  private static Element getChild( Element parent, String name ) {
+    for ( Node node = parent == null ? null : parent.getFirstChild(); node != null; node = node.getNextSibling() ) {
+      if ( node instanceof Element && name.equals( node.getNodeName() ) ) {
+        return (Element) node;
+      }
+    }
+    return null;
+  }
+
+  private static List<Element> getChildren( Element parent, String name ) {
+    List<Element> children = new ArrayList<Element>();
+    for ( Node node = parent == null ? null : parent.getFirstChild(); node != null; node = node.getNextSibling() ) {
+      if ( node instanceof Element && ( "*".equals( name ) || name.equals( node.getNodeName() ) ) ) {
+        children.add( (Element) node );
+      }
+    }
+    return children;
+  }
+
+  private static String getText( Element parent, String name ) {
+    Element child = getChild( parent, name );
+    String text = child == null ? null : child.getTextContent().trim();
+    return Const.isEmpty( text ) ? null : text;
+  }
+
+  /**
+   * A package or dependency to resolve, along with the exclusions inherited from the path leading to it
+   */
+  private static class Dependency {
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String classifier;
+    private final Set<String> exclusions;
+
+    Dependency( String groupId, String artifactId, String version, String classifier, Set<String> exclusions ) {
+      this.groupId = groupId;
+      this.artifactId = artifactId;
+      this.version = version;
+      this.classifier = classifier;
+      this.exclusions = exclusions;
+    }
+
+    String getKey() {
+      return groupId + ":" + artifactId + ( classifier == null ? "" : ":" + classifier );
+    }
+
+    String getPath( String extension ) {
+      return groupId.replace( '.', '/' ) + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version
+          + ( classifier == null || "pom".equals( extension ) ? "" : "-" + classifier ) + "." + extension;
+    }
+
+    boolean excludes( String groupId, String artifactId ) {
+      return exclusions.contains( groupId + ":" + artifactId ) || exclusions.contains( groupId + ":*" )
+          || exclusions.contains( "*:" + artifactId ) || exclusions.contains( "*:*" );
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + ":" + version;
+    }
+  }
+
+  /**
+   * The parts of an effective POM resolution needs, parents merged in
+   */
+  private static class Pom {
+    private String packaging = "jar";
+    private Map<String, String> properties = new HashMap<String, String>();
+    private Map<String, Element> managedDependencies = new HashMap<String, Element>();
+    private List<Element> dependencies = new ArrayList<Element>();
+  }
+
+  /**
+   * State of a single resolution, run while holding the lock
+   */
+  private class Resolution {
+    private final List<String> repositories;
+    private final Set<String> excludes;
+    private final Set<String> unreachable = new HashSet<String>();
+    private final DocumentBuilder documentBuilder;
+    private final File indexFile = new File( directory, INDEX );
+    private final Properties index;
+
+    Resolution( List<String> repositories, List<String> excludes ) throws IOException {
+      this.repositories = repositories;
+      this.excludes = new HashSet<String>( excludes );
+      Properties stored = StateDirectory.readProperties( indexFile );
+      index = stored == null ? new Properties() : stored;
+      try {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setExpandEntityReferences( false );
+        documentBuilder = factory.newDocumentBuilder();
+      } catch ( ParserConfigurationException e ) {
+        throw new IOException( "Unable to create POM parser", e );
+      }
+    }
+
+    /**
+     * Resolves packages breadth first, so the declaration nearest to a package wins as in Maven
+     *
+     * @return jar paths relative to the blob folder
+     */
+    List<String> resolve( List<String> coordinates ) throws KettleException, IOException {
+      LinkedList<Dependency> queue = new LinkedList<Dependency>();
+      for ( String coordinate : coordinates ) {
+        String[] parts = coordinate.split( ":" );
+        if ( parts.length != 3 ) {
+          throw new KettleException( "Package " + coordinate + " is not in groupId:artifactId:version form" );
+        }
+        queue.add( new Dependency( parts[0], parts[1], parts[2], null, excludes ) );
+      }
+
+      List<String> paths = new ArrayList<String>();
+      Set<String> seen = new HashSet<String>();
+      while ( !queue.isEmpty() ) {
+        Dependency dependency = queue.removeFirst();
+        if ( !seen.add( dependency.getKey() ) ) {
+          continue;
+        }
+        Pom pom = loadPom( dependency.groupId, dependency.artifactId, dependency.version, 0 );
+        if ( !"pom".equals( pom.packaging ) ) {
+          paths.add( store( dependency ) );
+        }
+        for ( Element element : pom.dependencies ) {
+          Dependency child = getDependency( dependency, pom, element );
+          if ( child != null ) {
+            queue.add( child );
+          }
+        }
+      }
+      StateDirectory.writeProperties( indexFile, index );
+      return paths;
+    }
+
+    /**
+     * Returns the dependency declared unless it is left out of the classpath
+     */
+    private Dependency getDependency( Dependency parent, Pom pom, Element element ) throws KettleException {
+      String groupId = interpolate( getText( element, "groupId" ), pom.properties );
+      String artifactId = interpolate( getText( element, "artifactId" ), pom.properties );
+      Element managed = pom.managedDependencies.get( groupId + ":" + artifactId );
+      String scope = interpolate( getText( element, "scope" ), pom.properties );
+      if ( scope == null ) {
+        scope = interpolate( getText( managed, "scope" ), pom.properties );
+      }
+      String type = getText( element, "type" );
+      if ( scope != null && !"compile".equals( scope ) && !"runtime".equals( scope )
+          || "true".equals( interpolate( getText( element, "optional" ), pom.properties ) )
+          || type != null && !"jar".equals( type ) && !"bundle".equals( type ) || parent.excludes( groupId,
+              artifactId ) || isProvidedSparkModule( groupId, artifactId ) ) {
+        return null;
+      }
+
+      String version = getText( element, "version" );
+      if ( version == null ) {
+        version = getText( managed, "version" );
+      }
+      version = interpolate( version, pom.properties );
+      if ( version == null || version.contains( "${" ) || version.startsWith( "[" ) || version.startsWith( "(" ) ) {
+        throw new KettleException( "Unable to determine version of " + groupId + ":" + artifactId + " required by "
+            + parent );
+      }
+
+      Set<String> exclusions = new HashSet<String>( parent.exclusions );
+      for ( Element exclusion : getChildren( getChild( element, "exclusions" ), "exclusion" ) ) {
+        exclusions.add( interpolate( getText( exclusion, "groupId" ), pom.properties ) + ":" + interpolate( getText(
+            exclusion, "artifactId" ), pom.properties ) );
+      }
+      return new Dependency( groupId, artifactId, version, interpolate( getText( element, "classifier" ),
+          pom.properties ), exclusions );
+    }
+
+    private boolean isProvidedSparkModule( String groupId, String artifactId ) {
+      if ( "org.apache.spark".equals( groupId ) ) {
+        for ( String module : PROVIDED_SPARK_MODULES ) {
+          if ( artifactId.startsWith( "spark-" + module ) ) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Loads the POM of an artifact, merging in its parents
+     */
+    private Pom loadPom( String groupId, String artifactId, String version, int depth ) throws KettleException,
+      IOException {
+      if ( depth > MAX_PARENTS ) {
+        throw new KettleException( "Too many parent POMs above " + groupId + ":" + artifactId + ":" + version );
+      }
+      Dependency artifact = new Dependency( groupId, artifactId, version, null, Collections.<String>emptySet() );
+      Element project;
+      InputStream is = open( artifact.getPath( "pom" ) );
+      try {
+        project = documentBuilder.parse( is ).getDocumentElement();
+      } catch ( SAXException e ) {
+        throw new KettleException( "Unable to parse POM of " + artifact, e );
+      } finally {
+        is.close();
+      }
+
+      Pom pom = new Pom();
+      Element parent = getChild( project, "parent" );
+      if ( parent != null ) {
+        Pom parentPom = loadPom( getText( parent, "groupId" ), getText( parent, "artifactId" ), getText( parent,
+            "version" ), depth + 1 );
+        pom.properties.putAll( parentPom.properties );
+        pom.managedDependencies.putAll( parentPom.managedDependencies );
+        pom.dependencies.addAll( parentPom.dependencies );
+        pom.properties.put( "project.parent.groupId", getText( parent, "groupId" ) );
+        pom.properties.put( "project.parent.version", getText( parent, "version" ) );
+      }
+      for ( Element property : getChildren( getChild( project, "properties" ), "*" ) ) {
+        pom.properties.put( property.getNodeName(), property.getTextContent().trim() );
+      }
+      for ( String name : new String[] { "project.", "pom." } ) {
+        pom.properties.put( name + "groupId", groupId );
+        pom.properties.put( name + "artifactId", artifactId );
+        pom.properties.put( name + "version", version );
+      }
+      String packaging = getText( project, "packaging" );
+      if ( packaging != null ) {
+        pom.packaging = interpolate( packaging, pom.properties );
+      }
+      for ( Element managed : getChildren( getChild( getChild( project, "dependencyManagement" ), "dependencies" ),
+          "dependency" ) ) {
+        pom.managedDependencies.put( interpolate( getText( managed, "groupId" ), pom.properties ) + ":" + interpolate(
+            getText( managed, "artifactId" ), pom.properties ), managed );
+      }
+      pom.dependencies.addAll( getChildren( getChild( project, "dependencies" ), "dependency" ) );
+      return pom;
+    }
+
+    /**
+     * Stores the jar of an artifact under its content digest, unless a jar downloaded before is found in the index
+     *
+     * @return jar path relative to the blob folder
+     */
+    private String store( Dependency dependency ) throws IOException {
+      String artifactPath = dependency.getPath( "jar" );
+      File blobs = new File( directory, BLOBS );
+      String path = index.getProperty( artifactPath );
+      if ( path != null && new File( blobs, path ).isFile() ) {
+        return path;
+      }
+
+      blobs.mkdirs();
+      File tmp = File.createTempFile( dependency.artifactId, ".tmp", blobs );
+      try {
+        Hasher hasher = Hashing.sha256().newHasher();
+        InputStream is = open( artifactPath );
+        try {
+          OutputStream os = new FileOutputStream( tmp );
+          try {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ( ( n = is.read( buffer ) ) > 0 ) {
+              hasher.putBytes( buffer, 0, n );
+              os.write( buffer, 0, n );
+            }
+          } finally {
+            os.close();
+          }
+        } finally {
+          is.close();
+        }
+        path = hasher.hash().toString() + "/" + artifactPath.substring( artifactPath.lastIndexOf( '/' ) + 1 );
+        File file = new File( blobs, path );
+        if ( !file.isFile() ) {
+          file.getParentFile().mkdirs();
+          if ( !tmp.renameTo( file ) ) {
+            throw new IOException( "Unable to rename " + tmp + " to " + file );
+          }
+        }
+        index.setProperty( artifactPath, path );
+        return path;
+      } finally {
+        tmp.delete();
+      }
+    }
+
+    /**
+     * Opens a file in the first repository holding it, skipping repositories found unreachable before
+     */
+    private InputStream open( String path ) throws IOException {
+      IOException failure = null;
+      for ( String repository : repositories ) {
+        if ( unreachable.contains( repository ) ) {
+          continue;
+        }
+        try {
+          URLConnection connection = new URL( repository + path ).openConnection();
+          connection.setConnectTimeout( TIMEOUT );
+          connection.setReadTimeout( TIMEOUT );
+          return connection.getInputStream();
+        } catch ( FileNotFoundException e ) {
+          // not in this repository
+        } catch ( IOException e ) {
+          unreachable.add( repository );
+          failure = e;
+        }
+      }
+      if ( failure != null ) {
+        throw new IOException( path + " not found in any reachable repository", failure );
+      }
+      throw new FileNotFoundException( path + " not found in " + repositories );
+    }
+  }
+}
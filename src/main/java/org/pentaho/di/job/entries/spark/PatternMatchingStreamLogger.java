@@ -26,6 +26,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.pentaho.di.core.logging.LogChannelInterface;
@@ -36,17 +38,23 @@ import org.pentaho.di.core.logging.LogChannelInterface;
  * @author Pavel Sakun
  */
 public class PatternMatchingStreamLogger implements Runnable {
+  private static final long REPEAT_SUMMARY_INTERVAL = 60000;
+
   private LogChannelInterface log;
   private InputStream is;
   private String[] patterns;
-  private PatternMatchedListener listener;
+  private List<PatternMatchedListener> listeners = new CopyOnWriteArrayList<PatternMatchedListener>();
+  private List<LineListener> lineListeners = new CopyOnWriteArrayList<LineListener>();
+  private List<LineFilter> lineFilters = new CopyOnWriteArrayList<LineFilter>();
   private AtomicBoolean stop;
+  private RepeatedLineCollapser collapser;
 
   public PatternMatchingStreamLogger( LogChannelInterface log, InputStream is, String[] patterns, AtomicBoolean stop ) {
     this.log = log;
     this.is = is;
     this.patterns = patterns;
     this.stop = stop;
+    setCollapseRepeated( true );
   }
 
   public void run() {
@@ -55,10 +63,19 @@ public class PatternMatchingStreamLogger implements Runnable {
 
     try {
       while ( !stop.get() && ( line = br.readLine() ) != null ) {
-        log.logBasic( line );
+        if ( isLogged( line ) ) {
+          if ( collapser != null ) {
+            collapser.onLine( line );
+          } else {
+            log.logBasic( line );
+          }
+        }
+        for ( LineListener lineListener : lineListeners ) {
+          lineListener.onLine( line );
+        }
         for ( String pattern : patterns ) {
           if ( line.contains( pattern ) ) {
-            if ( listener != null ) {
+            for ( PatternMatchedListener listener : listeners ) {
               listener.onPatternFound( pattern );
             }
           }
@@ -66,14 +83,58 @@ public class PatternMatchingStreamLogger implements Runnable {
       }
     } catch ( IOException e ) {
       log.logError( "", e );
+    } finally {
+      if ( collapser != null ) {
+        collapser.flush();
+      }
     }
   }
 
+  private boolean isLogged( String line ) {
+    boolean logged = true;
+    for ( LineFilter lineFilter : lineFilters ) {
+      // every filter sees every line
+      logged &= lineFilter.isLogged( line );
+    }
+    return logged;
+  }
+
+  /**
+   * Sets if runs of lines differing only in numbers are collapsed into summaries, which is the default
+   */
+  public void setCollapseRepeated( boolean collapseRepeated ) {
+    collapser = collapseRepeated ? new RepeatedLineCollapser( new LineListener() {
+      @Override
+      public void onLine( String line ) {
+        log.logBasic( line );
+      }
+    }, REPEAT_SUMMARY_INTERVAL ) : null;
+  }
+
   public void addPatternMatchedListener( PatternMatchedListener pml ) {
-    listener = pml;
+    listeners.add( pml );
+  }
+
+  public void addLineListener( LineListener ll ) {
+    lineListeners.add( ll );
+  }
+
+  public void addLineFilter( LineFilter lf ) {
+    lineFilters.add( lf );
   }
 
   public static interface PatternMatchedListener {
     public void onPatternFound( String pattern );
   }
+
+  public static interface LineListener {
+    public void onLine( String line );
+  }
+
+  /**
+   * Decides which lines are written to the log, listeners are notified about all of them
+   */
+  public static interface LineFilter {
+    public boolean isLogged( String line );
+  }
 }
@@ -0,0 +1,84 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Rule checking the Spark configuration of an entry for a known performance anti-pattern. Rules are registered in
+ * {@link PerformanceRules} and evaluated when the job is checked.
+ */
+public abstract class PerformanceRule {
+  protected static final Class<?> PKG = JobEntrySparkSubmit.class;
+
+  /**
+   * Adds a remark for every problem found in the entry configuration
+   */
+  public abstract void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks );
+
+  /**
+   * Adds remark with the message given
+   *
+   * @param type
+   *          severity, e.g. CheckResultInterface.TYPE_RESULT_WARNING
+   * @param key
+   *          message key without the "JobEntrySparkSubmit.Rule." prefix
+   */
+  protected static void addRemark( List<CheckResultInterface> remarks, int type, JobEntrySparkSubmit entry,
+      String key, Object... params ) {
+    remarks.add( new CheckResult( type, BaseMessages.getString( PKG, "JobEntrySparkSubmit.Rule." + key, params ),
+        entry ) );
+  }
+
+  /**
+   * Returns if the boolean config param is set to true
+   */
+  protected static boolean isEnabled( JobEntrySparkSubmit entry, String name ) {
+    return "true".equalsIgnoreCase( entry.getConfigParam( name ) );
+  }
+
+  /**
+   * Returns the integer config param
+   *
+   * @return value or the default if the param is not set or isn't a number
+   */
+  protected static int getInt( JobEntrySparkSubmit entry, String name, int defaultValue ) {
+    return Const.toInt( entry.getConfigParam( name ), defaultValue );
+  }
+
+  /**
+   * Returns the number of executors the application runs with at most
+   */
+  protected static int getExecutorCount( JobEntrySparkSubmit entry ) {
+    if ( isEnabled( entry, "spark.dynamicAllocation.enabled" ) ) {
+      return getInt( entry, "spark.dynamicAllocation.maxExecutors", Integer.MAX_VALUE );
+    }
+    return getInt( entry, "spark.executor.instances", 2 );
+  }
+}
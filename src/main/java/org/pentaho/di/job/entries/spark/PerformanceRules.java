@@ -0,0 +1,85 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Registry of the performance rules evaluated by {@link JobEntrySparkSubmit#check}. Built-in rules are registered by
+ * default, other plugins may register their own.
+ */
+public class PerformanceRules {
+  private static final List<PerformanceRule> RULES = new CopyOnWriteArrayList<PerformanceRule>( getDefaultRules() );
+
+  private PerformanceRules() {
+  }
+
+  /**
+   * Returns the built-in rules
+   */
+  public static List<PerformanceRule> getDefaultRules() {
+    List<PerformanceRule> rules = new ArrayList<PerformanceRule>();
+    rules.add( new ExecutorCoresRule() );
+    rules.add( new MemoryOverheadRule() );
+    rules.add( new SerializerRule() );
+    rules.add( new ShufflePartitionsRule() );
+    rules.add( new DynamicAllocationRule() );
+    rules.add( new BroadcastThresholdRule() );
+    return rules;
+  }
+
+  /**
+   * Returns the rules registered
+   */
+  public static List<PerformanceRule> getRules() {
+    return new ArrayList<PerformanceRule>( RULES );
+  }
+
+  /**
+   * Adds rule evaluated for every entry checked
+   */
+  public static void register( PerformanceRule rule ) {
+    RULES.add( rule );
+  }
+
+  /**
+   * Removes rule registered before
+   */
+  public static void unregister( PerformanceRule rule ) {
+    RULES.remove( rule );
+  }
+
+  /**
+   * Evaluates all the registered rules
+   */
+  public static void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    for ( PerformanceRule rule : RULES ) {
+      rule.check( entry, remarks );
+    }
+  }
+}
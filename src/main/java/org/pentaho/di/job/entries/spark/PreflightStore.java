@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Remembers preflight problems and warnings of application jars by jar digest, so every jar is checked only once.
+ */
+public class PreflightStore {
+  private static final String PROBLEMS = "problems";
+  private static final String PROBLEM = "problem.";
+  private static final String WARNINGS = "warnings";
+  private static final String WARNING = "warning.";
+  private static final String CHECKED = "checked";
+
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder results are kept in
+   */
+  public PreflightStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static PreflightStore getDefault() {
+    return new PreflightStore( StateDirectory.get( "preflight" ) );
+  }
+
+  /**
+   * Returns problems found in the jar checked with the key given
+   *
+   * @param key
+   *          digest of the jar and everything else the check depended on
+   * @return problems, empty if there were none, or null if the jar wasn't checked yet
+   */
+  public List<String> getProblems( String key ) throws KettleException {
+    return getList( key, PROBLEMS, PROBLEM );
+  }
+
+  /**
+   * Returns warnings found in the jar checked with the key given
+   *
+   * @return warnings, empty if there were none, or null if the jar wasn't checked yet
+   */
+  public List<String> getWarnings( String key ) throws KettleException {
+    return getList( key, WARNINGS, WARNING );
+  }
+
+  private List<String> getList( String key, String countProperty, String prefix ) throws KettleException {
+    File file = getFile( key );
+    try {
+      Properties record = StateDirectory.readProperties( file );
+      if ( record == null ) {
+        return null;
+      }
+      List<String> list = new ArrayList<String>();
+      for ( int i = 0; i < Const.toInt( record.getProperty( countProperty ), 0 ); i++ ) {
+        list.add( record.getProperty( prefix + i, "" ) );
+      }
+      return list;
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read preflight result " + file, e );
+    }
+  }
+
+  /**
+   * Records problems and warnings found in the jar checked with the key given
+   */
+  public void put( String key, List<String> problems, List<String> warnings ) throws KettleException {
+    Properties record = new Properties();
+    setList( record, PROBLEMS, PROBLEM, problems );
+    setList( record, WARNINGS, WARNING, warnings );
+    record.setProperty( CHECKED, String.valueOf( System.currentTimeMillis() ) );
+    File file = getFile( key );
+    try {
+      StateDirectory.writeProperties( file, record );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write preflight result " + file, e );
+    }
+  }
+
+  private static void setList( Properties record, String countProperty, String prefix, List<String> list ) {
+    record.setProperty( countProperty, String.valueOf( list.size() ) );
+    for ( int i = 0; i < list.size(); i++ ) {
+      record.setProperty( prefix + i, list.get( i ) );
+    }
+  }
+
+  private File getFile( String key ) {
+    return new File( directory, key + ".properties" );
+  }
+}
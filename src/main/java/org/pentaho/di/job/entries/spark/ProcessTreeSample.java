@@ -0,0 +1,90 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Resources held by a process tree at one point in time, as read from /proc.
+ */
+public class ProcessTreeSample {
+  private final long time;
+  private final int processes;
+  private final long cpuMillis;
+  private final long rssBytes;
+  private final int threads;
+  private final int fileDescriptors;
+
+  /**
+   * @param time
+   *          when the sample was taken, in milliseconds since the epoch
+   * @param processes
+   *          live processes in the tree
+   * @param cpuMillis
+   *          user and system CPU time the tree consumed since it started, including reaped children
+   * @param rssBytes
+   *          resident memory of the live processes
+   * @param threads
+   *          threads of the live processes
+   * @param fileDescriptors
+   *          file descriptors open by the live processes
+   */
+  public ProcessTreeSample( long time, int processes, long cpuMillis, long rssBytes, int threads,
+      int fileDescriptors ) {
+    this.time = time;
+    this.processes = processes;
+    this.cpuMillis = cpuMillis;
+    this.rssBytes = rssBytes;
+    this.threads = threads;
+    this.fileDescriptors = fileDescriptors;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public int getProcesses() {
+    return processes;
+  }
+
+  public long getCpuMillis() {
+    return cpuMillis;
+  }
+
+  public long getRssBytes() {
+    return rssBytes;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getFileDescriptors() {
+    return fileDescriptors;
+  }
+
+  @Override
+  public String toString() {
+    return processes + " processes, " + cpuMillis + " ms CPU, " + rssBytes / ( 1024 * 1024 ) + " MB RSS, "
+        + threads + " threads, " + fileDescriptors + " open files";
+  }
+}
@@ -0,0 +1,343 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Samples CPU time, resident memory, threads and open file descriptors of a process and all its descendants from
+ * /proc, Linux only. Samplers of all entries share a single timer thread; a sample reads the stat file of every
+ * process once to find the descendants, so intervals of a few seconds keep the overhead negligible. Resident memory
+ * comes from VmRSS of the status file, which doesn't depend on the page size of the kernel.
+ */
+public class ProcessTreeSampler {
+  public static final File PROC = new File( "/proc" );
+  /**
+   * Samples kept as time series, older ones are dropped; peaks and averages cover the whole run
+   */
+  static final int MAX_SAMPLES = 3600;
+  // proc(5) reports CPU time in USER_HZ, which is 100 on every Linux platform
+  private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "spark-submit-sampler" ).build() );
+
+  private final File procRoot;
+  private final int pid;
+  private final Deque<ProcessTreeSample> samples = new ArrayDeque<ProcessTreeSample>();
+  private ScheduledFuture<?> sampling;
+  private long started;
+  private ProcessTreeSample last;
+  private int count;
+  private long rssTotal;
+  private long peakRss;
+  private int peakThreads;
+  private int peakFileDescriptors;
+  private int peakProcesses;
+
+  /**
+   * @param procRoot
+   *          proc file system, {@link #PROC} unless testing
+   * @param pid
+   *          root of the process tree
+   */
+  public ProcessTreeSampler( File procRoot, int pid ) {
+    this.procRoot = procRoot;
+    this.pid = pid;
+  }
+
+  /**
+   * Returns if process trees can be sampled on this host
+   */
+  public static boolean isSupported() {
+    return new File( PROC, "self/stat" ).isFile();
+  }
+
+  /**
+   * Returns the operating system id of the process. Java 9 exposes it as Process.pid(), older versions keep it in a
+   * private field of the Unix implementation.
+   *
+   * @return pid or -1 if the process doesn't expose it
+   */
+  public static int getPid( Process process ) {
+    try {
+      // Java 9 and later
+      return ( (Number) Process.class.getMethod( "pid" ).invoke( process ) ).intValue();
+    } catch ( NoSuchMethodException e ) {
+      // UNIXProcess of Java 7 and 8
+      for ( Class<?> type = process.getClass(); type != null; type = type.getSuperclass() ) {
+        try {
+          Field field = type.getDeclaredField( "pid" );
+          field.setAccessible( true );
+          return field.getInt( process );
+        } catch ( Exception ignored ) {
+          // try the superclass
+        }
+      }
+    } catch ( Exception e ) {
+      // UnsupportedOperationException of processes not backed by the operating system
+    }
+    return -1;
+  }
+
+  /**
+   * Starts sampling right away and then every interval, until stopped
+   */
+  public synchronized void start( long interval ) {
+    started = System.currentTimeMillis();
+    sampling = TIMER.scheduleAtFixedRate( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if ( sample() == null ) {
+            stop();
+          }
+        } catch ( RuntimeException e ) {
+          // a process exiting mid-read is expected, the next sample sees a consistent tree
+        }
+      }
+    }, 0, interval, TimeUnit.MILLISECONDS );
+  }
+
+  /**
+   * Stops sampling, the samples taken are kept
+   */
+  public synchronized void stop() {
+    if ( sampling != null ) {
+      sampling.cancel( false );
+    }
+  }
+
+  /**
+   * Takes a sample and adds it to the time series
+   *
+   * @return the sample or null if the root process is gone
+   */
+  public ProcessTreeSample sample() {
+    Map<Integer, long[]> stats = readStats();
+    if ( !stats.containsKey( pid ) ) {
+      return null;
+    }
+    Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+    for ( Map.Entry<Integer, long[]> stat : stats.entrySet() ) {
+      int parent = (int) stat.getValue()[0];
+      List<Integer> siblings = children.get( parent );
+      if ( siblings == null ) {
+        siblings = new ArrayList<Integer>();
+        children.put( parent, siblings );
+      }
+      siblings.add( stat.getKey() );
+    }
+
+    int processes = 0;
+    long ticks = 0;
+    long rss = 0;
+    int threads = 0;
+    int fileDescriptors = 0;
+    Deque<Integer> pending = new ArrayDeque<Integer>();
+    pending.add( pid );
+    while ( !pending.isEmpty() ) {
+      int current = pending.removeFirst();
+      long[] stat = stats.get( current );
+      processes++;
+      ticks += stat[1];
+      threads += stat[2];
+      rss += readRss( current );
+      String[] fds = new File( procRoot, current + "/fd" ).list();
+      fileDescriptors += fds == null ? 0 : fds.length;
+      List<Integer> descendants = children.get( current );
+      if ( descendants != null ) {
+        pending.addAll( descendants );
+      }
+    }
+    return record( new ProcessTreeSample( System.currentTimeMillis(), processes,
+        ticks * 1000 / CLOCK_TICKS_PER_SECOND, rss, threads, fileDescriptors ) );
+  }
+
+  private synchronized ProcessTreeSample record( ProcessTreeSample sample ) {
+    if ( last != null && sample.getCpuMillis() < last.getCpuMillis() ) {
+      // CPU time of orphans reparented away from the tree is lost, don't let the total go down
+      sample = new ProcessTreeSample( sample.getTime(), sample.getProcesses(), last.getCpuMillis(),
+          sample.getRssBytes(), sample.getThreads(), sample.getFileDescriptors() );
+    }
+    if ( samples.size() == MAX_SAMPLES ) {
+      samples.removeFirst();
+    }
+    samples.addLast( sample );
+    last = sample;
+    count++;
+    rssTotal += sample.getRssBytes();
+    peakRss = Math.max( peakRss, sample.getRssBytes() );
+    peakThreads = Math.max( peakThreads, sample.getThreads() );
+    peakFileDescriptors = Math.max( peakFileDescriptors, sample.getFileDescriptors() );
+    peakProcesses = Math.max( peakProcesses, sample.getProcesses() );
+    return sample;
+  }
+
+  /**
+   * Reads resident memory of a process
+   *
+   * @return bytes, 0 if the process exited
+   */
+  private long readRss( int process ) {
+    try {
+      return parseRss( Files.toString( new File( procRoot, process + "/status" ), Charsets.US_ASCII ) );
+    } catch ( IOException e ) {
+      return 0;
+    }
+  }
+
+  /**
+   * Parses VmRSS of /proc/[pid]/status, see proc(5)
+   *
+   * @return bytes, 0 if not reported as with kernel threads and zombies
+   */
+  @VisibleForTesting
+  static long parseRss( String status ) {
+    for ( String line : status.split( "\n" ) ) {
+      if ( line.startsWith( "VmRSS:" ) ) {
+        String[] fields = line.substring( "VmRSS:".length() ).trim().split( "\\s+" );
+        try {
+          return Long.parseLong( fields[0] ) * 1024;
+        } catch ( NumberFormatException e ) {
+          return 0;
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Reads parent pid, CPU ticks including reaped children and threads of every process
+   */
+  private Map<Integer, long[]> readStats() {
+    Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+    String[] names = procRoot.list();
+    if ( names == null ) {
+      return stats;
+    }
+    for ( String name : names ) {
+      if ( name.isEmpty() || !Character.isDigit( name.charAt( 0 ) ) ) {
+        continue;
+      }
+      try {
+        long[] stat = parseStat( Files.toString( new File( procRoot, name + "/stat" ), Charsets.US_ASCII ) );
+        if ( stat != null ) {
+          stats.put( Integer.valueOf( name ), stat );
+        }
+      } catch ( IOException e ) {
+        // process exited
+      } catch ( NumberFormatException e ) {
+        // not a process
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Parses /proc/[pid]/stat, see proc(5)
+   *
+   * @return parent pid, utime + stime + cutime + cstime and threads, or null if the line is incomplete
+   */
+  @VisibleForTesting
+  static long[] parseStat( String line ) {
+    // the command name may hold spaces and parentheses, fields follow the last parenthesis
+    int end = line.lastIndexOf( ')' );
+    if ( end < 0 ) {
+      return null;
+    }
+    String[] fields = line.substring( end + 1 ).trim().split( "\\s+" );
+    if ( fields.length < 18 ) {
+      return null;
+    }
+    // fields[0] is field 3 (state) of proc(5)
+    return new long[] { Long.parseLong( fields[1] ),
+      Long.parseLong( fields[11] ) + Long.parseLong( fields[12] ) + Long.parseLong( fields[13] )
+        + Long.parseLong( fields[14] ), Long.parseLong( fields[17] ) };
+  }
+
+  /**
+   * Returns the latest samples, oldest first
+   */
+  public synchronized List<ProcessTreeSample> getSamples() {
+    return new ArrayList<ProcessTreeSample>( samples );
+  }
+
+  public synchronized ProcessTreeSample getLastSample() {
+    return last;
+  }
+
+  public synchronized int getSampleCount() {
+    return count;
+  }
+
+  public synchronized long getPeakRssBytes() {
+    return peakRss;
+  }
+
+  public synchronized long getAverageRssBytes() {
+    return count == 0 ? 0 : rssTotal / count;
+  }
+
+  public synchronized int getPeakThreads() {
+    return peakThreads;
+  }
+
+  public synchronized int getPeakFileDescriptors() {
+    return peakFileDescriptors;
+  }
+
+  public synchronized int getPeakProcesses() {
+    return peakProcesses;
+  }
+
+  public synchronized long getCpuMillis() {
+    return last == null ? 0 : last.getCpuMillis();
+  }
+
+  /**
+   * Returns CPU time of the tree relative to the time it was sampled for, 100 being one core busy all the time
+   */
+  public synchronized int getAverageCpuPercent() {
+    long elapsed = last == null ? 0 : last.getTime() - started;
+    return elapsed <= 0 ? 0 : (int) ( last.getCpuMillis() * 100 / elapsed );
+  }
+}
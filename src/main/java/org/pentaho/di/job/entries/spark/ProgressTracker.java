@@ -0,0 +1,217 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Follows spark-submit output and keeps the progress of the application up to date. Two kinds of lines are read:
+ * <ul>
+ * <li>YARN application reports, e.g. "Application report for application_1427875242006_0029 (state: RUNNING)"</li>
+ * <li>console progress bars printed in client mode, e.g. "[Stage 3:=====>     (45 + 8) / 200][Stage 4:>  (0 + 0) / 50]"
+ * </li>
+ * </ul>
+ * Every line is first checked for the two markers, so lines which are neither cost a couple of substring searches.
+ * Progress bars are redrawn several times a second and are kept from the log, the progress replaces them.
+ * <p>
+ * A stage dropping out of the bar is counted as completed, Spark doesn't tell completed and failed stages apart there.
+ * The tracker may be shared by loggers of both spark-submit streams.
+ */
+public class ProgressTracker implements PatternMatchingStreamLogger.LineFilter {
+  private static final String STAGE_MARKER = "[Stage ";
+  private static final String STATE_MARKER = "state: ";
+
+  private final List<ProgressListener> listeners = new CopyOnWriteArrayList<ProgressListener>();
+  private String applicationId;
+  private String state;
+  private Map<Integer, ApplicationProgress.StageProgress> activeStages =
+      new LinkedHashMap<Integer, ApplicationProgress.StageProgress>();
+  private int completedStages;
+  private long completedStageTasks;
+  private volatile boolean stagesActive;
+  private volatile ApplicationProgress progress = snapshot();
+
+  public void addProgressListener( ProgressListener listener ) {
+    listeners.add( listener );
+  }
+
+  /**
+   * Returns the latest progress, never null
+   */
+  public ApplicationProgress getProgress() {
+    return progress;
+  }
+
+  @Override
+  public boolean isLogged( String line ) {
+    return !consume( line );
+  }
+
+  /**
+   * Feeds a line of output
+   *
+   * @return true if the line is a progress bar
+   */
+  public boolean consume( String line ) {
+    ApplicationProgress changed = null;
+    boolean bar = false;
+    int pos = line.indexOf( STAGE_MARKER );
+    if ( pos >= 0 ) {
+      List<ApplicationProgress.StageProgress> stages = parseStages( line, pos );
+      if ( stages != null ) {
+        bar = line.substring( 0, pos ).trim().isEmpty();
+        changed = onStages( stages );
+      }
+    } else if ( line.indexOf( STATE_MARKER ) >= 0 ) {
+      String newState = ApplicationReportParser.parseState( line );
+      if ( newState != null ) {
+        changed = onState( ApplicationReportParser.parseApplicationId( line ), newState );
+      }
+    } else if ( stagesActive && !line.isEmpty() && line.trim().isEmpty() ) {
+      // the bar is cleared by overwriting it with spaces once no stage is active
+      changed = onStages( new ArrayList<ApplicationProgress.StageProgress>() );
+      bar = true;
+    }
+    if ( changed != null ) {
+      for ( ProgressListener listener : listeners ) {
+        listener.onProgress( changed );
+      }
+    }
+    return bar;
+  }
+
+  private synchronized ApplicationProgress onState( String id, String newState ) {
+    if ( applicationId == null && id != null ) {
+      applicationId = id;
+    }
+    if ( newState.equals( state ) ) {
+      return null;
+    }
+    state = newState;
+    if ( ApplicationReportParser.isFinalState( newState ) ) {
+      completeStages( new LinkedHashMap<Integer, ApplicationProgress.StageProgress>() );
+    }
+    return progress = snapshot();
+  }
+
+  private synchronized ApplicationProgress onStages( List<ApplicationProgress.StageProgress> stages ) {
+    Map<Integer, ApplicationProgress.StageProgress> newStages =
+        new LinkedHashMap<Integer, ApplicationProgress.StageProgress>();
+    for ( ApplicationProgress.StageProgress stage : stages ) {
+      newStages.put( stage.getStageId(), stage );
+    }
+    if ( newStages.equals( activeStages ) ) {
+      return null;
+    }
+    completeStages( newStages );
+    return progress = snapshot();
+  }
+
+  private void completeStages( Map<Integer, ApplicationProgress.StageProgress> newStages ) {
+    for ( ApplicationProgress.StageProgress stage : activeStages.values() ) {
+      if ( !newStages.containsKey( stage.getStageId() ) ) {
+        completedStages++;
+        completedStageTasks += stage.getTotalTasks();
+      }
+    }
+    activeStages = newStages;
+    stagesActive = !newStages.isEmpty();
+  }
+
+  private ApplicationProgress snapshot() {
+    long completedTasks = completedStageTasks;
+    long totalTasks = completedStageTasks;
+    for ( ApplicationProgress.StageProgress stage : activeStages.values() ) {
+      completedTasks += stage.getCompletedTasks();
+      totalTasks += stage.getTotalTasks();
+    }
+    return new ApplicationProgress( applicationId, state, new ArrayList<ApplicationProgress.StageProgress>(
+        activeStages.values() ), completedStages, completedTasks, totalTasks, System.currentTimeMillis() );
+  }
+
+  /**
+   * Parses the bars of all the active stages, "[Stage 3:=====>     (45 + 8) / 200]" each
+   *
+   * @return stages or null if the line isn't a progress bar
+   */
+  static List<ApplicationProgress.StageProgress> parseStages( String line, int from ) {
+    List<ApplicationProgress.StageProgress> stages = new ArrayList<ApplicationProgress.StageProgress>();
+    int pos = from;
+    while ( pos >= 0 ) {
+      int colon = line.indexOf( ':', pos );
+      int open = colon < 0 ? -1 : line.indexOf( '(', colon );
+      int plus = open < 0 ? -1 : line.indexOf( '+', open );
+      int close = plus < 0 ? -1 : line.indexOf( ')', plus );
+      int slash = close < 0 ? -1 : line.indexOf( '/', close );
+      int end = slash < 0 ? -1 : line.indexOf( ']', slash );
+      if ( end < 0 ) {
+        return null;
+      }
+      int stageId = parseInt( line, pos + STAGE_MARKER.length(), colon );
+      int completed = parseInt( line, open + 1, plus );
+      int active = parseInt( line, plus + 1, close );
+      int total = parseInt( line, slash + 1, end );
+      if ( stageId < 0 || completed < 0 || active < 0 || total < 0 ) {
+        return null;
+      }
+      stages.add( new ApplicationProgress.StageProgress( stageId, completed, active, total ) );
+      pos = line.indexOf( STAGE_MARKER, end );
+    }
+    return stages;
+  }
+
+  /**
+   * Parses a non-negative number surrounded by spaces
+   *
+   * @return number or -1 if there is none
+   */
+  private static int parseInt( String line, int start, int end ) {
+    while ( start < end && line.charAt( start ) == ' ' ) {
+      start++;
+    }
+    while ( end > start && line.charAt( end - 1 ) == ' ' ) {
+      end--;
+    }
+    if ( start == end || end - start > 9 ) {
+      return -1;
+    }
+    int value = 0;
+    for ( int i = start; i < end; i++ ) {
+      char c = line.charAt( i );
+      if ( c < '0' || c > '9' ) {
+        return -1;
+      }
+      value = value * 10 + c - '0';
+    }
+    return value;
+  }
+
+  public static interface ProgressListener {
+    public void onProgress( ApplicationProgress progress );
+  }
+}
@@ -0,0 +1,167 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Installs Python requirements with pip into a folder and packs it into a zip archive Spark unpacks next to the
+ * executors. Packages are installed with --target rather than into a virtual environment, so the archive only has to
+ * be put on PYTHONPATH and works with the cluster's own interpreter. Entries are written in name order with a fixed
+ * timestamp, so the same installation always packs into the same bytes.
+ */
+public class PythonEnvironmentBuilder {
+  /**
+   * Interpreter running pip when none is configured
+   */
+  public static final String DEFAULT_PYTHON = "python3";
+
+  private static final int OUTPUT_LINES = 20;
+
+  private String python;
+
+  /**
+   * @param python
+   *          interpreter running pip, the default one if empty
+   */
+  public PythonEnvironmentBuilder( String python ) {
+    this.python = python == null || python.trim().isEmpty() ? DEFAULT_PYTHON : python.trim();
+  }
+
+  /**
+   * Returns the interpreter running pip
+   */
+  public String getPython() {
+    return python;
+  }
+
+  /**
+   * Installs the requirements into the site folder and packs it into the archive
+   *
+   * @param requirements
+   *          requirements or lock file pip takes with -r
+   * @param site
+   *          folder to install into, packed into the archive
+   * @param archive
+   *          zip archive to write
+   */
+  public void build( File requirements, File site, File archive ) throws IOException {
+    site.mkdirs();
+    install( requirements, site );
+    zip( site, archive );
+  }
+
+  /**
+   * Runs pip, failing with the last lines of its output if it doesn't succeed
+   */
+  protected void install( File requirements, File target ) throws IOException {
+    List<String> cmds = Arrays.asList( python, "-m", "pip", "install", "--disable-pip-version-check", "--no-input",
+        "--target", target.getAbsolutePath(), "-r", requirements.getAbsolutePath() );
+    Process process = new ProcessBuilder( cmds ).redirectErrorStream( true ).start();
+    LinkedList<String> output = new LinkedList<String>();
+    BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream(), "UTF-8" ) );
+    try {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        output.add( line );
+        if ( output.size() > OUTPUT_LINES ) {
+          output.removeFirst();
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    try {
+      int exitCode = process.waitFor();
+      if ( exitCode != 0 ) {
+        StringBuilder message = new StringBuilder( "pip exited with status " + exitCode );
+        for ( String line : output ) {
+          message.append( '\n' ).append( line );
+        }
+        throw new IOException( message.toString() );
+      }
+    } catch ( InterruptedException e ) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      throw new IOException( "Interrupted while installing " + requirements, e );
+    }
+  }
+
+  /**
+   * Packs the folder content into a zip archive
+   */
+  static void zip( File dir, File archive ) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( archive ) );
+    try {
+      addEntries( zip, dir, "" );
+    } finally {
+      zip.close();
+    }
+  }
+
+  private static void addEntries( ZipOutputStream zip, File dir, String prefix ) throws IOException {
+    File[] files = dir.listFiles();
+    if ( files == null ) {
+      throw new IOException( "Unable to list " + dir );
+    }
+    Arrays.sort( files );
+    byte[] buffer = new byte[65536];
+    for ( File file : files ) {
+      String name = prefix + file.getName();
+      // compiled files are rebuilt by the interpreter and would make the archive differ between builds
+      if ( file.isDirectory() && !"__pycache__".equals( file.getName() ) ) {
+        ZipEntry entry = new ZipEntry( name + "/" );
+        entry.setTime( 0 );
+        zip.putNextEntry( entry );
+        zip.closeEntry();
+        addEntries( zip, file, name + "/" );
+      } else if ( file.isFile() && !name.endsWith( ".pyc" ) ) {
+        ZipEntry entry = new ZipEntry( name );
+        entry.setTime( 0 );
+        zip.putNextEntry( entry );
+        InputStream is = new FileInputStream( file );
+        try {
+          int n;
+          while ( ( n = is.read( buffer ) ) > 0 ) {
+            zip.write( buffer, 0, n );
+          }
+        } finally {
+          is.close();
+        }
+        zip.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Keeps Python environments built from requirements files, one folder per build key holding the installed packages
+ * and their archive, so unchanged requirements are installed and packed only once. Environments are built into
+ * temporary folders and renamed into place, so a concurrent reader never sees a partial one.
+ */
+public class PythonEnvironmentStore {
+  /**
+   * Folder of an environment the packages are installed into
+   */
+  public static final String SITE = "site";
+
+  /**
+   * Archive of an environment's packages
+   */
+  public static final String ARCHIVE = "pyenv.zip";
+
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder environments are kept in
+   */
+  public PythonEnvironmentStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static PythonEnvironmentStore getDefault() {
+    return new PythonEnvironmentStore( StateDirectory.get( "python-envs" ) );
+  }
+
+  /**
+   * Returns the environment built with the key given
+   *
+   * @return environment folder or null if it wasn't built yet
+   */
+  public File get( String key ) {
+    File dir = new File( directory, key );
+    return new File( dir, ARCHIVE ).isFile() ? dir : null;
+  }
+
+  /**
+   * Returns a temporary folder to build the environment in
+   */
+  public File createTempDir( String key ) throws IOException {
+    directory.mkdirs();
+    File tmp = new File( directory, key + "." + UUID.randomUUID() + ".tmp" );
+    if ( !tmp.mkdir() ) {
+      throw new IOException( "Unable to create " + tmp );
+    }
+    return tmp;
+  }
+
+  /**
+   * Moves the temporary folder built into place
+   *
+   * @return the environment folder
+   */
+  public File put( String key, File tmp ) throws IOException {
+    File dir = new File( directory, key );
+    if ( !tmp.renameTo( dir ) ) {
+      discard( tmp );
+      // a concurrent build of the same key may have won
+      if ( get( key ) == null ) {
+        throw new IOException( "Unable to rename " + tmp + " to " + dir );
+      }
+    }
+    return dir;
+  }
+
+  /**
+   * Copies the archive of an environment to a folder the cluster reads from, e.g. on HDFS, unless it was copied there
+   * before, so spark-submit refers to it there instead of uploading it on every run
+   *
+   * @param location
+   *          folder as any URL Kettle VFS understands
+   * @return URL of the archive published
+   */
+  public static String publish( File environment, String key, String location, VariableSpace space )
+    throws KettleException {
+    String folder = location.endsWith( "/" ) ? location : location + "/";
+    try {
+      FileObject target = KettleVFS.getFileObject( folder + key + ".zip", space );
+      if ( !target.exists() ) {
+        FileObject tmp = KettleVFS.getFileObject( folder + key + "." + UUID.randomUUID() + ".tmp", space );
+        tmp.getParent().createFolder();
+        InputStream is = new FileInputStream( new File( environment, ARCHIVE ) );
+        try {
+          OutputStream os = tmp.getContent().getOutputStream();
+          try {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ( ( n = is.read( buffer ) ) > 0 ) {
+              os.write( buffer, 0, n );
+            }
+          } finally {
+            os.close();
+          }
+        } finally {
+          is.close();
+        }
+        tmp.moveTo( target );
+      }
+      return target.getName().getURI();
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to publish Python environment " + key + " to " + location, e );
+    }
+  }
+
+  /**
+   * Removes a temporary folder whose build failed
+   */
+  public void discard( File tmp ) {
+    File[] children = tmp.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        discard( child );
+      }
+    }
+    tmp.delete();
+  }
+}
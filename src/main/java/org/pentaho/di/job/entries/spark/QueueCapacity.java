@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Resources a scheduler queue can currently give to new containers.
+ */
+public class QueueCapacity {
+  private String queueName;
+  private long availableMemoryMb;
+  private long availableVcores;
+
+  public QueueCapacity( String queueName, long availableMemoryMb, long availableVcores ) {
+    this.queueName = queueName;
+    this.availableMemoryMb = availableMemoryMb;
+    this.availableVcores = availableVcores;
+  }
+
+  /**
+   * Returns the queue name as reported by the scheduler, e.g. "default" or "root.default"
+   */
+  public String getQueueName() {
+    return queueName;
+  }
+
+  public long getAvailableMemoryMb() {
+    return availableMemoryMb;
+  }
+
+  public long getAvailableVcores() {
+    return availableVcores;
+  }
+
+  /**
+   * Returns if this is the queue a job entry refers to by name. Hierarchical names are matched by the last element,
+   * so "default" matches "root.default".
+   */
+  public boolean matches( String name ) {
+    return queueName.equals( name ) || queueName.endsWith( "." + name );
+  }
+
+  @Override
+  public String toString() {
+    return queueName + " (" + availableMemoryMb + " MB, " + availableVcores + " vcores available)";
+  }
+}
@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Picks the candidate queue that can currently fit the application best.
+ */
+public class QueueSelector {
+  private QueueSelector() {
+  }
+
+  /**
+   * Selects the queue with the largest headroom, i.e. with the highest ratio of available to required resources
+   * taking the scarcer of memory and vcores. Ties are resolved in favour of the queue listed first.
+   *
+   * @param candidates
+   *          names of the queues to choose from, in order of preference
+   * @param capacities
+   *          current capacity of scheduler queues
+   * @param requiredMemoryMb
+   *          memory needed by the application
+   * @param requiredVcores
+   *          vcores needed by the application
+   * @return selected queue or null if none of the candidates has any capacity available
+   */
+  public static String select( List<String> candidates, List<QueueCapacity> capacities, long requiredMemoryMb,
+      long requiredVcores ) {
+    String selected = null;
+    double bestHeadroom = 0;
+    for ( String candidate : candidates ) {
+      if ( Const.isEmpty( candidate ) ) {
+        continue;
+      }
+      for ( QueueCapacity capacity : capacities ) {
+        if ( capacity.matches( candidate ) ) {
+          double headroom = Math.min( (double) capacity.getAvailableMemoryMb() / Math.max( 1, requiredMemoryMb ),
+              (double) capacity.getAvailableVcores() / Math.max( 1, requiredVcores ) );
+          if ( headroom > bestHeadroom ) {
+            bestHeadroom = headroom;
+            selected = candidate;
+          }
+          break;
+        }
+      }
+    }
+    return selected;
+  }
+}
@@ -0,0 +1,69 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.pentaho.di.core.Result;
+
+/**
+ * Status of a job running on a submission node
+ */
+public class RemoteJobStatus {
+  private final String log;
+  private final int lastLine;
+  private final boolean finished;
+  private final Result result;
+
+  /**
+   * @param log
+   *          log lines since the requested line, may be null
+   * @param lastLine
+   *          number of the line following the returned ones
+   * @param finished
+   *          true if the job finished or was stopped
+   * @param result
+   *          result of a finished job
+   */
+  public RemoteJobStatus( String log, int lastLine, boolean finished, Result result ) {
+    this.log = log;
+    this.lastLine = lastLine;
+    this.finished = finished;
+    this.result = result;
+  }
+
+  public String getLog() {
+    return log;
+  }
+
+  public int getLastLine() {
+    return lastLine;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public Result getResult() {
+    return result;
+  }
+}
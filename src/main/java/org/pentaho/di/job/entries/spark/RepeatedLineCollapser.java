@@ -0,0 +1,149 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Collapses runs of lines which only differ in numbers, like the "Application report for application_... (state:
+ * RUNNING)" line spark-submit prints every second, timestamps and counters included. The first line of a run is
+ * logged, then a summary carrying the latest line every summary interval and once the run ends, so the final values
+ * are never lost. A change of any other character, e.g. a new application state, starts a new run.
+ * <p>
+ * Lines are compared by a hash of their text with every run of digits folded into one, memory used doesn't depend
+ * on the output. Numbers following "stage", "task" or "TID", like in "Finished task 12.0 in stage 4.0 (TID 48)",
+ * identify what the line is about and are kept, so progress through stages and tasks is never collapsed. Not thread
+ * safe, every stream needs its own collapser.
+ */
+public class RepeatedLineCollapser {
+  private static final long DIGITS = 0x9E3779B97F4A7C15L;
+  // words, or word endings as in ResultStage, followed by a number that isn't folded
+  private static final String[] IDENTIFIERS = { "stage", "task", "tid" };
+
+  private final PatternMatchingStreamLogger.LineListener output;
+  private final long summaryInterval;
+  private boolean started;
+  private long runHash;
+  private String lastLine;
+  private long repeats;
+  private long lastSummary;
+
+  /**
+   * @param output
+   *          receives the lines to log
+   * @param summaryInterval
+   *          milliseconds between summaries of a run still going on
+   */
+  public RepeatedLineCollapser( PatternMatchingStreamLogger.LineListener output, long summaryInterval ) {
+    this.output = output;
+    this.summaryInterval = summaryInterval;
+  }
+
+  /**
+   * Passes the line on unless it repeats the previous one
+   */
+  public void onLine( String line ) {
+    long hash = hash( line );
+    if ( started && hash == runHash ) {
+      repeats++;
+      lastLine = line;
+      long now = now();
+      if ( now - lastSummary >= summaryInterval ) {
+        summarize();
+        lastSummary = now;
+      }
+      return;
+    }
+    flush();
+    started = true;
+    runHash = hash;
+    lastSummary = now();
+    output.onLine( line );
+  }
+
+  /**
+   * Passes on the summary of the current run, if any line was held back
+   */
+  public void flush() {
+    if ( repeats > 0 ) {
+      summarize();
+    }
+  }
+
+  private void summarize() {
+    output.onLine( repeats == 1 ? lastLine + " (repeated once)"
+        : String.format( "%s (repeated %,d times)", lastLine, repeats ) );
+    repeats = 0;
+    lastLine = null;
+  }
+
+  /**
+   * Hashes the line with every run of digits replaced by a single placeholder, except stage and task identifiers
+   */
+  static long hash( String line ) {
+    long hash = 1125899906842597L;
+    boolean inDigits = false;
+    boolean identifier = false;
+    for ( int i = 0; i < line.length(); i++ ) {
+      char c = line.charAt( i );
+      if ( c >= '0' && c <= '9' ) {
+        if ( !inDigits ) {
+          identifier = isIdentifier( line, i );
+          if ( !identifier ) {
+            hash = 31 * hash + DIGITS;
+          }
+          inDigits = true;
+        }
+        if ( identifier ) {
+          hash = 31 * hash + c;
+        }
+      } else {
+        hash = 31 * hash + c;
+        inDigits = false;
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * Returns if the number starting at the index follows one of the identifier words and a space
+   */
+  private static boolean isIdentifier( String line, int start ) {
+    int end = start;
+    while ( end > 0 && line.charAt( end - 1 ) == ' ' ) {
+      end--;
+    }
+    if ( end == start ) {
+      return false;
+    }
+    for ( String word : IDENTIFIERS ) {
+      if ( end >= word.length() && line.regionMatches( true, end - word.length(), word, 0, word.length() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,254 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ContainerFactory;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Lets the Spark application hand results back to the job. Every record is parsed as soon as it arrives, either as a
+ * driver output line starting with the marker or as a line appended to the result file:
+ *
+ * <pre>
+ * PDI_RESULT rowCount=42               sets variable rowCount
+ * PDI_RESULT {"partition":"2019-10-01","rows":42}   adds a result row
+ * </pre>
+ *
+ * Lines written to the result file are records without the marker. Marker lines are kept from the log.
+ */
+public class ResultChannel implements PatternMatchingStreamLogger.LineFilter {
+  public static final String DEFAULT_MARKER = "PDI_RESULT";
+
+  private static final long POLL_INTERVAL = 200;
+
+  private static final ContainerFactory ORDERED = new ContainerFactory() {
+    @SuppressWarnings( "rawtypes" )
+    @Override
+    public Map createObjectContainer() {
+      return new LinkedHashMap();
+    }
+
+    @SuppressWarnings( "rawtypes" )
+    @Override
+    public List creatArrayContainer() {
+      return new ArrayList();
+    }
+  };
+
+  private String marker;
+  private File file;
+  private VariableListener listener;
+  private List<RowMetaAndData> rows = new ArrayList<RowMetaAndData>();
+  private long offset;
+  private ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+  private Thread tailer;
+  private volatile boolean closed;
+
+  /**
+   * @param marker
+   *          prefix of driver output lines holding records, null to read the result file only
+   * @param file
+   *          local file the application appends records to, null to read driver output only
+   * @param listener
+   *          notified about every variable as it arrives
+   */
+  public ResultChannel( String marker, File file, VariableListener listener ) {
+    this.marker = marker;
+    this.file = file;
+    this.listener = listener;
+  }
+
+  /**
+   * Starts following the result file, records left from a previous run are discarded
+   */
+  public void start() {
+    if ( file == null ) {
+      return;
+    }
+    file.delete();
+    tailer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        while ( !closed ) {
+          readFile( false );
+          try {
+            Thread.sleep( POLL_INTERVAL );
+          } catch ( InterruptedException e ) {
+            return;
+          }
+        }
+      }
+    }, "result-channel-" + file.getName() );
+    tailer.setDaemon( true );
+    tailer.start();
+  }
+
+  /**
+   * Stops following the result file without reading it anymore
+   */
+  public void stop() {
+    closed = true;
+    if ( tailer != null ) {
+      tailer.interrupt();
+    }
+  }
+
+  /**
+   * Stops following the result file and reads the records it still holds
+   *
+   * @return rows received
+   */
+  public List<RowMetaAndData> close() throws InterruptedException {
+    closed = true;
+    if ( tailer != null ) {
+      tailer.interrupt();
+      tailer.join();
+    }
+    if ( file != null ) {
+      readFile( true );
+    }
+    synchronized ( rows ) {
+      return new ArrayList<RowMetaAndData>( rows );
+    }
+  }
+
+  @Override
+  public boolean isLogged( String line ) {
+    if ( marker == null || !line.startsWith( marker ) ) {
+      return true;
+    }
+    parse( line.substring( marker.length() ) );
+    return false;
+  }
+
+  /**
+   * Parses a single record, records which are neither rows nor variables are ignored
+   */
+  public void parse( String record ) {
+    String text = record.trim();
+    if ( text.startsWith( "{" ) ) {
+      try {
+        Object json = new JSONParser().parse( text, ORDERED );
+        if ( json instanceof Map ) {
+          RowMetaAndData row = toRow( (Map<?, ?>) json );
+          synchronized ( rows ) {
+            rows.add( row );
+          }
+        }
+      } catch ( ParseException e ) {
+        // not a row
+      }
+      return;
+    }
+    int pos = text.indexOf( '=' );
+    if ( pos > 0 ) {
+      listener.onVariable( text.substring( 0, pos ).trim(), text.substring( pos + 1 ).trim() );
+    }
+  }
+
+  private static RowMetaAndData toRow( Map<?, ?> json ) {
+    RowMetaAndData row = new RowMetaAndData();
+    for ( Map.Entry<?, ?> field : json.entrySet() ) {
+      String name = String.valueOf( field.getKey() );
+      Object value = field.getValue();
+      if ( value instanceof Long ) {
+        row.addValue( name, ValueMetaInterface.TYPE_INTEGER, value );
+      } else if ( value instanceof Number ) {
+        row.addValue( name, ValueMetaInterface.TYPE_NUMBER, ( (Number) value ).doubleValue() );
+      } else if ( value instanceof Boolean ) {
+        row.addValue( name, ValueMetaInterface.TYPE_BOOLEAN, value );
+      } else if ( value == null || value instanceof String ) {
+        row.addValue( name, ValueMetaInterface.TYPE_STRING, value );
+      } else {
+        // nested objects and arrays are passed on as JSON
+        row.addValue( name, ValueMetaInterface.TYPE_STRING, JSONValue.toJSONString( value ) );
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Parses complete lines appended to the result file since the last read
+   *
+   * @param all
+   *          parse the last line even if it isn't terminated
+   */
+  private synchronized void readFile( boolean all ) {
+    if ( !file.exists() || file.length() <= offset && !all ) {
+      return;
+    }
+    List<String> lines = new ArrayList<String>();
+    try {
+      RandomAccessFile raf = new RandomAccessFile( file, "r" );
+      try {
+        raf.seek( offset );
+        byte[] buffer = new byte[8192];
+        int n;
+        while ( ( n = raf.read( buffer ) ) > 0 ) {
+          offset += n;
+          for ( int i = 0; i < n; i++ ) {
+            if ( buffer[i] == '\n' ) {
+              lines.add( partialLine.toString( "UTF-8" ) );
+              partialLine.reset();
+            } else {
+              partialLine.write( buffer[i] );
+            }
+          }
+        }
+      } finally {
+        raf.close();
+      }
+    } catch ( IOException e ) {
+      // lines read so far are parsed, the rest on the next poll
+    }
+    if ( all && partialLine.size() > 0 ) {
+      try {
+        lines.add( partialLine.toString( "UTF-8" ) );
+      } catch ( IOException e ) {
+        // UTF-8 is always supported
+      }
+      partialLine.reset();
+    }
+    for ( String line : lines ) {
+      parse( line );
+    }
+  }
+
+  public static interface VariableListener {
+    public void onVariable( String name, String value );
+  }
+}
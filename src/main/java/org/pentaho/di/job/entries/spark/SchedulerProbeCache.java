@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Keeps scheduler probe results for a few seconds, shared by all job entries in the JVM. Concurrent requests for the
+ * same scheduler wait for a single probe instead of issuing their own.
+ */
+public class SchedulerProbeCache {
+  /**
+   * System property (e.g. set in kettle.properties) overriding the number of seconds results are kept
+   */
+  public static final String TTL_PROPERTY = "SPARK_SCHEDULER_PROBE_CACHE_SECONDS";
+
+  private static final Cache<String, List<QueueCapacity>> CACHE = CacheBuilder.newBuilder().maximumSize( 100 )
+      .expireAfterWrite( Const.toInt( System.getProperty( TTL_PROPERTY ), 10 ), TimeUnit.SECONDS ).build();
+
+  private SchedulerProbeCache() {
+  }
+
+  /**
+   * Returns recent capacity of the scheduler's queues, probing the scheduler only if there are no cached results
+   */
+  public static List<QueueCapacity> probe( final SchedulerProbe probe ) throws KettleException {
+    try {
+      return CACHE.get( probe.getId(), new Callable<List<QueueCapacity>>() {
+        @Override
+        public List<QueueCapacity> call() throws KettleException {
+          return probe.probe();
+        }
+      } );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof KettleException ) {
+        throw (KettleException) e.getCause();
+      }
+      throw new KettleException( e.getCause() );
+    } catch ( UncheckedExecutionException e ) {
+      throw new KettleException( e.getCause() );
+    }
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    CACHE.invalidateAll();
+  }
+}
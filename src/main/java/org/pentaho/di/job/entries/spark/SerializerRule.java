@@ -0,0 +1,66 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Warns about the Java serializer, which is slower and more verbose than Kryo for shuffled and cached data. The
+ * default one is only commented on when the settings tell the application shuffles or caches a lot.
+ */
+public class SerializerRule extends PerformanceRule {
+  static final String JAVA_SERIALIZER = "org.apache.spark.serializer.JavaSerializer";
+  static final String[] SHUFFLE_SETTINGS = { "spark.sql.shuffle.partitions", "spark.default.parallelism",
+    "spark.shuffle.file.buffer", "spark.reducer.maxSizeInFlight", "spark.rdd.compress" };
+
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    String serializer = entry.getConfigParam( "spark.serializer" );
+    if ( JAVA_SERIALIZER.equals( serializer ) ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_WARNING, entry, "JavaSerializer" );
+    } else if ( serializer == null && !entry.isRegisterKryo() ) {
+      // the Java serializer is the default one
+      String setting = getShuffleSetting( entry );
+      if ( setting != null ) {
+        addRemark( remarks, CheckResultInterface.TYPE_RESULT_COMMENT, entry, "DefaultSerializer", setting );
+      }
+    }
+  }
+
+  /**
+   * Returns the first shuffle or cache setting of the entry
+   *
+   * @return setting name or null if there is none
+   */
+  private static String getShuffleSetting( JobEntrySparkSubmit entry ) {
+    for ( String name : SHUFFLE_SETTINGS ) {
+      if ( entry.getConfigParam( name ) != null ) {
+        return name;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line based control protocol spoken between the plugin and a warm session driver. Every request and response is a
+ * single line of tab separated, URL encoded fields. Requests start with the session token and the operation:
+ * <ul>
+ * <li><code>token run group className args...</code> runs the main method of the class under the job group given and
+ * answers once it is over</li>
+ * <li><code>token cancel group</code> cancels Spark jobs of the group</li>
+ * <li><code>token ping</code> checks the session is alive</li>
+ * <li><code>token shutdown</code> stops the Spark context and the driver</li>
+ * </ul>
+ * Responses are either <code>SUCCEEDED</code> or <code>FAILED message</code>. The driver announces its port by printing
+ * <code>SPARK_SESSION_PORT port</code> once it is ready. Kept free of any dependencies, as the class also runs in the
+ * Spark driver.
+ */
+public final class SessionProtocol {
+  public static final String PORT_MARKER = "SPARK_SESSION_PORT";
+
+  public static final String OP_RUN = "run";
+  public static final String OP_CANCEL = "cancel";
+  public static final String OP_PING = "ping";
+  public static final String OP_SHUTDOWN = "shutdown";
+
+  public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+  public static final String STATUS_FAILED = "FAILED";
+
+  private static final String ENCODING = "UTF-8";
+
+  private SessionProtocol() {
+  }
+
+  /**
+   * Encodes the fields into a single protocol line, without the line terminator
+   */
+  public static String encode( List<String> fields ) {
+    StringBuilder line = new StringBuilder();
+    try {
+      for ( String field : fields ) {
+        if ( line.length() > 0 ) {
+          line.append( '\t' );
+        }
+        line.append( URLEncoder.encode( field == null ? "" : field, ENCODING ) );
+      }
+    } catch ( UnsupportedEncodingException e ) {
+      throw new IllegalStateException( e );
+    }
+    return line.toString();
+  }
+
+  /**
+   * Decodes a protocol line into its fields
+   */
+  public static List<String> decode( String line ) {
+    List<String> fields = new ArrayList<String>();
+    if ( line == null || line.isEmpty() ) {
+      return fields;
+    }
+    try {
+      for ( String field : line.split( "\t", -1 ) ) {
+        fields.add( URLDecoder.decode( field, ENCODING ) );
+      }
+    } catch ( UnsupportedEncodingException e ) {
+      throw new IllegalStateException( e );
+    }
+    return fields;
+  }
+
+  /**
+   * Returns the port announced in the driver output line given
+   *
+   * @return port or -1 if the line doesn't announce it
+   */
+  public static int parsePort( String line ) {
+    int index = line == null ? -1 : line.indexOf( PORT_MARKER );
+    if ( index < 0 ) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt( line.substring( index + PORT_MARKER.length() ).trim() );
+    } catch ( NumberFormatException e ) {
+      return -1;
+    }
+  }
+}
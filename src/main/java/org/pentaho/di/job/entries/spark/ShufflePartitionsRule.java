@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Warns about the default 200 shuffle partitions kept while the application runs more cores than that, which leaves
+ * cores idle during every shuffle.
+ */
+public class ShufflePartitionsRule extends PerformanceRule {
+  static final int DEFAULT_PARTITIONS = 200;
+
+  @Override
+  public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+    if ( entry.getConfigParam( "spark.sql.shuffle.partitions" ) != null ) {
+      return;
+    }
+    int executors = getExecutorCount( entry );
+    if ( executors == Integer.MAX_VALUE ) {
+      // unbounded dynamic allocation
+      return;
+    }
+    long cores = (long) executors * getInt( entry, "spark.executor.cores", 1 );
+    if ( cores > DEFAULT_PARTITIONS ) {
+      addRemark( remarks, CheckResultInterface.TYPE_RESULT_WARNING, entry, "ShufflePartitions", DEFAULT_PARTITIONS,
+          cores );
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Talks to the cluster manager about applications submitted by spark-submit. Implementations can be replaced by a
+ * local stub in tests.
+ */
+public interface SparkApplicationClient {
+  /**
+   * Returns current status of the application
+   *
+   * @param applicationId
+   *          id of the application, e.g. application_1427875242006_0029
+   * @return application status or null if the cluster manager doesn't know the application
+   */
+  ApplicationStatus getApplicationStatus( String applicationId ) throws KettleException;
+
+  /**
+   * Asks the cluster manager to kill the application
+   *
+   * @param applicationId
+   *          id of the application, e.g. application_1427875242006_0029
+   */
+  void killApplication( String applicationId ) throws KettleException;
+}
@@ -0,0 +1,307 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+/**
+ * A single running spark-submit process together with the loggers pumping its output. Keeps track of the application
+ * id and state spark-submit reports, so callers can react on state transitions, and of the last time it showed any
+ * activity, so a hung submission can be told apart from a busy one. Lifecycle events are published to an event bus,
+ * so any number of consumers can follow the submission without adding latency to the threads reading its output.
+ */
+public class SparkSubmission {
+  private static final int LAST_LINES = 100;
+
+  private String name;
+  private LogChannelInterface log;
+  private Process proc;
+  private AtomicBoolean submitted = new AtomicBoolean( false );
+  private PatternMatchingStreamLogger errorLogger;
+  private PatternMatchingStreamLogger outputLogger;
+  private Thread errorLoggerThread;
+  private Thread outputLoggerThread;
+  private List<StateListener> stateListeners = new CopyOnWriteArrayList<StateListener>();
+  private ProgressTracker progressTracker = new ProgressTracker();
+  private volatile String applicationId;
+  private volatile String state;
+  private volatile boolean cancelled;
+  private volatile boolean finishedPublished;
+  private volatile long lastActivity = System.currentTimeMillis();
+  private volatile long lastLineHash;
+  private final LinkedList<String> lastLines = new LinkedList<String>();
+  private final SubmissionEventBus events = new SubmissionEventBus();
+
+  /**
+   * @param name
+   *          name used in log messages, e.g. the master and queue the application was submitted to
+   * @param log
+   *          log channel spark-submit output is written to
+   * @param proc
+   *          started spark-submit process
+   * @param patterns
+   *          patterns considered as an evidence of application being submitted
+   */
+  public SparkSubmission( String name, LogChannelInterface log, Process proc, String[] patterns ) {
+    this.name = name;
+    this.log = log;
+    this.proc = proc;
+    errorLogger = new PatternMatchingStreamLogger( log, proc.getErrorStream(), patterns, submitted );
+    outputLogger = new PatternMatchingStreamLogger( log, proc.getInputStream(), patterns, submitted );
+
+    PatternMatchingStreamLogger.LineListener lineListener = new PatternMatchingStreamLogger.LineListener() {
+      @Override
+      public void onLine( String line ) {
+        parseLine( line );
+      }
+    };
+    errorLogger.addLineListener( lineListener );
+    outputLogger.addLineListener( lineListener );
+    errorLogger.addLineFilter( progressTracker );
+    outputLogger.addLineFilter( progressTracker );
+    progressTracker.addProgressListener( new ProgressTracker.ProgressListener() {
+      @Override
+      public void onProgress( ApplicationProgress progress ) {
+        lastActivity = System.currentTimeMillis();
+      }
+    } );
+    PatternMatchingStreamLogger.PatternMatchedListener patternListener =
+        new PatternMatchingStreamLogger.PatternMatchedListener() {
+          @Override
+          public void onPatternFound( String pattern ) {
+            publish( SubmissionEvent.Type.PATTERN_MATCHED, pattern );
+          }
+        };
+    errorLogger.addPatternMatchedListener( patternListener );
+    outputLogger.addPatternMatchedListener( patternListener );
+  }
+
+  public void addPatternMatchedListener( PatternMatchingStreamLogger.PatternMatchedListener pml ) {
+    errorLogger.addPatternMatchedListener( pml );
+    outputLogger.addPatternMatchedListener( pml );
+  }
+
+  public void addLineListener( PatternMatchingStreamLogger.LineListener ll ) {
+    errorLogger.addLineListener( ll );
+    outputLogger.addLineListener( ll );
+  }
+
+  public void addLineFilter( PatternMatchingStreamLogger.LineFilter lf ) {
+    errorLogger.addLineFilter( lf );
+    outputLogger.addLineFilter( lf );
+  }
+
+  public void addStateListener( StateListener sl ) {
+    stateListeners.add( sl );
+  }
+
+  public void addProgressListener( ProgressTracker.ProgressListener pl ) {
+    progressTracker.addProgressListener( pl );
+  }
+
+  /**
+   * Returns the bus lifecycle events of the submission are published to
+   */
+  public SubmissionEventBus getEvents() {
+    return events;
+  }
+
+  private void publish( SubmissionEvent.Type type, String value ) {
+    events.publish( new SubmissionEvent( type, this, value ) );
+  }
+
+  /**
+   * Starts pumping spark-submit output
+   */
+  public void start() {
+    publish( SubmissionEvent.Type.STARTED, null );
+    errorLoggerThread = new Thread( errorLogger );
+    errorLoggerThread.start();
+    outputLoggerThread = new Thread( outputLogger );
+    outputLoggerThread.start();
+  }
+
+  private void parseLine( String line ) {
+    synchronized ( lastLines ) {
+      lastLines.add( line );
+      if ( lastLines.size() > LAST_LINES ) {
+        lastLines.removeFirst();
+      }
+    }
+    // periodic reports differing in numbers only don't count as activity, unless they report a running application:
+    // in cluster mode they are all spark-submit prints while the application runs
+    String newState = ApplicationReportParser.parseState( line );
+    long hash = RepeatedLineCollapser.hash( line );
+    if ( hash != lastLineHash || ApplicationReportParser.STATE_RUNNING.equals( newState ) ) {
+      lastLineHash = hash;
+      lastActivity = System.currentTimeMillis();
+    }
+    if ( applicationId == null ) {
+      applicationId = ApplicationReportParser.parseApplicationId( line );
+      if ( applicationId != null ) {
+        publish( SubmissionEvent.Type.APPLICATION_ID, applicationId );
+      }
+    }
+    if ( newState != null && !newState.equals( state ) ) {
+      String oldState = state;
+      state = newState;
+      lastActivity = System.currentTimeMillis();
+      publish( SubmissionEvent.Type.STATE_CHANGED, newState );
+      for ( StateListener stateListener : stateListeners ) {
+        stateListener.onStateChanged( this, oldState, newState );
+      }
+    }
+  }
+
+  /**
+   * Waits for spark-submit to finish and for the loggers to read all the output
+   *
+   * @return spark-submit exit code
+   */
+  public int waitFor() throws InterruptedException, IOException {
+    proc.waitFor();
+
+    // wait until loggers read all data from stdout and stderr
+    errorLoggerThread.join();
+    outputLoggerThread.join();
+
+    // close the streams
+    // otherwise you get "Too many open files, java.io.IOException" after a lot of iterations
+    proc.getErrorStream().close();
+    proc.getOutputStream().close();
+
+    int exitCode = proc.exitValue();
+    if ( !finishedPublished ) {
+      finishedPublished = true;
+      publish( SubmissionEvent.Type.FINISHED, String.valueOf( exitCode ) );
+    }
+    return exitCode;
+  }
+
+  /**
+   * Returns if spark-submit process has exited
+   */
+  public boolean isFinished() {
+    try {
+      proc.exitValue();
+      return true;
+    } catch ( IllegalThreadStateException e ) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns if spark-submit process has exited with zero exit code
+   */
+  public boolean isSucceeded() {
+    return isFinished() && proc.exitValue() == 0;
+  }
+
+  /**
+   * Stops following the application and terminates spark-submit, the application keeps running on the cluster
+   */
+  public void detach() {
+    submitted.set( true );
+    publish( SubmissionEvent.Type.DETACHED, null );
+    proc.destroy();
+  }
+
+  /**
+   * Terminates spark-submit and kills the application on the cluster if its id is known
+   *
+   * @param client
+   *          client used to kill the application, may be null in which case only spark-submit is terminated
+   */
+  public void cancel( SparkApplicationClient client ) {
+    cancelled = true;
+    publish( SubmissionEvent.Type.KILLED, null );
+    proc.destroy();
+    if ( client != null && applicationId != null ) {
+      try {
+        client.killApplication( applicationId );
+      } catch ( KettleException e ) {
+        log.logError( "Unable to kill application " + applicationId, e );
+      }
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Process getProcess() {
+    return proc;
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  /**
+   * Returns the latest progress spark-submit reported
+   */
+  public ApplicationProgress getProgress() {
+    return progressTracker.getProgress();
+  }
+
+  public boolean isSubmitted() {
+    return submitted.get();
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Returns when spark-submit last printed a new line or reported a state or progress change
+   */
+  public long getLastActivity() {
+    return lastActivity;
+  }
+
+  /**
+   * Returns the last lines spark-submit printed, including the ones left out of the log
+   */
+  public List<String> getLastLines() {
+    synchronized ( lastLines ) {
+      return new ArrayList<String>( lastLines );
+    }
+  }
+
+  public static interface StateListener {
+    public void onStateChanged( SparkSubmission submission, String oldState, String newState );
+  }
+}
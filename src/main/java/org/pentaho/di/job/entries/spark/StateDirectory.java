@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Locates folders the plugin keeps its state and caches in, under the Kettle home directory by default.
+ */
+public class StateDirectory {
+  /**
+   * System property (e.g. set in kettle.properties) overriding the root folder
+   */
+  public static final String ROOT_PROPERTY = "SPARK_PLUGIN_STATE_DIR";
+
+  private StateDirectory() {
+  }
+
+  /**
+   * Returns the folder with given name, creating it if necessary
+   *
+   * @param name
+   *          folder name, e.g. "submissions"
+   */
+  public static File get( String name ) {
+    String root = System.getProperty( ROOT_PROPERTY );
+    if ( Const.isEmpty( root ) ) {
+      root = Const.getKettleDirectory() + File.separator + "spark";
+    }
+    File dir = new File( root, name );
+    dir.mkdirs();
+    return dir;
+  }
+
+  /**
+   * Reads properties file
+   *
+   * @return properties or null if the file doesn't exist
+   */
+  public static Properties readProperties( File file ) throws IOException {
+    if ( !file.exists() ) {
+      return null;
+    }
+    Properties properties = new Properties();
+    InputStream is = new FileInputStream( file );
+    try {
+      properties.load( is );
+    } finally {
+      is.close();
+    }
+    return properties;
+  }
+
+  /**
+   * Replaces properties file atomically, so concurrent readers see either the old or the new content
+   */
+  public static void writeProperties( File file, Properties properties ) throws IOException {
+    File tmp = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+    OutputStream os = new FileOutputStream( tmp );
+    try {
+      properties.store( os, null );
+    } finally {
+      os.close();
+    }
+    if ( !tmp.renameTo( file ) ) {
+      // some platforms don't replace existing files on rename
+      file.delete();
+      if ( !tmp.renameTo( file ) ) {
+        tmp.delete();
+        throw new IOException( "Unable to rename " + tmp + " to " + file );
+      }
+    }
+  }
+}
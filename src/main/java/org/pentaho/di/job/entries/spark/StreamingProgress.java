@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Progress of a Structured Streaming query as reported by StreamingQueryProgress after every micro-batch.
+ */
+public class StreamingProgress {
+  private String id;
+  private String name;
+  private long batchId;
+  private long numInputRows;
+  private double inputRowsPerSecond;
+  private double processedRowsPerSecond;
+  private long batchDurationMs;
+  private long stateMemoryBytes;
+
+  /**
+   * Reads the progress JSON
+   *
+   * @return progress or null if the object isn't a query progress
+   */
+  public static StreamingProgress fromJson( JSONObject json ) {
+    if ( !( json.get( "batchId" ) instanceof Number ) ) {
+      return null;
+    }
+    StreamingProgress progress = new StreamingProgress();
+    progress.id = (String) json.get( "id" );
+    progress.name = (String) json.get( "name" );
+    progress.batchId = getNumber( json, "batchId" ).longValue();
+    progress.numInputRows = getNumber( json, "numInputRows" ).longValue();
+    // NaN and infinite rates are left out of the JSON
+    progress.inputRowsPerSecond = getNumber( json, "inputRowsPerSecond" ).doubleValue();
+    progress.processedRowsPerSecond = getNumber( json, "processedRowsPerSecond" ).doubleValue();
+    Object durations = json.get( "durationMs" );
+    if ( durations instanceof JSONObject ) {
+      progress.batchDurationMs = getNumber( (JSONObject) durations, "triggerExecution" ).longValue();
+    }
+    Object operators = json.get( "stateOperators" );
+    if ( operators instanceof JSONArray ) {
+      for ( Object operator : (JSONArray) operators ) {
+        if ( operator instanceof JSONObject ) {
+          progress.stateMemoryBytes += getNumber( (JSONObject) operator, "memoryUsedBytes" ).longValue();
+        }
+      }
+    }
+    return progress;
+  }
+
+  private static Number getNumber( JSONObject json, String key ) {
+    Object value = json.get( key );
+    return value instanceof Number ? (Number) value : Long.valueOf( 0 );
+  }
+
+  /**
+   * Returns the query id, which survives restarts from the same checkpoint
+   */
+  public String getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getBatchId() {
+    return batchId;
+  }
+
+  public long getNumInputRows() {
+    return numInputRows;
+  }
+
+  public double getInputRowsPerSecond() {
+    return inputRowsPerSecond;
+  }
+
+  public double getProcessedRowsPerSecond() {
+    return processedRowsPerSecond;
+  }
+
+  /**
+   * Returns how long the micro-batch took to execute
+   */
+  public long getBatchDurationMs() {
+    return batchDurationMs;
+  }
+
+  /**
+   * Returns memory used by the state stores of all the stateful operators
+   */
+  public long getStateMemoryBytes() {
+    return stateMemoryBytes;
+  }
+
+  /**
+   * Returns if rows arrived faster than the query processed them
+   */
+  public boolean isLagging() {
+    return numInputRows > 0 && processedRowsPerSecond < inputRowsPerSecond;
+  }
+}
@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Picks StreamingQueryProgress reports out of driver output. Spark logs them pretty printed over many lines after
+ * "Streaming query made progress: ", applications printing the progress themselves usually use a single line. Lines
+ * of a report are kept from the log, so the log doesn't grow with every micro-batch.
+ * <p>
+ * The parser may be shared by loggers of several streams, every thread assembles its own reports.
+ */
+public class StreamingProgressParser implements PatternMatchingStreamLogger.LineFilter {
+  public static final String PROGRESS_MARKER = "Streaming query made progress: ";
+
+  // guards memory when a report never ends
+  private static final int MAX_REPORT_LINES = 5000;
+
+  private final ProgressListener listener;
+  private final ThreadLocal<Report> reports = new ThreadLocal<Report>() {
+    @Override
+    protected Report initialValue() {
+      return new Report();
+    }
+  };
+
+  public StreamingProgressParser( ProgressListener listener ) {
+    this.listener = listener;
+  }
+
+  @Override
+  public boolean isLogged( String line ) {
+    return !consume( line );
+  }
+
+  /**
+   * Feeds a line of output
+   *
+   * @return true if the line is a part of a progress report
+   */
+  public boolean consume( String line ) {
+    Report report = reports.get();
+    if ( report.text == null ) {
+      int pos = line.indexOf( PROGRESS_MARKER );
+      String json;
+      if ( pos >= 0 ) {
+        json = line.substring( pos + PROGRESS_MARKER.length() );
+      } else if ( line.trim().startsWith( "{" ) && line.contains( "\"processedRowsPerSecond\"" ) ) {
+        json = line.trim();
+      } else {
+        return false;
+      }
+      report.start();
+      report.append( json );
+    } else {
+      report.append( "\n" + line );
+    }
+    if ( report.isComplete() ) {
+      String text = report.text.toString();
+      report.reset();
+      notify( text );
+    } else if ( report.lines > MAX_REPORT_LINES ) {
+      report.reset();
+    }
+    return true;
+  }
+
+  private void notify( String text ) {
+    try {
+      Object json = new JSONParser().parse( text );
+      if ( json instanceof JSONObject ) {
+        StreamingProgress progress = StreamingProgress.fromJson( (JSONObject) json );
+        if ( progress != null ) {
+          listener.onProgress( progress );
+        }
+      }
+    } catch ( ParseException e ) {
+      // not a progress report after all
+    }
+  }
+
+  public static interface ProgressListener {
+    public void onProgress( StreamingProgress progress );
+  }
+
+  /**
+   * Report being assembled, tracks JSON nesting to find its end
+   */
+  private static class Report {
+    private StringBuilder text;
+    private int depth;
+    private int lines;
+    private boolean inString;
+    private boolean escaped;
+    private boolean started;
+
+    void start() {
+      text = new StringBuilder();
+    }
+
+    void reset() {
+      text = null;
+      depth = 0;
+      lines = 0;
+      inString = false;
+      escaped = false;
+      started = false;
+    }
+
+    void append( String chunk ) {
+      lines++;
+      text.append( chunk );
+      for ( int i = 0; i < chunk.length(); i++ ) {
+        char c = chunk.charAt( i );
+        if ( escaped ) {
+          escaped = false;
+        } else if ( inString ) {
+          if ( c == '\\' ) {
+            escaped = true;
+          } else if ( c == '"' ) {
+            inString = false;
+          }
+        } else if ( c == '"' ) {
+          inString = true;
+        } else if ( c == '{' ) {
+          depth++;
+          started = true;
+        } else if ( c == '}' ) {
+          depth--;
+        }
+      }
+    }
+
+    boolean isComplete() {
+      return started && depth <= 0;
+    }
+  }
+}
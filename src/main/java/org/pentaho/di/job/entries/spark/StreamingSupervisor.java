@@ -0,0 +1,195 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+/**
+ * Keeps a long-running Structured Streaming application alive. The application is restarted with exponential backoff
+ * whenever spark-submit fails, until it fails too many times in a row without making progress. Progress reports found
+ * in driver output are turned into metrics, sustained lag is reported once per episode and the reports themselves are
+ * replaced in the log by a periodic summary.
+ */
+public class StreamingSupervisor {
+  private LogChannelInterface log;
+  private Launcher launcher;
+  private Listener listener;
+  private SparkApplicationClient client;
+  private int maxRestarts;
+  private long initialDelayMs;
+  private long maxDelayMs;
+  private int lagBatches;
+  private long summaryIntervalMs;
+
+  private final CountDownLatch stopped = new CountDownLatch( 1 );
+  private volatile SparkSubmission current;
+  private volatile boolean madeProgress;
+  private int restarts;
+  private int lagStreak;
+  private long lastSummary;
+
+  /**
+   * @param launcher
+   *          creates spark-submit of the application, once per (re)start
+   * @param listener
+   *          notified about progress, lag and restarts
+   * @param client
+   *          client used to kill the application on stop, may be null
+   * @param maxRestarts
+   *          restarts allowed after consecutive failures without progress
+   * @param initialDelayMs
+   *          delay before the first restart, doubled for every next one
+   * @param maxDelayMs
+   *          longest delay between restarts
+   * @param lagBatches
+   *          consecutive lagging micro-batches considered a sustained lag, 0 to never report lag
+   * @param summaryIntervalMs
+   *          shortest period between two progress summaries in the log
+   */
+  public StreamingSupervisor( LogChannelInterface log, Launcher launcher, Listener listener,
+      SparkApplicationClient client, int maxRestarts, long initialDelayMs, long maxDelayMs, int lagBatches,
+      long summaryIntervalMs ) {
+    this.log = log;
+    this.launcher = launcher;
+    this.listener = listener;
+    this.client = client;
+    this.maxRestarts = maxRestarts;
+    this.initialDelayMs = initialDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.lagBatches = lagBatches;
+    this.summaryIntervalMs = summaryIntervalMs;
+  }
+
+  /**
+   * Runs the application until it finishes successfully, fails for good or the supervisor is stopped
+   *
+   * @return exit code of the last spark-submit
+   */
+  public int run() throws KettleException, InterruptedException, IOException {
+    int failures = 0;
+    long delay = initialDelayMs;
+    while ( true ) {
+      SparkSubmission submission = launcher.launch();
+      submission.addLineFilter( new StreamingProgressParser( new StreamingProgressParser.ProgressListener() {
+        @Override
+        public void onProgress( StreamingProgress progress ) {
+          handleProgress( progress );
+        }
+      } ) );
+      madeProgress = false;
+      current = submission;
+      if ( isStopped() ) {
+        submission.cancel( client );
+      }
+      submission.start();
+      int exitCode = submission.waitFor();
+      current = null;
+
+      if ( exitCode == 0 || isStopped() ) {
+        return exitCode;
+      }
+      if ( madeProgress ) {
+        // the application was healthy before it failed, start counting over
+        failures = 0;
+        delay = initialDelayMs;
+      }
+      if ( failures >= maxRestarts ) {
+        log.logError( "Streaming application failed " + ( failures + 1 ) + " times in a row, giving up" );
+        return exitCode;
+      }
+      failures++;
+      synchronized ( this ) {
+        restarts++;
+        lagStreak = 0;
+      }
+      listener.onRestart( restarts, exitCode, delay );
+      if ( stopped.await( delay, TimeUnit.MILLISECONDS ) ) {
+        return exitCode;
+      }
+      delay = Math.min( delay * 2, maxDelayMs );
+    }
+  }
+
+  /**
+   * Stops the application and the supervision
+   */
+  public void stop() {
+    stopped.countDown();
+    SparkSubmission submission = current;
+    if ( submission != null ) {
+      submission.cancel( client );
+    }
+  }
+
+  public boolean isStopped() {
+    return stopped.getCount() == 0;
+  }
+
+  /**
+   * Returns the number of restarts so far
+   */
+  public synchronized int getRestarts() {
+    return restarts;
+  }
+
+  private synchronized void handleProgress( StreamingProgress progress ) {
+    madeProgress = true;
+    lagStreak = progress.isLagging() ? lagStreak + 1 : 0;
+    listener.onProgress( progress );
+    if ( lagBatches > 0 && lagStreak == lagBatches ) {
+      listener.onLag( progress, lagStreak );
+    }
+    long now = System.currentTimeMillis();
+    if ( now - lastSummary >= summaryIntervalMs ) {
+      lastSummary = now;
+      log.logBasic( String.format( "Query %s batch %d: %.1f rows/s in, %.1f rows/s processed, batch %d ms, state %d KB",
+          progress.getName() != null ? progress.getName() : progress.getId(), progress.getBatchId(), progress
+              .getInputRowsPerSecond(), progress.getProcessedRowsPerSecond(), progress.getBatchDurationMs(), progress
+              .getStateMemoryBytes() / 1024 ) );
+    }
+  }
+
+  public static interface Launcher {
+    /**
+     * Creates spark-submit of the application without starting its loggers
+     */
+    public SparkSubmission launch() throws KettleException;
+  }
+
+  public static interface Listener {
+    public void onProgress( StreamingProgress progress );
+
+    /**
+     * Called once the query lags behind its input for the configured number of micro-batches in a row
+     */
+    public void onLag( StreamingProgress progress, int batches );
+
+    public void onRestart( int restart, int exitCode, long delayMs );
+  }
+}
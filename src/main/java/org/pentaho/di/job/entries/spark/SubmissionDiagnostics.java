@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Captures what a submission was doing before it is killed: the last lines spark-submit printed and a thread dump of
+ * the local spark-submit JVM, which is the driver in client mode and the launcher otherwise. The dump is taken with
+ * the jcmd tool of the JDK running Kettle, found on the PATH if that's a bare JRE.
+ */
+public class SubmissionDiagnostics {
+  private SubmissionDiagnostics() {
+  }
+
+  /**
+   * Returns a report of the submission's last output and its thread dump
+   *
+   * @param reason
+   *          why the diagnostics are captured, the first line of the report
+   */
+  public static String capture( SparkSubmission submission, String reason ) {
+    StringBuilder report = new StringBuilder( reason ).append( "\n\n" );
+    if ( submission.getApplicationId() != null ) {
+      report.append( "Application: " ).append( submission.getApplicationId() ).append( " (" ).append( submission
+          .getState() ).append( ")\n" );
+    }
+    report.append( "Last activity: " ).append( new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" ).format( new Date(
+        submission.getLastActivity() ) ) ).append( "\n\n" );
+    report.append( "Last spark-submit output:\n" );
+    for ( String line : submission.getLastLines() ) {
+      report.append( line ).append( '\n' );
+    }
+    report.append( '\n' );
+
+    long pid = ProcessTreeSampler.getPid( submission.getProcess() );
+    if ( pid < 0 ) {
+      report.append( "Thread dump unavailable: process id of spark-submit unknown\n" );
+    } else {
+      report.append( "Thread dump of spark-submit process " ).append( pid ).append( ":\n" );
+      try {
+        report.append( getThreadDump( pid ) );
+      } catch ( IOException e ) {
+        report.append( "Thread dump unavailable: " ).append( e.getMessage() ).append( '\n' );
+      }
+    }
+    return report.toString();
+  }
+
+  /**
+   * Writes a report into a new file in the folder given
+   *
+   * @param name
+   *          name of the entry the report is about, part of the file name
+   * @return the file written
+   */
+  public static File write( File dir, String name, String report ) throws IOException {
+    String prefix = ( name == null ? "" : name.replaceAll( "[^A-Za-z0-9_.-]+", "_" ) ) + "-"
+        + new SimpleDateFormat( "yyyyMMdd-HHmmss" ).format( new Date() ) + "-";
+    dir.mkdirs();
+    File file = File.createTempFile( prefix, ".txt", dir );
+    Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+    try {
+      writer.write( report );
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  /**
+   * Runs jcmd Thread.print against the process
+   */
+  static String getThreadDump( long pid ) throws IOException {
+    Process jcmd = new ProcessBuilder( Arrays.asList( getJcmd(), String.valueOf( pid ), "Thread.print" ) )
+        .redirectErrorStream( true ).start();
+    StringBuilder dump = new StringBuilder();
+    BufferedReader reader = new BufferedReader( new InputStreamReader( jcmd.getInputStream(), "UTF-8" ) );
+    try {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        dump.append( line ).append( '\n' );
+      }
+    } finally {
+      reader.close();
+    }
+    try {
+      int exitCode = jcmd.waitFor();
+      if ( exitCode != 0 ) {
+        throw new IOException( "jcmd exited with status " + exitCode + ": " + dump.toString().trim() );
+      }
+    } catch ( InterruptedException e ) {
+      jcmd.destroy();
+      Thread.currentThread().interrupt();
+      throw new IOException( "Interrupted while running jcmd", e );
+    }
+    return dump.toString();
+  }
+
+  private static String getJcmd() {
+    String executable = System.getProperty( "os.name", "" ).startsWith( "Windows" ) ? "jcmd.exe" : "jcmd";
+    File javaHome = new File( System.getProperty( "java.home" ) );
+    // a JRE nested in a JDK has the tool one folder up
+    for ( File home : new File[] { javaHome, javaHome.getParentFile() } ) {
+      File jcmd = home == null ? null : new File( home, "bin" + File.separator + executable );
+      if ( jcmd != null && jcmd.isFile() ) {
+        return jcmd.getPath();
+      }
+    }
+    return executable;
+  }
+}
@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+/**
+ * Something that happened to a spark-submit process or the application it submitted
+ */
+public class SubmissionEvent {
+  public static enum Type {
+    /**
+     * spark-submit started, no value
+     */
+    STARTED,
+    /**
+     * spark-submit reported the application id, the value
+     */
+    APPLICATION_ID,
+    /**
+     * spark-submit reported a new application state, the value
+     */
+    STATE_CHANGED,
+    /**
+     * a line of spark-submit output matched a pattern, the value
+     */
+    PATTERN_MATCHED,
+    /**
+     * spark-submit was stopped while the application keeps running, no value
+     */
+    DETACHED,
+    /**
+     * spark-submit was terminated and the application killed, no value
+     */
+    KILLED,
+    /**
+     * spark-submit exited and all its output was read, the value is the exit code
+     */
+    FINISHED
+  }
+
+  private final Type type;
+  private final SparkSubmission submission;
+  private final String value;
+  private final long time;
+
+  public SubmissionEvent( Type type, SparkSubmission submission, String value ) {
+    this.type = type;
+    this.submission = submission;
+    this.value = value;
+    this.time = System.currentTimeMillis();
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public SparkSubmission getSubmission() {
+    return submission;
+  }
+
+  /**
+   * Returns the application id, state, pattern or exit code the event is about, null for the other events
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Returns when the event happened
+   */
+  public long getTime() {
+    return time;
+  }
+
+  @Override
+  public String toString() {
+    return value == null ? type.name() : type + " " + value;
+  }
+}
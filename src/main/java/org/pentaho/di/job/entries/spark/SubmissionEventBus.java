@@ -0,0 +1,300 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Publishes submission events to any number of subscribers without ever blocking the publisher, which is usually a
+ * thread reading spark-submit output. Events go into a fixed size ring buffer and every subscriber reads it with a
+ * cursor of its own, so a slow subscriber doesn't hold up the others: it misses the events overwritten before it got
+ * to them and is told how many. Listeners are called by a single dispatcher thread shared by all the buses, which
+ * publishers wake up without taking a lock. The thread ends once no listener is subscribed and starts again with the
+ * next one.
+ */
+public class SubmissionEventBus {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final Dispatcher DISPATCHER = new Dispatcher();
+
+  private final AtomicReferenceArray<Slot> slots;
+  private final int capacity;
+  private final AtomicLong next = new AtomicLong();
+  private volatile boolean dispatched;
+
+  public SubmissionEventBus() {
+    this( DEFAULT_CAPACITY );
+  }
+
+  /**
+   * @param capacity
+   *          number of events kept for subscribers lagging behind, rounded up to a power of two
+   */
+  public SubmissionEventBus( int capacity ) {
+    this.capacity = Integer.highestOneBit( Math.max( 2, capacity ) - 1 ) << 1;
+    slots = new AtomicReferenceArray<Slot>( this.capacity );
+  }
+
+  /**
+   * Publishes an event, never blocks
+   */
+  public void publish( SubmissionEvent event ) {
+    long sequence = next.getAndIncrement();
+    slots.set( index( sequence ), new Slot( sequence, event ) );
+    if ( dispatched ) {
+      DISPATCHER.wakeUp();
+    }
+  }
+
+  /**
+   * Subscribes for reading events with {@link Subscription#poll()}, starting with the oldest event still kept
+   */
+  public Subscription subscribe() {
+    return new Subscription( null );
+  }
+
+  /**
+   * Subscribes a listener called on the dispatcher thread, starting with the oldest event still kept. The
+   * subscription ends after the FINISHED event or when it is closed, which it has to be if FINISHED may never come.
+   */
+  public Subscription subscribe( Listener listener ) {
+    Subscription subscription = new Subscription( listener );
+    dispatched = true;
+    DISPATCHER.add( subscription );
+    return subscription;
+  }
+
+  /**
+   * Returns if the dispatcher thread is running
+   */
+  @VisibleForTesting
+  static boolean isDispatching() {
+    return DISPATCHER.thread != null;
+  }
+
+  /**
+   * Returns the number of events published so far
+   */
+  public long getPublished() {
+    return next.get();
+  }
+
+  private int index( long sequence ) {
+    return (int) ( sequence & ( capacity - 1 ) );
+  }
+
+  public static interface Listener {
+    /**
+     * Called on the dispatcher thread, which should not be held up for long
+     */
+    public void onEvent( SubmissionEvent event );
+  }
+
+  /**
+   * A cursor into the ring buffer, to be read by a single thread
+   */
+  public class Subscription {
+    private final Listener listener;
+    private long cursor;
+    private volatile long missed;
+    private volatile boolean closed;
+    private volatile boolean draining;
+
+    private Subscription( Listener listener ) {
+      this.listener = listener;
+      cursor = Math.max( 0, next.get() - capacity );
+    }
+
+    /**
+     * Returns the next event or null if there is none yet
+     */
+    public SubmissionEvent poll() {
+      while ( !closed ) {
+        long published = next.get();
+        if ( cursor >= published ) {
+          return null;
+        }
+        if ( published - cursor > capacity ) {
+          // lapped by publishers
+          missed += published - capacity - cursor;
+          cursor = published - capacity;
+          continue;
+        }
+        Slot slot = slots.get( index( cursor ) );
+        if ( slot == null || slot.sequence < cursor ) {
+          // claimed, but not written yet
+          return null;
+        }
+        if ( slot.sequence == cursor ) {
+          cursor++;
+          return slot.event;
+        }
+        // overwritten since published was read, the next round skips ahead
+      }
+      return null;
+    }
+
+    /**
+     * Waits for the next event
+     *
+     * @return the event or null if none came in time or the subscription was closed
+     */
+    public SubmissionEvent poll( long timeout, TimeUnit unit ) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos( timeout );
+      SubmissionEvent event;
+      while ( ( event = poll() ) == null && !closed ) {
+        long remaining = deadline - System.nanoTime();
+        if ( remaining <= 0 ) {
+          return null;
+        }
+        LockSupport.parkNanos( this, Math.min( remaining, TimeUnit.MILLISECONDS.toNanos( 1 ) ) );
+        if ( Thread.interrupted() ) {
+          throw new InterruptedException();
+        }
+      }
+      return event;
+    }
+
+    /**
+     * Returns the number of events overwritten before this subscriber read them
+     */
+    public long getMissed() {
+      return missed;
+    }
+
+    public boolean isClosed() {
+      return closed;
+    }
+
+    public void close() {
+      closed = true;
+      if ( listener != null ) {
+        DISPATCHER.remove( this );
+      }
+    }
+
+    /**
+     * Closes a listener subscription once the listener got the events published so far
+     */
+    public void closeWhenDrained() {
+      if ( listener == null ) {
+        close();
+        return;
+      }
+      draining = true;
+      DISPATCHER.wakeUp();
+    }
+  }
+
+  private static class Slot {
+    private final long sequence;
+    private final SubmissionEvent event;
+
+    Slot( long sequence, SubmissionEvent event ) {
+      this.sequence = sequence;
+      this.event = event;
+    }
+  }
+
+  /**
+   * Delivers events to listeners of all the buses, parking while there is nothing to deliver
+   */
+  private static class Dispatcher implements Runnable {
+    private static final int BATCH = 64;
+    private static final long IDLE = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private volatile Thread thread;
+
+    synchronized void add( Subscription subscription ) {
+      subscriptions.add( subscription );
+      if ( thread == null ) {
+        thread = new Thread( this, "spark-submission-events" );
+        thread.setDaemon( true );
+        thread.start();
+      }
+      wakeUp();
+    }
+
+    void remove( Subscription subscription ) {
+      subscriptions.remove( subscription );
+    }
+
+    void wakeUp() {
+      Thread dispatcher = thread;
+      if ( dispatcher != null ) {
+        LockSupport.unpark( dispatcher );
+      }
+    }
+
+    /**
+     * Releases the thread if no listener is subscribed, under the lock adding listeners takes
+     *
+     * @return true if the thread has to end
+     */
+    private synchronized boolean release() {
+      if ( subscriptions.isEmpty() ) {
+        thread = null;
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void run() {
+      while ( !release() ) {
+        boolean delivered = false;
+        for ( Subscription subscription : subscriptions ) {
+          SubmissionEvent event = null;
+          // batches keep a busy bus from starving the others
+          for ( int i = 0; i < BATCH && ( event = subscription.poll() ) != null; i++ ) {
+            delivered = true;
+            try {
+              subscription.listener.onEvent( event );
+            } catch ( RuntimeException e ) {
+              // a failing listener must not stop the others
+            }
+            if ( event.getType() == SubmissionEvent.Type.FINISHED ) {
+              subscription.close();
+            }
+          }
+          if ( event == null && subscription.draining ) {
+            subscription.close();
+          }
+        }
+        if ( !delivered ) {
+          // woken up by publishers, the timeout only covers events claimed but not written at the last poll
+          LockSupport.parkNanos( this, IDLE );
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.job.JobMeta;
+
+/**
+ * Host a submission can be routed to. The submission runs there as a job holding a copy of the entry, so spark-submit
+ * and client mode drivers use the resources of that host.
+ */
+public interface SubmissionNode {
+  public String getName();
+
+  /**
+   * Returns the current load of the node
+   *
+   * @throws KettleException
+   *           if the node is unreachable
+   */
+  public NodeLoad getLoad() throws KettleException;
+
+  /**
+   * Sends the job to the node and starts it
+   *
+   * @return id of the job on the node
+   */
+  public String submit( JobMeta jobMeta, Map<String, String> variables ) throws KettleException;
+
+  /**
+   * Returns the status of a job started by {@link #submit(JobMeta, Map)}
+   *
+   * @param fromLine
+   *          first log line to return
+   */
+  public RemoteJobStatus getStatus( String jobName, String id, int fromLine ) throws KettleException;
+
+  public void stop( String jobName, String id ) throws KettleException;
+}
@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Remembers which application was submitted for a given spark-submit command, so a restarted job can find the
+ * application it submitted before. Every record is a small properties file, replaced atomically, so several Kettle
+ * instances on the same host may share the store.
+ */
+public class SubmissionStore {
+  private static final String APPLICATION_ID = "applicationId";
+  private static final String SUBMITTED = "submitted";
+
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder records are kept in
+   */
+  public SubmissionStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static SubmissionStore getDefault() {
+    return new SubmissionStore( StateDirectory.get( "submissions" ) );
+  }
+
+  /**
+   * Computes the key identifying the submission
+   *
+   * @param values
+   *          resolved spark-submit command and whatever else distinguishes the submission
+   */
+  public static String key( List<String> values ) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for ( String value : values ) {
+      hasher.putString( String.valueOf( value ), Charsets.UTF_8 ).putByte( (byte) 0 );
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the id of the application recorded for the key
+   *
+   * @return application id or null if there is no record
+   */
+  public String getApplicationId( String key ) throws KettleException {
+    File file = getFile( key );
+    try {
+      Properties record = StateDirectory.readProperties( file );
+      return record == null ? null : record.getProperty( APPLICATION_ID );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read submission record " + file, e );
+    }
+  }
+
+  /**
+   * Records the application submitted for the key
+   */
+  public void put( String key, String applicationId ) throws KettleException {
+    Properties record = new Properties();
+    record.setProperty( APPLICATION_ID, applicationId );
+    record.setProperty( SUBMITTED, String.valueOf( System.currentTimeMillis() ) );
+    File file = getFile( key );
+    try {
+      StateDirectory.writeProperties( file, record );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write submission record " + file, e );
+    }
+  }
+
+  /**
+   * Forgets the submission
+   */
+  public void remove( String key ) {
+    getFile( key ).delete();
+  }
+
+  private File getFile( String key ) {
+    return new File( directory, key + ".properties" );
+  }
+}
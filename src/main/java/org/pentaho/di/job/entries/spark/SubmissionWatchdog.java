@@ -0,0 +1,160 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Enforces wall-clock deadlines and detects hung submissions of all entries on a single shared timer. A submission
+ * hangs when it neither printed a new line nor changed state or progress for the hang timeout; lines differing from
+ * the previous one in numbers only, like the periodic reports of an application waiting in the queue, don't count.
+ * Reports of a RUNNING application do, as in cluster mode they are the only output spark-submit has. Timeouts are
+ * handled on a shared pool, so capturing diagnostics of one submission doesn't hold up the checks of the others.
+ */
+public class SubmissionWatchdog {
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "spark-submit-watchdog" ).build() );
+  private static final ExecutorService HANDLERS = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "spark-submit-timeout-%d" ).build() );
+
+  private SubmissionWatchdog() {
+  }
+
+  /**
+   * Starts watching a submission
+   *
+   * @param started
+   *          when the deadline started to run, e.g. when the entry started
+   * @param deadline
+   *          milliseconds the submission may take, 0 for no deadline
+   * @param hangTimeout
+   *          milliseconds the submission may show no activity, 0 to not detect hangs
+   * @return the watch, to be cancelled once the submission finishes
+   */
+  public static Watch watch( SparkSubmission submission, long started, long deadline, long hangTimeout,
+      TimeoutListener listener ) {
+    Watch watch = new Watch( submission, hangTimeout, listener );
+    if ( deadline > 0 ) {
+      watch.scheduleDeadlineCheck( started, started + deadline - System.currentTimeMillis() );
+    }
+    if ( hangTimeout > 0 ) {
+      watch.scheduleHangCheck( hangTimeout );
+    }
+    return watch;
+  }
+
+  /**
+   * The reason a submission timed out
+   */
+  public static enum Reason {
+    DEADLINE, HANG
+  }
+
+  public static interface TimeoutListener {
+    /**
+     * Called once, on a pool thread, when the submission timed out
+     *
+     * @param elapsed
+     *          milliseconds since the deadline started to run for DEADLINE, since the last activity for HANG
+     */
+    public void onTimeout( SparkSubmission submission, Reason reason, long elapsed );
+  }
+
+  /**
+   * A submission being watched
+   */
+  public static class Watch {
+    private final SparkSubmission submission;
+    private final long hangTimeout;
+    private final TimeoutListener listener;
+    private ScheduledFuture<?> deadlineCheck;
+    private ScheduledFuture<?> hangCheck;
+    private boolean done;
+
+    private Watch( SparkSubmission submission, long hangTimeout, TimeoutListener listener ) {
+      this.submission = submission;
+      this.hangTimeout = hangTimeout;
+      this.listener = listener;
+    }
+
+    /**
+     * Stops watching, a timeout being handled already isn't interrupted
+     */
+    public synchronized void cancel() {
+      done = true;
+      if ( deadlineCheck != null ) {
+        deadlineCheck.cancel( false );
+      }
+      if ( hangCheck != null ) {
+        hangCheck.cancel( false );
+      }
+    }
+
+    private synchronized void scheduleDeadlineCheck( final long started, long delay ) {
+      deadlineCheck = TIMER.schedule( new Runnable() {
+        @Override
+        public void run() {
+          fire( Reason.DEADLINE, System.currentTimeMillis() - started );
+        }
+      }, Math.max( 0, delay ), TimeUnit.MILLISECONDS );
+    }
+
+    private synchronized void scheduleHangCheck( long delay ) {
+      if ( !done ) {
+        hangCheck = TIMER.schedule( new Runnable() {
+          @Override
+          public void run() {
+            long idle = System.currentTimeMillis() - submission.getLastActivity();
+            if ( idle >= hangTimeout ) {
+              fire( Reason.HANG, idle );
+            } else {
+              scheduleHangCheck( hangTimeout - idle );
+            }
+          }
+        }, delay, TimeUnit.MILLISECONDS );
+      }
+    }
+
+    private void fire( final Reason reason, final long elapsed ) {
+      synchronized ( this ) {
+        if ( done || submission.isFinished() ) {
+          return;
+        }
+        cancel();
+      }
+      HANDLERS.execute( new Runnable() {
+        @Override
+        public void run() {
+          listener.onTimeout( submission, reason, elapsed );
+        }
+      } );
+    }
+  }
+}
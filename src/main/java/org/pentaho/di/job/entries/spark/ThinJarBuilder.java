@@ -0,0 +1,228 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Rewrites a fat application jar into a thin one, leaving out the classes the cluster provides anyway. A class is
+ * considered provided when it belongs to one of the provided packages, or when a jar of the local Spark distribution
+ * contains it. Jar signatures are dropped as well, they don't match the rewritten jar.
+ */
+public class ThinJarBuilder {
+  /**
+   * Packages left out when none are configured
+   */
+  public static final List<String> DEFAULT_PROVIDED_PACKAGES = Collections.unmodifiableList( Arrays.asList(
+      "org.apache.spark", "org.apache.hadoop", "scala" ) );
+
+  private static final Cache<String, Set<String>> PROVIDED_CLASSES = CacheBuilder.newBuilder().maximumSize( 10 )
+      .build();
+
+  private List<String> providedPrefixes = new ArrayList<String>();
+  private Set<String> providedClasses;
+
+  /**
+   * @param providedPackages
+   *          packages provided by the cluster, e.g. org.apache.spark
+   * @param providedClasses
+   *          class entries provided by the cluster, e.g. org/apache/spark/SparkContext.class
+   */
+  public ThinJarBuilder( List<String> providedPackages, Set<String> providedClasses ) {
+    for ( String providedPackage : providedPackages ) {
+      providedPrefixes.add( providedPackage.trim().replace( '.', '/' ) + "/" );
+    }
+    this.providedClasses = providedClasses;
+  }
+
+  /**
+   * Copies the source jar into the target, leaving out provided classes
+   *
+   * @return number of entries left out
+   */
+  public int build( InputStream source, File target ) throws IOException {
+    int removed = 0;
+    ZipInputStream in = new ZipInputStream( source );
+    ZipOutputStream out = new ZipOutputStream( new FileOutputStream( target ) );
+    try {
+      byte[] buffer = new byte[65536];
+      ZipEntry entry;
+      while ( ( entry = in.getNextEntry() ) != null ) {
+        if ( isProvided( entry.getName() ) ) {
+          removed++;
+          continue;
+        }
+        ZipEntry copy = new ZipEntry( entry.getName() );
+        copy.setTime( entry.getTime() );
+        out.putNextEntry( copy );
+        int n;
+        while ( ( n = in.read( buffer ) ) > 0 ) {
+          out.write( buffer, 0, n );
+        }
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return removed;
+  }
+
+  /**
+   * Returns if the jar entry given is left out of the thin jar
+   */
+  public boolean isProvided( String name ) {
+    if ( isSignature( name ) ) {
+      return true;
+    }
+    if ( !name.endsWith( ".class" ) ) {
+      return false;
+    }
+    for ( String prefix : providedPrefixes ) {
+      if ( name.startsWith( prefix ) ) {
+        return true;
+      }
+    }
+    return providedClasses.contains( name );
+  }
+
+  private static boolean isSignature( String name ) {
+    if ( !name.startsWith( "META-INF/" ) || name.indexOf( '/', "META-INF/".length() ) >= 0 ) {
+      return false;
+    }
+    return name.endsWith( ".SF" ) || name.endsWith( ".DSA" ) || name.endsWith( ".RSA" ) || name.endsWith( ".EC" );
+  }
+
+  /**
+   * Returns folders holding jars of the Spark distribution spark-submit belongs to: <code>jars</code> for Spark 2 and
+   * later, <code>lib</code> for the assembly of Spark 1
+   *
+   * @param sparkSubmit
+   *          path of spark-submit script
+   * @return existing folders, possibly none
+   */
+  public static List<File> getSparkJarDirectories( String sparkSubmit ) {
+    List<File> dirs = new ArrayList<File>();
+    File bin = new File( sparkSubmit ).getAbsoluteFile().getParentFile();
+    File home = bin == null ? null : bin.getParentFile();
+    if ( home != null ) {
+      for ( String name : new String[] { "jars", "lib" } ) {
+        File dir = new File( home, name );
+        if ( dir.isDirectory() ) {
+          dirs.add( dir );
+        }
+      }
+    }
+    return dirs;
+  }
+
+  /**
+   * Returns a signature of the jars in the folders given, which changes whenever any of the jars does
+   */
+  public static String getSignature( List<File> dirs ) {
+    StringBuilder signature = new StringBuilder();
+    for ( File dir : dirs ) {
+      signature.append( dir.getAbsolutePath() );
+      for ( File jar : listJars( dir ) ) {
+        signature.append( '|' ).append( jar.getName() ).append( ':' ).append( jar.length() ).append( ':' ).append(
+            jar.lastModified() );
+      }
+    }
+    return signature.toString();
+  }
+
+  /**
+   * Returns class entries of all the jars in the folders given. Indexes are remembered until the jars change.
+   */
+  public static Set<String> getProvidedClasses( final List<File> dirs ) throws IOException {
+    try {
+      return PROVIDED_CLASSES.get( getSignature( dirs ), new Callable<Set<String>>() {
+        @Override
+        public Set<String> call() throws Exception {
+          List<File> jars = new ArrayList<File>();
+          for ( File dir : dirs ) {
+            jars.addAll( listJars( dir ) );
+          }
+          return Collections.unmodifiableSet( getClasses( jars ) );
+        }
+      } );
+    } catch ( ExecutionException e ) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException( e.getCause() );
+    }
+  }
+
+  /**
+   * Returns class entries of the jars given
+   */
+  public static Set<String> getClasses( List<File> jars ) throws IOException {
+    Set<String> classes = new HashSet<String>();
+    for ( File jar : jars ) {
+      ZipFile zip = new ZipFile( jar );
+      try {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while ( entries.hasMoreElements() ) {
+          String name = entries.nextElement().getName();
+          if ( name.endsWith( ".class" ) ) {
+            classes.add( name );
+          }
+        }
+      } finally {
+        zip.close();
+      }
+    }
+    return classes;
+  }
+
+  private static List<File> listJars( File dir ) {
+    File[] files = dir.listFiles();
+    List<File> jars = new ArrayList<File>();
+    if ( files != null ) {
+      for ( File file : files ) {
+        if ( file.isFile() && file.getName().endsWith( ".jar" ) ) {
+          jars.add( file );
+        }
+      }
+    }
+    Collections.sort( jars );
+    return jars;
+  }
+}
@@ -0,0 +1,94 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps thin jars built from application jars, one folder per build key, so an unchanged jar is rewritten only once.
+ * Jars are built into temporary files and renamed into place, so a concurrent reader never sees a partial jar.
+ */
+public class ThinJarStore {
+  private File directory;
+
+  /**
+   * @param directory
+   *          folder thin jars are kept in
+   */
+  public ThinJarStore( File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the store kept in the plugin's state directory
+   */
+  public static ThinJarStore getDefault() {
+    return new ThinJarStore( StateDirectory.get( "thin-jars" ) );
+  }
+
+  /**
+   * Returns the thin jar built with the key given
+   *
+   * @param key
+   *          build key, covering the source jar digest and everything excluded
+   * @param jarName
+   *          file name of the source jar, kept so the application shows up the same way on the cluster
+   * @return jar file or null if it wasn't built yet
+   */
+  public File get( String key, String jarName ) {
+    File file = getFile( key, jarName );
+    return file.isFile() ? file : null;
+  }
+
+  /**
+   * Returns a temporary file to build the thin jar into
+   */
+  public File createTempFile( String key, String jarName ) throws IOException {
+    File dir = getFile( key, jarName ).getParentFile();
+    dir.mkdirs();
+    return File.createTempFile( jarName, ".tmp", dir );
+  }
+
+  /**
+   * Moves the temporary file built into place
+   *
+   * @return the thin jar
+   */
+  public File put( String key, String jarName, File tmp ) throws IOException {
+    File file = getFile( key, jarName );
+    if ( !tmp.renameTo( file ) ) {
+      tmp.delete();
+      // a concurrent build of the same key may have won
+      if ( !file.isFile() ) {
+        throw new IOException( "Unable to rename " + tmp + " to " + file );
+      }
+    }
+    return file;
+  }
+
+  private File getFile( String key, String jarName ) {
+    return new File( new File( directory, key ), jarName );
+  }
+}
@@ -0,0 +1,148 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.metastore.persist.MetaStoreAttribute;
+import org.pentaho.metastore.persist.MetaStoreElementType;
+
+/**
+ * Named set of executor sizing and Spark configuration kept in the metastore and shared by Spark Submit entries.
+ * Entries referencing a profile submit its settings first, so the entry's own settings override them.
+ */
+@MetaStoreElementType( name = "Spark Tuning Profile",
+    description = "Executor sizing and Spark configuration shared by Spark Submit entries" )
+public class TuningProfile {
+  private String name;
+
+  @MetaStoreAttribute
+  private String description;
+
+  @MetaStoreAttribute
+  private String executorMemory;
+
+  @MetaStoreAttribute
+  private String driverMemory;
+
+  @MetaStoreAttribute
+  private String executorCores;
+
+  @MetaStoreAttribute
+  private String numExecutors;
+
+  @MetaStoreAttribute
+  private List<String> configParams = new ArrayList<String>();
+
+  public TuningProfile() {
+  }
+
+  public TuningProfile( String name ) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription( String description ) {
+    this.description = description;
+  }
+
+  public String getExecutorMemory() {
+    return executorMemory;
+  }
+
+  public void setExecutorMemory( String executorMemory ) {
+    this.executorMemory = executorMemory;
+  }
+
+  public String getDriverMemory() {
+    return driverMemory;
+  }
+
+  public void setDriverMemory( String driverMemory ) {
+    this.driverMemory = driverMemory;
+  }
+
+  public String getExecutorCores() {
+    return executorCores;
+  }
+
+  public void setExecutorCores( String executorCores ) {
+    this.executorCores = executorCores;
+  }
+
+  public String getNumExecutors() {
+    return numExecutors;
+  }
+
+  public void setNumExecutors( String numExecutors ) {
+    this.numExecutors = numExecutors;
+  }
+
+  /**
+   * Returns configuration overrides, "key=value"
+   */
+  public List<String> getConfigParams() {
+    return configParams;
+  }
+
+  public void setConfigParams( List<String> configParams ) {
+    this.configParams = configParams;
+  }
+
+  /**
+   * Returns all the profile settings as Spark config params, sizing first
+   *
+   * @return config params, "key=value"
+   */
+  public List<String> toConfigParams() {
+    List<String> params = new ArrayList<String>();
+    addParam( params, "spark.executor.memory", executorMemory );
+    addParam( params, "spark.driver.memory", driverMemory );
+    addParam( params, "spark.executor.cores", executorCores );
+    addParam( params, "spark.executor.instances", numExecutors );
+    if ( configParams != null ) {
+      params.addAll( configParams );
+    }
+    return params;
+  }
+
+  private static void addParam( List<String> params, String key, String value ) {
+    if ( !Const.isEmpty( value ) ) {
+      params.add( key + "=" + value.trim() );
+    }
+  }
+}
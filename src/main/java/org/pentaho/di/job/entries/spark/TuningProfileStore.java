@@ -0,0 +1,136 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.metastore.api.IMetaStore;
+import org.pentaho.metastore.api.exceptions.MetaStoreException;
+import org.pentaho.metastore.persist.MetaStoreFactory;
+import org.pentaho.metastore.util.PentahoDefaults;
+
+/**
+ * Reads and writes tuning profiles in the Pentaho namespace of a metastore. Profiles resolved for a job run are
+ * remembered for the rest of the run, so all the entries of a run use the same settings and the metastore is read
+ * once; the next run picks the current settings up.
+ */
+public class TuningProfileStore {
+  private static final Cache<String, TuningProfile> RESOLVED = CacheBuilder.newBuilder().maximumSize( 1000 )
+      .expireAfterAccess( 1, TimeUnit.HOURS ).build();
+
+  private MetaStoreFactory<TuningProfile> factory;
+
+  /**
+   * @param metaStore
+   *          metastore profiles are kept in
+   */
+  public TuningProfileStore( IMetaStore metaStore ) {
+    factory = new MetaStoreFactory<TuningProfile>( TuningProfile.class, metaStore, PentahoDefaults.NAMESPACE );
+  }
+
+  /**
+   * Returns the profile with the name given
+   *
+   * @return profile or null if there is none
+   */
+  public TuningProfile load( String name ) throws KettleException {
+    try {
+      return factory.loadElement( name );
+    } catch ( MetaStoreException e ) {
+      throw new KettleException( "Unable to load tuning profile " + name, e );
+    }
+  }
+
+  /**
+   * Stores the profile, replacing the one with the same name
+   */
+  public void save( TuningProfile profile ) throws KettleException {
+    try {
+      factory.saveElement( profile );
+    } catch ( MetaStoreException e ) {
+      throw new KettleException( "Unable to save tuning profile " + profile.getName(), e );
+    }
+  }
+
+  /**
+   * Removes the profile with the name given
+   */
+  public void delete( String name ) throws KettleException {
+    try {
+      factory.deleteElement( name );
+    } catch ( MetaStoreException e ) {
+      throw new KettleException( "Unable to delete tuning profile " + name, e );
+    }
+  }
+
+  /**
+   * Returns names of all the profiles
+   */
+  public List<String> getNames() throws KettleException {
+    try {
+      return factory.getElementNames();
+    } catch ( MetaStoreException e ) {
+      throw new KettleException( "Unable to list tuning profiles", e );
+    }
+  }
+
+  /**
+   * Returns the profile with the name given as resolved first in the job run given
+   *
+   * @param runId
+   *          identifies the job run, null to skip the cache
+   * @throws KettleException
+   *           if there is no such profile
+   */
+  public TuningProfile resolve( String runId, final String name ) throws KettleException {
+    if ( runId == null ) {
+      return loadExisting( name );
+    }
+    try {
+      return RESOLVED.get( runId + "|" + name, new Callable<TuningProfile>() {
+        @Override
+        public TuningProfile call() throws Exception {
+          return loadExisting( name );
+        }
+      } );
+    } catch ( ExecutionException e ) {
+      throw e.getCause() instanceof KettleException ? (KettleException) e.getCause() : new KettleException( e
+          .getCause() );
+    }
+  }
+
+  private TuningProfile loadExisting( String name ) throws KettleException {
+    TuningProfile profile = load( name );
+    if ( profile == null ) {
+      throw new KettleException( "Tuning profile " + name + " not found" );
+    }
+    return profile;
+  }
+}
@@ -0,0 +1,254 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Plugin side of a warm session: the spark-submit process running {@link WarmSessionServer} and the client of its
+ * control protocol. Callers lease the session with {@link #acquire()} before running anything and give it back with
+ * {@link #release()}, a session that is leased is never retired for being idle.
+ */
+public class WarmSession {
+  private static final int CONNECT_TIMEOUT = 10000;
+  private static final long SHUTDOWN_TIMEOUT = 10000;
+
+  private final SparkSubmission submission;
+  private final String token;
+  private final int port;
+  private final long idleTimeoutMs;
+  private int leases;
+  private long lastUsed = System.currentTimeMillis();
+  private boolean retired;
+  private volatile boolean broken;
+
+  /**
+   * @param submission
+   *          started spark-submit process running the session driver
+   * @param token
+   *          secret of the session
+   * @param port
+   *          loopback port the driver listens on
+   * @param idleTimeoutMs
+   *          time without any lease after which the session may be retired
+   */
+  public WarmSession( SparkSubmission submission, String token, int port, long idleTimeoutMs ) {
+    this.submission = submission;
+    this.token = token;
+    this.port = port;
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  /**
+   * Starts the submission of a session driver and waits until the driver announces its port
+   *
+   * @param timeoutMs
+   *          maximum time to wait for the driver to start
+   * @return the started session
+   * @throws KettleException
+   *           if spark-submit exits or the driver doesn't start in time
+   */
+  public static WarmSession launch( SparkSubmission submission, String token, long timeoutMs, long idleTimeoutMs )
+    throws KettleException {
+    final AtomicInteger port = new AtomicInteger( -1 );
+    final CountDownLatch ready = new CountDownLatch( 1 );
+    submission.addLineListener( new PatternMatchingStreamLogger.LineListener() {
+      @Override
+      public void onLine( String line ) {
+        int announced = SessionProtocol.parsePort( line );
+        if ( announced > 0 && port.compareAndSet( -1, announced ) ) {
+          ready.countDown();
+        }
+      }
+    } );
+    submission.start();
+
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    try {
+      while ( !ready.await( 100, TimeUnit.MILLISECONDS ) ) {
+        if ( submission.isFinished() ) {
+          throw new KettleException( "Session driver exited before it was ready" );
+        }
+        if ( System.currentTimeMillis() > deadline ) {
+          submission.cancel( null );
+          throw new KettleException( "Session driver was not ready in " + timeoutMs / 1000 + " seconds" );
+        }
+      }
+    } catch ( InterruptedException e ) {
+      submission.cancel( null );
+      throw new KettleException( e );
+    }
+    return new WarmSession( submission, token, port.get(), idleTimeoutMs );
+  }
+
+  /**
+   * Leases the session
+   *
+   * @return false if the session was already retired or is not alive anymore
+   */
+  public synchronized boolean acquire() {
+    if ( retired || !isAlive() ) {
+      return false;
+    }
+    leases++;
+    lastUsed = System.currentTimeMillis();
+    return true;
+  }
+
+  /**
+   * Gives a lease back
+   */
+  public synchronized void release() {
+    leases--;
+    lastUsed = System.currentTimeMillis();
+  }
+
+  /**
+   * Retires the session if it is dead, or if it is idle for longer than its idle timeout with no lease
+   *
+   * @return true if the session was retired and should be shut down
+   */
+  public synchronized boolean retireIfIdle( long now ) {
+    if ( !retired && ( !isAlive() || leases == 0 && now - lastUsed > idleTimeoutMs ) ) {
+      retired = true;
+    }
+    return retired;
+  }
+
+  public synchronized int getLeaseCount() {
+    return leases;
+  }
+
+  /**
+   * Returns if the driver process is running and talking
+   */
+  public boolean isAlive() {
+    return !broken && !submission.isFinished();
+  }
+
+  /**
+   * Runs main method of the class given inside the session and waits for it to finish
+   *
+   * @param group
+   *          Spark job group of the run
+   * @param className
+   *          job class
+   * @param args
+   *          arguments of the main method
+   * @throws KettleException
+   *           if the run failed or the session couldn't be reached
+   */
+  public void run( String group, String className, List<String> args ) throws KettleException {
+    List<String> request = new ArrayList<String>( Arrays.asList( SessionProtocol.OP_RUN, group, className ) );
+    request.addAll( args );
+    List<String> response = request( request );
+    if ( !SessionProtocol.STATUS_SUCCEEDED.equals( response.get( 0 ) ) ) {
+      throw new KettleException( response.size() > 1 ? response.get( 1 ) : "Run failed" );
+    }
+  }
+
+  /**
+   * Cancels Spark jobs of the group given, failures are ignored
+   */
+  public void cancel( String group ) {
+    try {
+      request( Arrays.asList( SessionProtocol.OP_CANCEL, group ) );
+    } catch ( KettleException e ) {
+      // nothing to cancel in a broken session
+    }
+  }
+
+  /**
+   * Asks the driver to stop and terminates spark-submit if it doesn't exit in time
+   */
+  public void shutdown() {
+    try {
+      if ( isAlive() ) {
+        request( Arrays.asList( SessionProtocol.OP_SHUTDOWN ) );
+      }
+    } catch ( KettleException e ) {
+      // terminated below
+    }
+    long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+    while ( !submission.isFinished() && System.currentTimeMillis() < deadline ) {
+      try {
+        Thread.sleep( 100 );
+      } catch ( InterruptedException e ) {
+        break;
+      }
+    }
+    if ( !submission.isFinished() ) {
+      submission.cancel( null );
+    }
+  }
+
+  private List<String> request( List<String> fields ) throws KettleException {
+    List<String> request = new ArrayList<String>( fields.size() + 1 );
+    request.add( token );
+    request.addAll( fields );
+    try {
+      Socket socket = new Socket();
+      try {
+        socket.connect( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ), CONNECT_TIMEOUT );
+        Writer writer = new OutputStreamWriter( socket.getOutputStream(), "UTF-8" );
+        writer.write( SessionProtocol.encode( request ) );
+        writer.write( '\n' );
+        writer.flush();
+        String line = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) ).readLine();
+        if ( line == null ) {
+          throw new IOException( "Session closed the connection" );
+        }
+        return SessionProtocol.decode( line );
+      } finally {
+        socket.close();
+      }
+    } catch ( IOException e ) {
+      broken = true;
+      throw new KettleException( "Unable to reach session on port " + port, e );
+    }
+  }
+
+  public SparkSubmission getSubmission() {
+    return submission;
+  }
+
+  public int getPort() {
+    return port;
+  }
+}
@@ -0,0 +1,154 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Warm sessions shared by all the job entries in the JVM, keyed by the spark-submit command starting the session
+ * driver. A session is launched on first use, concurrent callers wait for the same launch. Sessions idle for longer
+ * than their idle timeout and dead sessions are shut down in the background.
+ */
+public class WarmSessionPool {
+  private static final long EVICTION_INTERVAL = 1000;
+
+  /**
+   * Launches a new session
+   */
+  public static interface Launcher {
+    public WarmSession launch() throws KettleException;
+  }
+
+  private static final ConcurrentMap<String, Future<WarmSession>> SESSIONS =
+      new ConcurrentHashMap<String, Future<WarmSession>>();
+  private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "warm-session-evictor" ).build() );
+
+  static {
+    EVICTOR.scheduleWithFixedDelay( new Runnable() {
+      @Override
+      public void run() {
+        evict( System.currentTimeMillis() );
+      }
+    }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS );
+    Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+      @Override
+      public void run() {
+        shutdownAll();
+      }
+    }, "warm-session-shutdown" ) );
+  }
+
+  private WarmSessionPool() {
+  }
+
+  /**
+   * Returns a leased session for the key given, launching a new one if there is no live session. The caller must
+   * {@link WarmSession#release()} the session when done.
+   */
+  public static WarmSession acquire( String key, final Launcher launcher ) throws KettleException {
+    while ( true ) {
+      FutureTask<WarmSession> launch = new FutureTask<WarmSession>( new Callable<WarmSession>() {
+        @Override
+        public WarmSession call() throws Exception {
+          return launcher.launch();
+        }
+      } );
+      Future<WarmSession> future = SESSIONS.putIfAbsent( key, launch );
+      if ( future == null ) {
+        future = launch;
+        launch.run();
+      }
+
+      WarmSession session;
+      try {
+        session = future.get();
+      } catch ( InterruptedException e ) {
+        throw new KettleException( e );
+      } catch ( ExecutionException e ) {
+        SESSIONS.remove( key, future );
+        throw e.getCause() instanceof KettleException ? (KettleException) e.getCause()
+            : new KettleException( e.getCause() );
+      }
+      if ( session.acquire() ) {
+        return session;
+      }
+      // retired or dead in the meantime, replace it
+      if ( SESSIONS.remove( key, future ) ) {
+        session.shutdown();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static void evict( long now ) {
+    for ( Map.Entry<String, Future<WarmSession>> entry : SESSIONS.entrySet() ) {
+      Future<WarmSession> future = entry.getValue();
+      if ( !future.isDone() ) {
+        continue;
+      }
+      try {
+        WarmSession session = future.get();
+        if ( session.retireIfIdle( now ) && SESSIONS.remove( entry.getKey(), future ) ) {
+          session.shutdown();
+        }
+      } catch ( Exception e ) {
+        SESSIONS.remove( entry.getKey(), future );
+      }
+    }
+  }
+
+  /**
+   * Shuts all the sessions down, used when the JVM exits
+   */
+  public static void shutdownAll() {
+    for ( Map.Entry<String, Future<WarmSession>> entry : SESSIONS.entrySet() ) {
+      if ( SESSIONS.remove( entry.getKey(), entry.getValue() ) && entry.getValue().isDone() ) {
+        try {
+          entry.getValue().get().shutdown();
+        } catch ( Exception e ) {
+          // nothing to shut down
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static int size() {
+    return SESSIONS.size();
+  }
+}
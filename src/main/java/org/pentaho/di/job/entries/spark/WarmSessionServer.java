@@ -0,0 +1,265 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident driver of a warm session. Submitted by spark-submit as the application main class, it creates the Spark
+ * context once and then runs main methods of job classes inside it on request, see {@link SessionProtocol}. Each run
+ * gets its own thread and Spark job group, so runs can be cancelled independently, and at most a given number of
+ * runs execute at the same time. The driver stops itself when it stays idle for too long, so it doesn't outlive the
+ * plugin that started it.
+ * <p>
+ * Spark is accessed reflectively, so the plugin doesn't depend on a particular Spark version. Job classes must obtain
+ * the context with <code>SparkContext.getOrCreate()</code> and must neither stop it nor exit the JVM.
+ */
+public class WarmSessionServer {
+  private static final String SPARK_CONTEXT_CLASS = "org.apache.spark.SparkContext";
+
+  private final String token;
+  private final Semaphore permits;
+  private final long idleTimeoutMs;
+  private final Object context;
+  private final ExecutorService workers = Executors.newCachedThreadPool( new ThreadFactory() {
+    @Override
+    public Thread newThread( Runnable r ) {
+      Thread thread = new Thread( r, "warm-session-run" );
+      thread.setDaemon( true );
+      return thread;
+    }
+  } );
+  private final AtomicInteger running = new AtomicInteger();
+  private volatile long lastActivity = System.currentTimeMillis();
+  private volatile boolean stopped;
+  private ServerSocket serverSocket;
+
+  /**
+   * @param token
+   *          secret every request must start with
+   * @param maxConcurrent
+   *          maximum number of runs executing at the same time
+   * @param idleTimeoutMs
+   *          time without any run after which the driver stops, 0 to run until shut down
+   * @param context
+   *          the Spark context, null to run job classes without any
+   */
+  public WarmSessionServer( String token, int maxConcurrent, long idleTimeoutMs, Object context ) {
+    this.token = token;
+    this.permits = new Semaphore( Math.max( 1, maxConcurrent ), true );
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.context = context;
+  }
+
+  /**
+   * Binds the control socket to a free port of the loopback interface
+   *
+   * @return the port bound
+   */
+  public int start() throws IOException {
+    serverSocket = new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Accepts requests until the session is shut down or stays idle for too long
+   */
+  public void serve() {
+    if ( idleTimeoutMs > 0 ) {
+      Thread watchdog = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          while ( !stopped ) {
+            if ( running.get() == 0 && System.currentTimeMillis() - lastActivity > idleTimeoutMs ) {
+              stop();
+              return;
+            }
+            try {
+              Thread.sleep( Math.min( 1000, idleTimeoutMs ) );
+            } catch ( InterruptedException e ) {
+              return;
+            }
+          }
+        }
+      }, "warm-session-watchdog" );
+      watchdog.setDaemon( true );
+      watchdog.start();
+    }
+
+    while ( !stopped ) {
+      try {
+        final Socket socket = serverSocket.accept();
+        workers.submit( new Runnable() {
+          @Override
+          public void run() {
+            handle( socket );
+          }
+        } );
+      } catch ( IOException e ) {
+        if ( !stopped ) {
+          e.printStackTrace();
+          stop();
+        }
+      }
+    }
+    workers.shutdownNow();
+    invokeContext( "stop", new Class<?>[0] );
+  }
+
+  /**
+   * Stops accepting requests, running jobs are interrupted
+   */
+  public void stop() {
+    stopped = true;
+    try {
+      serverSocket.close();
+    } catch ( IOException e ) {
+      // closing anyway
+    }
+  }
+
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  private void handle( Socket socket ) {
+    try {
+      try {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+        Writer writer = new OutputStreamWriter( socket.getOutputStream(), "UTF-8" );
+        String response = respond( SessionProtocol.decode( reader.readLine() ) );
+        writer.write( response );
+        writer.write( '\n' );
+        writer.flush();
+      } finally {
+        socket.close();
+      }
+    } catch ( IOException e ) {
+      // the client is gone, nobody to answer
+    }
+  }
+
+  private String respond( List<String> request ) {
+    if ( request.size() < 2 || !token.equals( request.get( 0 ) ) ) {
+      return failed( "Invalid request" );
+    }
+    lastActivity = System.currentTimeMillis();
+    String op = request.get( 1 );
+    if ( SessionProtocol.OP_PING.equals( op ) ) {
+      return SessionProtocol.STATUS_SUCCEEDED;
+    } else if ( SessionProtocol.OP_RUN.equals( op ) && request.size() >= 4 ) {
+      List<String> args = request.subList( 4, request.size() );
+      String error = run( request.get( 2 ), request.get( 3 ), args.toArray( new String[args.size()] ) );
+      return error == null ? SessionProtocol.STATUS_SUCCEEDED : failed( error );
+    } else if ( SessionProtocol.OP_CANCEL.equals( op ) && request.size() >= 3 ) {
+      invokeContext( "cancelJobGroup", new Class<?>[] { String.class }, request.get( 2 ) );
+      return SessionProtocol.STATUS_SUCCEEDED;
+    } else if ( SessionProtocol.OP_SHUTDOWN.equals( op ) ) {
+      stop();
+      return SessionProtocol.STATUS_SUCCEEDED;
+    }
+    return failed( "Unknown operation " + op );
+  }
+
+  private static String failed( String message ) {
+    return SessionProtocol.encode( Arrays.asList( SessionProtocol.STATUS_FAILED, message ) );
+  }
+
+  /**
+   * Runs main method of the class given under the job group given
+   *
+   * @return error message or null if the run succeeded
+   */
+  private String run( String group, String className, String[] args ) {
+    try {
+      permits.acquire();
+    } catch ( InterruptedException e ) {
+      return "Interrupted while waiting for a free slot";
+    }
+    running.incrementAndGet();
+    try {
+      invokeContext( "setJobGroup", new Class<?>[] { String.class, String.class, boolean.class }, group, className,
+          true );
+      Class<?> clazz = Class.forName( className, true, Thread.currentThread().getContextClassLoader() );
+      Method main = clazz.getMethod( "main", String[].class );
+      main.invoke( null, (Object) args );
+      return null;
+    } catch ( InvocationTargetException e ) {
+      return String.valueOf( e.getCause() );
+    } catch ( Exception e ) {
+      return String.valueOf( e );
+    } finally {
+      invokeContext( "clearJobGroup", new Class<?>[0] );
+      running.decrementAndGet();
+      lastActivity = System.currentTimeMillis();
+      permits.release();
+    }
+  }
+
+  private void invokeContext( String method, Class<?>[] types, Object... args ) {
+    if ( context == null ) {
+      return;
+    }
+    try {
+      context.getClass().getMethod( method, types ).invoke( context, args );
+    } catch ( Exception e ) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Driver entry point, arguments are the session token, maximum number of concurrent runs and idle timeout in
+   * seconds
+   */
+  public static void main( String[] args ) throws Exception {
+    if ( args.length < 3 ) {
+      System.err.println( "Usage: WarmSessionServer <token> <max concurrent runs> <idle timeout seconds>" );
+      System.exit( 1 );
+    }
+    Object context = Class.forName( SPARK_CONTEXT_CLASS ).getMethod( "getOrCreate" ).invoke( null );
+    WarmSessionServer server =
+        new WarmSessionServer( args[0], Integer.parseInt( args[1] ), Long.parseLong( args[2] ) * 1000L, context );
+    int port = server.start();
+    System.out.println( SessionProtocol.PORT_MARKER + " " + port );
+    System.out.flush();
+    server.serve();
+    System.exit( 0 );
+  }
+}
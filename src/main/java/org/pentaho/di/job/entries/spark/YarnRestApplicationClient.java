@@ -0,0 +1,148 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Application client backed by the YARN ResourceManager REST API, see
+ * http://hadoop.apache.org/docs/stable/hadoop-yarn/hadoop-yarn-site/ResourceManagerRest.html
+ */
+public class YarnRestApplicationClient implements SparkApplicationClient {
+  private static final int TIMEOUT = 10000;
+
+  private String resourceManagerUrl;
+
+  /**
+   * @param resourceManagerUrl
+   *          ResourceManager web address, e.g. http://rm-host:8088
+   */
+  public YarnRestApplicationClient( String resourceManagerUrl ) {
+    this.resourceManagerUrl = resourceManagerUrl.endsWith( "/" )
+        ? resourceManagerUrl.substring( 0, resourceManagerUrl.length() - 1 ) : resourceManagerUrl;
+  }
+
+  public String getResourceManagerUrl() {
+    return resourceManagerUrl;
+  }
+
+  @Override
+  public ApplicationStatus getApplicationStatus( String applicationId ) throws KettleException {
+    JSONObject app = getJson( "/ws/v1/cluster/apps/" + applicationId, "app" );
+    return app == null ? null
+        : new ApplicationStatus( applicationId, (String) app.get( "state" ), (String) app.get( "finalStatus" ),
+            getLong( app, "memorySeconds" ), getLong( app, "vcoreSeconds" ) );
+  }
+
+  /**
+   * Returns a number reported by ResourceManager, -1 if it's missing as with old Hadoop versions
+   */
+  private static long getLong( JSONObject json, String key ) {
+    Object value = json.get( key );
+    return value instanceof Number ? ( (Number) value ).longValue() : -1;
+  }
+
+  @Override
+  public void killApplication( String applicationId ) throws KettleException {
+    try {
+      HttpURLConnection connection = openConnection( "/ws/v1/cluster/apps/" + applicationId + "/state" );
+      connection.setRequestMethod( "PUT" );
+      connection.setDoOutput( true );
+      connection.setRequestProperty( "Content-Type", "application/json" );
+      OutputStream os = connection.getOutputStream();
+      try {
+        os.write( "{\"state\":\"KILLED\"}".getBytes( "UTF-8" ) );
+      } finally {
+        os.close();
+      }
+      int code = connection.getResponseCode();
+      connection.disconnect();
+      if ( code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_ACCEPTED ) {
+        throw new KettleException( "ResourceManager responded with HTTP " + code + " to kill request for "
+            + applicationId );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to kill application " + applicationId, e );
+    }
+  }
+
+  /**
+   * Requests JSON document from the ResourceManager
+   *
+   * @param path
+   *          resource path
+   * @param root
+   *          name of the document's root element
+   * @return root element or null if the resource doesn't exist
+   */
+  protected JSONObject getJson( String path, String root ) throws KettleException {
+    try {
+      HttpURLConnection connection = openConnection( path );
+      try {
+        int code = connection.getResponseCode();
+        if ( code == HttpURLConnection.HTTP_NOT_FOUND ) {
+          return null;
+        }
+        if ( code != HttpURLConnection.HTTP_OK ) {
+          throw new KettleException( "ResourceManager responded with HTTP " + code + " to " + path );
+        }
+        InputStream is = connection.getInputStream();
+        try {
+          Object json = new JSONParser().parse( new InputStreamReader( is, "UTF-8" ) );
+          Object value = json instanceof JSONObject ? ( (JSONObject) json ).get( root ) : null;
+          if ( !( value instanceof JSONObject ) ) {
+            throw new KettleException( "Unexpected response from ResourceManager to " + path );
+          }
+          return (JSONObject) value;
+        } finally {
+          is.close();
+        }
+      } finally {
+        connection.disconnect();
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to request " + path + " from ResourceManager", e );
+    } catch ( ParseException e ) {
+      throw new KettleException( "Unable to parse ResourceManager response to " + path, e );
+    }
+  }
+
+  protected HttpURLConnection openConnection( String path ) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL( resourceManagerUrl + path ).openConnection();
+    connection.setConnectTimeout( TIMEOUT );
+    connection.setReadTimeout( TIMEOUT );
+    connection.setRequestProperty( "Accept", "application/json" );
+    return connection;
+  }
+}
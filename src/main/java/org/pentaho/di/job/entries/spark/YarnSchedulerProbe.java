@@ -0,0 +1,172 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Probes queue capacity through the YARN ResourceManager scheduler REST API. Capacity and Fair schedulers are
+ * supported, every other scheduler is reported as a single "default" queue holding all the available cluster
+ * resources. Any URL Java can read may be used as ResourceManager address, so a directory holding stub
+ * ws/v1/cluster/metrics and ws/v1/cluster/scheduler JSON files can drive tests.
+ */
+public class YarnSchedulerProbe implements SchedulerProbe {
+  private static final int TIMEOUT = 10000;
+
+  private String resourceManagerUrl;
+
+  /**
+   * @param resourceManagerUrl
+   *          ResourceManager web address, e.g. http://rm-host:8088
+   */
+  public YarnSchedulerProbe( String resourceManagerUrl ) {
+    this.resourceManagerUrl = resourceManagerUrl.endsWith( "/" )
+        ? resourceManagerUrl.substring( 0, resourceManagerUrl.length() - 1 ) : resourceManagerUrl;
+  }
+
+  @Override
+  public String getId() {
+    return resourceManagerUrl;
+  }
+
+  @Override
+  public List<QueueCapacity> probe() throws KettleException {
+    JSONObject metrics = getObject( fetch( "/ws/v1/cluster/metrics" ), "clusterMetrics" );
+    long totalMb = getLong( metrics, "totalMB" );
+    long totalVcores = getLong( metrics, "totalVirtualCores" );
+    long clusterAvailableMb = getLong( metrics, "availableMB" );
+    long clusterAvailableVcores = getLong( metrics, "availableVirtualCores" );
+
+    JSONObject scheduler = getObject( fetch( "/ws/v1/cluster/scheduler" ), "scheduler" );
+    JSONObject schedulerInfo = getObject( scheduler, "schedulerInfo" );
+    List<QueueCapacity> result = new ArrayList<QueueCapacity>();
+    String type = (String) schedulerInfo.get( "type" );
+    if ( "capacityScheduler".equals( type ) ) {
+      for ( JSONObject queue : getQueues( schedulerInfo, "queues" ) ) {
+        addCapacityQueue( result, queue, totalMb, totalVcores, clusterAvailableMb, clusterAvailableVcores );
+      }
+    } else if ( "fairScheduler".equals( type ) ) {
+      addFairQueue( result, getObject( schedulerInfo, "rootQueue" ), clusterAvailableMb, clusterAvailableVcores );
+    } else {
+      result.add( new QueueCapacity( "default", clusterAvailableMb, clusterAvailableVcores ) );
+    }
+    return result;
+  }
+
+  private void addCapacityQueue( List<QueueCapacity> result, JSONObject queue, long totalMb, long totalVcores,
+      long clusterAvailableMb, long clusterAvailableVcores ) {
+    double maxCapacity = getDouble( queue, "absoluteMaxCapacity" ) / 100;
+    JSONObject used = getObject( queue, "resourcesUsed" );
+    long availableMb = (long) ( totalMb * maxCapacity ) - getLong( used, "memory" );
+    long availableVcores = (long) ( totalVcores * maxCapacity ) - getLong( used, "vCores" );
+    result.add( new QueueCapacity( (String) queue.get( "queueName" ), bound( availableMb, clusterAvailableMb ),
+        bound( availableVcores, clusterAvailableVcores ) ) );
+    for ( JSONObject child : getQueues( queue, "queues" ) ) {
+      addCapacityQueue( result, child, totalMb, totalVcores, clusterAvailableMb, clusterAvailableVcores );
+    }
+  }
+
+  private void addFairQueue( List<QueueCapacity> result, JSONObject queue, long clusterAvailableMb,
+      long clusterAvailableVcores ) {
+    JSONObject max = getObject( queue, "maxResources" );
+    JSONObject used = getObject( queue, "usedResources" );
+    long availableMb = getLong( max, "memory" ) - getLong( used, "memory" );
+    long availableVcores = getLong( max, "vCores" ) - getLong( used, "vCores" );
+    result.add( new QueueCapacity( (String) queue.get( "queueName" ), bound( availableMb, clusterAvailableMb ),
+        bound( availableVcores, clusterAvailableVcores ) ) );
+    for ( JSONObject child : getQueues( queue, "childQueues" ) ) {
+      addFairQueue( result, child, clusterAvailableMb, clusterAvailableVcores );
+    }
+  }
+
+  private static long bound( long queueAvailable, long clusterAvailable ) {
+    return Math.max( 0, Math.min( queueAvailable, clusterAvailable ) );
+  }
+
+  /**
+   * Returns child queues, which are reported either as an array or as an object holding "queue" array
+   */
+  @SuppressWarnings( "unchecked" )
+  private static List<JSONObject> getQueues( JSONObject parent, String key ) {
+    Object queues = parent.get( key );
+    if ( queues instanceof JSONObject ) {
+      queues = ( (JSONObject) queues ).get( "queue" );
+    }
+    if ( queues instanceof JSONObject ) {
+      return Collections.singletonList( (JSONObject) queues );
+    }
+    return queues instanceof JSONArray ? (List<JSONObject>) (List<?>) queues : Collections.<JSONObject>emptyList();
+  }
+
+  private static JSONObject getObject( JSONObject parent, String key ) {
+    Object value = parent.get( key );
+    return value instanceof JSONObject ? (JSONObject) value : new JSONObject();
+  }
+
+  private static long getLong( JSONObject parent, String key ) {
+    Object value = parent.get( key );
+    return value instanceof Number ? ( (Number) value ).longValue() : 0;
+  }
+
+  private static double getDouble( JSONObject parent, String key ) {
+    Object value = parent.get( key );
+    return value instanceof Number ? ( (Number) value ).doubleValue() : 0;
+  }
+
+  protected JSONObject fetch( String path ) throws KettleException {
+    try {
+      URLConnection connection = new URL( resourceManagerUrl + path ).openConnection();
+      connection.setConnectTimeout( TIMEOUT );
+      connection.setReadTimeout( TIMEOUT );
+      connection.setRequestProperty( "Accept", "application/json" );
+      InputStream is = connection.getInputStream();
+      try {
+        Object json = new JSONParser().parse( new InputStreamReader( is, "UTF-8" ) );
+        if ( !( json instanceof JSONObject ) ) {
+          throw new KettleException( "Unexpected response from " + resourceManagerUrl + path );
+        }
+        return (JSONObject) json;
+      } finally {
+        is.close();
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to probe " + resourceManagerUrl + path, e );
+    } catch ( ParseException e ) {
+      throw new KettleException( "Unable to parse response from " + resourceManagerUrl + path, e );
+    }
+  }
+}
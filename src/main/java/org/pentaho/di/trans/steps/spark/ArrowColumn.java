@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+/**
+ * Column of an Arrow record batch. Only the types PDI values map to are supported, all columns are nullable.
+ */
+public class ArrowColumn {
+  /**
+   * Arrow column types, with their Type union ids from the Arrow schema definition
+   */
+  public static enum Type {
+    INT64( 2, 8 ), FLOAT64( 3, 8 ), BINARY( 4, -1 ), UTF8( 5, -1 ), BOOL( 6, 0 ), TIMESTAMP( 10, 8 );
+
+    private final byte typeId;
+    private final int width; // bytes per value, 0 for bit packed values and -1 for variable width values
+
+    private Type( int typeId, int width ) {
+      this.typeId = (byte) typeId;
+      this.width = width;
+    }
+
+    byte getTypeId() {
+      return typeId;
+    }
+
+    int getWidth() {
+      return width;
+    }
+
+    boolean isVariableWidth() {
+      return width < 0;
+    }
+
+    /**
+     * Creates the type table, 64 bit signed integers, double precision floats and UTC millisecond timestamps
+     */
+    int createType( FlatBufferBuilder builder ) {
+      int timezone = this == TIMESTAMP ? builder.createString( "UTC" ) : 0;
+      switch ( this ) {
+        case INT64:
+          builder.startTable( 2 );
+          builder.addField( 0, 64, 0 );
+          builder.addField( 1, true, false );
+          break;
+        case FLOAT64:
+          builder.startTable( 1 );
+          builder.addField( 0, (short) 2, (short) 0 );
+          break;
+        case TIMESTAMP:
+          builder.startTable( 2 );
+          builder.addField( 0, (short) 1, (short) 0 );
+          builder.addOffsetField( 1, timezone );
+          break;
+        default:
+          builder.startTable( 0 );
+      }
+      return builder.endTable();
+    }
+  }
+
+  private final String name;
+  private final Type type;
+
+  public ArrowColumn( String name, Type type ) {
+    this.name = name;
+    this.type = type;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + type;
+  }
+}
@@ -0,0 +1,259 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Writes column batches in the Arrow IPC streaming format: a schema message, one record batch message per batch and
+ * the end-of-stream marker. Spark reads the stream with any Arrow reader, e.g. pyarrow.ipc.open_stream() in PySpark
+ * or ArrowStreamReader on the JVM, without parsing any text. Only the subset of the format needed here is written:
+ * little endian, metadata version V5, no dictionaries and no compression.
+ */
+public class ArrowStreamWriter implements Closeable {
+  private static final int CONTINUATION = 0xFFFFFFFF;
+  private static final short METADATA_VERSION_V5 = 4;
+  private static final byte HEADER_SCHEMA = 1;
+  private static final byte HEADER_RECORD_BATCH = 3;
+  private static final int ALIGNMENT = 8;
+
+  private final OutputStream out;
+  private final List<ArrowColumn> columns;
+  private final ByteBuffer scratch = ByteBuffer.allocate( 65536 ).order( ByteOrder.LITTLE_ENDIAN );
+  private boolean schemaWritten;
+  private boolean closed;
+  private long rowsWritten;
+  private long batchesWritten;
+  private long bytesWritten;
+
+  /**
+   * @param out
+   *          stream the batches are written to, closed by {@link #close()}
+   * @param columns
+   *          columns of every batch
+   */
+  public ArrowStreamWriter( OutputStream out, List<ArrowColumn> columns ) {
+    this.out = out;
+    this.columns = columns;
+  }
+
+  /**
+   * Writes a batch, preceded by the schema if it's the first one. The batch can be cleared and reused afterwards.
+   */
+  public void writeBatch( ColumnBatch batch ) throws IOException {
+    writeSchema();
+    if ( batch.isEmpty() ) {
+      return;
+    }
+    int rows = batch.getRowCount();
+    int bufferCount = 0;
+    for ( int i = 0; i < columns.size(); i++ ) {
+      bufferCount += batch.getVector( i ).getBufferCount();
+    }
+    long[] nodeLengths = new long[columns.size()];
+    long[] nullCounts = new long[columns.size()];
+    long[] bufferOffsets = new long[bufferCount];
+    long[] bufferLengths = new long[bufferCount];
+    long bodyLength = 0;
+    int buffer = 0;
+    for ( int i = 0; i < columns.size(); i++ ) {
+      ColumnBatch.Vector vector = batch.getVector( i );
+      nodeLengths[i] = rows;
+      nullCounts[i] = vector.nullCount;
+      for ( int j = 0; j < vector.getBufferCount(); j++ ) {
+        bufferOffsets[buffer] = bodyLength;
+        bufferLengths[buffer] = vector.getBufferLength( j, rows );
+        bodyLength += align( bufferLengths[buffer] );
+        buffer++;
+      }
+    }
+
+    FlatBufferBuilder builder = new FlatBufferBuilder( 128 + bufferCount * 16 + columns.size() * 16 );
+    int nodes = builder.createLongPairVector( nodeLengths, nullCounts );
+    int buffers = builder.createLongPairVector( bufferOffsets, bufferLengths );
+    builder.startTable( 4 );
+    builder.addField( 0, (long) rows, 0L );
+    builder.addOffsetField( 1, nodes );
+    builder.addOffsetField( 2, buffers );
+    writeMessage( builder, HEADER_RECORD_BATCH, builder.endTable(), bodyLength );
+
+    buffer = 0;
+    for ( int i = 0; i < columns.size(); i++ ) {
+      ColumnBatch.Vector vector = batch.getVector( i );
+      for ( int j = 0; j < vector.getBufferCount(); j++ ) {
+        long length = bufferLengths[buffer++];
+        writeBuffer( vector, j, rows, length );
+        writeZeros( (int) ( align( length ) - length ) );
+      }
+    }
+    rowsWritten += rows;
+    batchesWritten++;
+  }
+
+  private void writeBuffer( ColumnBatch.Vector vector, int buffer, int rows, long length ) throws IOException {
+    if ( length == 0 ) {
+      return;
+    }
+    if ( buffer == 0 ) {
+      writeBytes( vector.validity, (int) length );
+    } else if ( vector.longs != null ) {
+      for ( int i = 0; i < rows; i++ ) {
+        ensureRemaining( 8 ).putLong( vector.longs[i] );
+      }
+    } else if ( vector.doubles != null ) {
+      for ( int i = 0; i < rows; i++ ) {
+        ensureRemaining( 8 ).putDouble( vector.doubles[i] );
+      }
+    } else if ( vector.bits != null ) {
+      writeBytes( vector.bits, (int) length );
+    } else if ( buffer == 1 ) {
+      for ( int i = 0; i <= rows; i++ ) {
+        ensureRemaining( 4 ).putInt( vector.offsets[i] );
+      }
+    } else {
+      writeBytes( vector.data, (int) length );
+    }
+  }
+
+  private void writeSchema() throws IOException {
+    if ( schemaWritten ) {
+      return;
+    }
+    schemaWritten = true;
+    FlatBufferBuilder builder = new FlatBufferBuilder( 256 + columns.size() * 64 );
+    // readers expect the children vector even for primitive types
+    int noChildren = builder.createOffsetVector( new int[0] );
+    int[] fields = new int[columns.size()];
+    for ( int i = 0; i < fields.length; i++ ) {
+      ArrowColumn column = columns.get( i );
+      int name = builder.createString( column.getName() );
+      int type = column.getType().createType( builder );
+      builder.startTable( 7 );
+      builder.addOffsetField( 0, name );
+      builder.addField( 1, true, false );
+      builder.addField( 2, column.getType().getTypeId(), (byte) 0 );
+      builder.addOffsetField( 3, type );
+      builder.addOffsetField( 5, noChildren );
+      fields[i] = builder.endTable();
+    }
+    int fieldVector = builder.createOffsetVector( fields );
+    builder.startTable( 4 );
+    builder.addOffsetField( 1, fieldVector );
+    writeMessage( builder, HEADER_SCHEMA, builder.endTable(), 0 );
+  }
+
+  /**
+   * Writes the encapsulated message: continuation marker, metadata length, metadata padded to 8 bytes
+   */
+  private void writeMessage( FlatBufferBuilder builder, byte headerType, int header, long bodyLength )
+    throws IOException {
+    builder.startTable( 5 );
+    builder.addField( 0, METADATA_VERSION_V5, (short) 0 );
+    builder.addField( 1, headerType, (byte) 0 );
+    builder.addOffsetField( 2, header );
+    builder.addField( 3, bodyLength, 0L );
+    byte[] metadata = builder.finish( builder.endTable() );
+    int paddedLength = (int) align( metadata.length );
+    ensureRemaining( 8 ).putInt( CONTINUATION ).putInt( paddedLength );
+    writeBytes( metadata, metadata.length );
+    writeZeros( paddedLength - metadata.length );
+  }
+
+  private static long align( long length ) {
+    return ( length + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+  }
+
+  private ByteBuffer ensureRemaining( int bytes ) throws IOException {
+    if ( scratch.remaining() < bytes ) {
+      flushScratch();
+    }
+    return scratch;
+  }
+
+  private void flushScratch() throws IOException {
+    out.write( scratch.array(), 0, scratch.position() );
+    bytesWritten += scratch.position();
+    scratch.clear();
+  }
+
+  private void writeBytes( byte[] bytes, int length ) throws IOException {
+    if ( length <= scratch.remaining() ) {
+      scratch.put( bytes, 0, length );
+    } else {
+      flushScratch();
+      out.write( bytes, 0, length );
+      bytesWritten += length;
+    }
+  }
+
+  private void writeZeros( int count ) throws IOException {
+    for ( int i = 0; i < count; i++ ) {
+      ensureRemaining( 1 ).put( (byte) 0 );
+    }
+  }
+
+  public void flush() throws IOException {
+    flushScratch();
+    out.flush();
+  }
+
+  /**
+   * Writes the schema if no batch was written and the end-of-stream marker, then closes the stream. Does nothing
+   * if already closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    try {
+      writeSchema();
+      ensureRemaining( 8 ).putInt( CONTINUATION ).putInt( 0 );
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+
+  public long getBatchesWritten() {
+    return batchesWritten;
+  }
+
+  /**
+   * Returns the bytes written to the stream so far, buffered bytes are counted once flushed
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+}
@@ -0,0 +1,241 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Collects rows into columnar buffers laid out the way Arrow record batches are, so a batch is written without any
+ * further conversion. Buffers grow up to the batch row limit and are reused after {@link #clear()}, the batch is
+ * reported full when either the row or the byte limit is reached which bounds the memory held per batch.
+ */
+public class ColumnBatch {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final List<ArrowColumn> columns;
+  private final int maxRows;
+  private final long maxBytes;
+  private final Vector[] vectors;
+  private int rowCount;
+
+  /**
+   * @param columns
+   *          columns of the batch
+   * @param maxRows
+   *          rows after which the batch is full
+   * @param maxBytes
+   *          buffer bytes after which the batch is full
+   */
+  public ColumnBatch( List<ArrowColumn> columns, int maxRows, long maxBytes ) {
+    this.columns = columns;
+    this.maxRows = Math.max( 1, maxRows );
+    this.maxBytes = maxBytes;
+    vectors = new Vector[columns.size()];
+    for ( int i = 0; i < vectors.length; i++ ) {
+      vectors[i] = new Vector( columns.get( i ).getType(), Math.min( this.maxRows, INITIAL_CAPACITY ) );
+    }
+  }
+
+  /**
+   * Appends a row. Values must be numbers for integer, float and timestamp columns, timestamps may also be dates,
+   * booleans for boolean columns and byte arrays for binary columns, anything else is converted to a string.
+   *
+   * @param values
+   *          values in column order, null values are allowed
+   */
+  public void add( Object[] values ) {
+    for ( int i = 0; i < vectors.length; i++ ) {
+      vectors[i].add( rowCount, i < values.length ? values[i] : null, maxRows );
+    }
+    rowCount++;
+  }
+
+  public boolean isFull() {
+    return rowCount >= maxRows || getSizeBytes() >= maxBytes;
+  }
+
+  public boolean isEmpty() {
+    return rowCount == 0;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the bytes the batch takes once written, without padding and metadata
+   */
+  public long getSizeBytes() {
+    long size = 0;
+    for ( Vector vector : vectors ) {
+      for ( int i = 0; i < vector.getBufferCount(); i++ ) {
+        size += vector.getBufferLength( i, rowCount );
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for ( Vector vector : vectors ) {
+      vector.clear( rowCount );
+    }
+    rowCount = 0;
+  }
+
+  public List<ArrowColumn> getColumns() {
+    return columns;
+  }
+
+  Vector getVector( int column ) {
+    return vectors[column];
+  }
+
+  /**
+   * Buffers of a single column: the validity bitmap followed by values, or by offsets and data for variable width
+   * columns
+   */
+  static class Vector {
+    final ArrowColumn.Type type;
+    byte[] validity;
+    long[] longs;
+    double[] doubles;
+    byte[] bits;
+    int[] offsets;
+    byte[] data;
+    int dataLength;
+    int nullCount;
+
+    Vector( ArrowColumn.Type type, int capacity ) {
+      this.type = type;
+      validity = new byte[bitmapLength( capacity )];
+      switch ( type ) {
+        case INT64:
+        case TIMESTAMP:
+          longs = new long[capacity];
+          break;
+        case FLOAT64:
+          doubles = new double[capacity];
+          break;
+        case BOOL:
+          bits = new byte[bitmapLength( capacity )];
+          break;
+        default:
+          offsets = new int[capacity + 1];
+          data = new byte[capacity * 16];
+      }
+    }
+
+    int getBufferCount() {
+      return type.isVariableWidth() ? 3 : 2;
+    }
+
+    /**
+     * Returns the length of a buffer, the validity bitmap is left out when there are no null values
+     */
+    long getBufferLength( int buffer, int rows ) {
+      if ( buffer == 0 ) {
+        return nullCount == 0 ? 0 : bitmapLength( rows );
+      }
+      if ( type == ArrowColumn.Type.BOOL ) {
+        return bitmapLength( rows );
+      }
+      if ( !type.isVariableWidth() ) {
+        return (long) rows * type.getWidth();
+      }
+      return buffer == 1 ? ( rows + 1L ) * 4 : dataLength;
+    }
+
+    void add( int row, Object value, int maxRows ) {
+      ensureCapacity( row + 1, maxRows );
+      if ( value == null ) {
+        nullCount++;
+        if ( offsets != null ) {
+          offsets[row + 1] = dataLength;
+        }
+        return;
+      }
+      validity[row >> 3] |= 1 << ( row & 7 );
+      switch ( type ) {
+        case INT64:
+          longs[row] = ( (Number) value ).longValue();
+          break;
+        case TIMESTAMP:
+          longs[row] = value instanceof Date ? ( (Date) value ).getTime() : ( (Number) value ).longValue();
+          break;
+        case FLOAT64:
+          doubles[row] = ( (Number) value ).doubleValue();
+          break;
+        case BOOL:
+          if ( (Boolean) value ) {
+            bits[row >> 3] |= 1 << ( row & 7 );
+          }
+          break;
+        default:
+          byte[] bytes = value instanceof byte[] ? (byte[]) value : value.toString().getBytes( Charsets.UTF_8 );
+          if ( dataLength + bytes.length > data.length ) {
+            data = Arrays.copyOf( data, Math.max( data.length * 2, dataLength + bytes.length ) );
+          }
+          System.arraycopy( bytes, 0, data, dataLength, bytes.length );
+          dataLength += bytes.length;
+          offsets[row + 1] = dataLength;
+      }
+    }
+
+    private void ensureCapacity( int rows, int maxRows ) {
+      int capacity = longs != null ? longs.length : doubles != null ? doubles.length : offsets != null
+          ? offsets.length - 1 : validity.length * 8;
+      if ( rows <= capacity ) {
+        return;
+      }
+      int newCapacity = Math.min( Math.max( capacity * 2, rows ), Math.max( maxRows, rows ) );
+      validity = Arrays.copyOf( validity, bitmapLength( newCapacity ) );
+      if ( longs != null ) {
+        longs = Arrays.copyOf( longs, newCapacity );
+      } else if ( doubles != null ) {
+        doubles = Arrays.copyOf( doubles, newCapacity );
+      } else if ( bits != null ) {
+        bits = Arrays.copyOf( bits, bitmapLength( newCapacity ) );
+      } else {
+        offsets = Arrays.copyOf( offsets, newCapacity + 1 );
+      }
+    }
+
+    void clear( int rows ) {
+      Arrays.fill( validity, 0, bitmapLength( rows ), (byte) 0 );
+      if ( bits != null ) {
+        Arrays.fill( bits, 0, bitmapLength( rows ), (byte) 0 );
+      }
+      nullCount = 0;
+      dataLength = 0;
+    }
+
+    static int bitmapLength( int rows ) {
+      return ( rows + 7 ) / 8;
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Minimal FlatBuffers builder, just enough to encode Arrow IPC message metadata. Like the reference implementation it
+ * fills the buffer back to front, so objects are created before the tables referring to them and every offset points
+ * forward. Tables can't be nested: strings, vectors and child tables are created before a table is started.
+ */
+class FlatBufferBuilder {
+  private byte[] buf;
+  private int space; // index of the first used byte, the buffer is filled from the end
+  private int minAlign = 1;
+  private int[] vtable; // offsets of the fields of the table being built, 0 for absent fields
+  private int objectStart;
+  private int vectorLength;
+
+  FlatBufferBuilder( int initialSize ) {
+    buf = new byte[initialSize];
+    space = initialSize;
+  }
+
+  /**
+   * Returns the offset of the last written object, counted from the end of the buffer
+   */
+  int offset() {
+    return buf.length - space;
+  }
+
+  /**
+   * Pads the buffer so that after writing additional bytes the next value of the given size is aligned
+   */
+  void prep( int size, int additional ) {
+    if ( size > minAlign ) {
+      minAlign = size;
+    }
+    int alignSize = -( offset() + additional ) & ( size - 1 );
+    int needed = alignSize + size + additional;
+    if ( space < needed ) {
+      int newSize = Math.max( buf.length * 2, buf.length + needed );
+      byte[] newBuf = new byte[newSize];
+      System.arraycopy( buf, space, newBuf, newSize - offset(), offset() );
+      space += newSize - buf.length;
+      buf = newBuf;
+    }
+    for ( int i = 0; i < alignSize; i++ ) {
+      buf[--space] = 0;
+    }
+  }
+
+  private void putLittleEndian( long value, int size ) {
+    space -= size;
+    for ( int i = 0; i < size; i++ ) {
+      buf[space + i] = (byte) ( value >>> ( 8 * i ) );
+    }
+  }
+
+  void addByte( int value ) {
+    prep( 1, 0 );
+    putLittleEndian( value, 1 );
+  }
+
+  void addShort( int value ) {
+    prep( 2, 0 );
+    putLittleEndian( value, 2 );
+  }
+
+  void addInt( int value ) {
+    prep( 4, 0 );
+    putLittleEndian( value, 4 );
+  }
+
+  void addLong( long value ) {
+    prep( 8, 0 );
+    putLittleEndian( value, 8 );
+  }
+
+  /**
+   * Adds an offset to a previously created object, stored relative to its own position
+   */
+  void addOffset( int offset ) {
+    prep( 4, 0 );
+    putLittleEndian( offset() - offset + 4, 4 );
+  }
+
+  int createString( String value ) {
+    byte[] bytes = value.getBytes( Charsets.UTF_8 );
+    addByte( 0 );
+    startVector( 1, bytes.length, 1 );
+    space -= bytes.length;
+    System.arraycopy( bytes, 0, buf, space, bytes.length );
+    return endVector();
+  }
+
+  /**
+   * Creates a vector of offsets to previously created tables
+   */
+  int createOffsetVector( int[] offsets ) {
+    startVector( 4, offsets.length, 4 );
+    for ( int i = offsets.length - 1; i >= 0; i-- ) {
+      addOffset( offsets[i] );
+    }
+    return endVector();
+  }
+
+  /**
+   * Creates a vector of structs made of two longs, like Arrow FieldNode and Buffer
+   */
+  int createLongPairVector( long[] first, long[] second ) {
+    startVector( 16, first.length, 8 );
+    for ( int i = first.length - 1; i >= 0; i-- ) {
+      prep( 8, 16 );
+      putLittleEndian( second[i], 8 );
+      putLittleEndian( first[i], 8 );
+    }
+    return endVector();
+  }
+
+  private void startVector( int elementSize, int length, int alignment ) {
+    vectorLength = length;
+    prep( 4, elementSize * length );
+    prep( alignment, elementSize * length );
+  }
+
+  private int endVector() {
+    putLittleEndian( vectorLength, 4 );
+    return offset();
+  }
+
+  void startTable( int fields ) {
+    vtable = new int[fields];
+    objectStart = offset();
+  }
+
+  void addField( int field, byte value, byte defaultValue ) {
+    if ( value != defaultValue ) {
+      addByte( value );
+      vtable[field] = offset();
+    }
+  }
+
+  void addField( int field, boolean value, boolean defaultValue ) {
+    addField( field, (byte) ( value ? 1 : 0 ), (byte) ( defaultValue ? 1 : 0 ) );
+  }
+
+  void addField( int field, short value, short defaultValue ) {
+    if ( value != defaultValue ) {
+      addShort( value );
+      vtable[field] = offset();
+    }
+  }
+
+  void addField( int field, int value, int defaultValue ) {
+    if ( value != defaultValue ) {
+      addInt( value );
+      vtable[field] = offset();
+    }
+  }
+
+  void addField( int field, long value, long defaultValue ) {
+    if ( value != defaultValue ) {
+      addLong( value );
+      vtable[field] = offset();
+    }
+  }
+
+  void addOffsetField( int field, int offset ) {
+    if ( offset != 0 ) {
+      addOffset( offset );
+      vtable[field] = offset();
+    }
+  }
+
+  /**
+   * Writes the vtable of the current table and returns the table offset
+   */
+  int endTable() {
+    addInt( 0 ); // placeholder for the offset to the vtable
+    int objectOffset = offset();
+    int last = vtable.length - 1;
+    while ( last >= 0 && vtable[last] == 0 ) {
+      last--;
+    }
+    for ( int i = last; i >= 0; i-- ) {
+      addShort( vtable[i] != 0 ? objectOffset - vtable[i] : 0 );
+    }
+    addShort( objectOffset - objectStart );
+    addShort( ( last + 3 ) * 2 );
+    int vtableOffset = offset();
+    int position = buf.length - objectOffset;
+    int soffset = vtableOffset - objectOffset;
+    for ( int i = 0; i < 4; i++ ) {
+      buf[position + i] = (byte) ( soffset >>> ( 8 * i ) );
+    }
+    vtable = null;
+    return objectOffset;
+  }
+
+  /**
+   * Finishes the buffer with the given root table and returns its content
+   */
+  byte[] finish( int root ) {
+    prep( minAlign, 4 );
+    addOffset( root );
+    return Arrays.copyOfRange( buf, space, buf.length );
+  }
+}
@@ -0,0 +1,349 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.job.entries.spark.MemorySize;
+import org.pentaho.di.job.entries.spark.ResultChannel;
+import org.pentaho.di.job.entries.spark.SparkSubmission;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+/**
+ * Stages incoming rows as an Arrow IPC stream, submits the Spark application once the input is exhausted and outputs
+ * the results it reports.
+ */
+public class SparkArrowSubmit extends BaseStep implements StepInterface {
+  private static Class<?> PKG = SparkArrowSubmitMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private SparkArrowSubmitMeta meta;
+  private SparkArrowSubmitData data;
+
+  public SparkArrowSubmit( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr,
+      TransMeta transMeta, Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SparkArrowSubmitMeta) smi;
+    data = (SparkArrowSubmitData) sdi;
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    if ( Const.isEmpty( meta.getScriptPath() ) ) {
+      logError( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.SparkSubmitPathEmpty" ) );
+      return false;
+    }
+    if ( Const.isEmpty( meta.getJar() ) ) {
+      logError( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.JarPathEmpty" ) );
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (SparkArrowSubmitMeta) smi;
+    data = (SparkArrowSubmitData) sdi;
+
+    Object[] r = getRow();
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = new RowMeta();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+      openStream( r != null ? getInputRowMeta() : getTransMeta().getPrevStepFields( getStepMeta() ) );
+    }
+
+    if ( r == null ) {
+      try {
+        closeStream();
+        submit();
+      } catch ( KettleException e ) {
+        logError( e.getMessage(), e );
+        setErrors( 1 );
+        stopAll();
+      }
+      setOutputDone();
+      return false;
+    }
+
+    for ( int i = 0; i < data.valueMetas.length; i++ ) {
+      data.values[i] = getValue( data.valueMetas[i], data.columns.get( i ).getType(), r[i] );
+    }
+    data.batch.add( data.values );
+    incrementLinesWritten();
+    if ( data.batch.isFull() ) {
+      writeBatch();
+    }
+    return true;
+  }
+
+  /**
+   * Maps PDI types to Arrow types, types without a matching Arrow type are staged as strings
+   */
+  static ArrowColumn.Type getArrowType( int type ) {
+    switch ( type ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return ArrowColumn.Type.INT64;
+      case ValueMetaInterface.TYPE_NUMBER:
+        return ArrowColumn.Type.FLOAT64;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return ArrowColumn.Type.BOOL;
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return ArrowColumn.Type.TIMESTAMP;
+      case ValueMetaInterface.TYPE_BINARY:
+        return ArrowColumn.Type.BINARY;
+      default:
+        return ArrowColumn.Type.UTF8;
+    }
+  }
+
+  private static Object getValue( ValueMetaInterface valueMeta, ArrowColumn.Type type, Object value )
+    throws KettleException {
+    if ( valueMeta.isNull( value ) ) {
+      return null;
+    }
+    switch ( type ) {
+      case INT64:
+        return valueMeta.getInteger( value );
+      case FLOAT64:
+        return valueMeta.getNumber( value );
+      case BOOL:
+        return valueMeta.getBoolean( value );
+      case TIMESTAMP:
+        return valueMeta.getDate( value );
+      case BINARY:
+        return valueMeta.getBinary( value );
+      default:
+        return valueMeta.getString( value );
+    }
+  }
+
+  private void openStream( RowMetaInterface inputRowMeta ) throws KettleException {
+    int size = inputRowMeta == null ? 0 : inputRowMeta.size();
+    data.columns = new ArrayList<ArrowColumn>( size );
+    data.valueMetas = new ValueMetaInterface[size];
+    for ( int i = 0; i < size; i++ ) {
+      data.valueMetas[i] = inputRowMeta.getValueMeta( i );
+      data.columns.add( new ArrowColumn( data.valueMetas[i].getName(), getArrowType( data.valueMetas[i]
+          .getType() ) ) );
+    }
+    data.values = new Object[size];
+    int batchRows = Const.toInt( environmentSubstitute( meta.getBatchRows() ),
+        SparkArrowSubmitMeta.DEFAULT_BATCH_ROWS );
+    long batchBytes = MemorySize.toMegabytes( environmentSubstitute( meta.getBatchMemory() ), MemorySize.toMegabytes(
+        SparkArrowSubmitMeta.DEFAULT_BATCH_MEMORY, 0 ) ) * 1024 * 1024;
+    data.batch = new ColumnBatch( data.columns, batchRows, batchBytes );
+    try {
+      String directory = environmentSubstitute( meta.getStagingDirectory() );
+      data.stagedFile = File.createTempFile( "pdi-arrow-", ".arrow", Const.isEmpty( directory ) ? null : new File(
+          directory ) );
+      data.writer = new ArrowStreamWriter( new FileOutputStream( data.stagedFile ), data.columns );
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.Staging", e.getMessage() ), e );
+    }
+    data.stagingStarted = System.currentTimeMillis();
+    logBasic( BaseMessages.getString( PKG, "SparkArrowSubmit.Staging", data.stagedFile.getAbsolutePath(),
+        batchRows ) );
+  }
+
+  private void writeBatch() throws KettleException {
+    try {
+      data.writer.writeBatch( data.batch );
+      data.batch.clear();
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.Staging", e.getMessage() ), e );
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "SparkArrowSubmit.BatchWritten", data.writer.getBatchesWritten(),
+          data.writer.getRowsWritten(), getRowsPerSecond() ) );
+    }
+  }
+
+  private void closeStream() throws KettleException {
+    writeBatch();
+    try {
+      data.writer.close();
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.Staging", e.getMessage() ), e );
+    }
+    logBasic( BaseMessages.getString( PKG, "SparkArrowSubmit.Staged", data.writer.getRowsWritten(),
+        data.writer.getBatchesWritten(), data.writer.getBytesWritten(), getRowsPerSecond() ) );
+  }
+
+  private long getRowsPerSecond() {
+    long elapsed = Math.max( 1, System.currentTimeMillis() - data.stagingStarted );
+    return data.writer.getRowsWritten() * 1000 / elapsed;
+  }
+
+  /**
+   * Returns the spark-submit command, the staged file is shipped with the application and its name passed as last
+   * argument. The local path doesn't exist where a cluster mode driver runs, the driver resolves the name with
+   * SparkFiles.get or finds the file in its working directory.
+   */
+  List<String> getCmds( File stagedFile ) {
+    List<String> cmds = new ArrayList<String>();
+    cmds.add( environmentSubstitute( meta.getScriptPath() ) );
+    cmds.add( "--master" );
+    cmds.add( environmentSubstitute( meta.getMaster() ) );
+    if ( !Const.isEmpty( meta.getClassName() ) ) {
+      cmds.add( "--class" );
+      cmds.add( environmentSubstitute( meta.getClassName() ) );
+    }
+    for ( String param : meta.getConfigParams() ) {
+      cmds.add( "--conf" );
+      cmds.add( environmentSubstitute( param ) );
+    }
+    if ( !Const.isEmpty( meta.getDriverMemory() ) ) {
+      cmds.add( "--driver-memory" );
+      cmds.add( environmentSubstitute( meta.getDriverMemory() ) );
+    }
+    if ( !Const.isEmpty( meta.getExecutorMemory() ) ) {
+      cmds.add( "--executor-memory" );
+      cmds.add( environmentSubstitute( meta.getExecutorMemory() ) );
+    }
+    cmds.add( "--files" );
+    cmds.add( stagedFile.getAbsolutePath() );
+    cmds.add( environmentSubstitute( meta.getJar() ) );
+    if ( !Const.isEmpty( meta.getArgs() ) ) {
+      for ( String arg : environmentSubstitute( meta.getArgs() ).split( " " ) ) {
+        if ( !Const.isEmpty( arg ) ) {
+          cmds.add( arg );
+        }
+      }
+    }
+    cmds.add( stagedFile.getName() );
+    return cmds;
+  }
+
+  private void submit() throws KettleException {
+    List<String> cmds = getCmds( data.stagedFile );
+    if ( log.isDetailed() ) {
+      logDetailed( cmds.toString() );
+    }
+    if ( meta.isReadResults() ) {
+      String marker = environmentSubstitute( meta.getResultMarker() );
+      data.resultChannel = new ResultChannel( Const.isEmpty( marker ) ? ResultChannel.DEFAULT_MARKER : marker, null,
+          new ResultChannel.VariableListener() {
+            @Override
+            public void onVariable( String name, String value ) {
+              getTrans().setVariable( name, value );
+            }
+          } );
+    }
+    int exitCode;
+    List<RowMetaAndData> results;
+    try {
+      ProcessBuilder procBuilder = new ProcessBuilder( cmds );
+      Map<String, String> env = procBuilder.environment();
+      for ( String variable : listVariables() ) {
+        env.put( variable, getVariable( variable ) );
+      }
+      data.process = procBuilder.start();
+      SparkSubmission submission = new SparkSubmission( environmentSubstitute( meta.getMaster() ), log,
+          data.process, new String[0] );
+      if ( data.resultChannel != null ) {
+        submission.addLineFilter( data.resultChannel );
+      }
+      submission.start();
+      exitCode = submission.waitFor();
+      results = data.resultChannel != null ? data.resultChannel.close() : new ArrayList<RowMetaAndData>();
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.Submitting", e.getMessage() ),
+          e );
+    } catch ( InterruptedException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.Submitting", e.getMessage() ),
+          e );
+    }
+    if ( exitCode != 0 ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SparkArrowSubmit.Error.ExitStatus", exitCode ) );
+    }
+    for ( RowMetaAndData result : results ) {
+      putRow( data.outputRowMeta, getOutputRow( result ) );
+    }
+  }
+
+  /**
+   * Picks the result fields from a result row by name, converting them to the configured types
+   */
+  private Object[] getOutputRow( RowMetaAndData result ) throws KettleException {
+    Object[] row = new Object[data.outputRowMeta.size()];
+    for ( int i = 0; i < row.length; i++ ) {
+      ValueMetaInterface target = data.outputRowMeta.getValueMeta( i );
+      int index = result.getRowMeta().indexOfValue( target.getName() );
+      if ( index >= 0 ) {
+        row[i] = target.convertData( result.getRowMeta().getValueMeta( index ), result.getData()[index] );
+      }
+    }
+    return row;
+  }
+
+  @Override
+  public void stopRunning( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    data = (SparkArrowSubmitData) sdi;
+    if ( data.process != null ) {
+      data.process.destroy();
+    }
+    super.stopRunning( smi, sdi );
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (SparkArrowSubmitData) sdi;
+    if ( data.resultChannel != null ) {
+      data.resultChannel.stop();
+    }
+    if ( data.writer != null ) {
+      try {
+        data.writer.close();
+      } catch ( IOException e ) {
+        // already closed
+      }
+    }
+    if ( data.stagedFile != null && !data.stagedFile.delete() ) {
+      data.stagedFile.deleteOnExit();
+    }
+    super.dispose( smi, sdi );
+  }
+}
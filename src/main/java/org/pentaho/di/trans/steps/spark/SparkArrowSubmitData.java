@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.io.File;
+import java.util.List;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.job.entries.spark.ResultChannel;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class SparkArrowSubmitData extends BaseStepData implements StepDataInterface {
+  public RowMetaInterface outputRowMeta;
+  public List<ArrowColumn> columns;
+  public ValueMetaInterface[] valueMetas; // input value metadata, in column order
+  public Object[] values; // converted values of the current row, reused for every row
+  public ColumnBatch batch;
+  public ArrowStreamWriter writer;
+  public File stagedFile;
+  public long stagingStarted; // milliseconds when the first row was staged
+  public Process process; // the spark-submit process
+  public ResultChannel resultChannel;
+
+  public SparkArrowSubmitData() {
+    super();
+  }
+}
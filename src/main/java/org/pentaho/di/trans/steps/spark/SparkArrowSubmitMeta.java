@@ -0,0 +1,413 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettlePluginException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.job.entries.spark.ResultChannel;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * Settings of the step streaming rows to a Spark application in Arrow format. Incoming rows are staged into an Arrow
+ * IPC stream file in batches of bounded size, then the application is submitted with spark-submit. The staged file is
+ * shipped with --files and its file name is passed as the last application argument. Results the application reports
+ * the way the Spark submit job entry reads them become the output rows of the step.
+ */
+@Step( id = "SparkArrowSubmit", image = "org/pentaho/di/ui/job/entries/spark/img/spark.svg",
+    name = "SparkArrowSubmit.Name", description = "SparkArrowSubmit.Description",
+    categoryDescription = "i18n:org.pentaho.di.trans.step:BaseStep.Category.BigData",
+    i18nPackageName = "org.pentaho.di.trans.steps.spark" )
+public class SparkArrowSubmitMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = SparkArrowSubmitMeta.class; // for i18n purposes, needed by Translator2!!
+
+  public static final int DEFAULT_BATCH_ROWS = 10000;
+  public static final String DEFAULT_BATCH_MEMORY = "64m";
+
+  private String scriptPath; // the path for the spark-submit utility
+  private String master; // the URL for the Spark master
+  private String jar; // the path for the jar containing the Spark code to run
+  private String className; // the name of the class to run
+  private String args; // arguments for the Spark code, the staged file path is appended
+  private String[] configParams; // configuration options, "key=value"
+  private String driverMemory; // memory allocation config param for the driver
+  private String executorMemory; // memory allocation config param for the executor
+  private String stagingDirectory; // local folder the Arrow stream is staged in
+  private String batchRows; // rows per record batch
+  private String batchMemory; // buffer memory per record batch, e.g. "64m"
+  private boolean readResults; // turn results reported by the application into output rows
+  private String resultMarker; // prefix of driver output lines holding results
+  private String[] resultFieldNames; // names of the result fields
+  private String[] resultFieldTypes; // PDI type names of the result fields
+
+  public SparkArrowSubmitMeta() {
+    super();
+  }
+
+  public void allocate( int nrConfigParams, int nrResultFields ) {
+    configParams = new String[nrConfigParams];
+    resultFieldNames = new String[nrResultFields];
+    resultFieldTypes = new String[nrResultFields];
+  }
+
+  @Override
+  public void setDefault() {
+    allocate( 0, 0 );
+    master = "yarn-cluster";
+    stagingDirectory = "${java.io.tmpdir}";
+    batchRows = String.valueOf( DEFAULT_BATCH_ROWS );
+    batchMemory = DEFAULT_BATCH_MEMORY;
+    readResults = false;
+    resultMarker = ResultChannel.DEFAULT_MARKER;
+  }
+
+  @Override
+  public Object clone() {
+    SparkArrowSubmitMeta retval = (SparkArrowSubmitMeta) super.clone();
+    retval.allocate( configParams.length, resultFieldNames.length );
+    System.arraycopy( configParams, 0, retval.configParams, 0, configParams.length );
+    System.arraycopy( resultFieldNames, 0, retval.resultFieldNames, 0, resultFieldNames.length );
+    System.arraycopy( resultFieldTypes, 0, retval.resultFieldTypes, 0, resultFieldTypes.length );
+    return retval;
+  }
+
+  @Override
+  public String getXML() {
+    StringBuilder retval = new StringBuilder( 500 );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "scriptPath", scriptPath ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "master", master ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "jar", jar ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "className", className ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "args", args ) );
+    retval.append( "    " ).append( XMLHandler.openTag( "configParams" ) ).append( Const.CR );
+    for ( String param : configParams ) {
+      retval.append( "      " ).append( XMLHandler.addTagValue( "param", param ) );
+    }
+    retval.append( "    " ).append( XMLHandler.closeTag( "configParams" ) ).append( Const.CR );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "driverMemory", driverMemory ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "executorMemory", executorMemory ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "stagingDirectory", stagingDirectory ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "batchRows", batchRows ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "batchMemory", batchMemory ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "readResults", readResults ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "resultMarker", resultMarker ) );
+    retval.append( "    " ).append( XMLHandler.openTag( "resultFields" ) ).append( Const.CR );
+    for ( int i = 0; i < resultFieldNames.length; i++ ) {
+      retval.append( "      " ).append( XMLHandler.openTag( "field" ) ).append( Const.CR );
+      retval.append( "        " ).append( XMLHandler.addTagValue( "name", resultFieldNames[i] ) );
+      retval.append( "        " ).append( XMLHandler.addTagValue( "type", resultFieldTypes[i] ) );
+      retval.append( "      " ).append( XMLHandler.closeTag( "field" ) ).append( Const.CR );
+    }
+    retval.append( "    " ).append( XMLHandler.closeTag( "resultFields" ) ).append( Const.CR );
+    return retval.toString();
+  }
+
+  @Override
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore )
+    throws KettleXMLException {
+    try {
+      scriptPath = XMLHandler.getTagValue( stepnode, "scriptPath" );
+      master = XMLHandler.getTagValue( stepnode, "master" );
+      jar = XMLHandler.getTagValue( stepnode, "jar" );
+      className = XMLHandler.getTagValue( stepnode, "className" );
+      args = XMLHandler.getTagValue( stepnode, "args" );
+      driverMemory = XMLHandler.getTagValue( stepnode, "driverMemory" );
+      executorMemory = XMLHandler.getTagValue( stepnode, "executorMemory" );
+      stagingDirectory = XMLHandler.getTagValue( stepnode, "stagingDirectory" );
+      batchRows = XMLHandler.getTagValue( stepnode, "batchRows" );
+      batchMemory = XMLHandler.getTagValue( stepnode, "batchMemory" );
+      readResults = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "readResults" ) );
+      resultMarker = XMLHandler.getTagValue( stepnode, "resultMarker" );
+
+      List<Node> paramNodes = XMLHandler.getNodes( XMLHandler.getSubNode( stepnode, "configParams" ), "param" );
+      List<Node> fieldNodes = XMLHandler.getNodes( XMLHandler.getSubNode( stepnode, "resultFields" ), "field" );
+      allocate( paramNodes.size(), fieldNodes.size() );
+      for ( int i = 0; i < paramNodes.size(); i++ ) {
+        configParams[i] = paramNodes.get( i ).getTextContent();
+      }
+      for ( int i = 0; i < fieldNodes.size(); i++ ) {
+        resultFieldNames[i] = XMLHandler.getTagValue( fieldNodes.get( i ), "name" );
+        resultFieldTypes[i] = XMLHandler.getTagValue( fieldNodes.get( i ), "type" );
+      }
+    } catch ( Exception e ) {
+      throw new KettleXMLException( "Unable to load step of type 'SparkArrowSubmit' from XML node", e );
+    }
+  }
+
+  @Override
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      scriptPath = rep.getStepAttributeString( id_step, "scriptPath" );
+      master = rep.getStepAttributeString( id_step, "master" );
+      jar = rep.getStepAttributeString( id_step, "jar" );
+      className = rep.getStepAttributeString( id_step, "className" );
+      args = rep.getStepAttributeString( id_step, "args" );
+      driverMemory = rep.getStepAttributeString( id_step, "driverMemory" );
+      executorMemory = rep.getStepAttributeString( id_step, "executorMemory" );
+      stagingDirectory = rep.getStepAttributeString( id_step, "stagingDirectory" );
+      batchRows = rep.getStepAttributeString( id_step, "batchRows" );
+      batchMemory = rep.getStepAttributeString( id_step, "batchMemory" );
+      readResults = rep.getStepAttributeBoolean( id_step, "readResults" );
+      resultMarker = rep.getStepAttributeString( id_step, "resultMarker" );
+
+      allocate( rep.countNrStepAttributes( id_step, "param" ), rep.countNrStepAttributes( id_step,
+          "resultFieldName" ) );
+      for ( int i = 0; i < configParams.length; i++ ) {
+        configParams[i] = rep.getStepAttributeString( id_step, i, "param" );
+      }
+      for ( int i = 0; i < resultFieldNames.length; i++ ) {
+        resultFieldNames[i] = rep.getStepAttributeString( id_step, i, "resultFieldName" );
+        resultFieldTypes[i] = rep.getStepAttributeString( id_step, i, "resultFieldType" );
+      }
+    } catch ( KettleException e ) {
+      throw new KettleException( "Unable to load step of type 'SparkArrowSubmit' from the repository for id_step="
+          + id_step, e );
+    }
+  }
+
+  @Override
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "scriptPath", scriptPath );
+      rep.saveStepAttribute( id_transformation, id_step, "master", master );
+      rep.saveStepAttribute( id_transformation, id_step, "jar", jar );
+      rep.saveStepAttribute( id_transformation, id_step, "className", className );
+      rep.saveStepAttribute( id_transformation, id_step, "args", args );
+      for ( int i = 0; i < configParams.length; i++ ) {
+        rep.saveStepAttribute( id_transformation, id_step, i, "param", configParams[i] );
+      }
+      rep.saveStepAttribute( id_transformation, id_step, "driverMemory", driverMemory );
+      rep.saveStepAttribute( id_transformation, id_step, "executorMemory", executorMemory );
+      rep.saveStepAttribute( id_transformation, id_step, "stagingDirectory", stagingDirectory );
+      rep.saveStepAttribute( id_transformation, id_step, "batchRows", batchRows );
+      rep.saveStepAttribute( id_transformation, id_step, "batchMemory", batchMemory );
+      rep.saveStepAttribute( id_transformation, id_step, "readResults", readResults );
+      rep.saveStepAttribute( id_transformation, id_step, "resultMarker", resultMarker );
+      for ( int i = 0; i < resultFieldNames.length; i++ ) {
+        rep.saveStepAttribute( id_transformation, id_step, i, "resultFieldName", resultFieldNames[i] );
+        rep.saveStepAttribute( id_transformation, id_step, i, "resultFieldType", resultFieldTypes[i] );
+      }
+    } catch ( KettleException e ) {
+      throw new KettleException( "Unable to save step of type 'SparkArrowSubmit' to the repository for id_step="
+          + id_step, e );
+    }
+  }
+
+  /**
+   * Input rows are consumed, the output rows are the result fields when results are read
+   */
+  @Override
+  public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    rowMeta.clear();
+    if ( !readResults ) {
+      return;
+    }
+    try {
+      for ( int i = 0; i < resultFieldNames.length; i++ ) {
+        ValueMetaInterface valueMeta = ValueMetaFactory.createValueMeta( space.environmentSubstitute(
+            resultFieldNames[i] ), ValueMetaFactory.getIdForValueMeta( resultFieldTypes[i] ) );
+        valueMeta.setOrigin( origin );
+        rowMeta.addValueMeta( valueMeta );
+      }
+    } catch ( KettlePluginException e ) {
+      throw new KettleStepException( e );
+    }
+  }
+
+  @Override
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta,
+      RowMetaInterface prev, String[] input, String[] output, RowMetaInterface info, VariableSpace space,
+      Repository repository, IMetaStore metaStore ) {
+    if ( input.length == 0 ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+          "SparkArrowSubmit.CheckResult.NoInput" ), stepMeta ) );
+    }
+    if ( Const.isEmpty( scriptPath ) ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+          "SparkArrowSubmit.Error.SparkSubmitPathEmpty" ), stepMeta ) );
+    }
+    if ( Const.isEmpty( jar ) ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+          "SparkArrowSubmit.Error.JarPathEmpty" ), stepMeta ) );
+    }
+  }
+
+  @Override
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr,
+      TransMeta transMeta, Trans trans ) {
+    return new SparkArrowSubmit( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public StepDataInterface getStepData() {
+    return new SparkArrowSubmitData();
+  }
+
+  public String getScriptPath() {
+    return scriptPath;
+  }
+
+  public void setScriptPath( String scriptPath ) {
+    this.scriptPath = scriptPath;
+  }
+
+  public String getMaster() {
+    return master;
+  }
+
+  public void setMaster( String master ) {
+    this.master = master;
+  }
+
+  public String getJar() {
+    return jar;
+  }
+
+  public void setJar( String jar ) {
+    this.jar = jar;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public void setClassName( String className ) {
+    this.className = className;
+  }
+
+  public String getArgs() {
+    return args;
+  }
+
+  public void setArgs( String args ) {
+    this.args = args;
+  }
+
+  public String[] getConfigParams() {
+    return configParams;
+  }
+
+  public void setConfigParams( String[] configParams ) {
+    this.configParams = configParams;
+  }
+
+  public String getDriverMemory() {
+    return driverMemory;
+  }
+
+  public void setDriverMemory( String driverMemory ) {
+    this.driverMemory = driverMemory;
+  }
+
+  public String getExecutorMemory() {
+    return executorMemory;
+  }
+
+  public void setExecutorMemory( String executorMemory ) {
+    this.executorMemory = executorMemory;
+  }
+
+  public String getStagingDirectory() {
+    return stagingDirectory;
+  }
+
+  public void setStagingDirectory( String stagingDirectory ) {
+    this.stagingDirectory = stagingDirectory;
+  }
+
+  public String getBatchRows() {
+    return batchRows;
+  }
+
+  public void setBatchRows( String batchRows ) {
+    this.batchRows = batchRows;
+  }
+
+  public String getBatchMemory() {
+    return batchMemory;
+  }
+
+  public void setBatchMemory( String batchMemory ) {
+    this.batchMemory = batchMemory;
+  }
+
+  public boolean isReadResults() {
+    return readResults;
+  }
+
+  public void setReadResults( boolean readResults ) {
+    this.readResults = readResults;
+  }
+
+  public String getResultMarker() {
+    return resultMarker;
+  }
+
+  public void setResultMarker( String resultMarker ) {
+    this.resultMarker = resultMarker;
+  }
+
+  public String[] getResultFieldNames() {
+    return resultFieldNames;
+  }
+
+  public void setResultFieldNames( String[] resultFieldNames ) {
+    this.resultFieldNames = resultFieldNames;
+  }
+
+  public String[] getResultFieldTypes() {
+    return resultFieldTypes;
+  }
+
+  public void setResultFieldTypes( String[] resultFieldTypes ) {
+    this.resultFieldTypes = resultFieldTypes;
+  }
+}
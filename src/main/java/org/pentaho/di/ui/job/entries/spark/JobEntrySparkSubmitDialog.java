@@ -52,9 +52,11 @@ import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Props;
+import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.JobMeta;
 import org.pentaho.di.job.entries.spark.JobEntrySparkSubmit;
+import org.pentaho.di.job.entries.spark.TuningProfileStore;
 import org.pentaho.di.job.entry.JobEntryDialogInterface;
 import org.pentaho.di.job.entry.JobEntryInterface;
 import org.pentaho.di.repository.Repository;
@@ -100,9 +102,44 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
   private TextVar clazz;
   private TextVar jar;
   private TextVar args;
+  private ComboVar tuningProfile;
   private TextVar driverMemory;
   private TextVar executorMemory;
   private Button blockExecution;
+  private TextVar resourceManagerUrl;
+  private TextVar candidateQueues;
+  private Button reattachRunning;
+  private Button registerKryo;
+  private Button thinJar;
+  private Button preflight;
+  private Button cachePackages;
+  private TextVar providedPackages;
+  private TextVar hedgeTimeout;
+  private TableView hedgeTargets;
+  private Button memoize;
+  private TextVar partitionSize;
+  private Button microBatch;
+  private TextVar batchWindow;
+  private TextVar batchSize;
+  private Button sharedSession;
+  private TextVar sessionConcurrency;
+  private TextVar sessionIdleTimeout;
+  private Button supervise;
+  private TextVar maxRestarts;
+  private TextVar restartDelay;
+  private TextVar lagBatches;
+  private TextVar resultMarker;
+  private TextVar resultFile;
+  private TextVar pyFiles;
+  private TextVar pythonRequirements;
+  private TextVar pythonExecutable;
+  private TextVar pythonArchiveLocation;
+  private TextVar deadline;
+  private TextVar hangTimeout;
+  private TextVar sampleInterval;
+  private TextVar hostMemoryLimit;
+  private TableView inputPaths;
+  private TableView remoteServers;
 
   public JobEntrySparkSubmitDialog( Shell parent, JobEntryInterface jobEntryInt, Repository rep, JobMeta jobMeta ) {
     super( parent, jobEntryInt, rep, jobMeta );
@@ -365,6 +402,25 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     fdArgs.top = new FormAttachment( argsLabel, MARGIN_SMALL );
     args.setLayoutData( fdArgs );
 
+    // Tuning profile
+    Label tuningProfileLabel = new Label( jobConfigTabComposite, SWT.RIGHT );
+    tuningProfileLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.TuningProfile.Label" ) );
+    props.setLook( tuningProfileLabel );
+    FormData fdTuningProfileLabel = new FormData();
+    fdTuningProfileLabel.left = new FormAttachment( 0 );
+    fdTuningProfileLabel.top = new FormAttachment( args, MARGIN_MEDIUM );
+    tuningProfileLabel.setLayoutData( fdTuningProfileLabel );
+
+    tuningProfile = new ComboVar( jobMeta, jobConfigTabComposite, SWT.BORDER );
+    props.setLook( tuningProfile );
+    tuningProfile.addModifyListener( lsMod );
+
+    FormData fdTuningProfile = new FormData();
+    fdTuningProfile.left = new FormAttachment( 0 );
+    fdTuningProfile.right = new FormAttachment( 100, 0 );
+    fdTuningProfile.top = new FormAttachment( tuningProfileLabel, MARGIN_SMALL );
+    tuningProfile.setLayoutData( fdTuningProfile );
+
     // Add group control
     Group group = new Group( jobConfigTabComposite, SWT.NONE );
     props.setLook( group );
@@ -376,7 +432,7 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     FormData fdGroup = new FormData();
     fdGroup.left = new FormAttachment( 0 );
     fdGroup.right = new FormAttachment( 100 );
-    fdGroup.top = new FormAttachment( args, MARGIN_LARGE );
+    fdGroup.top = new FormAttachment( tuningProfile, MARGIN_LARGE );
     group.setLayoutData( fdGroup );
 
     // Memory allocation settings
@@ -422,6 +478,74 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     fdBlockExecution.left = new FormAttachment( 0 );
     blockExecution.setLayoutData( fdBlockExecution );
 
+    Label deadlineLabel = new Label( jobConfigTabComposite, SWT.NONE );
+    props.setLook( deadlineLabel );
+    deadlineLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Deadline.Label" ) );
+    FormData fdDeadlineLabel = new FormData();
+    fdDeadlineLabel.top = new FormAttachment( blockExecution, MARGIN_LARGE );
+    fdDeadlineLabel.left = new FormAttachment( 0 );
+    deadlineLabel.setLayoutData( fdDeadlineLabel );
+
+    deadline = new TextVar( jobMeta, jobConfigTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( deadline );
+    deadline.addModifyListener( lsMod );
+    deadline.addSelectionListener( lsDef );
+    FormData fdDeadline = new FormData();
+    fdDeadline.top = new FormAttachment( deadlineLabel, MARGIN_SMALL );
+    fdDeadline.left = new FormAttachment( 0 );
+    deadline.setLayoutData( fdDeadline );
+
+    Label hangTimeoutLabel = new Label( jobConfigTabComposite, SWT.NONE );
+    props.setLook( hangTimeoutLabel );
+    hangTimeoutLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.HangTimeout.Label" ) );
+    FormData fdHangTimeoutLabel = new FormData();
+    fdHangTimeoutLabel.top = new FormAttachment( blockExecution, MARGIN_LARGE );
+    fdHangTimeoutLabel.left = new FormAttachment( 50 );
+    hangTimeoutLabel.setLayoutData( fdHangTimeoutLabel );
+
+    hangTimeout = new TextVar( jobMeta, jobConfigTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( hangTimeout );
+    hangTimeout.addModifyListener( lsMod );
+    hangTimeout.addSelectionListener( lsDef );
+    FormData fdHangTimeout = new FormData();
+    fdHangTimeout.top = new FormAttachment( hangTimeoutLabel, MARGIN_SMALL );
+    fdHangTimeout.left = new FormAttachment( 50 );
+    hangTimeout.setLayoutData( fdHangTimeout );
+
+    Label sampleIntervalLabel = new Label( jobConfigTabComposite, SWT.NONE );
+    props.setLook( sampleIntervalLabel );
+    sampleIntervalLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SampleInterval.Label" ) );
+    FormData fdSampleIntervalLabel = new FormData();
+    fdSampleIntervalLabel.top = new FormAttachment( deadline, MARGIN_LARGE );
+    fdSampleIntervalLabel.left = new FormAttachment( 0 );
+    sampleIntervalLabel.setLayoutData( fdSampleIntervalLabel );
+
+    sampleInterval = new TextVar( jobMeta, jobConfigTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( sampleInterval );
+    sampleInterval.addModifyListener( lsMod );
+    sampleInterval.addSelectionListener( lsDef );
+    FormData fdSampleInterval = new FormData();
+    fdSampleInterval.top = new FormAttachment( sampleIntervalLabel, MARGIN_SMALL );
+    fdSampleInterval.left = new FormAttachment( 0 );
+    sampleInterval.setLayoutData( fdSampleInterval );
+
+    Label hostMemoryLimitLabel = new Label( jobConfigTabComposite, SWT.NONE );
+    props.setLook( hostMemoryLimitLabel );
+    hostMemoryLimitLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.HostMemoryLimit.Label" ) );
+    FormData fdHostMemoryLimitLabel = new FormData();
+    fdHostMemoryLimitLabel.top = new FormAttachment( deadline, MARGIN_LARGE );
+    fdHostMemoryLimitLabel.left = new FormAttachment( 50 );
+    hostMemoryLimitLabel.setLayoutData( fdHostMemoryLimitLabel );
+
+    hostMemoryLimit = new TextVar( jobMeta, jobConfigTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( hostMemoryLimit );
+    hostMemoryLimit.addModifyListener( lsMod );
+    hostMemoryLimit.addSelectionListener( lsDef );
+    FormData fdHostMemoryLimit = new FormData();
+    fdHostMemoryLimit.top = new FormAttachment( hostMemoryLimitLabel, MARGIN_SMALL );
+    fdHostMemoryLimit.left = new FormAttachment( 50 );
+    hostMemoryLimit.setLayoutData( fdHostMemoryLimit );
+
     // Config parameters tab
     CTabItem parametersTab = new CTabItem( tabs, SWT.NONE );
     parametersTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ParametersTab.Label" ) );
@@ -452,6 +576,572 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     fdConfigParams.bottom = new FormAttachment( 100 );
     configParams.setLayoutData( fdConfigParams );
     configParams.addModifyListener( lsMod );
+
+    // Advanced tab
+    CTabItem advancedTab = new CTabItem( tabs, SWT.NONE );
+    advancedTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.AdvancedTab.Label" ) );
+
+    Composite advancedTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( advancedTabComposite );
+    advancedTab.setControl( advancedTabComposite );
+    FormLayout advancedTabCompositeLayout = new FormLayout();
+    advancedTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    advancedTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    advancedTabComposite.setLayout( advancedTabCompositeLayout );
+
+    // ResourceManager URL
+    Label resourceManagerUrlLabel = new Label( advancedTabComposite, SWT.RIGHT );
+    resourceManagerUrlLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ResourceManagerUrl.Label" ) );
+    props.setLook( resourceManagerUrlLabel );
+    FormData fdResourceManagerUrlLabel = new FormData();
+    fdResourceManagerUrlLabel.left = new FormAttachment( 0 );
+    fdResourceManagerUrlLabel.top = new FormAttachment( 0 );
+    resourceManagerUrlLabel.setLayoutData( fdResourceManagerUrlLabel );
+
+    resourceManagerUrl = new TextVar( jobMeta, advancedTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( resourceManagerUrl );
+    resourceManagerUrl.addModifyListener( lsMod );
+    resourceManagerUrl.addSelectionListener( lsDef );
+    FormData fdResourceManagerUrl = new FormData();
+    fdResourceManagerUrl.left = new FormAttachment( 0 );
+    fdResourceManagerUrl.right = new FormAttachment( 100, 0 );
+    fdResourceManagerUrl.top = new FormAttachment( resourceManagerUrlLabel, MARGIN_SMALL );
+    resourceManagerUrl.setLayoutData( fdResourceManagerUrl );
+
+    // Candidate queues
+    Label candidateQueuesLabel = new Label( advancedTabComposite, SWT.RIGHT );
+    candidateQueuesLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.CandidateQueues.Label" ) );
+    props.setLook( candidateQueuesLabel );
+    FormData fdCandidateQueuesLabel = new FormData();
+    fdCandidateQueuesLabel.left = new FormAttachment( 0 );
+    fdCandidateQueuesLabel.top = new FormAttachment( resourceManagerUrl, MARGIN_MEDIUM );
+    candidateQueuesLabel.setLayoutData( fdCandidateQueuesLabel );
+
+    candidateQueues = new TextVar( jobMeta, advancedTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( candidateQueues );
+    candidateQueues.addModifyListener( lsMod );
+    candidateQueues.addSelectionListener( lsDef );
+    FormData fdCandidateQueues = new FormData();
+    fdCandidateQueues.left = new FormAttachment( 0 );
+    fdCandidateQueues.right = new FormAttachment( 100, 0 );
+    fdCandidateQueues.top = new FormAttachment( candidateQueuesLabel, MARGIN_SMALL );
+    candidateQueues.setLayoutData( fdCandidateQueues );
+
+    reattachRunning = new Button( advancedTabComposite, SWT.CHECK );
+    props.setLook( reattachRunning );
+    reattachRunning.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ReattachRunning.Label" ) );
+    FormData fdReattachRunning = new FormData();
+    fdReattachRunning.top = new FormAttachment( candidateQueues, MARGIN_MEDIUM );
+    fdReattachRunning.left = new FormAttachment( 0 );
+    reattachRunning.setLayoutData( fdReattachRunning );
+
+    registerKryo = new Button( advancedTabComposite, SWT.CHECK );
+    props.setLook( registerKryo );
+    registerKryo.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.RegisterKryo.Label" ) );
+    FormData fdRegisterKryo = new FormData();
+    fdRegisterKryo.top = new FormAttachment( reattachRunning, MARGIN_MEDIUM );
+    fdRegisterKryo.left = new FormAttachment( 0 );
+    registerKryo.setLayoutData( fdRegisterKryo );
+
+    thinJar = new Button( advancedTabComposite, SWT.CHECK );
+    props.setLook( thinJar );
+    thinJar.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ThinJar.Label" ) );
+    FormData fdThinJar = new FormData();
+    fdThinJar.top = new FormAttachment( registerKryo, MARGIN_MEDIUM );
+    fdThinJar.left = new FormAttachment( 0 );
+    thinJar.setLayoutData( fdThinJar );
+
+    preflight = new Button( advancedTabComposite, SWT.CHECK );
+    props.setLook( preflight );
+    preflight.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Preflight.Label" ) );
+    FormData fdPreflight = new FormData();
+    fdPreflight.top = new FormAttachment( thinJar, MARGIN_MEDIUM );
+    fdPreflight.left = new FormAttachment( 0 );
+    preflight.setLayoutData( fdPreflight );
+
+    Label providedPackagesLabel = new Label( advancedTabComposite, SWT.RIGHT );
+    providedPackagesLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ProvidedPackages.Label" ) );
+    props.setLook( providedPackagesLabel );
+    FormData fdProvidedPackagesLabel = new FormData();
+    fdProvidedPackagesLabel.left = new FormAttachment( 0 );
+    fdProvidedPackagesLabel.top = new FormAttachment( preflight, MARGIN_MEDIUM );
+    providedPackagesLabel.setLayoutData( fdProvidedPackagesLabel );
+
+    providedPackages = new TextVar( jobMeta, advancedTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( providedPackages );
+    providedPackages.addModifyListener( lsMod );
+    providedPackages.addSelectionListener( lsDef );
+    FormData fdProvidedPackages = new FormData();
+    fdProvidedPackages.left = new FormAttachment( 0 );
+    fdProvidedPackages.right = new FormAttachment( 100, 0 );
+    fdProvidedPackages.top = new FormAttachment( providedPackagesLabel, MARGIN_SMALL );
+    providedPackages.setLayoutData( fdProvidedPackages );
+
+    cachePackages = new Button( advancedTabComposite, SWT.CHECK );
+    props.setLook( cachePackages );
+    cachePackages.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.CachePackages.Label" ) );
+    FormData fdCachePackages = new FormData();
+    fdCachePackages.top = new FormAttachment( providedPackages, MARGIN_MEDIUM );
+    fdCachePackages.left = new FormAttachment( 0 );
+    cachePackages.setLayoutData( fdCachePackages );
+
+    // Micro-batching
+    Group batchGroup = new Group( advancedTabComposite, SWT.NONE );
+    props.setLook( batchGroup );
+    batchGroup.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.MicroBatch.Label" ) );
+    FormLayout batchGroupLayout = new FormLayout();
+    batchGroupLayout.marginHeight = MARGIN_LARGE;
+    batchGroupLayout.marginWidth = MARGIN_MEDIUM;
+    batchGroup.setLayout( batchGroupLayout );
+    FormData fdBatchGroup = new FormData();
+    fdBatchGroup.left = new FormAttachment( 0 );
+    fdBatchGroup.right = new FormAttachment( 100 );
+    fdBatchGroup.top = new FormAttachment( cachePackages, MARGIN_LARGE );
+    batchGroup.setLayoutData( fdBatchGroup );
+
+    microBatch = new Button( batchGroup, SWT.CHECK );
+    props.setLook( microBatch );
+    microBatch.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.MicroBatchEnabled.Label" ) );
+    FormData fdMicroBatch = new FormData();
+    fdMicroBatch.top = new FormAttachment( 0 );
+    fdMicroBatch.left = new FormAttachment( 0 );
+    microBatch.setLayoutData( fdMicroBatch );
+
+    Label batchWindowLabel = new Label( batchGroup, SWT.NONE );
+    props.setLook( batchWindowLabel );
+    batchWindowLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.BatchWindow.Label" ) );
+    FormData fdBatchWindowLabel = new FormData();
+    fdBatchWindowLabel.top = new FormAttachment( microBatch, MARGIN_MEDIUM );
+    fdBatchWindowLabel.left = new FormAttachment( 0 );
+    batchWindowLabel.setLayoutData( fdBatchWindowLabel );
+
+    batchWindow = new TextVar( jobMeta, batchGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( batchWindow );
+    batchWindow.addModifyListener( lsMod );
+    batchWindow.addSelectionListener( lsDef );
+    FormData fdBatchWindow = new FormData();
+    fdBatchWindow.top = new FormAttachment( batchWindowLabel, MARGIN_SMALL );
+    fdBatchWindow.left = new FormAttachment( 0 );
+    batchWindow.setLayoutData( fdBatchWindow );
+
+    Label batchSizeLabel = new Label( batchGroup, SWT.NONE );
+    props.setLook( batchSizeLabel );
+    batchSizeLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.BatchSize.Label" ) );
+    FormData fdBatchSizeLabel = new FormData();
+    fdBatchSizeLabel.top = new FormAttachment( microBatch, MARGIN_MEDIUM );
+    fdBatchSizeLabel.left = new FormAttachment( 50 );
+    batchSizeLabel.setLayoutData( fdBatchSizeLabel );
+
+    batchSize = new TextVar( jobMeta, batchGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( batchSize );
+    batchSize.addModifyListener( lsMod );
+    batchSize.addSelectionListener( lsDef );
+    FormData fdBatchSize = new FormData();
+    fdBatchSize.top = new FormAttachment( batchSizeLabel, MARGIN_SMALL );
+    fdBatchSize.left = new FormAttachment( 50 );
+    batchSize.setLayoutData( fdBatchSize );
+
+    // Hedging
+    Group hedgeGroup = new Group( advancedTabComposite, SWT.NONE );
+    props.setLook( hedgeGroup );
+    hedgeGroup.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Hedge.Label" ) );
+    FormLayout hedgeGroupLayout = new FormLayout();
+    hedgeGroupLayout.marginHeight = MARGIN_LARGE;
+    hedgeGroupLayout.marginWidth = MARGIN_MEDIUM;
+    hedgeGroup.setLayout( hedgeGroupLayout );
+    FormData fdHedgeGroup = new FormData();
+    fdHedgeGroup.left = new FormAttachment( 0 );
+    fdHedgeGroup.right = new FormAttachment( 100 );
+    fdHedgeGroup.top = new FormAttachment( batchGroup, MARGIN_LARGE );
+    fdHedgeGroup.bottom = new FormAttachment( 100 );
+    hedgeGroup.setLayoutData( fdHedgeGroup );
+
+    Label hedgeTimeoutLabel = new Label( hedgeGroup, SWT.NONE );
+    props.setLook( hedgeTimeoutLabel );
+    hedgeTimeoutLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Hedge.Timeout.Label" ) );
+    FormData fdHedgeTimeoutLabel = new FormData();
+    fdHedgeTimeoutLabel.top = new FormAttachment( 0 );
+    fdHedgeTimeoutLabel.left = new FormAttachment( 0 );
+    hedgeTimeoutLabel.setLayoutData( fdHedgeTimeoutLabel );
+
+    hedgeTimeout = new TextVar( jobMeta, hedgeGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( hedgeTimeout );
+    hedgeTimeout.addModifyListener( lsMod );
+    hedgeTimeout.addSelectionListener( lsDef );
+    FormData fdHedgeTimeout = new FormData();
+    fdHedgeTimeout.top = new FormAttachment( hedgeTimeoutLabel, MARGIN_SMALL );
+    fdHedgeTimeout.left = new FormAttachment( 0 );
+    hedgeTimeout.setLayoutData( fdHedgeTimeout );
+
+    ColumnInfo[] hedgeColumns =
+        new ColumnInfo[] {
+          new ColumnInfo( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Hedge.MasterColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_TEXT ),
+          new ColumnInfo( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Hedge.QueueColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_TEXT ) };
+
+    hedgeTargets =
+        new TableView( jobEntry, hedgeGroup, SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE, hedgeColumns,
+            Math.max( jobEntry.getHedgeMasters().size(), jobEntry.getHedgeQueues().size() ), null, props );
+    props.setLook( hedgeTargets );
+    FormData fdHedgeTargets = new FormData();
+    fdHedgeTargets.left = new FormAttachment( 0 );
+    fdHedgeTargets.top = new FormAttachment( hedgeTimeout, MARGIN_MEDIUM );
+    fdHedgeTargets.right = new FormAttachment( 100 );
+    fdHedgeTargets.bottom = new FormAttachment( 100 );
+    hedgeTargets.setLayoutData( fdHedgeTargets );
+    hedgeTargets.addModifyListener( lsMod );
+
+    // Inputs tab
+    CTabItem inputsTab = new CTabItem( tabs, SWT.NONE );
+    inputsTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.InputsTab.Label" ) );
+
+    Composite inputsTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( inputsTabComposite );
+    inputsTab.setControl( inputsTabComposite );
+    FormLayout inputsTabCompositeLayout = new FormLayout();
+    inputsTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    inputsTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    inputsTabComposite.setLayout( inputsTabCompositeLayout );
+
+    memoize = new Button( inputsTabComposite, SWT.CHECK );
+    props.setLook( memoize );
+    memoize.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Memoize.Label" ) );
+    FormData fdMemoize = new FormData();
+    fdMemoize.top = new FormAttachment( 0 );
+    fdMemoize.left = new FormAttachment( 0 );
+    memoize.setLayoutData( fdMemoize );
+
+    Label partitionSizeLabel = new Label( inputsTabComposite, SWT.NONE );
+    props.setLook( partitionSizeLabel );
+    partitionSizeLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PartitionSize.Label" ) );
+    FormData fdPartitionSizeLabel = new FormData();
+    fdPartitionSizeLabel.top = new FormAttachment( memoize, MARGIN_MEDIUM );
+    fdPartitionSizeLabel.left = new FormAttachment( 0 );
+    partitionSizeLabel.setLayoutData( fdPartitionSizeLabel );
+
+    partitionSize = new TextVar( jobMeta, inputsTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( partitionSize );
+    partitionSize.addModifyListener( lsMod );
+    partitionSize.addSelectionListener( lsDef );
+    FormData fdPartitionSize = new FormData();
+    fdPartitionSize.top = new FormAttachment( partitionSizeLabel, MARGIN_SMALL );
+    fdPartitionSize.left = new FormAttachment( 0 );
+    partitionSize.setLayoutData( fdPartitionSize );
+
+    ColumnInfo[] inputColumns =
+        new ColumnInfo[] { new ColumnInfo( BaseMessages.getString( PKG, "JobEntrySparkSubmit.InputPathColumn.Label" ),
+            ColumnInfo.COLUMN_TYPE_TEXT ) };
+    inputColumns[0].setUsingVariables( true );
+
+    inputPaths =
+        new TableView( jobEntry, inputsTabComposite, SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE, inputColumns,
+            jobEntry.getInputPaths().size(), null, props );
+    props.setLook( inputPaths );
+    FormData fdInputPaths = new FormData();
+    fdInputPaths.left = new FormAttachment( 0 );
+    fdInputPaths.top = new FormAttachment( partitionSize, MARGIN_MEDIUM );
+    fdInputPaths.right = new FormAttachment( 100 );
+    fdInputPaths.bottom = new FormAttachment( 100 );
+    inputPaths.setLayoutData( fdInputPaths );
+    inputPaths.addModifyListener( lsMod );
+
+    // Session tab
+    CTabItem sessionTab = new CTabItem( tabs, SWT.NONE );
+    sessionTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SessionTab.Label" ) );
+
+    Composite sessionTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( sessionTabComposite );
+    sessionTab.setControl( sessionTabComposite );
+    FormLayout sessionTabCompositeLayout = new FormLayout();
+    sessionTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    sessionTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    sessionTabComposite.setLayout( sessionTabCompositeLayout );
+
+    sharedSession = new Button( sessionTabComposite, SWT.CHECK );
+    props.setLook( sharedSession );
+    sharedSession.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SharedSession.Label" ) );
+    FormData fdSharedSession = new FormData();
+    fdSharedSession.top = new FormAttachment( 0 );
+    fdSharedSession.left = new FormAttachment( 0 );
+    sharedSession.setLayoutData( fdSharedSession );
+
+    Label sessionConcurrencyLabel = new Label( sessionTabComposite, SWT.NONE );
+    props.setLook( sessionConcurrencyLabel );
+    sessionConcurrencyLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SessionConcurrency.Label" ) );
+    FormData fdSessionConcurrencyLabel = new FormData();
+    fdSessionConcurrencyLabel.top = new FormAttachment( sharedSession, MARGIN_MEDIUM );
+    fdSessionConcurrencyLabel.left = new FormAttachment( 0 );
+    sessionConcurrencyLabel.setLayoutData( fdSessionConcurrencyLabel );
+
+    sessionConcurrency = new TextVar( jobMeta, sessionTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( sessionConcurrency );
+    sessionConcurrency.addModifyListener( lsMod );
+    sessionConcurrency.addSelectionListener( lsDef );
+    FormData fdSessionConcurrency = new FormData();
+    fdSessionConcurrency.top = new FormAttachment( sessionConcurrencyLabel, MARGIN_SMALL );
+    fdSessionConcurrency.left = new FormAttachment( 0 );
+    sessionConcurrency.setLayoutData( fdSessionConcurrency );
+
+    Label sessionIdleTimeoutLabel = new Label( sessionTabComposite, SWT.NONE );
+    props.setLook( sessionIdleTimeoutLabel );
+    sessionIdleTimeoutLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.SessionIdleTimeout.Label" ) );
+    FormData fdSessionIdleTimeoutLabel = new FormData();
+    fdSessionIdleTimeoutLabel.top = new FormAttachment( sessionConcurrency, MARGIN_MEDIUM );
+    fdSessionIdleTimeoutLabel.left = new FormAttachment( 0 );
+    sessionIdleTimeoutLabel.setLayoutData( fdSessionIdleTimeoutLabel );
+
+    sessionIdleTimeout = new TextVar( jobMeta, sessionTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( sessionIdleTimeout );
+    sessionIdleTimeout.addModifyListener( lsMod );
+    sessionIdleTimeout.addSelectionListener( lsDef );
+    FormData fdSessionIdleTimeout = new FormData();
+    fdSessionIdleTimeout.top = new FormAttachment( sessionIdleTimeoutLabel, MARGIN_SMALL );
+    fdSessionIdleTimeout.left = new FormAttachment( 0 );
+    sessionIdleTimeout.setLayoutData( fdSessionIdleTimeout );
+
+    // Streaming tab
+    CTabItem streamingTab = new CTabItem( tabs, SWT.NONE );
+    streamingTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.StreamingTab.Label" ) );
+
+    Composite streamingTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( streamingTabComposite );
+    streamingTab.setControl( streamingTabComposite );
+    FormLayout streamingTabCompositeLayout = new FormLayout();
+    streamingTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    streamingTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    streamingTabComposite.setLayout( streamingTabCompositeLayout );
+
+    supervise = new Button( streamingTabComposite, SWT.CHECK );
+    props.setLook( supervise );
+    supervise.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.Supervise.Label" ) );
+    FormData fdSupervise = new FormData();
+    fdSupervise.top = new FormAttachment( 0 );
+    fdSupervise.left = new FormAttachment( 0 );
+    supervise.setLayoutData( fdSupervise );
+
+    Label maxRestartsLabel = new Label( streamingTabComposite, SWT.NONE );
+    props.setLook( maxRestartsLabel );
+    maxRestartsLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.MaxRestarts.Label" ) );
+    FormData fdMaxRestartsLabel = new FormData();
+    fdMaxRestartsLabel.top = new FormAttachment( supervise, MARGIN_MEDIUM );
+    fdMaxRestartsLabel.left = new FormAttachment( 0 );
+    maxRestartsLabel.setLayoutData( fdMaxRestartsLabel );
+
+    maxRestarts = new TextVar( jobMeta, streamingTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( maxRestarts );
+    maxRestarts.addModifyListener( lsMod );
+    maxRestarts.addSelectionListener( lsDef );
+    FormData fdMaxRestarts = new FormData();
+    fdMaxRestarts.top = new FormAttachment( maxRestartsLabel, MARGIN_SMALL );
+    fdMaxRestarts.left = new FormAttachment( 0 );
+    maxRestarts.setLayoutData( fdMaxRestarts );
+
+    Label restartDelayLabel = new Label( streamingTabComposite, SWT.NONE );
+    props.setLook( restartDelayLabel );
+    restartDelayLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.RestartDelay.Label" ) );
+    FormData fdRestartDelayLabel = new FormData();
+    fdRestartDelayLabel.top = new FormAttachment( maxRestarts, MARGIN_MEDIUM );
+    fdRestartDelayLabel.left = new FormAttachment( 0 );
+    restartDelayLabel.setLayoutData( fdRestartDelayLabel );
+
+    restartDelay = new TextVar( jobMeta, streamingTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( restartDelay );
+    restartDelay.addModifyListener( lsMod );
+    restartDelay.addSelectionListener( lsDef );
+    FormData fdRestartDelay = new FormData();
+    fdRestartDelay.top = new FormAttachment( restartDelayLabel, MARGIN_SMALL );
+    fdRestartDelay.left = new FormAttachment( 0 );
+    restartDelay.setLayoutData( fdRestartDelay );
+
+    Label lagBatchesLabel = new Label( streamingTabComposite, SWT.NONE );
+    props.setLook( lagBatchesLabel );
+    lagBatchesLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.LagBatches.Label" ) );
+    FormData fdLagBatchesLabel = new FormData();
+    fdLagBatchesLabel.top = new FormAttachment( restartDelay, MARGIN_MEDIUM );
+    fdLagBatchesLabel.left = new FormAttachment( 0 );
+    lagBatchesLabel.setLayoutData( fdLagBatchesLabel );
+
+    lagBatches = new TextVar( jobMeta, streamingTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( lagBatches );
+    lagBatches.addModifyListener( lsMod );
+    lagBatches.addSelectionListener( lsDef );
+    FormData fdLagBatches = new FormData();
+    fdLagBatches.top = new FormAttachment( lagBatchesLabel, MARGIN_SMALL );
+    fdLagBatches.left = new FormAttachment( 0 );
+    lagBatches.setLayoutData( fdLagBatches );
+
+    // Results tab
+    CTabItem resultsTab = new CTabItem( tabs, SWT.NONE );
+    resultsTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ResultsTab.Label" ) );
+
+    Composite resultsTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( resultsTabComposite );
+    resultsTab.setControl( resultsTabComposite );
+    FormLayout resultsTabCompositeLayout = new FormLayout();
+    resultsTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    resultsTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    resultsTabComposite.setLayout( resultsTabCompositeLayout );
+
+    Label resultMarkerLabel = new Label( resultsTabComposite, SWT.NONE );
+    props.setLook( resultMarkerLabel );
+    resultMarkerLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ResultMarker.Label" ) );
+    FormData fdResultMarkerLabel = new FormData();
+    fdResultMarkerLabel.top = new FormAttachment( 0 );
+    fdResultMarkerLabel.left = new FormAttachment( 0 );
+    resultMarkerLabel.setLayoutData( fdResultMarkerLabel );
+
+    resultMarker = new TextVar( jobMeta, resultsTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( resultMarker );
+    resultMarker.addModifyListener( lsMod );
+    resultMarker.addSelectionListener( lsDef );
+    FormData fdResultMarker = new FormData();
+    fdResultMarker.top = new FormAttachment( resultMarkerLabel, MARGIN_SMALL );
+    fdResultMarker.left = new FormAttachment( 0 );
+    fdResultMarker.right = new FormAttachment( 100, 0 );
+    resultMarker.setLayoutData( fdResultMarker );
+
+    Label resultFileLabel = new Label( resultsTabComposite, SWT.NONE );
+    props.setLook( resultFileLabel );
+    resultFileLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.ResultFile.Label" ) );
+    FormData fdResultFileLabel = new FormData();
+    fdResultFileLabel.top = new FormAttachment( resultMarker, MARGIN_MEDIUM );
+    fdResultFileLabel.left = new FormAttachment( 0 );
+    resultFileLabel.setLayoutData( fdResultFileLabel );
+
+    resultFile = new TextVar( jobMeta, resultsTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( resultFile );
+    resultFile.addModifyListener( lsMod );
+    resultFile.addSelectionListener( lsDef );
+    FormData fdResultFile = new FormData();
+    fdResultFile.top = new FormAttachment( resultFileLabel, MARGIN_SMALL );
+    fdResultFile.left = new FormAttachment( 0 );
+    fdResultFile.right = new FormAttachment( 100, 0 );
+    resultFile.setLayoutData( fdResultFile );
+
+    // Python tab
+    CTabItem pythonTab = new CTabItem( tabs, SWT.NONE );
+    pythonTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PythonTab.Label" ) );
+
+    Composite pythonTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( pythonTabComposite );
+    pythonTab.setControl( pythonTabComposite );
+    FormLayout pythonTabCompositeLayout = new FormLayout();
+    pythonTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    pythonTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    pythonTabComposite.setLayout( pythonTabCompositeLayout );
+
+    Label pyFilesLabel = new Label( pythonTabComposite, SWT.NONE );
+    props.setLook( pyFilesLabel );
+    pyFilesLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PyFiles.Label" ) );
+    FormData fdPyFilesLabel = new FormData();
+    fdPyFilesLabel.top = new FormAttachment( 0 );
+    fdPyFilesLabel.left = new FormAttachment( 0 );
+    pyFilesLabel.setLayoutData( fdPyFilesLabel );
+
+    pyFiles = new TextVar( jobMeta, pythonTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( pyFiles );
+    pyFiles.addModifyListener( lsMod );
+    pyFiles.addSelectionListener( lsDef );
+    FormData fdPyFiles = new FormData();
+    fdPyFiles.top = new FormAttachment( pyFilesLabel, MARGIN_SMALL );
+    fdPyFiles.left = new FormAttachment( 0 );
+    fdPyFiles.right = new FormAttachment( 100, 0 );
+    pyFiles.setLayoutData( fdPyFiles );
+
+    Label pythonRequirementsLabel = new Label( pythonTabComposite, SWT.NONE );
+    props.setLook( pythonRequirementsLabel );
+    pythonRequirementsLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PythonRequirements.Label" ) );
+    FormData fdPythonRequirementsLabel = new FormData();
+    fdPythonRequirementsLabel.top = new FormAttachment( pyFiles, MARGIN_MEDIUM );
+    fdPythonRequirementsLabel.left = new FormAttachment( 0 );
+    pythonRequirementsLabel.setLayoutData( fdPythonRequirementsLabel );
+
+    pythonRequirements = new TextVar( jobMeta, pythonTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( pythonRequirements );
+    pythonRequirements.addModifyListener( lsMod );
+    pythonRequirements.addSelectionListener( lsDef );
+    FormData fdPythonRequirements = new FormData();
+    fdPythonRequirements.top = new FormAttachment( pythonRequirementsLabel, MARGIN_SMALL );
+    fdPythonRequirements.left = new FormAttachment( 0 );
+    fdPythonRequirements.right = new FormAttachment( 100, 0 );
+    pythonRequirements.setLayoutData( fdPythonRequirements );
+
+    Label pythonExecutableLabel = new Label( pythonTabComposite, SWT.NONE );
+    props.setLook( pythonExecutableLabel );
+    pythonExecutableLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.PythonExecutable.Label" ) );
+    FormData fdPythonExecutableLabel = new FormData();
+    fdPythonExecutableLabel.top = new FormAttachment( pythonRequirements, MARGIN_MEDIUM );
+    fdPythonExecutableLabel.left = new FormAttachment( 0 );
+    pythonExecutableLabel.setLayoutData( fdPythonExecutableLabel );
+
+    pythonExecutable = new TextVar( jobMeta, pythonTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( pythonExecutable );
+    pythonExecutable.addModifyListener( lsMod );
+    pythonExecutable.addSelectionListener( lsDef );
+    FormData fdPythonExecutable = new FormData();
+    fdPythonExecutable.top = new FormAttachment( pythonExecutableLabel, MARGIN_SMALL );
+    fdPythonExecutable.left = new FormAttachment( 0 );
+    fdPythonExecutable.right = new FormAttachment( 100, 0 );
+    pythonExecutable.setLayoutData( fdPythonExecutable );
+
+    Label pythonArchiveLocationLabel = new Label( pythonTabComposite, SWT.NONE );
+    props.setLook( pythonArchiveLocationLabel );
+    pythonArchiveLocationLabel.setText( BaseMessages.getString( PKG,
+        "JobEntrySparkSubmit.PythonArchiveLocation.Label" ) );
+    FormData fdPythonArchiveLocationLabel = new FormData();
+    fdPythonArchiveLocationLabel.top = new FormAttachment( pythonExecutable, MARGIN_MEDIUM );
+    fdPythonArchiveLocationLabel.left = new FormAttachment( 0 );
+    pythonArchiveLocationLabel.setLayoutData( fdPythonArchiveLocationLabel );
+
+    pythonArchiveLocation = new TextVar( jobMeta, pythonTabComposite, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( pythonArchiveLocation );
+    pythonArchiveLocation.addModifyListener( lsMod );
+    pythonArchiveLocation.addSelectionListener( lsDef );
+    FormData fdPythonArchiveLocation = new FormData();
+    fdPythonArchiveLocation.top = new FormAttachment( pythonArchiveLocationLabel, MARGIN_SMALL );
+    fdPythonArchiveLocation.left = new FormAttachment( 0 );
+    fdPythonArchiveLocation.right = new FormAttachment( 100, 0 );
+    pythonArchiveLocation.setLayoutData( fdPythonArchiveLocation );
+
+    // Distribution tab
+    CTabItem distributionTab = new CTabItem( tabs, SWT.NONE );
+    distributionTab.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.DistributionTab.Label" ) );
+
+    Composite distributionTabComposite = new Composite( tabs, SWT.NONE );
+    props.setLook( distributionTabComposite );
+    distributionTab.setControl( distributionTabComposite );
+    FormLayout distributionTabCompositeLayout = new FormLayout();
+    distributionTabCompositeLayout.marginHeight = MARGIN_LARGE;
+    distributionTabCompositeLayout.marginWidth = MARGIN_LARGE;
+    distributionTabComposite.setLayout( distributionTabCompositeLayout );
+
+    Label remoteServersLabel = new Label( distributionTabComposite, SWT.NONE );
+    props.setLook( remoteServersLabel );
+    remoteServersLabel.setText( BaseMessages.getString( PKG, "JobEntrySparkSubmit.RemoteServers.Label" ) );
+    FormData fdRemoteServersLabel = new FormData();
+    fdRemoteServersLabel.top = new FormAttachment( 0 );
+    fdRemoteServersLabel.left = new FormAttachment( 0 );
+    remoteServersLabel.setLayoutData( fdRemoteServersLabel );
+
+    ColumnInfo[] remoteServerColumns =
+        new ColumnInfo[] { new ColumnInfo( BaseMessages.getString( PKG,
+            "JobEntrySparkSubmit.RemoteServerColumn.Label" ), ColumnInfo.COLUMN_TYPE_CCOMBO, jobMeta
+            .getSlaveServerNames(), false ) };
+    remoteServerColumns[0].setUsingVariables( true );
+
+    remoteServers =
+        new TableView( jobEntry, distributionTabComposite, SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE,
+            remoteServerColumns, jobEntry.getRemoteServers().size(), null, props );
+    props.setLook( remoteServers );
+    FormData fdRemoteServers = new FormData();
+    fdRemoteServers.left = new FormAttachment( 0 );
+    fdRemoteServers.top = new FormAttachment( remoteServersLabel, MARGIN_SMALL );
+    fdRemoteServers.right = new FormAttachment( 100 );
+    fdRemoteServers.bottom = new FormAttachment( 100 );
+    remoteServers.setLayoutData( fdRemoteServers );
+    remoteServers.addModifyListener( lsMod );
+
     tabs.setSelection( jobConfigTab );
 
     // Add listeners
@@ -515,7 +1205,21 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     masterUrl.setText( Const.nullToEmpty( jobEntry.getMaster() ) );
     jar.setText( Const.nullToEmpty( jobEntry.getJar() ) );
     args.setText( Const.nullToEmpty( jobEntry.getArgs() ) );
+    if ( metaStore != null ) {
+      try {
+        for ( String profileName : new TuningProfileStore( metaStore ).getNames() ) {
+          tuningProfile.add( profileName );
+        }
+      } catch ( KettleException e ) {
+        // profiles can still be referenced by name
+      }
+    }
+    tuningProfile.setText( Const.nullToEmpty( jobEntry.getTuningProfile() ) );
     blockExecution.setSelection( jobEntry.isBlockExecution() );
+    deadline.setText( Const.nullToEmpty( jobEntry.getDeadline() ) );
+    hangTimeout.setText( Const.nullToEmpty( jobEntry.getHangTimeout() ) );
+    sampleInterval.setText( Const.nullToEmpty( jobEntry.getSampleInterval() ) );
+    hostMemoryLimit.setText( Const.nullToEmpty( jobEntry.getHostMemoryLimit() ) );
 
     List<String> params = jobEntry.getConfigParams();
     for ( int i = 0; i < params.size(); i++ ) {
@@ -530,6 +1234,58 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     executorMemory.setText( Const.nullToEmpty( jobEntry.getExecutorMemory() ) );
     driverMemory.setText( Const.nullToEmpty( jobEntry.getDriverMemory() ) );
 
+    resourceManagerUrl.setText( Const.nullToEmpty( jobEntry.getResourceManagerUrl() ) );
+    candidateQueues.setText( Const.nullToEmpty( jobEntry.getCandidateQueues() ) );
+    reattachRunning.setSelection( jobEntry.isReattachRunning() );
+    registerKryo.setSelection( jobEntry.isRegisterKryo() );
+    thinJar.setSelection( jobEntry.isThinJar() );
+    preflight.setSelection( jobEntry.isPreflight() );
+    providedPackages.setText( Const.nullToEmpty( jobEntry.getProvidedPackages() ) );
+    cachePackages.setSelection( jobEntry.isCachePackages() );
+    microBatch.setSelection( jobEntry.isMicroBatch() );
+    batchWindow.setText( Const.nullToEmpty( jobEntry.getBatchWindow() ) );
+    batchSize.setText( Const.nullToEmpty( jobEntry.getBatchSize() ) );
+    hedgeTimeout.setText( Const.nullToEmpty( jobEntry.getHedgeTimeout() ) );
+    List<String> hedgeMasters = jobEntry.getHedgeMasters();
+    List<String> hedgeQueues = jobEntry.getHedgeQueues();
+    for ( int i = 0; i < hedgeTargets.table.getItemCount(); i++ ) {
+      TableItem ti = hedgeTargets.table.getItem( i );
+      ti.setText( 1, i < hedgeMasters.size() ? Const.nullToEmpty( hedgeMasters.get( i ) ) : "" );
+      ti.setText( 2, i < hedgeQueues.size() ? Const.nullToEmpty( hedgeQueues.get( i ) ) : "" );
+    }
+    hedgeTargets.setRowNums();
+    hedgeTargets.optWidth( true );
+
+    sharedSession.setSelection( jobEntry.isSharedSession() );
+    sessionConcurrency.setText( Const.nullToEmpty( jobEntry.getSessionConcurrency() ) );
+    sessionIdleTimeout.setText( Const.nullToEmpty( jobEntry.getSessionIdleTimeout() ) );
+    supervise.setSelection( jobEntry.isSupervise() );
+    maxRestarts.setText( Const.nullToEmpty( jobEntry.getMaxRestarts() ) );
+    restartDelay.setText( Const.nullToEmpty( jobEntry.getRestartDelay() ) );
+    lagBatches.setText( Const.nullToEmpty( jobEntry.getLagBatches() ) );
+    resultMarker.setText( Const.nullToEmpty( jobEntry.getResultMarker() ) );
+    resultFile.setText( Const.nullToEmpty( jobEntry.getResultFile() ) );
+    pyFiles.setText( Const.nullToEmpty( jobEntry.getPyFiles() ) );
+    pythonRequirements.setText( Const.nullToEmpty( jobEntry.getPythonRequirements() ) );
+    pythonExecutable.setText( Const.nullToEmpty( jobEntry.getPythonExecutable() ) );
+    pythonArchiveLocation.setText( Const.nullToEmpty( jobEntry.getPythonArchiveLocation() ) );
+
+    memoize.setSelection( jobEntry.isMemoize() );
+    partitionSize.setText( Const.nullToEmpty( jobEntry.getPartitionSize() ) );
+    List<String> paths = jobEntry.getInputPaths();
+    for ( int i = 0; i < paths.size(); i++ ) {
+      inputPaths.table.getItem( i ).setText( 1, Const.nullToEmpty( paths.get( i ) ) );
+    }
+    inputPaths.setRowNums();
+    inputPaths.optWidth( true );
+
+    List<String> servers = jobEntry.getRemoteServers();
+    for ( int i = 0; i < servers.size(); i++ ) {
+      remoteServers.table.getItem( i ).setText( 1, Const.nullToEmpty( servers.get( i ) ) );
+    }
+    remoteServers.setRowNums();
+    remoteServers.optWidth( true );
+
     name.selectAll();
     name.setFocus();
   }
@@ -551,10 +1307,15 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     jobEntry.setName( name.getText() );
     jobEntry.setScriptPath( sparkSubmit.getText() );
     jobEntry.setMaster( masterUrl.getText() );
+    jobEntry.setTuningProfile( tuningProfile.getText() );
     jobEntry.setJar( jar.getText() );
     jobEntry.setClassName( clazz.getText() );
     jobEntry.setArgs( args.getText() );
     jobEntry.setBlockExecution( blockExecution.getSelection() );
+    jobEntry.setDeadline( deadline.getText() );
+    jobEntry.setHangTimeout( hangTimeout.getText() );
+    jobEntry.setSampleInterval( sampleInterval.getText() );
+    jobEntry.setHostMemoryLimit( hostMemoryLimit.getText() );
 
     ArrayList<String> configParams = new ArrayList<String>( this.configParams.getItemCount() );
     for ( int i = 0; i < this.configParams.getItemCount(); i++ ) {
@@ -567,6 +1328,64 @@ public class JobEntrySparkSubmitDialog extends JobEntryDialog implements JobEntr
     jobEntry.setDriverMemory( driverMemory.getText() );
     jobEntry.setExecutorMemory( executorMemory.getText() );
 
+    jobEntry.setResourceManagerUrl( resourceManagerUrl.getText() );
+    jobEntry.setCandidateQueues( candidateQueues.getText() );
+    jobEntry.setReattachRunning( reattachRunning.getSelection() );
+    jobEntry.setRegisterKryo( registerKryo.getSelection() );
+    jobEntry.setThinJar( thinJar.getSelection() );
+    jobEntry.setPreflight( preflight.getSelection() );
+    jobEntry.setProvidedPackages( providedPackages.getText() );
+    jobEntry.setCachePackages( cachePackages.getSelection() );
+    jobEntry.setMicroBatch( microBatch.getSelection() );
+    jobEntry.setBatchWindow( batchWindow.getText() );
+    jobEntry.setBatchSize( batchSize.getText() );
+    jobEntry.setHedgeTimeout( hedgeTimeout.getText() );
+    List<String> hedgeMasters = new ArrayList<String>( hedgeTargets.getItemCount() );
+    List<String> hedgeQueues = new ArrayList<String>( hedgeTargets.getItemCount() );
+    for ( int i = 0; i < hedgeTargets.getItemCount(); i++ ) {
+      String[] item = hedgeTargets.getItem( i );
+      if ( !Const.isEmpty( item[0] ) || !Const.isEmpty( item[1] ) ) {
+        hedgeMasters.add( Const.nullToEmpty( item[0] ).trim() );
+        hedgeQueues.add( Const.nullToEmpty( item[1] ).trim() );
+      }
+    }
+    jobEntry.setHedgeMasters( hedgeMasters );
+    jobEntry.setHedgeQueues( hedgeQueues );
+
+    jobEntry.setSharedSession( sharedSession.getSelection() );
+    jobEntry.setSessionConcurrency( sessionConcurrency.getText() );
+    jobEntry.setSessionIdleTimeout( sessionIdleTimeout.getText() );
+    jobEntry.setSupervise( supervise.getSelection() );
+    jobEntry.setMaxRestarts( maxRestarts.getText() );
+    jobEntry.setRestartDelay( restartDelay.getText() );
+    jobEntry.setLagBatches( lagBatches.getText() );
+    jobEntry.setResultMarker( resultMarker.getText() );
+    jobEntry.setResultFile( resultFile.getText() );
+    jobEntry.setPyFiles( pyFiles.getText() );
+    jobEntry.setPythonRequirements( pythonRequirements.getText() );
+    jobEntry.setPythonExecutable( pythonExecutable.getText() );
+    jobEntry.setPythonArchiveLocation( pythonArchiveLocation.getText() );
+
+    jobEntry.setMemoize( memoize.getSelection() );
+    jobEntry.setPartitionSize( partitionSize.getText() );
+    List<String> paths = new ArrayList<String>( inputPaths.getItemCount() );
+    for ( int i = 0; i < inputPaths.getItemCount(); i++ ) {
+      String[] item = inputPaths.getItem( i );
+      if ( !Const.isEmpty( item[0] ) ) {
+        paths.add( item[0].trim() );
+      }
+    }
+    jobEntry.setInputPaths( paths );
+
+    List<String> servers = new ArrayList<String>( remoteServers.getItemCount() );
+    for ( int i = 0; i < remoteServers.getItemCount(); i++ ) {
+      String[] item = remoteServers.getItem( i );
+      if ( !Const.isEmpty( item[0] ) ) {
+        servers.add( item[0].trim() );
+      }
+    }
+    jobEntry.setRemoteServers( servers );
+
     dispose();
   }
 
@@ -0,0 +1,398 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.ui.trans.steps.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CTabFolder;
+import org.eclipse.swt.custom.CTabItem;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.Props;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.spark.SparkArrowSubmitMeta;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.ComboVar;
+import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+/**
+ * Dialog that allows you to enter the settings for a Spark Arrow submit step.
+ */
+public class SparkArrowSubmitDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = SparkArrowSubmitMeta.class; // for i18n purposes, needed by Translator2!!
+  private static final int MARGIN_LARGE = 15;
+  private static final int MARGIN_MEDIUM = 10;
+  private static final int MARGIN_SMALL = 5;
+
+  private static final String[] MASTER_URLS = new String[] { "yarn-cluster", "yarn-client" };
+
+  private SparkArrowSubmitMeta input;
+  private ModifyListener lsMod;
+
+  private TextVar sparkSubmit;
+  private ComboVar masterUrl;
+  private TextVar jar;
+  private TextVar clazz;
+  private TextVar args;
+  private TextVar driverMemory;
+  private TextVar executorMemory;
+  private TableView configParams;
+  private TextVar stagingDirectory;
+  private TextVar batchRows;
+  private TextVar batchMemory;
+  private Button readResults;
+  private TextVar resultMarker;
+  private TableView resultFields;
+
+  public SparkArrowSubmitDialog( Shell parent, Object in, TransMeta transMeta, String sname ) {
+    super( parent, (BaseStepMeta) in, transMeta, sname );
+    input = (SparkArrowSubmitMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MAX | SWT.MIN );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = MARGIN_LARGE;
+    formLayout.marginHeight = MARGIN_LARGE;
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "SparkArrowSubmit.Name" ) );
+
+    // Step name
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "System.Label.StepName" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.top = new FormAttachment( wlStepname, MARGIN_SMALL );
+    fdStepname.left = new FormAttachment( 0, 0 );
+    fdStepname.right = new FormAttachment( 70, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Ok and cancel buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+    setButtonPositions( new Button[] { wOK, wCancel }, MARGIN_SMALL, null );
+
+    CTabFolder tabs = new CTabFolder( shell, SWT.BORDER );
+    props.setLook( tabs, Props.WIDGET_STYLE_TAB );
+    FormData fdTabs = new FormData();
+    fdTabs.left = new FormAttachment( 0 );
+    fdTabs.right = new FormAttachment( 100 );
+    fdTabs.top = new FormAttachment( wStepname, MARGIN_LARGE );
+    fdTabs.bottom = new FormAttachment( wOK, -MARGIN_LARGE );
+    tabs.setLayoutData( fdTabs );
+
+    // Application tab
+    Composite applicationComposite = addTab( tabs, "SparkArrowSubmit.ApplicationTab.Label" );
+    sparkSubmit = addTextVar( applicationComposite, null, "SparkArrowSubmit.ScriptPath.Label" );
+    Label masterUrlLabel = addLabel( applicationComposite, sparkSubmit, "SparkArrowSubmit.SparkMaster.Label" );
+    masterUrl = new ComboVar( transMeta, applicationComposite, SWT.BORDER );
+    props.setLook( masterUrl );
+    masterUrl.addModifyListener( lsMod );
+    masterUrl.setLayoutData( below( masterUrlLabel ) );
+    jar = addTextVar( applicationComposite, masterUrl, "SparkArrowSubmit.Jar.Label" );
+    clazz = addTextVar( applicationComposite, jar, "SparkArrowSubmit.Class.Label" );
+    args = addTextVar( applicationComposite, clazz, "SparkArrowSubmit.Args.Label" );
+    driverMemory = addTextVar( applicationComposite, args, "SparkArrowSubmit.DriverMemory.Label" );
+    executorMemory = addTextVar( applicationComposite, driverMemory, "SparkArrowSubmit.ExecutorMemory.Label" );
+
+    // Parameters tab
+    Composite parametersComposite = addTab( tabs, "SparkArrowSubmit.ParametersTab.Label" );
+    ColumnInfo[] paramColumns =
+        new ColumnInfo[] {
+          new ColumnInfo( BaseMessages.getString( PKG, "SparkArrowSubmit.NameColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_TEXT ),
+          new ColumnInfo( BaseMessages.getString( PKG, "SparkArrowSubmit.ValueColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_TEXT ) };
+    configParams =
+        new TableView( transMeta, parametersComposite, SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE, paramColumns,
+            input.getConfigParams().length, lsMod, props );
+    FormData fdConfigParams = new FormData();
+    fdConfigParams.left = new FormAttachment( 0 );
+    fdConfigParams.top = new FormAttachment( 0 );
+    fdConfigParams.right = new FormAttachment( 100 );
+    fdConfigParams.bottom = new FormAttachment( 100 );
+    configParams.setLayoutData( fdConfigParams );
+
+    // Staging tab
+    Composite stagingComposite = addTab( tabs, "SparkArrowSubmit.StagingTab.Label" );
+    stagingDirectory = addTextVar( stagingComposite, null, "SparkArrowSubmit.StagingDirectory.Label" );
+    batchRows = addTextVar( stagingComposite, stagingDirectory, "SparkArrowSubmit.BatchRows.Label" );
+    batchMemory = addTextVar( stagingComposite, batchRows, "SparkArrowSubmit.BatchMemory.Label" );
+
+    // Results tab
+    Composite resultsComposite = addTab( tabs, "SparkArrowSubmit.ResultsTab.Label" );
+    readResults = new Button( resultsComposite, SWT.CHECK );
+    readResults.setText( BaseMessages.getString( PKG, "SparkArrowSubmit.ReadResults.Label" ) );
+    props.setLook( readResults );
+    FormData fdReadResults = new FormData();
+    fdReadResults.left = new FormAttachment( 0 );
+    fdReadResults.top = new FormAttachment( 0 );
+    readResults.setLayoutData( fdReadResults );
+    readResults.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+        setFlags();
+      }
+    } );
+    resultMarker = addTextVar( resultsComposite, readResults, "SparkArrowSubmit.ResultMarker.Label" );
+    Label resultFieldsLabel = addLabel( resultsComposite, resultMarker, "SparkArrowSubmit.ResultFields.Label" );
+    ColumnInfo[] fieldColumns =
+        new ColumnInfo[] {
+          new ColumnInfo( BaseMessages.getString( PKG, "SparkArrowSubmit.NameColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_TEXT ),
+          new ColumnInfo( BaseMessages.getString( PKG, "SparkArrowSubmit.TypeColumn.Label" ),
+              ColumnInfo.COLUMN_TYPE_CCOMBO, ValueMetaFactory.getValueMetaNames() ) };
+    resultFields =
+        new TableView( transMeta, resultsComposite, SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE, fieldColumns,
+            input.getResultFieldNames().length, lsMod, props );
+    FormData fdResultFields = new FormData();
+    fdResultFields.left = new FormAttachment( 0 );
+    fdResultFields.top = new FormAttachment( resultFieldsLabel, MARGIN_SMALL );
+    fdResultFields.right = new FormAttachment( 100 );
+    fdResultFields.bottom = new FormAttachment( 100 );
+    resultFields.setLayoutData( fdResultFields );
+
+    tabs.setSelection( 0 );
+
+    // Add listeners
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    wOK.addListener( SWT.Selection, lsOK );
+    wCancel.addListener( SWT.Selection, lsCancel );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect [X] or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    getData();
+    input.setChanged( changed );
+    setSize();
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() ) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  private Composite addTab( CTabFolder tabs, String labelKey ) {
+    CTabItem tab = new CTabItem( tabs, SWT.NONE );
+    tab.setText( BaseMessages.getString( PKG, labelKey ) );
+    Composite composite = new Composite( tabs, SWT.NONE );
+    props.setLook( composite );
+    tab.setControl( composite );
+    FormLayout layout = new FormLayout();
+    layout.marginHeight = MARGIN_LARGE;
+    layout.marginWidth = MARGIN_LARGE;
+    composite.setLayout( layout );
+    return composite;
+  }
+
+  private Label addLabel( Composite parent, Control above, String labelKey ) {
+    Label label = new Label( parent, SWT.NONE );
+    label.setText( BaseMessages.getString( PKG, labelKey ) );
+    props.setLook( label );
+    FormData fdLabel = new FormData();
+    fdLabel.left = new FormAttachment( 0 );
+    fdLabel.top = above == null ? new FormAttachment( 0 ) : new FormAttachment( above, MARGIN_MEDIUM );
+    label.setLayoutData( fdLabel );
+    return label;
+  }
+
+  private TextVar addTextVar( Composite parent, Control above, String labelKey ) {
+    Label label = addLabel( parent, above, labelKey );
+    TextVar text = new TextVar( transMeta, parent, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( text );
+    text.addModifyListener( lsMod );
+    text.setLayoutData( below( label ) );
+    return text;
+  }
+
+  private static FormData below( Control label ) {
+    FormData fd = new FormData();
+    fd.left = new FormAttachment( 0 );
+    fd.right = new FormAttachment( 100, 0 );
+    fd.top = new FormAttachment( label, MARGIN_SMALL );
+    return fd;
+  }
+
+  private void setFlags() {
+    resultMarker.setEnabled( readResults.getSelection() );
+    resultFields.setEnabled( readResults.getSelection() );
+  }
+
+  public void getData() {
+    sparkSubmit.setText( Const.nullToEmpty( input.getScriptPath() ) );
+    for ( String url : MASTER_URLS ) {
+      masterUrl.add( url );
+    }
+    masterUrl.setText( Const.nullToEmpty( input.getMaster() ) );
+    jar.setText( Const.nullToEmpty( input.getJar() ) );
+    clazz.setText( Const.nullToEmpty( input.getClassName() ) );
+    args.setText( Const.nullToEmpty( input.getArgs() ) );
+    driverMemory.setText( Const.nullToEmpty( input.getDriverMemory() ) );
+    executorMemory.setText( Const.nullToEmpty( input.getExecutorMemory() ) );
+
+    String[] params = input.getConfigParams();
+    for ( int i = 0; i < params.length; i++ ) {
+      TableItem ti = configParams.table.getItem( i );
+      String[] nameValue = params[i].split( "=", 2 );
+      ti.setText( 1, nameValue[0] );
+      ti.setText( 2, nameValue.length > 1 ? nameValue[1] : "" );
+    }
+    configParams.setRowNums();
+    configParams.optWidth( true );
+
+    stagingDirectory.setText( Const.nullToEmpty( input.getStagingDirectory() ) );
+    batchRows.setText( Const.nullToEmpty( input.getBatchRows() ) );
+    batchMemory.setText( Const.nullToEmpty( input.getBatchMemory() ) );
+    readResults.setSelection( input.isReadResults() );
+    resultMarker.setText( Const.nullToEmpty( input.getResultMarker() ) );
+    String[] fieldNames = input.getResultFieldNames();
+    String[] fieldTypes = input.getResultFieldTypes();
+    for ( int i = 0; i < fieldNames.length; i++ ) {
+      TableItem ti = resultFields.table.getItem( i );
+      ti.setText( 1, Const.nullToEmpty( fieldNames[i] ) );
+      ti.setText( 2, Const.nullToEmpty( fieldTypes[i] ) );
+    }
+    resultFields.setRowNums();
+    resultFields.optWidth( true );
+    setFlags();
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) ) {
+      return;
+    }
+    stepname = wStepname.getText();
+
+    input.setScriptPath( sparkSubmit.getText() );
+    input.setMaster( masterUrl.getText() );
+    input.setJar( jar.getText() );
+    input.setClassName( clazz.getText() );
+    input.setArgs( args.getText() );
+    input.setDriverMemory( driverMemory.getText() );
+    input.setExecutorMemory( executorMemory.getText() );
+    input.setStagingDirectory( stagingDirectory.getText() );
+    input.setBatchRows( batchRows.getText() );
+    input.setBatchMemory( batchMemory.getText() );
+    input.setReadResults( readResults.getSelection() );
+    input.setResultMarker( resultMarker.getText() );
+
+    List<String> params = new ArrayList<String>();
+    for ( int i = 0; i < configParams.nrNonEmpty(); i++ ) {
+      TableItem ti = configParams.getNonEmpty( i );
+      if ( !Const.isEmpty( ti.getText( 1 ) ) && !Const.isEmpty( ti.getText( 2 ) ) ) {
+        params.add( ti.getText( 1 ).trim() + "=" + ti.getText( 2 ).trim() );
+      }
+    }
+    int nrFields = resultFields.nrNonEmpty();
+    input.allocate( params.size(), nrFields );
+    params.toArray( input.getConfigParams() );
+    for ( int i = 0; i < nrFields; i++ ) {
+      TableItem ti = resultFields.getNonEmpty( i );
+      input.getResultFieldNames()[i] = ti.getText( 1 );
+      input.getResultFieldTypes()[i] = ti.getText( 2 );
+    }
+
+    dispose();
+  }
+}
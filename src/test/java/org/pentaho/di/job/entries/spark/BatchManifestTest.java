@@ -0,0 +1,69 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchManifestTest {
+  @Test
+  public void testWrite() throws Exception {
+    File manifest = File.createTempFile( "manifest", ".json" );
+    manifest.deleteOnExit();
+    BatchManifest.write( manifest, Arrays.asList( new BatchItem( 0, Arrays.asList( "in/a.csv", "out/a" ) ),
+        new BatchItem( 1, Arrays.asList( "in/\"b\".csv" ) ) ) );
+    List<String> lines = Files.readLines( manifest, Charsets.UTF_8 );
+    Assert.assertEquals( 2, lines.size() );
+    JSONObject second = (JSONObject) new JSONParser().parse( lines.get( 1 ) );
+    Assert.assertEquals( 1L, second.get( "id" ) );
+    Assert.assertEquals( Arrays.asList( "in/\"b\".csv" ), second.get( "args" ) );
+  }
+
+  @Test
+  public void testApplyOutcome() {
+    List<BatchItem> items = Arrays.asList( new BatchItem( 0, Arrays.asList( "a" ) ),
+        new BatchItem( 1, Arrays.asList( "b" ) ) );
+    Assert.assertFalse( BatchManifest.applyOutcome( "15/04/08 10:00:00 INFO Client: state: RUNNING", items ) );
+    Assert.assertFalse( BatchManifest.applyOutcome( "SPARK_BATCH_ITEM 7 SUCCEEDED", items ) );
+    // beyond the int range, must not kill the output reader
+    Assert.assertFalse( BatchManifest.applyOutcome( "SPARK_BATCH_ITEM 99999999999999999999 SUCCEEDED", items ) );
+    Assert.assertTrue( BatchManifest.applyOutcome( "15/04/08 10:00:01 INFO Main: SPARK_BATCH_ITEM 1 FAILED "
+        + "input not found", items ) );
+    Assert.assertTrue( BatchManifest.applyOutcome( "SPARK_BATCH_ITEM 0 SUCCEEDED", items ) );
+    Assert.assertFalse( BatchManifest.applyOutcome( "SPARK_BATCH_ITEM 0 FAILED", items ) );
+
+    Assert.assertTrue( items.get( 0 ).isSucceeded() );
+    Assert.assertNull( items.get( 0 ).getMessage() );
+    Assert.assertFalse( items.get( 1 ).isSucceeded() );
+    Assert.assertEquals( "input not found", items.get( 1 ).getMessage() );
+  }
+}
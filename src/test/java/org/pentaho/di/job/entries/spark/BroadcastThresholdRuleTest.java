@@ -0,0 +1,52 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.CheckResultInterface;
+
+public class BroadcastThresholdRuleTest {
+  private final PerformanceRuleChecker rule = new PerformanceRuleChecker( new BroadcastThresholdRule() );
+
+  @Test
+  public void testThreshold() {
+    JobEntrySparkSubmit entry = new JobEntrySparkSubmit();
+    // default 10 MB against default 1 GB driver
+    Assert.assertTrue( rule.check( entry ).isEmpty() );
+
+    List<CheckResultInterface> remarks = rule.check( entry, "spark.sql.autoBroadcastJoinThreshold=200m" );
+    Assert.assertEquals( 1, remarks.size() );
+    Assert.assertEquals( CheckResultInterface.TYPE_RESULT_WARNING, remarks.get( 0 ).getType() );
+    Assert.assertTrue( remarks.get( 0 ).getText().contains( "200" ) );
+
+    // plain numbers are bytes
+    Assert.assertEquals( 1, rule.check( entry, "spark.sql.autoBroadcastJoinThreshold=209715200" ).size() );
+    Assert.assertTrue( rule.check( entry, "spark.sql.autoBroadcastJoinThreshold=-1" ).isEmpty() );
+    entry.setDriverMemory( "4g" );
+    Assert.assertTrue( rule.check( entry, "spark.sql.autoBroadcastJoinThreshold=200m" ).isEmpty() );
+  }
+}
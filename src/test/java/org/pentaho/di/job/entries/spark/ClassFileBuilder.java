@@ -0,0 +1,217 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds minimal class files, so bytecode scanning can be tested with classes referring to Scala or Spark types
+ * without having either on the classpath.
+ */
+public class ClassFileBuilder {
+  private final String name;
+  private String superName = "java/lang/Object";
+  private int accessFlags = ClassFileInfo.ACC_PUBLIC | 0x0020;
+  private List<String> interfaces = new ArrayList<String>();
+  private Map<String, String> fields = new LinkedHashMap<String, String>();
+  private List<String> references = new ArrayList<String>();
+  private List<String> strings = new ArrayList<String>();
+  private List<ClassFileInfo.Member> methods = new ArrayList<ClassFileInfo.Member>();
+  private int majorVersion = 51;
+
+  private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+  private DataOutputStream poolOut = new DataOutputStream( pool );
+  private Map<String, Integer> utf8 = new HashMap<String, Integer>();
+  private Map<String, Integer> classes = new HashMap<String, Integer>();
+  private int poolSize = 1;
+
+  public ClassFileBuilder( String name ) {
+    this.name = name;
+  }
+
+  public ClassFileBuilder superName( String superName ) {
+    this.superName = superName;
+    return this;
+  }
+
+  public ClassFileBuilder access( int accessFlags ) {
+    this.accessFlags = accessFlags;
+    return this;
+  }
+
+  public ClassFileBuilder implement( String... names ) {
+    for ( String type : names ) {
+      interfaces.add( type );
+    }
+    return this;
+  }
+
+  public ClassFileBuilder field( String fieldName, String descriptor ) {
+    fields.put( fieldName, descriptor );
+    return this;
+  }
+
+  public ClassFileBuilder method( int methodAccessFlags, String methodName, String descriptor ) {
+    methods.add( new ClassFileInfo.Member( methodAccessFlags, methodName, descriptor ) );
+    return this;
+  }
+
+  /**
+   * Adds a class constant, as if the code referred to the type
+   */
+  public ClassFileBuilder reference( String type ) {
+    references.add( type );
+    return this;
+  }
+
+  /**
+   * Adds a Utf8 constant, as string literals, annotation types and generic signatures are kept
+   */
+  public ClassFileBuilder string( String value ) {
+    strings.add( value );
+    return this;
+  }
+
+  public ClassFileBuilder majorVersion( int majorVersion ) {
+    this.majorVersion = majorVersion;
+    return this;
+  }
+
+  private int utf8( String value ) throws IOException {
+    Integer index = utf8.get( value );
+    if ( index == null ) {
+      poolOut.writeByte( 1 );
+      poolOut.writeUTF( value );
+      index = poolSize++;
+      utf8.put( value, index );
+    }
+    return index;
+  }
+
+  private int classRef( String type ) throws IOException {
+    Integer index = classes.get( type );
+    if ( index == null ) {
+      int nameIndex = utf8( type );
+      poolOut.writeByte( 7 );
+      poolOut.writeShort( nameIndex );
+      index = poolSize++;
+      classes.put( type, index );
+    }
+    return index;
+  }
+
+  public byte[] build() throws IOException {
+    int thisIndex = classRef( name );
+    int superIndex = superName == null ? 0 : classRef( superName );
+    List<Integer> interfaceIndexes = new ArrayList<Integer>();
+    for ( String type : interfaces ) {
+      interfaceIndexes.add( classRef( type ) );
+    }
+    List<int[]> fieldIndexes = new ArrayList<int[]>();
+    for ( Map.Entry<String, String> field : fields.entrySet() ) {
+      fieldIndexes.add( new int[] { utf8( field.getKey() ), utf8( field.getValue() ) } );
+    }
+    List<int[]> methodIndexes = new ArrayList<int[]>();
+    for ( ClassFileInfo.Member method : methods ) {
+      methodIndexes.add( new int[] { method.getAccessFlags(), utf8( method.getName() ), utf8( method
+          .getDescriptor() ) } );
+    }
+    for ( String type : references ) {
+      classRef( type );
+    }
+    for ( String value : strings ) {
+      utf8( value );
+    }
+    poolOut.flush();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeInt( 0xCAFEBABE );
+    out.writeShort( 0 );
+    out.writeShort( majorVersion );
+    out.writeShort( poolSize );
+    pool.writeTo( out );
+    out.writeShort( accessFlags );
+    out.writeShort( thisIndex );
+    out.writeShort( superIndex );
+    out.writeShort( interfaceIndexes.size() );
+    for ( int index : interfaceIndexes ) {
+      out.writeShort( index );
+    }
+    out.writeShort( fieldIndexes.size() );
+    for ( int[] field : fieldIndexes ) {
+      out.writeShort( 0x0002 );
+      out.writeShort( field[0] );
+      out.writeShort( field[1] );
+      out.writeShort( 0 );
+    }
+    out.writeShort( methodIndexes.size() );
+    for ( int[] method : methodIndexes ) {
+      out.writeShort( method[0] );
+      out.writeShort( method[1] );
+      out.writeShort( method[2] );
+      out.writeShort( 0 );
+    }
+    out.writeShort( 0 ); // attributes
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes a jar holding the classes given
+   */
+  public static File writeJar( File jar, ClassFileBuilder... builders ) throws IOException {
+    return writeJar( jar, null, builders );
+  }
+
+  /**
+   * Writes a jar holding the classes given, naming the main class in its manifest
+   */
+  public static File writeJar( File jar, String mainClass, ClassFileBuilder... builders ) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream( new FileOutputStream( jar ) );
+    try {
+      zip.putNextEntry( new ZipEntry( "META-INF/MANIFEST.MF" ) );
+      zip.write( ( "Manifest-Version: 1.0\n" + ( mainClass == null ? "" : "Main-Class: " + mainClass + "\n" ) )
+          .getBytes( "UTF-8" ) );
+      for ( ClassFileBuilder builder : builders ) {
+        zip.putNextEntry( new ZipEntry( builder.name + ".class" ) );
+        zip.write( builder.build() );
+      }
+    } finally {
+      zip.close();
+    }
+    return jar;
+  }
+}
@@ -0,0 +1,217 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.job.JobMeta;
+
+public class DistributedSubmissionTest {
+  private LogChannelInterface log = mock( LogChannelInterface.class );
+
+  private static class FakeNode implements SubmissionNode {
+    private String name;
+    private NodeLoad load;
+    private boolean failSubmit;
+    private LinkedList<Object> statuses = new LinkedList<Object>();
+    private List<String> submitted = new ArrayList<String>();
+    private List<String> stopped = new ArrayList<String>();
+
+    FakeNode( String name, NodeLoad load ) {
+      this.name = name;
+      this.load = load;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public NodeLoad getLoad() throws KettleException {
+      if ( load == null ) {
+        throw new KettleException( "unreachable" );
+      }
+      return load;
+    }
+
+    @Override
+    public String submit( JobMeta jobMeta, Map<String, String> variables ) throws KettleException {
+      if ( failSubmit ) {
+        throw new KettleException( "refused" );
+      }
+      submitted.add( jobMeta.getName() );
+      return name + "-id";
+    }
+
+    @Override
+    public synchronized RemoteJobStatus getStatus( String jobName, String id, int fromLine ) throws KettleException {
+      Object status = statuses.isEmpty() ? new RemoteJobStatus( "", fromLine, false, null ) : statuses.poll();
+      if ( status instanceof KettleException ) {
+        throw (KettleException) status;
+      }
+      return (RemoteJobStatus) status;
+    }
+
+    @Override
+    public synchronized void stop( String jobName, String id ) {
+      stopped.add( id );
+      statuses.clear();
+      statuses.add( new RemoteJobStatus( "", 0, true, null ) );
+    }
+  }
+
+  private static Result success() {
+    Result result = new Result();
+    result.setResult( true );
+    return result;
+  }
+
+  private static JobMeta jobMeta() {
+    JobMeta jobMeta = new JobMeta();
+    jobMeta.setName( DistributedSubmission.JOB_NAME_PREFIX + "test" );
+    return jobMeta;
+  }
+
+  private DistributedSubmission createTestee( SubmissionNode... nodes ) {
+    return new DistributedSubmission( log, Arrays.asList( nodes ), 10, 3 );
+  }
+
+  @Test
+  public void testRanksByJobsInFlightThenFreeMemory() {
+    FakeNode busy = new FakeNode( "rank-busy", new NodeLoad( 2, 900, 1000 ) );
+    FakeNode full = new FakeNode( "rank-full", new NodeLoad( 0, 100, 1000 ) );
+    FakeNode idle = new FakeNode( "rank-idle", new NodeLoad( 0, 800, 1000 ) );
+    FakeNode down = new FakeNode( "rank-down", null );
+    List<SubmissionNode> ranked = createTestee( busy, full, down, idle ).rank();
+    Assert.assertEquals( Arrays.<SubmissionNode>asList( idle, full, busy ), ranked );
+  }
+
+  @Test
+  public void testRunsOnLeastLoadedNode() throws Exception {
+    FakeNode busy = new FakeNode( "run-busy", new NodeLoad( 1, 900, 1000 ) );
+    FakeNode idle = new FakeNode( "run-idle", new NodeLoad( 0, 500, 1000 ) );
+    Result expected = success();
+    idle.statuses.add( new RemoteJobStatus( "line 1\nline 2", 2, false, null ) );
+    idle.statuses.add( new RemoteJobStatus( "line 3", 3, true, expected ) );
+
+    DistributedSubmission testee = createTestee( busy, idle );
+    Assert.assertSame( expected, testee.run( jobMeta(), Collections.<String, String>emptyMap() ) );
+    Assert.assertSame( idle, testee.getNode() );
+    Assert.assertTrue( busy.submitted.isEmpty() );
+    Assert.assertEquals( 1, idle.submitted.size() );
+  }
+
+  @Test
+  public void testFailsOverWhenSubmitFails() throws Exception {
+    FakeNode refusing = new FakeNode( "submit-refusing", new NodeLoad( 0, 900, 1000 ) );
+    refusing.failSubmit = true;
+    FakeNode next = new FakeNode( "submit-next", new NodeLoad( 1, 900, 1000 ) );
+    next.statuses.add( new RemoteJobStatus( "", 0, true, success() ) );
+
+    DistributedSubmission testee = createTestee( refusing, next );
+    Assert.assertTrue( testee.run( jobMeta(), Collections.<String, String>emptyMap() ).getResult() );
+    Assert.assertSame( next, testee.getNode() );
+  }
+
+  @Test
+  public void testStopsAndFailsWhenNodeStopsAnswering() throws Exception {
+    FakeNode lost = new FakeNode( "poll-lost", new NodeLoad( 0, 900, 1000 ) );
+    lost.statuses.add( new KettleException( "timeout" ) );
+    lost.statuses.add( new KettleException( "timeout" ) );
+    lost.statuses.add( new KettleException( "timeout" ) );
+    FakeNode next = new FakeNode( "poll-next", new NodeLoad( 1, 900, 1000 ) );
+    next.statuses.add( new RemoteJobStatus( "", 0, true, success() ) );
+
+    // the job might still run on the lost node, it must not run twice
+    DistributedSubmission testee = createTestee( lost, next );
+    Result result = testee.run( jobMeta(), Collections.<String, String>emptyMap() );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+    Assert.assertEquals( Arrays.asList( "poll-lost-id" ), lost.stopped );
+    Assert.assertTrue( next.submitted.isEmpty() );
+  }
+
+  @Test
+  public void testToleratesIntermittentPollFailures() throws Exception {
+    FakeNode flaky = new FakeNode( "flaky", new NodeLoad( 0, 900, 1000 ) );
+    flaky.statuses.add( new KettleException( "timeout" ) );
+    flaky.statuses.add( new KettleException( "timeout" ) );
+    flaky.statuses.add( new RemoteJobStatus( "", 0, false, null ) );
+    flaky.statuses.add( new KettleException( "timeout" ) );
+    flaky.statuses.add( new RemoteJobStatus( "", 0, true, success() ) );
+    FakeNode next = new FakeNode( "flaky-next", new NodeLoad( 1, 900, 1000 ) );
+
+    DistributedSubmission testee = createTestee( flaky, next );
+    Assert.assertTrue( testee.run( jobMeta(), Collections.<String, String>emptyMap() ).getResult() );
+    Assert.assertTrue( next.submitted.isEmpty() );
+  }
+
+  @Test( expected = KettleException.class )
+  public void testFailsWhenNoNodeIsReachable() throws Exception {
+    createTestee( new FakeNode( "down-1", null ), new FakeNode( "down-2", null ) ).run( jobMeta(), Collections
+        .<String, String>emptyMap() );
+  }
+
+  @Test
+  public void testFinishedWithoutResultIsFailure() throws Exception {
+    FakeNode node = new FakeNode( "no-result", new NodeLoad( 0, 900, 1000 ) );
+    node.statuses.add( new RemoteJobStatus( "", 0, true, null ) );
+    Result result = createTestee( node ).run( jobMeta(), Collections.<String, String>emptyMap() );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+  }
+
+  @Test
+  public void testCancelStopsRemoteJob() throws Exception {
+    FakeNode node = new FakeNode( "cancel", new NodeLoad( 0, 900, 1000 ) );
+    final DistributedSubmission testee = createTestee( node );
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 100 );
+        } catch ( InterruptedException e ) {
+          return;
+        }
+        testee.cancel();
+      }
+    } ).start();
+    Result result = testee.run( jobMeta(), Collections.<String, String>emptyMap() );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( Arrays.asList( "cancel-id" ), node.stopped );
+  }
+}
@@ -0,0 +1,45 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.CheckResultInterface;
+
+public class ExecutorCoresRuleTest {
+  private final PerformanceRuleChecker rule = new PerformanceRuleChecker( new ExecutorCoresRule() );
+
+  @Test
+  public void testCores() {
+    JobEntrySparkSubmit entry = new JobEntrySparkSubmit();
+    Assert.assertTrue( rule.check( entry ).isEmpty() );
+    Assert.assertTrue( rule.check( entry, "spark.executor.cores=5" ).isEmpty() );
+    List<CheckResultInterface> remarks = rule.check( entry, "spark.executor.cores=8" );
+    Assert.assertEquals( 1, remarks.size() );
+    Assert.assertEquals( CheckResultInterface.TYPE_RESULT_WARNING, remarks.get( 0 ).getType() );
+    Assert.assertTrue( remarks.get( 0 ).getText().contains( "8" ) );
+  }
+}
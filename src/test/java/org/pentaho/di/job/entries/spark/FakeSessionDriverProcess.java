@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+
+/**
+ * Fake spark-submit process of a warm session driver. Runs {@link WarmSessionServer} in-process without any Spark
+ * context and announces its port the way the real driver does, the process exits when the server stops.
+ */
+public class FakeSessionDriverProcess extends FakeSparkSubmitProcess {
+  private final WarmSessionServer server;
+
+  private FakeSessionDriverProcess( final WarmSessionServer server, int port ) {
+    super( 0, SessionProtocol.PORT_MARKER + " " + port, "sleep 600000" );
+    this.server = server;
+    Thread serving = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        server.serve();
+        FakeSessionDriverProcess.super.destroy();
+      }
+    } );
+    serving.setDaemon( true );
+    serving.start();
+  }
+
+  /**
+   * Starts a session driver taking the same arguments as {@link WarmSessionServer#main(String[])}
+   */
+  public static FakeSessionDriverProcess start( String token, int maxConcurrent, long idleTimeoutSeconds )
+    throws IOException {
+    WarmSessionServer server = new WarmSessionServer( token, maxConcurrent, idleTimeoutSeconds * 1000L, null );
+    return new FakeSessionDriverProcess( server, server.start() );
+  }
+
+  @Override
+  public void destroy() {
+    server.stop();
+    super.destroy();
+  }
+
+  public boolean isServerStopped() {
+    return server.isStopped();
+  }
+}
@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Fake spark-submit process printing scripted output. Script lines starting with "sleep " pause the output for the
+ * given number of milliseconds, all the other lines are printed to stdout as is.
+ */
+public class FakeSparkSubmitProcess extends Process {
+  private PipedOutputStream out = new PipedOutputStream();
+  private PipedInputStream in;
+  private CountDownLatch finished = new CountDownLatch( 1 );
+  private Thread writer;
+  private volatile int exitCode;
+  private volatile boolean destroyed;
+
+  public FakeSparkSubmitProcess( final int exitCode, final String... script ) {
+    try {
+      in = new PipedInputStream( out );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    writer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for ( String line : script ) {
+            if ( line.startsWith( "sleep " ) ) {
+              Thread.sleep( Long.parseLong( line.substring( "sleep ".length() ) ) );
+            } else {
+              out.write( ( line + "\n" ).getBytes( "UTF-8" ) );
+              out.flush();
+            }
+          }
+          finish( exitCode );
+        } catch ( InterruptedException e ) {
+          // destroyed
+        } catch ( IOException e ) {
+          // nobody reads the output anymore
+          finish( exitCode );
+        }
+      }
+    } );
+    writer.setDaemon( true );
+    writer.start();
+  }
+
+  private synchronized void finish( int code ) {
+    if ( finished.getCount() > 0 ) {
+      exitCode = code;
+      try {
+        out.close();
+      } catch ( IOException e ) {
+        // ignore
+      }
+      finished.countDown();
+    }
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return new ByteArrayOutputStream();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return in;
+  }
+
+  @Override
+  public InputStream getErrorStream() {
+    return new ByteArrayInputStream( new byte[0] );
+  }
+
+  @Override
+  public int waitFor() throws InterruptedException {
+    finished.await();
+    return exitCode;
+  }
+
+  @Override
+  public int exitValue() {
+    if ( finished.getCount() > 0 ) {
+      throw new IllegalThreadStateException( "Process is running" );
+    }
+    return exitCode;
+  }
+
+  @Override
+  public void destroy() {
+    destroyed = true;
+    finish( 143 );
+    writer.interrupt();
+  }
+
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+}
@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+public class HedgedSubmissionTest {
+  private static final String ACCEPTED =
+      "15/04/01 10:00:00 INFO Client: Application report for application_1427875242006_000%d (state: ACCEPTED)";
+  private static final String RUNNING =
+      "15/04/01 10:00:01 INFO Client: Application report for application_1427875242006_000%d (state: RUNNING)";
+
+  private LogChannelInterface log = mock( LogChannelInterface.class );
+  private List<String> killed = new ArrayList<String>();
+  private SparkApplicationClient client = new SparkApplicationClient() {
+    @Override
+    public ApplicationStatus getApplicationStatus( String applicationId ) {
+      return null;
+    }
+
+    @Override
+    public void killApplication( String applicationId ) {
+      killed.add( applicationId );
+    }
+  };
+
+  private HedgedSubmission createTestee( final Map<String, FakeSparkSubmitProcess> processes, long timeout ) {
+    HedgedSubmission.Launcher launcher = new HedgedSubmission.Launcher() {
+      @Override
+      public SparkSubmission launch( HedgeTarget target ) throws KettleException {
+        if ( !processes.containsKey( target.getQueue() ) ) {
+          throw new KettleException( "Cannot run spark-submit" );
+        }
+        SparkSubmission submission =
+            new SparkSubmission( target.toString(), log, processes.get( target.getQueue() ), new String[0] );
+        submission.start();
+        return submission;
+      }
+    };
+    List<HedgeTarget> targets =
+        Arrays.asList( new HedgeTarget( null, "primary" ), new HedgeTarget( null, "first" ),
+            new HedgeTarget( "yarn-client", "second" ) );
+    return new HedgedSubmission( log, launcher, targets, timeout, client );
+  }
+
+  @Test
+  public void testNoHedgeWhenRunningInTime() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 1 ), "sleep 50",
+        String.format( RUNNING, 1 ), "sleep 5000" ) );
+
+    HedgedSubmission testee = createTestee( processes, 2000 );
+    SparkSubmission winner = testee.run();
+
+    Assert.assertEquals( 1, testee.getSubmissions().size() );
+    Assert.assertEquals( "application_1427875242006_0001", winner.getApplicationId() );
+    Assert.assertEquals( ApplicationReportParser.STATE_RUNNING, winner.getState() );
+    Assert.assertTrue( killed.isEmpty() );
+    winner.cancel( null );
+  }
+
+  @Test
+  public void testHedgeWinsAndPrimaryIsCancelled() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 1 ), "sleep 10000" ) );
+    processes.put( "first", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 2 ), "sleep 50",
+        String.format( RUNNING, 2 ), "sleep 5000" ) );
+
+    HedgedSubmission testee = createTestee( processes, 200 );
+    SparkSubmission winner = testee.run();
+
+    Assert.assertEquals( 2, testee.getSubmissions().size() );
+    Assert.assertEquals( "application_1427875242006_0002", winner.getApplicationId() );
+    Assert.assertTrue( processes.get( "primary" ).isDestroyed() );
+    Assert.assertFalse( processes.get( "first" ).isDestroyed() );
+    Assert.assertEquals( Arrays.asList( "application_1427875242006_0001" ), killed );
+    winner.cancel( null );
+  }
+
+  @Test
+  public void testFailedSubmissionIsHedgedImmediately() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 1, "Exception in thread \"main\"" ) );
+    processes.put( "first", new FakeSparkSubmitProcess( 0, String.format( RUNNING, 2 ), "sleep 5000" ) );
+
+    long start = System.currentTimeMillis();
+    SparkSubmission winner = createTestee( processes, 60000 ).run();
+
+    Assert.assertTrue( System.currentTimeMillis() - start < 30000 );
+    Assert.assertEquals( "application_1427875242006_0002", winner.getApplicationId() );
+    winner.cancel( null );
+  }
+
+  @Test
+  public void testFailedHedgeIsSkipped() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 1 ), "sleep 10000" ) );
+    // "first" can't be launched
+    processes.put( "second", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 3 ), "sleep 50",
+        String.format( RUNNING, 3 ), "sleep 5000" ) );
+
+    HedgedSubmission testee = createTestee( processes, 200 );
+    SparkSubmission winner = testee.run();
+
+    Assert.assertEquals( 2, testee.getSubmissions().size() );
+    Assert.assertEquals( "application_1427875242006_0003", winner.getApplicationId() );
+    Assert.assertTrue( processes.get( "primary" ).isDestroyed() );
+    winner.cancel( null );
+  }
+
+  @Test( expected = KettleException.class )
+  public void testFailedPrimary() throws Exception {
+    createTestee( new HashMap<String, FakeSparkSubmitProcess>(), 200 ).run();
+  }
+
+  @Test
+  public void testAllTargetsFail() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 1, String.format( ACCEPTED, 1 ) ) );
+    processes.put( "first", new FakeSparkSubmitProcess( 1, String.format( ACCEPTED, 2 ) ) );
+    processes.put( "second", new FakeSparkSubmitProcess( 2, String.format( ACCEPTED, 3 ) ) );
+
+    HedgedSubmission testee = createTestee( processes, 60000 );
+    SparkSubmission last = testee.run();
+
+    Assert.assertEquals( 3, testee.getSubmissions().size() );
+    Assert.assertEquals( 2, last.waitFor() );
+    Assert.assertTrue( killed.isEmpty() );
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    Map<String, FakeSparkSubmitProcess> processes = new HashMap<String, FakeSparkSubmitProcess>();
+    processes.put( "primary", new FakeSparkSubmitProcess( 0, String.format( ACCEPTED, 1 ), "sleep 10000" ) );
+
+    final HedgedSubmission testee = createTestee( processes, 60000 );
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 200 );
+        } catch ( InterruptedException e ) {
+          // ignore
+        }
+        testee.cancel();
+      }
+    } ).start();
+    SparkSubmission submission = testee.run();
+
+    Assert.assertTrue( submission.isCancelled() );
+    Assert.assertTrue( processes.get( "primary" ).isDestroyed() );
+    Assert.assertEquals( Arrays.asList( "application_1427875242006_0001" ), killed );
+  }
+}
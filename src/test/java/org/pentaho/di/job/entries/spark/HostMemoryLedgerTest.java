@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class HostMemoryLedgerTest {
+  private static final long GB = 1024L * 1024 * 1024;
+
+  @Test
+  public void testReserve() {
+    HostMemoryLedger.Reservation first = HostMemoryLedger.reserve( 3 * GB, 2 * GB );
+    // a single submission is admitted even above the limit
+    Assert.assertNotNull( first );
+    Assert.assertNull( HostMemoryLedger.reserve( GB, 2 * GB ) );
+    // without a limit it is reserved anyway and counts against the limits of others
+    HostMemoryLedger.Reservation unlimited = HostMemoryLedger.reserve( GB, 0 );
+    Assert.assertNotNull( unlimited );
+    Assert.assertEquals( 4 * GB, HostMemoryLedger.getReservedBytes() );
+    first.release();
+    Assert.assertNull( HostMemoryLedger.reserve( 2 * GB, 2 * GB ) );
+    HostMemoryLedger.Reservation second = HostMemoryLedger.reserve( GB, 2 * GB );
+    Assert.assertNotNull( second );
+    unlimited.release();
+    second.release();
+    Assert.assertEquals( 0, HostMemoryLedger.getReservedBytes() );
+  }
+
+  @Test
+  public void testSampledMemory() throws Exception {
+    File proc = Files.createTempDir();
+    File dir = new File( proc, "100" );
+    dir.mkdirs();
+    Files.write( "100 (java) S 1 0 0 0 0 0 0 0 0 0 100 100 0 0 0 0 30 0", new File( dir, "stat" ),
+        Charsets.US_ASCII );
+    Files.write( "Name:\tjava\nVmRSS:\t1572864 kB\n", new File( dir, "status" ), Charsets.US_ASCII );
+    ProcessTreeSampler sampler = new ProcessTreeSampler( proc, 100 );
+
+    HostMemoryLedger.Reservation reservation = HostMemoryLedger.reserve( GB, 0 );
+    try {
+      // a driver that has just started counts with the memory it asked for
+      reservation.setSampler( sampler );
+      Assert.assertEquals( GB, reservation.getBytes() );
+      // and with its resident memory once it grew beyond
+      sampler.sample();
+      Assert.assertEquals( 3 * GB / 2, reservation.getBytes() );
+      Assert.assertNull( HostMemoryLedger.reserve( GB, 2 * GB ) );
+    } finally {
+      reservation.release();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.variables.Variables;
+
+public class InputFingerprintTest {
+  private static final List<String> CMDS = Arrays.asList( "spark-submit", "--class", "Main", "app.jar", "in" );
+
+  private File dir;
+  private File jar;
+  private File input;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDir();
+    jar = new File( dir, "app.jar" );
+    Files.write( "jar content", jar, Charsets.UTF_8 );
+    input = new File( dir, "input" );
+    for ( int i = 0; i < 5; i++ ) {
+      File partition = new File( input, "date=2015-04-0" + i );
+      partition.mkdirs();
+      for ( int j = 0; j < 10; j++ ) {
+        Files.write( "row " + j, new File( partition, "part-0000" + j ), Charsets.UTF_8 );
+      }
+    }
+  }
+
+  private String fingerprint( List<String> cmds ) throws Exception {
+    return InputFingerprint.compute( cmds, jar.getPath(), Arrays.asList( input.getPath(),
+        new File( dir, "missing" ).getPath() ), new Variables() );
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    Assert.assertEquals( fingerprint( CMDS ), fingerprint( CMDS ) );
+  }
+
+  @Test
+  public void testCommandChanged() throws Exception {
+    Assert.assertFalse( fingerprint( CMDS ).equals( fingerprint( Arrays.asList( "spark-submit", "--class", "Main",
+        "app.jar", "other" ) ) ) );
+  }
+
+  @Test
+  public void testJarChanged() throws Exception {
+    String before = fingerprint( CMDS );
+    Files.write( "new jar content", jar, Charsets.UTF_8 );
+    Assert.assertFalse( before.equals( fingerprint( CMDS ) ) );
+  }
+
+  @Test
+  public void testFileAdded() throws Exception {
+    String before = fingerprint( CMDS );
+    Files.write( "row", new File( input, "date=2015-04-03/part-00010" ), Charsets.UTF_8 );
+    Assert.assertFalse( before.equals( fingerprint( CMDS ) ) );
+  }
+
+  @Test
+  public void testFileModified() throws Exception {
+    String before = fingerprint( CMDS );
+    File file = new File( input, "date=2015-04-02/part-00003" );
+    file.setLastModified( file.lastModified() - 60000 );
+    Assert.assertFalse( before.equals( fingerprint( CMDS ) ) );
+  }
+
+  @Test
+  public void testMissingInputAppeared() throws Exception {
+    String before = fingerprint( CMDS );
+    new File( dir, "missing" ).mkdir();
+    Assert.assertFalse( before.equals( fingerprint( CMDS ) ) );
+  }
+
+  @Test( expected = org.pentaho.di.core.exception.KettleException.class )
+  public void testMissingJar() throws Exception {
+    InputFingerprint.compute( CMDS, new File( dir, "missing.jar" ).getPath(), Collections.<String>emptyList(),
+        new Variables() );
+  }
+}
@@ -0,0 +1,76 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.variables.Variables;
+
+public class InputSizeTest {
+  private File dir;
+  private File input;
+
+  @Before
+  public void setUp() throws Exception {
+    InputSize.clear();
+    dir = Files.createTempDir();
+    input = new File( dir, "input" );
+    for ( int i = 0; i < 3; i++ ) {
+      File partition = new File( input, "date=2015-04-0" + i );
+      partition.mkdirs();
+      for ( int j = 0; j < 4; j++ ) {
+        Files.write( "0123456789", new File( partition, "part-0000" + j ), Charsets.UTF_8 );
+      }
+    }
+    Files.write( "", new File( input, "_SUCCESS" ), Charsets.UTF_8 );
+    Files.write( "checksum", new File( input, ".part-00000.crc" ), Charsets.UTF_8 );
+    new File( input, "_temporary" ).mkdirs();
+    Files.write( "uncommitted", new File( input, "_temporary/part-00000" ), Charsets.UTF_8 );
+  }
+
+  @Test
+  public void testMeasure() throws Exception {
+    File file = new File( dir, "single" );
+    Files.write( "12345", file, Charsets.UTF_8 );
+
+    Assert.assertEquals( Arrays.asList( 120L, 5L, 0L ), InputSize.measure( Arrays.asList( input.getPath(), file
+        .getPath(), new File( dir, "missing" ).getPath() ), new Variables() ) );
+  }
+
+  @Test
+  public void testCached() throws Exception {
+    Assert.assertEquals( 120L, InputSize.measure( input.getPath(), new Variables() ) );
+    Files.write( "0123456789", new File( input, "date=2015-04-00/part-00009" ), Charsets.UTF_8 );
+    Assert.assertEquals( 120L, InputSize.measure( input.getPath(), new Variables() ) );
+
+    InputSize.clear();
+    Assert.assertEquals( 130L, InputSize.measure( input.getPath(), new Variables() ) );
+  }
+}
@@ -0,0 +1,172 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JarPreflightTest {
+  private static final int PUBLIC_STATIC = ClassFileInfo.ACC_PUBLIC | ClassFileInfo.ACC_STATIC;
+  private static final Set<String> SPARK_CLASSES = new HashSet<String>( Arrays.asList(
+      "com/google/common/base/Optional.class" ) );
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = Files.createTempDir();
+  }
+
+  private ClassFileBuilder main( String name ) {
+    return new ClassFileBuilder( name ).method( PUBLIC_STATIC, "main", JarPreflight.MAIN_DESCRIPTOR );
+  }
+
+  private List<String> check( File jar, String mainClass, Set<String> providedClasses ) throws IOException {
+    return check( jar, mainClass, providedClasses, new ArrayList<String>() );
+  }
+
+  private List<String> check( File jar, String mainClass, Set<String> providedClasses,
+      List<String> warnings ) throws IOException {
+    InputStream is = new FileInputStream( jar );
+    try {
+      return new JarPreflight( ThinJarBuilder.DEFAULT_PROVIDED_PACKAGES, providedClasses ).check( is, mainClass,
+          warnings );
+    } finally {
+      is.close();
+    }
+  }
+
+  @Test
+  public void testValidJar() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ),
+        main( "com/acme/Main" ).reference( "com/acme/Job" ).reference( "java/util/List" ),
+        new ClassFileBuilder( "com/acme/Job" ).reference( "org/apache/spark/SparkContext" ).reference(
+            "com/google/common/base/Optional" ).field( "names", "[Ljava/lang/String;" ) );
+
+    Assert.assertEquals( Collections.emptyList(), check( jar, "com.acme.Main", SPARK_CLASSES ) );
+  }
+
+  @Test
+  public void testMainClassFromManifest() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ), "com.acme.Main", main( "com/acme/Main" ) );
+    Assert.assertEquals( Collections.emptyList(), check( jar, "", SPARK_CLASSES ) );
+
+    jar = ClassFileBuilder.writeJar( new File( dir, "nomain.jar" ), main( "com/acme/Main" ) );
+    Assert.assertEquals( Arrays.asList( "No main class is given and the jar manifest names none" ), check( jar, null,
+        SPARK_CLASSES ) );
+  }
+
+  @Test
+  public void testMissingMainClass() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ), main( "com/acme/Main" ) );
+    Assert.assertEquals( Arrays.asList( "Main class com.acme.Mian is not in the jar" ), check( jar, "com.acme.Mian",
+        SPARK_CLASSES ) );
+    // classes of the cluster can be run as they are
+    Assert.assertEquals( Collections.emptyList(), check( jar, "org.apache.spark.examples.SparkPi", SPARK_CLASSES ) );
+  }
+
+  @Test
+  public void testMainMethod() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ),
+        new ClassFileBuilder( "com/acme/Instance" ).method( ClassFileInfo.ACC_PUBLIC, "main",
+            JarPreflight.MAIN_DESCRIPTOR ),
+        new ClassFileBuilder( "com/acme/Inherited" ).superName( "com/acme/Base" ),
+        main( "com/acme/Base" ) );
+
+    Assert.assertEquals( Arrays.asList(
+        "Main class com.acme.Instance has no public static void main(String[]) method" ), check( jar,
+            "com.acme.Instance", SPARK_CLASSES ) );
+    Assert.assertEquals( Collections.emptyList(), check( jar, "com.acme.Inherited", SPARK_CLASSES ) );
+  }
+
+  @Test
+  public void testMissingReferences() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ),
+        main( "com/acme/Main" ).reference( "com/acme/Job" ),
+        new ClassFileBuilder( "com/acme/Job" ).reference( "org/json4s/JValue" ),
+        // not reachable from the main class
+        new ClassFileBuilder( "com/acme/Unused" ).reference( "com/acme/missing/Util" ) );
+
+    Assert.assertEquals( Arrays.asList(
+        "Class org.json4s.JValue used by com.acme.Job is neither in the jar nor provided by the cluster" ), check( jar,
+            "com.acme.Main", SPARK_CLASSES ) );
+    // the distribution is unknown
+    Assert.assertEquals( Collections.emptyList(), check( jar, "com.acme.Main", Collections.<String>emptySet() ) );
+  }
+
+  @Test
+  public void testOnlyLoadableTypesAreReferences() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ),
+        main( "com/acme/Main" ).string( "Lcom/acme/missing/Annotation;" ).string(
+            "Ljava/util/List<Lcom/acme/missing/Generic;>;" ).string( "see Lcom/acme/missing/Literal; for details" ),
+        new ClassFileBuilder( "com/acme/Job" ) );
+    Assert.assertEquals( Collections.emptyList(), check( jar, "com.acme.Main", SPARK_CLASSES ) );
+
+    // descriptors of members are
+    jar = ClassFileBuilder.writeJar( new File( dir, "member.jar" ),
+        main( "com/acme/Main" ).method( ClassFileInfo.ACC_PUBLIC, "load", "()Lcom/acme/missing/Result;" ) );
+    Assert.assertEquals( Arrays.asList( "Class com.acme.missing.Result used by com.acme.Main is neither in the jar "
+        + "nor provided by the cluster" ), check( jar, "com.acme.Main", SPARK_CLASSES ) );
+  }
+
+  @Test
+  public void testMissingForLibrariesAreWarnings() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ),
+        main( "com/acme/Main" ).reference( "com/acme/etl/Job" ),
+        new ClassFileBuilder( "com/acme/etl/Job" ).reference( "org/codec/Codec" ),
+        // a bundled library with an optional dependency
+        new ClassFileBuilder( "org/codec/Codec" ).reference( "org/xerial/snappy/Snappy" ) );
+
+    List<String> warnings = new ArrayList<String>();
+    Assert.assertEquals( Collections.emptyList(), check( jar, "com.acme.Main", SPARK_CLASSES, warnings ) );
+    Assert.assertEquals( Arrays.asList( "Class org.xerial.snappy.Snappy used by org.codec.Codec is neither in the "
+        + "jar nor provided by the cluster" ), warnings );
+  }
+
+  @Test
+  public void testReportedProblemsLimited() throws Exception {
+    ClassFileBuilder main = main( "com/acme/Main" );
+    for ( int i = 0; i < JarPreflight.MAX_REPORTED + 5; i++ ) {
+      main.reference( "com/acme/missing/Class" + ( 10 + i ) );
+    }
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ), main );
+
+    List<String> problems = check( jar, "com.acme.Main", SPARK_CLASSES );
+    Assert.assertEquals( JarPreflight.MAX_REPORTED + 1, problems.size() );
+    Assert.assertEquals( "... and 5 more missing classes", problems.get( JarPreflight.MAX_REPORTED ) );
+  }
+}
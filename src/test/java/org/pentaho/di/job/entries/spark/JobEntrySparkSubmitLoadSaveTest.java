@@ -35,6 +35,13 @@ public class JobEntrySparkSubmitLoadSaveTest extends JobEntryLoadSaveTestSupport
   @Override
   protected List<String> listCommonAttributes() {
     return asList( "scriptPath", "master", "jar", "className", "args", "configParams", "configParams", "driverMemory",
-        "executorMemory", "blockExecution" );
+        "executorMemory", "blockExecution", "resourceManagerUrl", "hedgeTimeout", "hedgeMasters", "hedgeQueues",
+        "candidateQueues", "reattachRunning", "inputPaths", "memoize",
+        "microBatch", "batchWindow", "batchSize", "sharedSession", "sessionConcurrency", "sessionIdleTimeout",
+        "registerKryo", "thinJar", "preflight", "providedPackages", "cachePackages", "tuningProfile",
+        "supervise", "maxRestarts", "restartDelay", "lagBatches", "resultMarker",
+        "resultFile", "remoteServers", "pyFiles", "pythonRequirements", "pythonExecutable",
+        "pythonArchiveLocation", "deadline", "hangTimeout", "partitionSize",
+        "sampleInterval", "hostMemoryLimit" );
   }
 }
@@ -25,8 +25,26 @@ package org.pentaho.di.job.entries.spark;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.job.Job;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.metastore.stores.memory.MemoryMetaStore;
 
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -66,4 +84,1024 @@ public class JobEntrySparkSubmitTest {
     ss.setJar( "jar-path" );
     Assert.assertTrue( "Validation should pass", ss.validate() );
   }
+
+  @Test
+  public void testHedgeTargets() {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setHedgeMasters( Arrays.asList( "yarn-client", "", "" ) );
+    ss.setHedgeQueues( Arrays.asList( "", "backup" ) );
+
+    List<HedgeTarget> targets = ss.getHedgeTargets();
+    Assert.assertEquals( 3, targets.size() );
+
+    List<String> cmds = Arrays.asList( "scriptPath", "--master", "yarn-cluster", "--conf", "spark.yarn.queue=default",
+        "jar_path" );
+    Assert.assertEquals( cmds, targets.get( 0 ).apply( cmds ) );
+    Assert.assertEquals( Arrays.asList( "scriptPath", "--master", "yarn-client", "--conf", "spark.yarn.queue=default",
+        "jar_path" ), targets.get( 1 ).apply( cmds ) );
+    Assert.assertEquals( Arrays.asList( "scriptPath", "--master", "yarn-cluster", "--conf", "spark.yarn.queue=backup",
+        "jar_path" ), targets.get( 2 ).apply( cmds ) );
+    Assert.assertEquals( Arrays.asList( "scriptPath", "--master", "yarn-cluster", "--conf", "spark.yarn.queue=backup",
+        "jar_path" ), targets.get( 2 ).apply( Arrays.asList( "scriptPath", "--master", "yarn-cluster", "jar_path" ) ) );
+  }
+
+  @Test
+  public void testExecuteHedged() {
+    final List<FakeSparkSubmitProcess> processes = new ArrayList<FakeSparkSubmitProcess>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        FakeSparkSubmitProcess process = cmds.contains( "spark.yarn.queue=backup" )
+            ? new FakeSparkSubmitProcess( 0, "Application report for application_1_0002 (state: RUNNING)", "sleep 50",
+                "Application report for application_1_0002 (state: FINISHED)" )
+            : new FakeSparkSubmitProcess( 0, "Application report for application_1_0001 (state: ACCEPTED)",
+                "sleep 30000" );
+        processes.add( process );
+        return process;
+      }
+    };
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setHedgeTimeout( "1" );
+    ss.setHedgeQueues( Arrays.asList( "backup" ) );
+
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertTrue( result.getResult() );
+    Assert.assertEquals( 2, processes.size() );
+    Assert.assertTrue( processes.get( 0 ).isDestroyed() );
+    Assert.assertFalse( processes.get( 1 ).isDestroyed() );
+  }
+
+  @Test
+  public void testSelectQueue() {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    Assert.assertNull( ss.selectQueue() );
+
+    ss.setResourceManagerUrl( getClass().getResource( "rm-capacity" ).toString() );
+    ss.setCandidateQueues( "etl, adhoc" );
+    ss.setExecutorMemory( "2g" );
+    ss.setConfigParams( new ArrayList<String>( Arrays.asList( "spark.executor.instances=4",
+        "spark.executor.cores=2" ) ) );
+    Assert.assertEquals( "2g", ss.getResolvedExecutorMemory() );
+    Assert.assertEquals( "2", ss.getConfigParam( "spark.executor.cores" ) );
+    Assert.assertEquals( "adhoc", ss.selectQueue() );
+  }
+
+  @Test
+  public void testReattachToRunningApplication() throws Exception {
+    final List<FakeSparkSubmitProcess> processes = new ArrayList<FakeSparkSubmitProcess>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0,
+            "Submitted application application_1_0001",
+            "Application report for application_1_0001 (state: ACCEPTED)", "sleep 50",
+            "Application report for application_1_0001 (state: FINISHED)" );
+        processes.add( process );
+        return process;
+      }
+    };
+    StubApplicationClient client = new StubApplicationClient();
+    SubmissionStore store = new SubmissionStore( Files.createTempDir() );
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setReattachRunning( true );
+    ss.setApplicationClient( client );
+    ss.setSubmissionStore( store );
+    ss.statusPollInterval = 10;
+    String key = ss.getSubmissionKey( ss.getCmds() );
+
+    // nothing recorded, submitted and forgotten after completion
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, processes.size() );
+    Assert.assertNull( store.getApplicationId( key ) );
+
+    // detached application is remembered
+    ss.setBlockExecution( false );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 2, processes.size() );
+    Assert.assertEquals( "application_1_0001", store.getApplicationId( key ) );
+
+    // still running, attach and wait
+    client.addStatus( "application_1_0001", "RUNNING", "UNDEFINED" ).addStatus( "application_1_0001", "RUNNING",
+        "UNDEFINED" ).addStatus( "application_1_0001", "FINISHED", "SUCCEEDED" );
+    ss.setBlockExecution( true );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 2, processes.size() );
+    Assert.assertNull( store.getApplicationId( key ) );
+
+    // finished before restart, submitted again
+    store.put( key, "application_1_0001" );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 3, processes.size() );
+  }
+
+  @Test
+  public void testReattachToFailingApplication() throws Exception {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    SubmissionStore store = new SubmissionStore( Files.createTempDir() );
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setReattachRunning( true );
+    ss.setApplicationClient( new StubApplicationClient().addStatus( "application_1_0002", "RUNNING", "UNDEFINED" )
+        .addStatus( "application_1_0002", "FINISHED", "FAILED" ) );
+    ss.setSubmissionStore( store );
+    ss.statusPollInterval = 10;
+    store.put( ss.getSubmissionKey( ss.getCmds() ), "application_1_0002" );
+
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+  }
+
+  @Test
+  public void testResourceUsage() throws Exception {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return new FakeSparkSubmitProcess( 0, "Submitted application application_1_0003",
+            "Application report for application_1_0003 (state: FINISHED)" );
+      }
+    };
+    StubApplicationClient client = new StubApplicationClient();
+    client.addStatus( new ApplicationStatus( "application_1_0003", "FINISHED", "SUCCEEDED", 1843200, 900 ) );
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setApplicationClient( client );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( "1843200", job.getVariable( JobEntrySparkSubmit.MEMORY_SECONDS_VARIABLE ) );
+    Assert.assertEquals( "900", job.getVariable( JobEntrySparkSubmit.VCORE_SECONDS_VARIABLE ) );
+
+    // cluster manager not accounting resources
+    ss.setApplicationClient( new StubApplicationClient().addStatus( "application_1_0003", "FINISHED",
+        "SUCCEEDED" ) );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( "", job.getVariable( JobEntrySparkSubmit.MEMORY_SECONDS_VARIABLE ) );
+  }
+
+  @Test
+  public void testProcessTreeSampling() throws Exception {
+    if ( !ProcessTreeSampler.isSupported() ) {
+      return; // Linux only
+    }
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return new ProcessBuilder( "sh", "-c", "sleep 1 & wait" ).start();
+      }
+    };
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setMaster( "local[2]" );
+    ss.setSampleInterval( "1" );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertTrue( Long.parseLong( job.getVariable( JobEntrySparkSubmit.PEAK_RSS_VARIABLE ) ) > 0 );
+    Assert.assertTrue( Long.parseLong( job.getVariable( JobEntrySparkSubmit.AVERAGE_RSS_VARIABLE ) ) > 0 );
+    Assert.assertTrue( Integer.parseInt( job.getVariable( JobEntrySparkSubmit.PEAK_THREADS_VARIABLE ) ) >= 2 );
+    Assert.assertNotNull( job.getVariable( JobEntrySparkSubmit.CPU_MILLIS_VARIABLE ) );
+
+    // the driver doesn't run on this host
+    job = new Job();
+    ss.setParentJob( job );
+    ss.setMaster( "yarn-cluster" );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertNull( job.getVariable( JobEntrySparkSubmit.PEAK_RSS_VARIABLE ) );
+
+    // a host memory limit samples the tree even without an interval
+    job = new Job();
+    ss.setParentJob( job );
+    ss.setMaster( "local[2]" );
+    ss.setSampleInterval( null );
+    ss.setHostMemoryLimit( "64g" );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertTrue( Long.parseLong( job.getVariable( JobEntrySparkSubmit.PEAK_RSS_VARIABLE ) ) > 0 );
+    Assert.assertEquals( 0, HostMemoryLedger.getReservedBytes() );
+  }
+
+  @Test
+  public void testHostMemoryAdmission() throws Exception {
+    // a running driver holding 1.5 GB
+    HostMemoryLedger.Reservation running = HostMemoryLedger.reserve( 1536L * 1024 * 1024, 0 );
+
+    final List<FakeSparkSubmitProcess> processes = new CopyOnWriteArrayList<FakeSparkSubmitProcess>();
+    final JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "Submitted application application_1_0001" );
+        processes.add( process );
+        return process;
+      }
+    };
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "jar-path" );
+    ss.setMaster( "local[2]" );
+    ss.setDriverMemory( "1g" );
+    ss.setHostMemoryLimit( "2g" );
+    ss.statusPollInterval = 10;
+    final Result[] result = new Result[1];
+    Thread thread = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        result[0] = ss.execute( new Result(), 0 );
+      }
+    } );
+    try {
+      thread.start();
+      Thread.sleep( 300 );
+      Assert.assertTrue( processes.isEmpty() );
+    } finally {
+      running.release();
+    }
+    thread.join( 10000 );
+    Assert.assertTrue( result[0].getResult() );
+    Assert.assertEquals( 1, processes.size() );
+    // released once the run finished
+    Assert.assertEquals( 0, HostMemoryLedger.getReservedBytes() );
+  }
+
+  @Test
+  public void testMemoize() throws Exception {
+    final List<FakeSparkSubmitProcess> processes = new ArrayList<FakeSparkSubmitProcess>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "Submitted application application_1_0001" );
+        processes.add( process );
+        return process;
+      }
+    };
+    File dir = Files.createTempDir();
+    File jar = new File( dir, "app.jar" );
+    Files.write( "jar content", jar, Charsets.UTF_8 );
+    File input = new File( dir, "input.csv" );
+    Files.write( "a,b,c", input, Charsets.UTF_8 );
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( jar.getPath() );
+    ss.setInputPaths( Arrays.asList( input.getPath() ) );
+    ss.setMemoize( true );
+    ss.setFingerprintStore( new FingerprintStore( Files.createTempDir() ) );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, processes.size() );
+    Assert.assertEquals( "N", job.getVariable( JobEntrySparkSubmit.CACHED_VARIABLE ) );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, processes.size() );
+    Assert.assertEquals( "Y", job.getVariable( JobEntrySparkSubmit.CACHED_VARIABLE ) );
+
+    Files.append( "d,e,f", input, Charsets.UTF_8 );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 2, processes.size() );
+    Assert.assertEquals( "N", job.getVariable( JobEntrySparkSubmit.CACHED_VARIABLE ) );
+
+    // without declared inputs new data can't be told from the old, never skipped
+    ss.setInputPaths( new ArrayList<String>() );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 4, processes.size() );
+    Assert.assertEquals( "N", job.getVariable( JobEntrySparkSubmit.CACHED_VARIABLE ) );
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    ss.check( remarks, null, new Variables(), null, null );
+    boolean warned = false;
+    for ( CheckResultInterface remark : remarks ) {
+      warned |= remark.getText().contains( "MemoizeWithoutInputs" );
+    }
+    Assert.assertTrue( warned );
+  }
+
+  @Test
+  public void testMicroBatch() throws Exception {
+    final List<List<String>> submitted = new CopyOnWriteArrayList<List<String>>();
+    final List<Result> results = new CopyOnWriteArrayList<Result>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( final String arg : Arrays.asList( "a.csv", "bad.csv", "c.csv" ) ) {
+      final JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+        @Override
+        protected Process startProcess( List<String> cmds ) throws IOException {
+          submitted.add( cmds );
+          List<String> script = new ArrayList<String>();
+          File manifest = new File( cmds.get( cmds.indexOf( "--files" ) + 1 ) );
+          int id = 0;
+          for ( String line : Files.readLines( manifest, Charsets.UTF_8 ) ) {
+            script.add( "SPARK_BATCH_ITEM " + id++ + ( line.contains( "bad" ) ? " FAILED bad input" : " SUCCEEDED" ) );
+          }
+          return new FakeSparkSubmitProcess( 0, script.toArray( new String[script.size()] ) );
+        }
+      };
+      ss.setParentJob( new Job() );
+      ss.setScriptPath( "." );
+      ss.setJar( "app.jar" );
+      ss.setArgs( arg );
+      ss.setMicroBatch( true );
+      ss.setBatchWindow( "60" );
+      ss.setBatchSize( "3" );
+      ss.statusPollInterval = 100;
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          results.add( ss.execute( new Result(), 0 ) );
+        }
+      } );
+      thread.start();
+      threads.add( thread );
+    }
+    for ( Thread thread : threads ) {
+      thread.join( 10000 );
+    }
+
+    Assert.assertEquals( 1, submitted.size() );
+    List<String> cmds = submitted.get( 0 );
+    Assert.assertEquals( "--files", cmds.get( cmds.size() - 4 ) );
+    Assert.assertEquals( "app.jar", cmds.get( cmds.size() - 2 ) );
+    // yarn-cluster driver opens the manifest shipped with --files
+    Assert.assertEquals( new File( cmds.get( cmds.size() - 3 ) ).getName(), cmds.get( cmds.size() - 1 ) );
+    Assert.assertEquals( 3, results.size() );
+    int failed = 0;
+    for ( Result result : results ) {
+      failed += result.getResult() ? 0 : 1;
+    }
+    Assert.assertEquals( 1, failed );
+  }
+
+  @Test
+  public void testSharedSession() throws Exception {
+    final List<List<String>> submitted = new ArrayList<List<String>>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        submitted.add( cmds );
+        int size = cmds.size();
+        return FakeSessionDriverProcess.start( cmds.get( size - 3 ), Integer.parseInt( cmds.get( size - 2 ) ),
+            Long.parseLong( cmds.get( size - 1 ) ) );
+      }
+    };
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setMaster( "local[*]" );
+    ss.setJar( "shared-session.jar" );
+    ss.setClassName( WarmSessionServerTest.CountingJob.class.getName() );
+    ss.setArgs( "first" );
+    ss.setSharedSession( true );
+    ss.setSessionConcurrency( "2" );
+    ss.setSessionIdleTimeout( "1" );
+    WarmSessionServerTest.CountingJob.RUNS.clear();
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    ss.setArgs( "second" );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, submitted.size() );
+    Assert.assertEquals( Arrays.asList( Arrays.asList( "first" ), Arrays.asList( "second" ) ),
+        WarmSessionServerTest.CountingJob.RUNS );
+
+    List<String> cmds = submitted.get( 0 );
+    Assert.assertEquals( "client", cmds.get( cmds.indexOf( "--deploy-mode" ) + 1 ) );
+    Assert.assertEquals( WarmSessionServer.class.getName(), cmds.get( cmds.indexOf( "--class" ) + 1 ) );
+    Assert.assertEquals( "shared-session.jar", cmds.get( cmds.indexOf( "--jars" ) + 1 ) );
+    Assert.assertEquals( "2", cmds.get( cmds.size() - 2 ) );
+
+    ss.setClassName( WarmSessionServerTest.FailingJob.class.getName() );
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+  }
+
+  @Test
+  public void testKryoConfParams() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( Files.createTempDir(), "app.jar" ),
+        new ClassFileBuilder( "com/acme/Main" ).reference( "org/apache/spark/api/java/JavaRDD" )
+            .reference( "com/acme/Person" ),
+        new ClassFileBuilder( "com/acme/Person" ).implement( "java/io/Serializable" ) );
+    KryoRegistrationStore store = new KryoRegistrationStore( Files.createTempDir() );
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setJar( jar.getPath() );
+    ss.setKryoRegistrationStore( store );
+
+    Assert.assertEquals( Arrays.asList( "spark.serializer=org.apache.spark.serializer.KryoSerializer",
+        "spark.kryo.classesToRegister=com.acme.Person" ), ss.getKryoConfParams() );
+
+    // scanned once per jar content
+    String digest = FileDigest.digest( jar.getPath(), ss );
+    Assert.assertEquals( Arrays.asList( "com.acme.Person" ), store.getClasses( digest ) );
+    store.put( digest, Arrays.asList( "com.acme.Cached" ) );
+    Assert.assertEquals( "spark.kryo.classesToRegister=com.acme.Cached", ss.getKryoConfParams().get( 1 ) );
+
+    // explicit configuration wins
+    ss.setConfigParams( Arrays.asList( "spark.serializer=org.apache.spark.serializer.KryoSerializer" ) );
+    Assert.assertEquals( Arrays.asList( "spark.kryo.classesToRegister=com.acme.Cached" ), ss.getKryoConfParams() );
+    ss.setConfigParams( Arrays.asList( "spark.kryo.registrator=com.acme.Registrator" ) );
+    Assert.assertTrue( ss.getKryoConfParams().isEmpty() );
+    ss.setConfigParams( Arrays.asList( "spark.serializer=org.apache.spark.serializer.JavaSerializer" ) );
+    Assert.assertTrue( ss.getKryoConfParams().isEmpty() );
+  }
+
+  @Test
+  public void testThinJar() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( Files.createTempDir(), "app.jar" ),
+        new ClassFileBuilder( "com/acme/Main" ), new ClassFileBuilder( "org/apache/spark/SparkContext" ) );
+    File storeDir = Files.createTempDir();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setScriptPath( "spark-submit" );
+    ss.setJar( jar.getPath() );
+    ss.setThinJarStore( new ThinJarStore( storeDir ) );
+
+    String thin = ss.getThinJar();
+    Assert.assertNotNull( thin );
+    Assert.assertEquals( "app.jar", new File( thin ).getName() );
+    Assert.assertEquals( storeDir, new File( thin ).getParentFile().getParentFile() );
+    Assert.assertEquals( String.valueOf( jar.length() - new File( thin ).length() ), ss.getVariable(
+        JobEntrySparkSubmit.THIN_JAR_SAVED_VARIABLE ) );
+
+    // built once per jar content and provided packages
+    Assert.assertEquals( thin, ss.getThinJar() );
+    ss.setProvidedPackages( "com.acme" );
+    Assert.assertFalse( thin.equals( ss.getThinJar() ) );
+  }
+
+  @Test
+  public void testTuningProfile() throws Exception {
+    MemoryMetaStore metaStore = new MemoryMetaStore();
+    TuningProfile profile = new TuningProfile( "large" );
+    profile.setExecutorMemory( "8g" );
+    profile.setExecutorCores( "4" );
+    profile.setConfigParams( Arrays.asList( "spark.sql.shuffle.partitions=800" ) );
+    new TuningProfileStore( metaStore ).save( profile );
+
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setScriptPath( "spark-submit" );
+    ss.setJar( "app.jar" );
+    ss.setTuningProfile( "large" );
+    ss.setConfigParams( Arrays.asList( "spark.executor.cores=2" ) );
+    Assert.assertSame( profile, ss.resolveTuningProfile( metaStore ) );
+
+    // the entry's own settings override the profile
+    Assert.assertEquals( "2", ss.getConfigParam( "spark.executor.cores" ) );
+    Assert.assertEquals( "800", ss.getConfigParam( "spark.sql.shuffle.partitions" ) );
+    Assert.assertEquals( "8g", ss.getResolvedExecutorMemory() );
+    List<String> cmds = ss.getCmds();
+    Assert.assertTrue( cmds.indexOf( "spark.executor.cores=4" ) < cmds.indexOf( "spark.executor.cores=2" ) );
+    Assert.assertTrue( cmds.contains( "spark.sql.shuffle.partitions=800" ) );
+
+    ss.setTuningProfile( "missing" );
+    try {
+      ss.resolveTuningProfile( metaStore );
+      Assert.fail();
+    } catch ( KettleException e ) {
+      // expected
+    }
+    Assert.assertFalse( ss.getCmds().contains( "spark.sql.shuffle.partitions=800" ) );
+
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setMetaStore( metaStore );
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+  }
+
+  @Test
+  public void testCheckKeepsResolvedProfile() throws Exception {
+    MemoryMetaStore metaStore = new MemoryMetaStore();
+    TuningProfile profile = new TuningProfile( "large" );
+    profile.setConfigParams( Arrays.asList( "spark.sql.shuffle.partitions=800" ) );
+    new TuningProfileStore( metaStore ).save( profile );
+
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setScriptPath( "spark-submit" );
+    ss.setJar( "app.jar" );
+    ss.setTuningProfile( "large" );
+    ss.resolveTuningProfile( metaStore );
+
+    // checking an edited entry doesn't change the profile of the run
+    ss.setTuningProfile( "missing" );
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    ss.check( remarks, null, new Variables(), null, metaStore );
+    boolean reported = false;
+    for ( CheckResultInterface remark : remarks ) {
+      reported |= remark.getType() == CheckResultInterface.TYPE_RESULT_ERROR
+          && remark.getText().contains( "ResolvingTuningProfile" );
+    }
+    Assert.assertTrue( reported );
+    Assert.assertEquals( "800", ss.getConfigParam( "spark.sql.shuffle.partitions" ) );
+  }
+
+  @Test
+  public void testResultChannel() throws Exception {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return new FakeSparkSubmitProcess( 0, "Submitted application application_1_0001",
+            "PDI_RESULT outputRows=42", "PDI_RESULT {\"partition\":\"p1\"}" );
+      }
+    };
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+    ss.setResultMarker( "PDI_RESULT" );
+
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertTrue( result.getResult() );
+    Assert.assertEquals( "42", job.getVariable( "outputRows" ) );
+    Assert.assertEquals( 1, result.getRows().size() );
+    Assert.assertEquals( "p1", result.getRows().get( 0 ).getString( "partition", null ) );
+  }
+
+  @Test
+  public void testExecuteRemotely() throws Exception {
+    final List<JobMeta> submitted = new ArrayList<JobMeta>();
+    final Map<String, String> passed = new HashMap<String, String>();
+    final Result remote = new Result();
+    remote.setResult( true );
+    remote.setExitStatus( 0 );
+    SubmissionNode node = new SubmissionNode() {
+      @Override
+      public String getName() {
+        return "carte";
+      }
+
+      @Override
+      public NodeLoad getLoad() {
+        return new NodeLoad( 0, 1024, 1024 );
+      }
+
+      @Override
+      public String submit( JobMeta jobMeta, Map<String, String> variables ) {
+        submitted.add( jobMeta );
+        passed.putAll( variables );
+        return "id";
+      }
+
+      @Override
+      public RemoteJobStatus getStatus( String jobName, String id, int fromLine ) {
+        return new RemoteJobStatus( "", 0, true, remote );
+      }
+
+      @Override
+      public void stop( String jobName, String id ) {
+      }
+    };
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit( "spark" ) {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        throw new IOException( "must not run locally" );
+      }
+    };
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+    ss.setRemoteServers( Arrays.asList( "carte" ) );
+    ss.setSubmissionNodes( Arrays.asList( node ) );
+    ss.setVariable( "INPUT", "/data" );
+    ss.setVariable( "Internal.Job.Name", "local" );
+
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertTrue( result.getResult() );
+    Assert.assertEquals( 1, submitted.size() );
+    JobMeta jobMeta = submitted.get( 0 );
+    Assert.assertEquals( DistributedSubmission.JOB_NAME_PREFIX + "spark", jobMeta.getName() );
+    Assert.assertEquals( 2, jobMeta.nrJobEntries() );
+    JobEntrySparkSubmit copy = (JobEntrySparkSubmit) jobMeta.getJobEntry( 1 ).getEntry();
+    Assert.assertTrue( copy.getRemoteServers().isEmpty() );
+    Assert.assertEquals( "app.jar", copy.getJar() );
+    Assert.assertEquals( Arrays.asList( "carte" ), ss.getRemoteServers() );
+    Assert.assertEquals( "/data", passed.get( "INPUT" ) );
+    Assert.assertFalse( passed.containsKey( "Internal.Job.Name" ) );
+  }
+
+  @Test
+  public void testProgress() throws Exception {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return new FakeSparkSubmitProcess( 0,
+            "INFO Client: Application report for application_1_0001 (state: RUNNING)",
+            "[Stage 0:=====>                    (25 + 8) / 100]" );
+      }
+    };
+    final List<ApplicationProgress> reports = new CopyOnWriteArrayList<ApplicationProgress>();
+    ss.addProgressListener( new ProgressTracker.ProgressListener() {
+      @Override
+      public void onProgress( ApplicationProgress progress ) {
+        reports.add( progress );
+      }
+    } );
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 2, reports.size() );
+    Assert.assertEquals( 25, ss.getProgress().getPercentComplete() );
+    Assert.assertEquals( "RUNNING", job.getVariable( JobEntrySparkSubmit.APPLICATION_STATE_VARIABLE ) );
+    Assert.assertEquals( "25", job.getVariable( JobEntrySparkSubmit.PROGRESS_PERCENT_VARIABLE ) );
+    Assert.assertEquals( "1", job.getVariable( JobEntrySparkSubmit.ACTIVE_STAGES_VARIABLE ) );
+    Assert.assertEquals( "8", job.getVariable( JobEntrySparkSubmit.ACTIVE_TASKS_VARIABLE ) );
+  }
+
+  @Test
+  public void testExecuteOnKubernetes() throws Exception {
+    final MockKubernetesApiServer server = new MockKubernetesApiServer();
+    server.start();
+    try {
+      final List<String> submitted = new ArrayList<String>();
+      final String[] finalPhase = { KubernetesApplicationClient.PHASE_SUCCEEDED };
+      JobEntrySparkSubmit ss = new JobEntrySparkSubmit( "k8s" ) {
+        @Override
+        protected Process startProcess( List<String> cmds ) throws IOException {
+          submitted.addAll( cmds );
+          server.setPhase( "etl-driver", KubernetesApplicationClient.PHASE_PENDING );
+          server.setPhase( "etl-driver", KubernetesApplicationClient.PHASE_RUNNING );
+          server.setPhase( "etl-driver", finalPhase[0] );
+          return new FakeSparkSubmitProcess( 0, "INFO LoggingPodStatusWatcherImpl: Deployed Spark application" );
+        }
+      };
+      ss.setParentJob( new Job() );
+      ss.setScriptPath( "." );
+      ss.setJar( "local:///opt/app.jar" );
+      ss.setMaster( "k8s://" + server.getUrl() );
+      ss.setConfigParams( Arrays.asList( "spark.submit.deployMode=cluster", "spark.kubernetes.namespace=etl",
+          "spark.kubernetes.driver.pod.name=etl-driver" ) );
+      Assert.assertTrue( ss.isKubernetesCluster() );
+
+      Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+      Assert.assertTrue( submitted.contains( "spark.kubernetes.submission.waitAppCompletion=false" ) );
+      Assert.assertTrue( ss.getApplicationClient() instanceof KubernetesApplicationClient );
+
+      finalPhase[0] = KubernetesApplicationClient.PHASE_FAILED;
+      Result result = ss.execute( new Result(), 0 );
+      Assert.assertFalse( result.getResult() );
+      Assert.assertEquals( 1, result.getExitStatus() );
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testDriverPodNotFollowed() throws Exception {
+    MockKubernetesApiServer server = new MockKubernetesApiServer();
+    server.start();
+    try {
+      JobEntrySparkSubmit ss = new JobEntrySparkSubmit( "k8s" ) {
+        @Override
+        protected Process startProcess( List<String> cmds ) throws IOException {
+          return new FakeSparkSubmitProcess( 0, "INFO LoggingPodStatusWatcherImpl: Deployed Spark application" );
+        }
+      };
+      ss.setParentJob( new Job() );
+      ss.setScriptPath( "." );
+      ss.setJar( "local:///opt/app.jar" );
+      ss.setMaster( "k8s://" + server.getUrl() );
+      ss.setConfigParams( Arrays.asList( "spark.submit.deployMode=cluster", "spark.kubernetes.namespace=unseen",
+          "spark.kubernetes.driver.pod.name=unseen-driver" ) );
+      ss.statusPollInterval = 50;
+
+      // the pod never shows up
+      ss.podSeenTimeout = 300;
+      Assert.assertFalse( ss.execute( new Result(), 0 ).getResult() );
+
+      // the API server goes away
+      server.stop();
+      ss.podSeenTimeout = 60000;
+      Result result = ss.execute( new Result(), 0 );
+      Assert.assertFalse( result.getResult() );
+      Assert.assertEquals( 1, result.getNrErrors() );
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testGenerateDriverPodName() {
+    String name = new JobEntrySparkSubmit( "Load Orders (daily)" ).generateDriverPodName();
+    Assert.assertTrue( name, name.matches( "load-orders-daily-[0-9a-f]{8}-driver" ) );
+    Assert.assertTrue( new JobEntrySparkSubmit( "" ).generateDriverPodName().startsWith( "spark-" ) );
+  }
+
+  @Test
+  public void testPythonApplication() throws Exception {
+    File dir = Files.createTempDir();
+    File requirements = new File( dir, "requirements.txt" );
+    Files.write( "acme==1.0\n", requirements, Charsets.UTF_8 );
+    final PythonEnvironmentBuilderTest.FakePipBuilder builder = new PythonEnvironmentBuilderTest.FakePipBuilder();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      PythonEnvironmentBuilder createPythonEnvironmentBuilder() {
+        return builder;
+      }
+    };
+    ss.setScriptPath( "spark-submit" );
+    ss.setMaster( "yarn" );
+    ss.setJar( "app.py" );
+    ss.setPyFiles( "lib.zip" );
+    ss.setPythonRequirements( requirements.getPath() );
+    ss.setPythonEnvironmentStore( new PythonEnvironmentStore( new File( dir, "envs" ) ) );
+    Assert.assertTrue( ss.isPythonApplication() );
+
+    String archive = ss.getPythonArchive();
+    Assert.assertEquals( "N", ss.getVariable( JobEntrySparkSubmit.PYTHON_ENV_CACHED_VARIABLE ) );
+    Assert.assertTrue( new File( archive ).isFile() );
+    // unchanged requirements are installed once
+    Assert.assertEquals( archive, ss.getPythonArchive() );
+    Assert.assertEquals( "Y", ss.getVariable( JobEntrySparkSubmit.PYTHON_ENV_CACHED_VARIABLE ) );
+    Assert.assertEquals( 1, builder.installs );
+    Files.write( "acme==1.1\n", requirements, Charsets.UTF_8 );
+    requirements.setLastModified( requirements.lastModified() + 2000 );
+    Assert.assertFalse( archive.equals( ss.getPythonArchive() ) );
+    Assert.assertEquals( 2, builder.installs );
+
+    // published once to the archive location
+    File location = new File( dir, "cluster" );
+    ss.setPythonArchiveLocation( location.getPath() );
+    String published = ss.getPythonArchive();
+    Assert.assertEquals( 1, location.list().length );
+    Assert.assertEquals( published, ss.getPythonArchive() );
+    Assert.assertEquals( 1, location.list().length );
+
+    ss.setConfigParams( Arrays.asList( "spark.executorEnv.PYTHONPATH=/opt/lib" ) );
+    Assert.assertTrue( ss.getPythonConfParams().contains( "spark.executorEnv.PYTHONPATH=pyenv:/opt/lib" ) );
+    Assert.assertTrue( ss.getPythonConfParams().contains( "spark.yarn.appMasterEnv.PYTHONPATH=pyenv" ) );
+
+    // the environment can't be built
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setPythonRequirements( new File( dir, "missing.txt" ).getPath() );
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertEquals( 1, result.getNrErrors() );
+  }
+
+  @Test
+  public void testPythonCmds() throws Exception {
+    File dir = Files.createTempDir();
+    File requirements = new File( dir, "requirements.txt" );
+    Files.write( "acme==1.0\n", requirements, Charsets.UTF_8 );
+    File spark = new File( dir, "spark-submit" );
+    Files.write( "", spark, Charsets.UTF_8 );
+    final List<List<String>> submitted = new ArrayList<List<String>>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      PythonEnvironmentBuilder createPythonEnvironmentBuilder() {
+        return new PythonEnvironmentBuilderTest.FakePipBuilder();
+      }
+
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        submitted.add( cmds );
+        return new FakeSparkSubmitProcess( 0 );
+      }
+    };
+    ss.setScriptPath( spark.getPath() );
+    ss.setMaster( "yarn" );
+    ss.setJar( "app.py" );
+    ss.setPyFiles( "lib.zip" );
+    ss.setPythonRequirements( requirements.getPath() );
+    ss.setPythonEnvironmentStore( new PythonEnvironmentStore( new File( dir, "envs" ) ) );
+    ss.setConfigParams( Arrays.asList( "spark.archives=data.zip#data" ) );
+    ss.setParentJob( new Job() );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+
+    List<String> cmds = submitted.get( 0 );
+    Assert.assertEquals( "lib.zip", cmds.get( cmds.indexOf( "--py-files" ) + 1 ) );
+    String archives = cmds.get( cmds.indexOf( "--archives" ) + 1 );
+    Assert.assertTrue( archives, archives.startsWith( "data.zip#data," ) && archives.endsWith( "pyenv.zip#pyenv" ) );
+    Assert.assertTrue( cmds.contains( "spark.executorEnv.PYTHONPATH=pyenv" ) );
+    Assert.assertEquals( "app.py", cmds.get( cmds.size() - 1 ) );
+  }
+
+  @Test
+  public void testResolvePackages() throws Exception {
+    File repository = Files.createTempDir();
+    File artifact = new File( repository, "com/acme/acme-connector/1.0" );
+    artifact.mkdirs();
+    Files.write( "<project><groupId>com.acme</groupId><artifactId>acme-connector</artifactId>"
+        + "<version>1.0</version></project>", new File( artifact, "acme-connector-1.0.pom" ), Charsets.UTF_8 );
+    Files.write( "connector", new File( artifact, "acme-connector-1.0.jar" ), Charsets.UTF_8 );
+
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setScriptPath( "spark-submit" );
+    ss.setJar( "app.jar" );
+    ss.setPackageCache( new PackageCache( Files.createTempDir() ) );
+    ss.setConfigParams( Arrays.asList( "spark.jars=lib.jar", "spark.jars.packages=com.acme:acme-connector:1.0",
+        "spark.jars.repositories=" + repository.toURI() ) );
+    Assert.assertTrue( ss.resolvePackages() );
+    List<String> cmds = ss.getCmds();
+    Assert.assertFalse( cmds.toString(), cmds.toString().contains( "spark.jars.packages" ) );
+    Assert.assertFalse( cmds.toString(), cmds.toString().contains( "spark.jars.repositories" ) );
+    String jars = cmds.get( cmds.lastIndexOf( "--conf" ) + 1 );
+    Assert.assertTrue( jars, jars.startsWith( "spark.jars=lib.jar," ) && jars.endsWith( "acme-connector-1.0.jar" ) );
+
+    // left to spark-submit when the package can't be resolved
+    ss = new JobEntrySparkSubmit();
+    ss.setPackageCache( new PackageCache( Files.createTempDir() ) );
+    ss.setConfigParams( Arrays.asList( "spark.jars.packages=com.acme:acme-missing:1.0",
+        "spark.jars.repositories=" + repository.toURI() ) );
+    Assert.assertFalse( ss.resolvePackages() );
+    Assert.assertEquals( "com.acme:acme-missing:1.0", ss.getConfigParam( "spark.jars.packages" ) );
+  }
+
+  @Test
+  public void testHangTimeout() throws Exception {
+    final FakeSparkSubmitProcess process =
+        new FakeSparkSubmitProcess( 0, "INFO Client: Application report for application_1_0001 (state: RUNNING)",
+            "sleep 30000" );
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return process;
+      }
+    };
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+    ss.setHangTimeout( "1" );
+    File dir = Files.createTempDir();
+    ss.setDiagnosticsDirectory( dir );
+
+    long start = System.currentTimeMillis();
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertTrue( System.currentTimeMillis() - start < 20000 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertTrue( process.isDestroyed() );
+    Assert.assertEquals( "HANG", job.getVariable( JobEntrySparkSubmit.TIMEOUT_VARIABLE ) );
+    File diagnostics = new File( job.getVariable( JobEntrySparkSubmit.DIAGNOSTICS_VARIABLE ) );
+    Assert.assertEquals( dir, diagnostics.getParentFile() );
+    Assert.assertTrue( diagnostics.isFile() );
+  }
+
+  @Test
+  public void testLongRunningClusterApplicationIsNotHung() throws Exception {
+    List<String> script = new ArrayList<String>();
+    script.add( "INFO Client: Submitted application application_1_0001" );
+    for ( int i = 0; i < 12; i++ ) {
+      script.add( "INFO Client: Application report for application_1_0001 (state: RUNNING)" );
+      script.add( "sleep 250" );
+    }
+    script.add( "INFO Client: Application report for application_1_0001 (state: FINISHED)" );
+    final FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, script.toArray( new String[0] ) );
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return process;
+      }
+    };
+    Job job = new Job();
+    ss.setParentJob( job );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+    ss.setMaster( "yarn-cluster" );
+    ss.setHangTimeout( "1" );
+
+    // runs three times longer than the hang timeout
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertTrue( result.getResult() );
+    Assert.assertFalse( process.isDestroyed() );
+    Assert.assertEquals( "", job.getVariable( JobEntrySparkSubmit.TIMEOUT_VARIABLE ) );
+  }
+
+  @Test
+  public void testPartitionConfParams() throws Exception {
+    InputSize.clear();
+    File dir = Files.createTempDir();
+    Files.write( new byte[5 * 1024 * 1024], new File( dir, "part-00000" ) );
+    Files.write( new byte[4 * 1024 * 1024], new File( dir, "part-00001" ) );
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit();
+    ss.setInputPaths( Arrays.asList( dir.getPath() ) );
+    Assert.assertTrue( ss.getPartitionConfParams().isEmpty() );
+
+    ss.setPartitionSize( "1m" );
+    ss.setConfigParams( new ArrayList<String>( Arrays.asList( "spark.executor.instances=2",
+        "spark.executor.cores=2" ) ) );
+    // 9 partitions rounded up to a multiple of 4 cores
+    Assert.assertEquals( Arrays.asList( "spark.sql.files.maxPartitionBytes=1048576", "spark.sql.shuffle.partitions=12",
+        "spark.default.parallelism=12" ), ss.getPartitionConfParams() );
+
+    ss.getConfigParams().add( "spark.sql.shuffle.partitions=50" );
+    Assert.assertEquals( Arrays.asList( "spark.sql.files.maxPartitionBytes=1048576", "spark.default.parallelism=12" ),
+        ss.getPartitionConfParams() );
+  }
+
+  @Test
+  public void testPreflight() throws Exception {
+    File dir = Files.createTempDir();
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ), new ClassFileBuilder( "com/acme/Main" ).method(
+        ClassFileInfo.ACC_PUBLIC | ClassFileInfo.ACC_STATIC, "main", JarPreflight.MAIN_DESCRIPTOR ) );
+    final List<List<String>> started = new ArrayList<List<String>>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        started.add( cmds );
+        return new FakeSparkSubmitProcess( 0 );
+      }
+    };
+    File store = Files.createTempDir();
+    ss.setPreflightStore( new PreflightStore( store ) );
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( jar.getPath() );
+    ss.setClassName( "com.acme.Mian" );
+    ss.setPreflight( true );
+
+    Result result = ss.execute( new Result(), 0 );
+    Assert.assertFalse( result.getResult() );
+    Assert.assertTrue( started.isEmpty() );
+    Assert.assertEquals( 1, store.list().length );
+
+    ss.setClassName( "com.acme.Main" );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, started.size() );
+    Assert.assertEquals( 2, store.list().length );
+  }
+
+  @Test
+  public void testPreflightExtraJars() throws Exception {
+    File dir = Files.createTempDir();
+    File sparkHome = new File( dir, "spark" );
+    new File( sparkHome, "bin" ).mkdirs();
+    new File( sparkHome, "jars" ).mkdirs();
+    Files.touch( new File( sparkHome, "bin/spark-submit" ) );
+    ClassFileBuilder.writeJar( new File( sparkHome, "jars/spark-core.jar" ), new ClassFileBuilder(
+        "org/apache/spark/SparkContext" ) );
+    File jar = ClassFileBuilder.writeJar( new File( dir, "app.jar" ), new ClassFileBuilder( "com/acme/Main" ).method(
+        ClassFileInfo.ACC_PUBLIC | ClassFileInfo.ACC_STATIC, "main", JarPreflight.MAIN_DESCRIPTOR ).reference(
+            "com/lib/Util" ) );
+    File lib = ClassFileBuilder.writeJar( new File( dir, "lib.jar" ), new ClassFileBuilder( "com/lib/Util" ) );
+    final List<List<String>> started = new ArrayList<List<String>>();
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        started.add( cmds );
+        return new FakeSparkSubmitProcess( 0 );
+      }
+    };
+    ss.setPreflightStore( new PreflightStore( Files.createTempDir() ) );
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( new File( sparkHome, "bin/spark-submit" ).getPath() );
+    ss.setJar( jar.getPath() );
+    ss.setClassName( "com.acme.Main" );
+    ss.setPreflight( true );
+
+    Assert.assertFalse( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertTrue( started.isEmpty() );
+
+    ss.setConfigParams( new ArrayList<String>( Arrays.asList( "spark.jars=" + lib.toURI() ) ) );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 1, started.size() );
+
+    // packages spark-submit resolves by itself are unknown
+    ss.setConfigParams( new ArrayList<String>( Arrays.asList( "spark.jars.packages=com.lib:util:1.0" ) ) );
+    Assert.assertNull( ss.getExtraJars() );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 2, started.size() );
+
+    // the jar can't be read, spark-submit reports it
+    ss.setConfigParams( new ArrayList<String>() );
+    ss.setJar( new File( dir, "missing.jar" ).getPath() );
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertEquals( 3, started.size() );
+  }
+
+  @Test
+  public void testSubmissionEventListener() throws Exception {
+    JobEntrySparkSubmit ss = new JobEntrySparkSubmit() {
+      @Override
+      protected Process startProcess( List<String> cmds ) throws IOException {
+        return new FakeSparkSubmitProcess( 0, "INFO Client: Application report for application_1_0001 (state: RUNNING)",
+            "INFO Client: Application report for application_1_0001 (state: FINISHED)" );
+      }
+    };
+    final List<SubmissionEvent.Type> events = new CopyOnWriteArrayList<SubmissionEvent.Type>();
+    final CountDownLatch finished = new CountDownLatch( 1 );
+    ss.addSubmissionEventListener( new SubmissionEventBus.Listener() {
+      @Override
+      public void onEvent( SubmissionEvent event ) {
+        events.add( event.getType() );
+        if ( event.getType() == SubmissionEvent.Type.FINISHED ) {
+          finished.countDown();
+        }
+      }
+    } );
+    ss.setParentJob( new Job() );
+    ss.setScriptPath( "." );
+    ss.setJar( "app.jar" );
+
+    Assert.assertTrue( ss.execute( new Result(), 0 ).getResult() );
+    Assert.assertTrue( finished.await( 5, TimeUnit.SECONDS ) );
+    Assert.assertEquals( Arrays.asList( SubmissionEvent.Type.STARTED, SubmissionEvent.Type.APPLICATION_ID,
+        SubmissionEvent.Type.STATE_CHANGED, SubmissionEvent.Type.STATE_CHANGED, SubmissionEvent.Type.FINISHED ),
+        events );
+  }
 }
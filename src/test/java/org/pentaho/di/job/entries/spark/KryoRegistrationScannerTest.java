@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KryoRegistrationScannerTest {
+  private static final String SCALA_SERIALIZABLE = "scala/Serializable";
+
+  @Test
+  public void testReadClassFile() throws Exception {
+    InputStream is = getClass().getResourceAsStream( "ClassFileInfo.class" );
+    try {
+      ClassFileInfo info = ClassFileInfo.read( is );
+      Assert.assertEquals( "org/pentaho/di/job/entries/spark/ClassFileInfo", info.getName() );
+      Assert.assertEquals( "java/lang/Object", info.getSuperName() );
+      Assert.assertTrue( info.getReferencedTypes().contains( "java/io/DataInputStream" ) );
+      Assert.assertTrue( info.getFieldTypes().contains( "java/util/List" ) );
+      boolean found = false;
+      for ( ClassFileInfo.Member method : info.getMethods() ) {
+        found |= "read".equals( method.getName() );
+      }
+      Assert.assertTrue( found );
+    } finally {
+      is.close();
+    }
+
+    ClassFileInfo built = ClassFileInfo.read( new ByteArrayInputStream( new ClassFileBuilder( "com/acme/Person" )
+        .implement( "scala/Product", SCALA_SERIALIZABLE ).field( "addresses", "[Lcom/acme/Address;" ).build() ) );
+    Assert.assertEquals( "com.acme.Person", built.getClassName() );
+    Assert.assertEquals( Arrays.asList( "scala/Product", SCALA_SERIALIZABLE ), built.getInterfaces() );
+    Assert.assertEquals( Collections.singletonList( "com/acme/Address" ), built.getFieldTypes() );
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    File jar = ClassFileBuilder.writeJar( new File( Files.createTempDir(), "app.jar" ),
+        // driver and closures
+        new ClassFileBuilder( "com/acme/Main$" ).reference( "org/apache/spark/rdd/RDD" )
+            .reference( "com/acme/Person" ).reference( "com/acme/Config" ),
+        new ClassFileBuilder( "com/acme/Main$$anonfun$1" ).superName( "scala/runtime/AbstractFunction1" )
+            .implement( SCALA_SERIALIZABLE ).reference( "com/acme/Order" ),
+        new ClassFileBuilder( "com/acme/JavaJob$1" ).implement( "org/apache/spark/api/java/function/Function" )
+            .field( "rate", "Lcom/acme/Rate;" ),
+        // domain classes
+        new ClassFileBuilder( "com/acme/Person" ).implement( "scala/Product", SCALA_SERIALIZABLE )
+            .field( "address", "Lcom/acme/Address;" ),
+        new ClassFileBuilder( "com/acme/Address" ).superName( "com/acme/Entity" ),
+        new ClassFileBuilder( "com/acme/Entity" ).access( ClassFileInfo.ACC_PUBLIC | ClassFileInfo.ACC_ABSTRACT )
+            .implement( "java/io/Serializable" ),
+        new ClassFileBuilder( "com/acme/Order" ).implement( "java/io/Serializable" ),
+        new ClassFileBuilder( "com/acme/Rate" ).implement( "java/io/Serializable" ),
+        // not serializable, not referenced from Spark code, companion object
+        new ClassFileBuilder( "com/acme/Config" ),
+        new ClassFileBuilder( "com/acme/Unused" ).implement( "java/io/Serializable" ),
+        new ClassFileBuilder( "com/acme/Person$" ).implement( SCALA_SERIALIZABLE ) );
+
+    InputStream is = new FileInputStream( jar );
+    try {
+      List<String> classes = KryoRegistrationScanner.scan( is );
+      Assert.assertEquals( Arrays.asList( "com.acme.Address", "com.acme.Order", "com.acme.Person", "com.acme.Rate" ),
+          classes );
+    } finally {
+      is.close();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KubernetesPodWatchTest {
+  private MockKubernetesApiServer server;
+  private KubernetesApplicationClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockKubernetesApiServer();
+    server.start();
+    client = new KubernetesApplicationClient( server.getUrl(), "spark", null );
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  public void testApiServerUrl() {
+    Assert.assertEquals( "https://k8s:6443", KubernetesApplicationClient.getApiServerUrl( "k8s://https://k8s:6443" ) );
+    Assert.assertEquals( "https://k8s:443", KubernetesApplicationClient.getApiServerUrl( "k8s://k8s:443" ) );
+    Assert.assertEquals( "http://k8s:8080", KubernetesApplicationClient.getApiServerUrl( "k8s://http://k8s:8080" ) );
+    Assert.assertNull( KubernetesApplicationClient.getApiServerUrl( "yarn-cluster" ) );
+  }
+
+  @Test
+  public void testPodsShareOneWatch() throws Exception {
+    KubernetesPodWatch watch = client.getWatch();
+    Assert.assertSame( watch, new KubernetesApplicationClient( server.getUrl(), "spark", null ).getWatch() );
+    watch.watch( "first-driver" );
+    watch.watch( "second-driver" );
+    try {
+      server.setPhase( "first-driver", KubernetesApplicationClient.PHASE_PENDING );
+      server.setPhase( "second-driver", KubernetesApplicationClient.PHASE_RUNNING );
+      server.setPhase( "other-driver", KubernetesApplicationClient.PHASE_RUNNING );
+      server.setPhase( "first-driver", KubernetesApplicationClient.PHASE_SUCCEEDED );
+      server.setPhase( "second-driver", KubernetesApplicationClient.PHASE_FAILED );
+
+      ApplicationStatus first = watch.awaitFinal( "first-driver", 5000 );
+      Assert.assertTrue( first.isSucceeded() );
+      ApplicationStatus second = watch.awaitFinal( "second-driver", 5000 );
+      Assert.assertEquals( ApplicationReportParser.STATE_FAILED, second.getState() );
+      Assert.assertFalse( second.isSucceeded() );
+      Assert.assertNull( watch.getStatus( "other-driver" ) );
+      Assert.assertEquals( 1, watch.getConnections() );
+      Assert.assertSame( first, client.getApplicationStatus( "first-driver" ) );
+    } finally {
+      watch.unwatch( "first-driver" );
+      watch.unwatch( "second-driver" );
+    }
+    Assert.assertNull( watch.getStatus( "first-driver" ) );
+  }
+
+  @Test
+  public void testDeletingPodKillsApplication() throws Exception {
+    KubernetesPodWatch watch = client.getWatch();
+    watch.watch( "killed-driver" );
+    try {
+      server.setPhase( "killed-driver", KubernetesApplicationClient.PHASE_RUNNING );
+      while ( watch.getStatus( "killed-driver" ) == null ) {
+        Thread.sleep( 10 );
+      }
+      Assert.assertEquals( ApplicationReportParser.STATE_RUNNING, watch.getStatus( "killed-driver" ).getState() );
+      client.killApplication( "killed-driver" );
+      Assert.assertEquals( "[killed-driver]", server.getDeleted().toString() );
+      Assert.assertEquals( ApplicationReportParser.STATE_KILLED, watch.awaitFinal( "killed-driver", 5000 ).getState() );
+      // already gone
+      client.killApplication( "killed-driver" );
+    } finally {
+      watch.unwatch( "killed-driver" );
+    }
+  }
+
+  @Test
+  public void testExpiredWatchListsAgain() throws Exception {
+    KubernetesPodWatch watch = client.getWatch();
+    watch.watch( "expired-driver" );
+    try {
+      server.setPhase( "expired-driver", KubernetesApplicationClient.PHASE_RUNNING );
+      while ( watch.getStatus( "expired-driver" ) == null ) {
+        Thread.sleep( 10 );
+      }
+      int lists = server.getLists();
+      server.expireWatches();
+      server.setPhase( "expired-driver", KubernetesApplicationClient.PHASE_SUCCEEDED );
+      Assert.assertTrue( watch.awaitFinal( "expired-driver", 5000 ).isSucceeded() );
+      Assert.assertTrue( server.getLists() > lists || server.getWatches() > 1 );
+    } finally {
+      watch.unwatch( "expired-driver" );
+    }
+  }
+
+  @Test
+  public void testExpiredWatchBacksOff() throws Exception {
+    KubernetesPodWatch watch = client.getWatch();
+    server.setExpiring( true );
+    watch.watch( "throttled-driver" );
+    try {
+      while ( server.getWatches() == 0 ) {
+        Thread.sleep( 10 );
+      }
+      Thread.sleep( 500 );
+      // without the backoff the pods would be listed and watched again right away
+      Assert.assertEquals( 1, server.getWatches() );
+
+      server.setExpiring( false );
+      server.setPhase( "throttled-driver", KubernetesApplicationClient.PHASE_SUCCEEDED );
+      Assert.assertTrue( watch.awaitFinal( "throttled-driver", 5000 ).isSucceeded() );
+    } finally {
+      watch.unwatch( "throttled-driver" );
+    }
+  }
+
+  @Test
+  public void testFailuresAreRecorded() throws Exception {
+    server.stop();
+    KubernetesPodWatch watch = new KubernetesApplicationClient( server.getUrl(), "unreachable", null ).getWatch();
+    watch.watch( "unreachable-driver" );
+    try {
+      // waiters are woken up by every failure
+      long deadline = System.currentTimeMillis() + 5000;
+      while ( watch.getFailures() < 2 && System.currentTimeMillis() < deadline ) {
+        Assert.assertNull( watch.awaitFinal( "unreachable-driver", 5000 ) );
+      }
+      Assert.assertTrue( watch.getFailures() >= 2 );
+      Assert.assertNotNull( watch.getLastError() );
+    } finally {
+      watch.unwatch( "unreachable-driver" );
+    }
+  }
+
+  @Test
+  public void testStatusOfUnwatchedPod() throws Exception {
+    server.setPhase( "lone-driver", KubernetesApplicationClient.PHASE_RUNNING );
+    Assert.assertEquals( ApplicationReportParser.STATE_RUNNING, client.getApplicationStatus( "lone-driver" )
+        .getState() );
+    Assert.assertNull( client.getApplicationStatus( "missing-driver" ) );
+    Assert.assertEquals( 0, server.getWatches() );
+  }
+}
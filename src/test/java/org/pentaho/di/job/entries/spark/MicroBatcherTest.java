@@ -0,0 +1,111 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MicroBatcherTest {
+  private static class RecordingRunner implements MicroBatcher.BatchRunner {
+    private final List<List<BatchItem>> batches = new CopyOnWriteArrayList<List<BatchItem>>();
+
+    @Override
+    public void run( List<BatchItem> items ) throws Exception {
+      batches.add( items );
+      for ( BatchItem item : items ) {
+        item.complete( !item.getArgs().contains( "bad" ), null );
+      }
+    }
+  }
+
+  @Test
+  public void testFlushOnSize() throws Exception {
+    RecordingRunner runner = new RecordingRunner();
+    List<BatchItem> items = new ArrayList<BatchItem>();
+    for ( String arg : Arrays.asList( "a", "bad", "c" ) ) {
+      items.add( MicroBatcher.add( "size", Collections.singletonList( arg ), 60000, 3, runner ) );
+    }
+    for ( BatchItem item : items ) {
+      Assert.assertTrue( item.await( 5000 ) );
+    }
+    Assert.assertEquals( 1, runner.batches.size() );
+    Assert.assertEquals( 3, runner.batches.get( 0 ).size() );
+    Assert.assertTrue( items.get( 0 ).isSucceeded() );
+    Assert.assertFalse( items.get( 1 ).isSucceeded() );
+    Assert.assertTrue( items.get( 2 ).isSucceeded() );
+    Assert.assertEquals( Arrays.asList( 0, 1, 2 ), Arrays.asList( items.get( 0 ).getId(), items.get( 1 ).getId(),
+        items.get( 2 ).getId() ) );
+  }
+
+  @Test
+  public void testFlushOnWindow() throws Exception {
+    RecordingRunner runner = new RecordingRunner();
+    BatchItem first = MicroBatcher.add( "window", Collections.singletonList( "a" ), 200, 0, runner );
+    BatchItem second = MicroBatcher.add( "window", Collections.singletonList( "b" ), 200, 0, runner );
+    Assert.assertFalse( first.isDone() );
+    Assert.assertTrue( first.await( 5000 ) );
+    Assert.assertTrue( second.await( 5000 ) );
+    Assert.assertEquals( 1, runner.batches.size() );
+    Assert.assertEquals( 2, runner.batches.get( 0 ).size() );
+
+    BatchItem next = MicroBatcher.add( "window", Collections.singletonList( "c" ), 200, 0, runner );
+    Assert.assertTrue( next.await( 5000 ) );
+    Assert.assertEquals( 2, runner.batches.size() );
+    Assert.assertEquals( 0, next.getId() );
+  }
+
+  @Test
+  public void testSeparateKeys() throws Exception {
+    RecordingRunner runner = new RecordingRunner();
+    BatchItem first = MicroBatcher.add( "key1", Collections.singletonList( "a" ), 60000, 2, runner );
+    BatchItem second = MicroBatcher.add( "key2", Collections.singletonList( "b" ), 60000, 2, runner );
+    Assert.assertFalse( first.await( 200 ) );
+    Assert.assertFalse( second.isDone() );
+    MicroBatcher.flushAll();
+    Assert.assertTrue( first.await( 5000 ) );
+    Assert.assertTrue( second.await( 5000 ) );
+    Assert.assertEquals( 2, runner.batches.size() );
+    Assert.assertEquals( 0, MicroBatcher.getPendingCount() );
+  }
+
+  @Test
+  public void testRunnerFailure() throws Exception {
+    BatchItem item = MicroBatcher.add( "failure", Collections.singletonList( "a" ), 0, 0,
+        new MicroBatcher.BatchRunner() {
+          @Override
+          public void run( List<BatchItem> items ) throws Exception {
+            throw new IllegalStateException( "spark-submit not found" );
+          }
+        } );
+    Assert.assertTrue( item.await( 5000 ) );
+    Assert.assertFalse( item.isSucceeded() );
+    Assert.assertEquals( "spark-submit not found", item.getMessage() );
+  }
+}
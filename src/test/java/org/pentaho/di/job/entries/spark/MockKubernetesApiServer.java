@@ -0,0 +1,231 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Kubernetes API server serving pods of a single namespace: list, get, delete and watch. Watches replay the changes
+ * made after the requested resource version, like the real API server does.
+ */
+public class MockKubernetesApiServer {
+  private static final String EXPIRED = "";
+
+  private HttpServer server;
+  private ExecutorService executor = Executors.newCachedThreadPool();
+  private Map<String, String> phases = new LinkedHashMap<String, String>();
+  private List<String[]> history = new ArrayList<String[]>();
+  private List<BlockingQueue<String>> watchers = new CopyOnWriteArrayList<BlockingQueue<String>>();
+  private List<String> deleted = new CopyOnWriteArrayList<String>();
+  private AtomicInteger lists = new AtomicInteger();
+  private AtomicInteger watches = new AtomicInteger();
+  private int version = 100;
+  private volatile boolean expiring;
+  private volatile boolean stopped;
+
+  public void start() throws IOException {
+    server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+    server.setExecutor( executor );
+    server.createContext( "/api/v1/namespaces/", new HttpHandler() {
+      @Override
+      public void handle( HttpExchange exchange ) throws IOException {
+        try {
+          dispatch( exchange );
+        } finally {
+          exchange.close();
+        }
+      }
+    } );
+    server.start();
+  }
+
+  public void stop() {
+    stopped = true;
+    server.stop( 0 );
+    executor.shutdownNow();
+  }
+
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public synchronized void setPhase( String pod, String phase ) {
+    String type = phases.containsKey( pod ) ? "MODIFIED" : "ADDED";
+    phases.put( pod, phase );
+    publish( type, pod, phase );
+  }
+
+  /**
+   * Ends open watches with an expired resource version error
+   */
+  public void expireWatches() {
+    for ( BlockingQueue<String> watcher : watchers ) {
+      watcher.add( "{\"type\":\"ERROR\",\"object\":{\"kind\":\"Status\",\"code\":410}}" );
+      watcher.add( EXPIRED );
+    }
+  }
+
+  /**
+   * Ends every watch opened from now on with an expired resource version error, like a throttling API server
+   */
+  public void setExpiring( boolean expiring ) {
+    this.expiring = expiring;
+  }
+
+  public List<String> getDeleted() {
+    return deleted;
+  }
+
+  public int getLists() {
+    return lists.get();
+  }
+
+  public int getWatches() {
+    return watches.get();
+  }
+
+  private void publish( String type, String pod, String phase ) {
+    version++;
+    String event = "{\"type\":\"" + type + "\",\"object\":" + toJson( pod, phase ) + "}";
+    history.add( new String[] { String.valueOf( version ), event } );
+    for ( BlockingQueue<String> watcher : watchers ) {
+      watcher.add( event );
+    }
+  }
+
+  private String toJson( String pod, String phase ) {
+    return "{\"kind\":\"Pod\",\"metadata\":{\"name\":\"" + pod + "\",\"resourceVersion\":\"" + version
+        + "\",\"labels\":{\"spark-role\":\"driver\"}},\"status\":{\"phase\":\"" + phase + "\"}}";
+  }
+
+  private void dispatch( HttpExchange exchange ) throws IOException {
+    String[] path = exchange.getRequestURI().getPath().split( "/" );
+    String query = exchange.getRequestURI().getQuery();
+    // "", api, v1, namespaces, <namespace>, pods[, <pod>]
+    String pod = path.length > 6 ? path[6] : null;
+    if ( "DELETE".equals( exchange.getRequestMethod() ) && pod != null ) {
+      synchronized ( this ) {
+        deleted.add( pod );
+        String phase = phases.remove( pod );
+        if ( phase == null ) {
+          respond( exchange, 404, "{}" );
+          return;
+        }
+        publish( "DELETED", pod, phase );
+      }
+      respond( exchange, 200, "{}" );
+    } else if ( pod != null ) {
+      String json;
+      synchronized ( this ) {
+        json = phases.containsKey( pod ) ? toJson( pod, phases.get( pod ) ) : null;
+      }
+      respond( exchange, json == null ? 404 : 200, json == null ? "{}" : json );
+    } else if ( query != null && query.contains( "watch=true" ) ) {
+      watch( exchange, query );
+    } else {
+      lists.incrementAndGet();
+      StringBuilder json = new StringBuilder();
+      synchronized ( this ) {
+        json.append( "{\"kind\":\"PodList\",\"metadata\":{\"resourceVersion\":\"" ).append( version ).append(
+            "\"},\"items\":[" );
+        String separator = "";
+        for ( Map.Entry<String, String> entry : phases.entrySet() ) {
+          json.append( separator ).append( toJson( entry.getKey(), entry.getValue() ) );
+          separator = ",";
+        }
+      }
+      respond( exchange, 200, json.append( "]}" ).toString() );
+    }
+  }
+
+  private void watch( HttpExchange exchange, String query ) throws IOException {
+    watches.incrementAndGet();
+    long from = 0;
+    for ( String param : query.split( "&" ) ) {
+      if ( param.startsWith( "resourceVersion=" ) ) {
+        from = Long.parseLong( param.substring( "resourceVersion=".length() ) );
+      }
+    }
+    BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+    synchronized ( this ) {
+      for ( String[] event : history ) {
+        if ( Long.parseLong( event[0] ) > from ) {
+          queue.add( event[1] );
+        }
+      }
+      watchers.add( queue );
+    }
+    if ( expiring ) {
+      queue.add( "{\"type\":\"ERROR\",\"object\":{\"kind\":\"Status\",\"code\":410}}" );
+      queue.add( EXPIRED );
+    }
+    try {
+      exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+      exchange.sendResponseHeaders( 200, 0 );
+      OutputStream os = exchange.getResponseBody();
+      while ( !stopped ) {
+        String event = queue.poll( 100, TimeUnit.MILLISECONDS );
+        if ( event == EXPIRED ) {
+          break;
+        }
+        if ( event != null ) {
+          os.write( ( event + "\n" ).getBytes( "UTF-8" ) );
+          os.flush();
+        }
+      }
+    } catch ( InterruptedException e ) {
+      // server stopped
+    } catch ( IOException e ) {
+      // watcher disconnected
+    } finally {
+      watchers.remove( queue );
+    }
+  }
+
+  private static void respond( HttpExchange exchange, int code, String body ) throws IOException {
+    byte[] bytes = body.getBytes( "UTF-8" );
+    exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+    exchange.sendResponseHeaders( code, bytes.length );
+    OutputStream os = exchange.getResponseBody();
+    os.write( bytes );
+    os.close();
+  }
+}
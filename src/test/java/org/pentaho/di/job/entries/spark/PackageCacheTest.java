@@ -0,0 +1,239 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+public class PackageCacheTest {
+  private File repository;
+  private File cacheDir;
+  private final AtomicLong clock = new AtomicLong( 1000000 );
+  private PackageCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = Files.createTempDir();
+    cacheDir = Files.createTempDir();
+    cache = new PackageCache( cacheDir ) {
+      @Override
+      protected long now() {
+        return clock.get();
+      }
+    };
+
+    writePom( "com.acme", "acme-parent", "1.0", "<packaging>pom</packaging>"
+        + "<properties><commons.version>2.1</commons.version></properties>"
+        + "<dependencyManagement><dependencies>"
+        + dependency( "com.acme", "acme-commons", "${commons.version}", null )
+        + "</dependencies></dependencyManagement>" );
+    writeArtifact( "com.acme", "acme-connector", "1.0", "<parent><groupId>com.acme</groupId>"
+        + "<artifactId>acme-parent</artifactId><version>1.0</version></parent><dependencies>"
+        + dependency( "${project.groupId}", "acme-commons", null, null )
+        + dependency( "com.acme", "acme-testkit", "1.0", "<scope>test</scope>" )
+        + dependency( "com.acme", "acme-extras", "1.0", "<optional>true</optional>" )
+        + dependency( "org.apache.spark", "spark-core_2.11", "2.4.0", null )
+        + dependency( "com.acme", "acme-json", "1.0", "<exclusions><exclusion><groupId>com.acme</groupId>"
+            + "<artifactId>acme-legacy</artifactId></exclusion></exclusions>" ) + "</dependencies>" );
+    writeArtifact( "com.acme", "acme-commons", "1.0", "" );
+    writeArtifact( "com.acme", "acme-commons", "2.1", "" );
+    writeArtifact( "com.acme", "acme-legacy", "1.0", "" );
+    writeArtifact( "com.acme", "acme-json", "1.0", "<dependencies>"
+        + dependency( "com.acme", "acme-commons", "1.0", null )
+        + dependency( "com.acme", "acme-legacy", "1.0", null ) + "</dependencies>" );
+  }
+
+  private static String dependency( String groupId, String artifactId, String version, String extra ) {
+    return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+        + ( version == null ? "" : "<version>" + version + "</version>" ) + ( extra == null ? "" : extra )
+        + "</dependency>";
+  }
+
+  private File getFile( String groupId, String artifactId, String version, String extension ) {
+    return new File( repository, groupId.replace( '.', '/' ) + "/" + artifactId + "/" + version + "/" + artifactId
+        + "-" + version + "." + extension );
+  }
+
+  private void writePom( String groupId, String artifactId, String version, String content ) throws Exception {
+    File pom = getFile( groupId, artifactId, version, "pom" );
+    pom.getParentFile().mkdirs();
+    Files.write( "<?xml version=\"1.0\"?><project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+        + "<modelVersion>4.0.0</modelVersion><groupId>" + groupId + "</groupId><artifactId>" + artifactId
+        + "</artifactId><version>" + version + "</version>" + content + "</project>", pom, Charsets.UTF_8 );
+  }
+
+  private void writeArtifact( String groupId, String artifactId, String version, String content ) throws Exception {
+    writePom( groupId, artifactId, version, content );
+    Files.write( artifactId + "-" + version, getFile( groupId, artifactId, version, "jar" ), Charsets.UTF_8 );
+  }
+
+  private List<File> resolve( String... coordinates ) throws KettleException {
+    return cache.resolve( Arrays.asList( coordinates ), Collections.<String>emptyList(), Arrays.asList(
+        repository.toURI().toString() ) );
+  }
+
+  private static List<String> names( List<File> jars ) {
+    List<String> names = new ArrayList<String>();
+    for ( File jar : jars ) {
+      names.add( jar.getName() );
+    }
+    return names;
+  }
+
+  @Test
+  public void testResolvesDependencies() throws Exception {
+    List<File> jars = resolve( "com.acme:acme-connector:1.0" );
+    // nearest version of acme-commons wins, test, optional, excluded and provided dependencies are left out
+    Assert.assertEquals( Arrays.asList( "acme-connector-1.0.jar", "acme-commons-2.1.jar", "acme-json-1.0.jar" ),
+        names( jars ) );
+    Assert.assertEquals( "acme-commons-2.1", Files.toString( jars.get( 1 ), Charsets.UTF_8 ) );
+    for ( File jar : jars ) {
+      Assert.assertEquals( new File( cacheDir, "blobs" ), jar.getParentFile().getParentFile() );
+      Assert.assertEquals( Hashing.sha256().hashBytes( Files.toByteArray( jar ) ).toString(), jar.getParentFile()
+          .getName() );
+    }
+  }
+
+  @Test
+  public void testResolvesOffline() throws Exception {
+    List<File> jars = resolve( "com.acme:acme-connector:1.0" );
+    for ( File file : repository.listFiles() ) {
+      deleteRecursively( file );
+    }
+    Assert.assertEquals( jars, resolve( "com.acme:acme-connector:1.0" ) );
+  }
+
+  @Test
+  public void testSharesJarsBetweenResolutions() throws Exception {
+    List<File> connector = resolve( "com.acme:acme-connector:1.0" );
+    getFile( "com.acme", "acme-json", "1.0", "jar" ).delete();
+    // acme-json was downloaded for the first resolution already
+    List<File> json = resolve( "com.acme:acme-json:1.0" );
+    Assert.assertEquals( Arrays.asList( "acme-json-1.0.jar", "acme-commons-1.0.jar", "acme-legacy-1.0.jar" ),
+        names( json ) );
+    Assert.assertEquals( connector.get( 2 ), json.get( 0 ) );
+  }
+
+  @Test
+  public void testExcludes() throws Exception {
+    List<File> jars = cache.resolve( Arrays.asList( "com.acme:acme-json:1.0" ), Arrays.asList(
+        "com.acme:acme-commons" ), Arrays.asList( repository.toURI().toString() ) );
+    Assert.assertEquals( Arrays.asList( "acme-json-1.0.jar", "acme-legacy-1.0.jar" ), names( jars ) );
+  }
+
+  @Test
+  public void testUnresolvable() throws Exception {
+    writeArtifact( "com.acme", "acme-ranged", "1.0", "<dependencies>"
+        + dependency( "com.acme", "acme-commons", "[2.0,3.0)", null ) + "</dependencies>" );
+    try {
+      resolve( "com.acme:acme-ranged:1.0" );
+      Assert.fail( "version range resolved" );
+    } catch ( KettleException e ) {
+      // expected
+    }
+    try {
+      resolve( "com.acme:acme-missing:1.0" );
+      Assert.fail( "missing package resolved" );
+    } catch ( KettleException e ) {
+      // expected
+    }
+    try {
+      resolve( "com.acme:acme-connector" );
+      Assert.fail( "incomplete coordinates resolved" );
+    } catch ( KettleException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEvict() throws Exception {
+    cache.setMaxUnused( 1000 );
+    List<File> connector = resolve( "com.acme:acme-connector:1.0" );
+    clock.addAndGet( 600 );
+    List<File> json = resolve( "com.acme:acme-json:1.0" );
+    clock.addAndGet( 600 );
+
+    // only jars the acme-json resolution doesn't use are removed
+    Assert.assertEquals( 2, cache.evict() );
+    Assert.assertFalse( connector.get( 0 ).exists() );
+    Assert.assertFalse( connector.get( 1 ).exists() );
+    for ( File jar : json ) {
+      Assert.assertTrue( jar.exists() );
+    }
+    clock.addAndGet( 1000 );
+    Assert.assertEquals( 3, cache.evict() );
+    Assert.assertEquals( 0, new File( cacheDir, "blobs" ).list().length );
+  }
+
+  @Test
+  public void testConcurrentResolution() throws Exception {
+    final List<Object> results = Collections.synchronizedList( new ArrayList<Object>() );
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( int i = 0; i < 4; i++ ) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            results.add( new PackageCache( cacheDir ).resolve( Arrays.asList( "com.acme:acme-connector:1.0" ),
+                Collections.<String>emptyList(), Arrays.asList( repository.toURI().toString() ) ) );
+          } catch ( KettleException e ) {
+            results.add( e );
+          }
+        }
+      };
+      thread.start();
+      threads.add( thread );
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    Assert.assertEquals( 4, results.size() );
+    for ( Object result : results ) {
+      Assert.assertEquals( results.get( 0 ), result );
+    }
+    Assert.assertEquals( 3, new File( cacheDir, "blobs" ).list().length );
+  }
+
+  private static void deleteRecursively( File file ) {
+    File[] children = file.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        deleteRecursively( child );
+      }
+    }
+    file.delete();
+  }
+}
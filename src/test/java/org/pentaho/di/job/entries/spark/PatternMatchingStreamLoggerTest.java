@@ -87,4 +87,20 @@ public class PatternMatchingStreamLoggerTest {
   public void negativeTest() throws InterruptedException, TimeoutException, ExecutionException {
     doTest( nonMatchingPatterns, false );
   }
+
+  @Test
+  public void everyListenerNotified() {
+    AtomicBoolean first = new AtomicBoolean( false );
+    final AtomicBoolean second = new AtomicBoolean( false );
+    PatternMatchingStreamLogger testee = createTestee( matchingPatterns, first );
+    testee.addPatternMatchedListener( new PatternMatchingStreamLogger.PatternMatchedListener() {
+      @Override public void onPatternFound( String pattern ) {
+        second.set( true );
+      }
+    } );
+
+    testee.run();
+    Assert.assertTrue( first.get() );
+    Assert.assertTrue( second.get() );
+  }
 }
@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.pentaho.di.core.CheckResultInterface;
+
+/**
+ * Runs a single performance rule against an entry with the given Spark configuration
+ */
+class PerformanceRuleChecker {
+  private final PerformanceRule rule;
+
+  PerformanceRuleChecker( PerformanceRule rule ) {
+    this.rule = rule;
+  }
+
+  /**
+   * Replaces the entry's configuration parameters and returns the remarks of the rule
+   */
+  List<CheckResultInterface> check( JobEntrySparkSubmit entry, String... configParams ) {
+    entry.setConfigParams( Arrays.asList( configParams ) );
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    rule.check( entry, remarks );
+    return remarks;
+  }
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.variables.Variables;
+
+public class PerformanceRulesTest {
+  @Test
+  public void testRegister() {
+    PerformanceRule rule = new PerformanceRule() {
+      @Override
+      public void check( JobEntrySparkSubmit entry, List<CheckResultInterface> remarks ) {
+        remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_COMMENT, "custom", entry ) );
+      }
+    };
+    JobEntrySparkSubmit entry = new JobEntrySparkSubmit();
+    entry.setRegisterKryo( true );
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    PerformanceRules.check( entry, remarks );
+    Assert.assertTrue( remarks.isEmpty() );
+
+    PerformanceRules.register( rule );
+    try {
+      PerformanceRules.check( entry, remarks );
+      Assert.assertEquals( 1, remarks.size() );
+      Assert.assertEquals( "custom", remarks.get( 0 ).getText() );
+    } finally {
+      PerformanceRules.unregister( rule );
+    }
+    Assert.assertEquals( PerformanceRules.getDefaultRules().size(), PerformanceRules.getRules().size() );
+  }
+
+  @Test
+  public void testEntryCheck() {
+    JobEntrySparkSubmit entry = new JobEntrySparkSubmit();
+    entry.setRegisterKryo( true );
+    entry.setConfigParams( Arrays.asList( "spark.executor.cores=8", "spark.dynamicAllocation.enabled=true" ) );
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    entry.check( remarks, null, new Variables(), null, null );
+    int warnings = 0;
+    int errors = 0;
+    for ( CheckResultInterface remark : remarks ) {
+      warnings += remark.getType() == CheckResultInterface.TYPE_RESULT_WARNING ? 1 : 0;
+      errors += remark.getType() == CheckResultInterface.TYPE_RESULT_ERROR ? 1 : 0;
+    }
+    Assert.assertEquals( 1, warnings );
+    Assert.assertTrue( errors >= 1 );
+  }
+}
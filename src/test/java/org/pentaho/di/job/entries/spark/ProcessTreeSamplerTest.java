@@ -0,0 +1,160 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.io.Files;
+
+public class ProcessTreeSamplerTest {
+  /**
+   * Writes /proc/[pid]/stat and status with the fields the sampler reads and the given number of open files
+   */
+  private void writeProcess( File proc, int pid, String command, int parent, long utime, long stime, int threads,
+      long rssKb, int files ) throws IOException {
+    File dir = new File( proc, String.valueOf( pid ) );
+    new File( dir, "fd" ).mkdirs();
+    for ( int i = 0; i < files; i++ ) {
+      Files.touch( new File( dir, "fd/" + i ) );
+    }
+    String[] fields = new String[ 50 ];
+    for ( int i = 0; i < fields.length; i++ ) {
+      fields[i] = "0";
+    }
+    fields[0] = String.valueOf( pid );
+    fields[1] = "(" + command + ")";
+    fields[2] = "S";
+    fields[3] = String.valueOf( parent );
+    fields[13] = String.valueOf( utime );
+    fields[14] = String.valueOf( stime );
+    fields[19] = String.valueOf( threads );
+    Files.write( Joiner.on( ' ' ).join( fields ) + "\n", new File( dir, "stat" ), Charsets.US_ASCII );
+    Files.write( "Name:\t" + command + "\nVmPeak:\t" + ( rssKb * 2 ) + " kB\nVmRSS:\t" + rssKb + " kB\nThreads:\t"
+        + threads + "\n", new File( dir, "status" ), Charsets.US_ASCII );
+  }
+
+  @Test
+  public void testParseStat() {
+    long[] stat = ProcessTreeSampler.parseStat( "42 (java (main) x) S 7 42 42 0 -1 4194560 100 0 0 0 150 50 3 2 20 0 "
+        + "31 0 1000 3000000 2048 18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 17 1 0 0 0 0 0" );
+    Assert.assertEquals( 7, stat[0] );
+    Assert.assertEquals( 205, stat[1] );
+    Assert.assertEquals( 31, stat[2] );
+    Assert.assertNull( ProcessTreeSampler.parseStat( "42 (java) S 7" ) );
+  }
+
+  @Test
+  public void testParseRss() {
+    Assert.assertEquals( 524288 * 1024L, ProcessTreeSampler.parseRss( "Name:\tjava\nVmHWM:\t  600000 kB\n"
+        + "VmRSS:\t  524288 kB\nRssAnon:\t  500000 kB\n" ) );
+    // kernel threads and zombies don't report it
+    Assert.assertEquals( 0, ProcessTreeSampler.parseRss( "Name:\tkthreadd\nState:\tS (sleeping)\n" ) );
+  }
+
+  @Test
+  public void testProcessTree() throws Exception {
+    File proc = Files.createTempDir();
+    writeProcess( proc, 100, "spark-submit", 1, 300, 100, 20, 102400, 10 );
+    writeProcess( proc, 101, "python worker", 100, 50, 50, 2, 10240, 3 );
+    writeProcess( proc, 102, "R", 101, 0, 0, 1, 1024, 1 );
+    writeProcess( proc, 200, "unrelated", 1, 9999, 9999, 50, 999999, 50 );
+
+    ProcessTreeSampler sampler = new ProcessTreeSampler( proc, 100 );
+    ProcessTreeSample sample = sampler.sample();
+    Assert.assertEquals( 3, sample.getProcesses() );
+    Assert.assertEquals( 5000, sample.getCpuMillis() );
+    Assert.assertEquals( ( 102400 + 10240 + 1024 ) * 1024L, sample.getRssBytes() );
+    Assert.assertEquals( 23, sample.getThreads() );
+    Assert.assertEquals( 14, sample.getFileDescriptors() );
+
+    // the worker exits, its memory is released and the CPU total doesn't go down
+    deleteRecursively( new File( proc, "102" ) );
+    deleteRecursively( new File( proc, "101" ) );
+    sample = sampler.sample();
+    Assert.assertEquals( 1, sample.getProcesses() );
+    Assert.assertEquals( 5000, sample.getCpuMillis() );
+    Assert.assertEquals( 102400 * 1024L, sample.getRssBytes() );
+
+    Assert.assertEquals( 2, sampler.getSamples().size() );
+    Assert.assertEquals( ( 102400 + 10240 + 1024 ) * 1024L, sampler.getPeakRssBytes() );
+    Assert.assertEquals( ( 102400 * 2 + 10240 + 1024 ) * 1024L / 2, sampler.getAverageRssBytes() );
+    Assert.assertEquals( 23, sampler.getPeakThreads() );
+    Assert.assertEquals( 14, sampler.getPeakFileDescriptors() );
+    Assert.assertEquals( 3, sampler.getPeakProcesses() );
+
+    // the root process is gone
+    deleteRecursively( new File( proc, "100" ) );
+    Assert.assertNull( sampler.sample() );
+    Assert.assertEquals( 2, sampler.getSampleCount() );
+  }
+
+  @Test
+  public void testChildProcessTree() throws Exception {
+    if ( !ProcessTreeSampler.isSupported() ) {
+      return; // Linux only
+    }
+    Process process = new ProcessBuilder( "sh", "-c", "sleep 5 & sleep 5 & wait" ).start();
+    try {
+      int pid = ProcessTreeSampler.getPid( process );
+      Assert.assertTrue( pid > 0 );
+      ProcessTreeSampler sampler = new ProcessTreeSampler( ProcessTreeSampler.PROC, pid );
+      sampler.start( 20 );
+      try {
+        ProcessTreeSample sample = null;
+        for ( int i = 0; i < 250 && ( sample == null || sample.getProcesses() < 3 ); i++ ) {
+          Thread.sleep( 20 );
+          sample = sampler.getLastSample();
+        }
+        Assert.assertEquals( 3, sample.getProcesses() );
+        Assert.assertTrue( sample.getRssBytes() > 0 );
+        Assert.assertTrue( sample.getThreads() >= 3 );
+        Assert.assertTrue( sample.getFileDescriptors() >= 3 );
+      } finally {
+        sampler.stop();
+      }
+      List<ProcessTreeSample> samples = sampler.getSamples();
+      Assert.assertFalse( samples.isEmpty() );
+      Assert.assertTrue( samples.size() <= ProcessTreeSampler.MAX_SAMPLES );
+    } finally {
+      process.destroy();
+    }
+  }
+
+  private static void deleteRecursively( File file ) {
+    File[] children = file.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        deleteRecursively( child );
+      }
+    }
+    file.delete();
+  }
+}
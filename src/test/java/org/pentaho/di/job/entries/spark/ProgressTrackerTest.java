@@ -0,0 +1,139 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProgressTrackerTest {
+  private static final String ACCEPTED =
+      "15/04/01 10:00:00 INFO Client: Application report for application_1427875242006_0029 (state: ACCEPTED)";
+  private static final String RUNNING =
+      "15/04/01 10:00:05 INFO Client: Application report for application_1427875242006_0029 (state: RUNNING)";
+  private static final String FINISHED =
+      "15/04/01 10:09:00 INFO Client: Application report for application_1427875242006_0029 (state: FINISHED)";
+
+  private List<ApplicationProgress> reports = new ArrayList<ApplicationProgress>();
+
+  private ProgressTracker createTestee() {
+    ProgressTracker tracker = new ProgressTracker();
+    tracker.addProgressListener( new ProgressTracker.ProgressListener() {
+      @Override
+      public void onProgress( ApplicationProgress progress ) {
+        reports.add( progress );
+      }
+    } );
+    return tracker;
+  }
+
+  @Test
+  public void testApplicationReports() {
+    ProgressTracker tracker = createTestee();
+    Assert.assertTrue( tracker.isLogged( ACCEPTED ) );
+    Assert.assertTrue( tracker.isLogged( ACCEPTED ) );
+    Assert.assertTrue( tracker.isLogged( RUNNING ) );
+    Assert.assertEquals( 2, reports.size() );
+    ApplicationProgress progress = tracker.getProgress();
+    Assert.assertEquals( "application_1427875242006_0029", progress.getApplicationId() );
+    Assert.assertEquals( ApplicationReportParser.STATE_RUNNING, progress.getState() );
+    Assert.assertEquals( 0, progress.getPercentComplete() );
+
+    tracker.consume( FINISHED );
+    Assert.assertEquals( 100, tracker.getProgress().getPercentComplete() );
+  }
+
+  @Test
+  public void testProgressBars() {
+    ProgressTracker tracker = createTestee();
+    Assert.assertFalse( tracker.isLogged( "[Stage 0:>                                     (0 + 4) / 10]" ) );
+    ApplicationProgress progress = tracker.getProgress();
+    Assert.assertEquals( 1, progress.getActiveStages().size() );
+    Assert.assertEquals( 4, progress.getActiveTasks() );
+    Assert.assertEquals( 0, progress.getPercentComplete() );
+
+    tracker.consume( "[Stage 0:===================>                  (5 + 4) / 10]" );
+    Assert.assertEquals( 50, tracker.getProgress().getPercentComplete() );
+
+    tracker.consume( "[Stage 1:=====>     (3 + 8) / 30][Stage 2:>        (0 + 0) / 60]" );
+    progress = tracker.getProgress();
+    Assert.assertEquals( 1, progress.getCompletedStages() );
+    Assert.assertEquals( 2, progress.getActiveStages().size() );
+    Assert.assertEquals( 2, progress.getActiveStages().get( 1 ).getStageId() );
+    Assert.assertEquals( 8, progress.getActiveTasks() );
+    Assert.assertEquals( 13, progress.getCompletedTasks() );
+    Assert.assertEquals( 100, progress.getTotalTasks() );
+    Assert.assertEquals( 13, progress.getPercentComplete() );
+
+    // cleared bar
+    Assert.assertFalse( tracker.isLogged( "                                                                " ) );
+    progress = tracker.getProgress();
+    Assert.assertEquals( 3, progress.getCompletedStages() );
+    Assert.assertTrue( progress.getActiveStages().isEmpty() );
+    Assert.assertEquals( 100, progress.getPercentComplete() );
+    Assert.assertEquals( 4, reports.size() );
+
+    // blank lines are only a clear when a bar is shown
+    Assert.assertTrue( tracker.isLogged( "    " ) );
+    Assert.assertEquals( 4, reports.size() );
+  }
+
+  @Test
+  public void testUnchangedBarIsNotReported() {
+    ProgressTracker tracker = createTestee();
+    tracker.consume( "[Stage 3:>     (1 + 2) / 8]" );
+    tracker.consume( "[Stage 3:>     (1 + 2) / 8]" );
+    Assert.assertEquals( 1, reports.size() );
+  }
+
+  @Test
+  public void testOtherLines() {
+    ProgressTracker tracker = createTestee();
+    Assert.assertTrue( tracker.isLogged( "15/04/01 10:00:00 INFO DAGScheduler: Submitting 10 missing tasks" ) );
+    Assert.assertTrue( tracker.isLogged( "" ) );
+    // not a bar, nor a state report
+    Assert.assertTrue( tracker.isLogged( "[Stage 3: something else]" ) );
+    Assert.assertTrue( tracker.isLogged( "Saving state: 4 files" ) );
+    Assert.assertTrue( reports.isEmpty() );
+    Assert.assertNull( tracker.getProgress().getState() );
+  }
+
+  @Test
+  public void testBarAfterOtherOutputIsLogged() {
+    ProgressTracker tracker = createTestee();
+    Assert.assertTrue( tracker.isLogged( "some output[Stage 3:>     (1 + 2) / 8]" ) );
+    Assert.assertEquals( 1, reports.size() );
+  }
+
+  @Test
+  public void testParseStages() {
+    Assert.assertNull( ProgressTracker.parseStages( "[Stage x:>  (1 + 2) / 8]", 0 ) );
+    Assert.assertNull( ProgressTracker.parseStages( "[Stage 1:>  (1 + 2) / 8", 0 ) );
+    List<ApplicationProgress.StageProgress> stages = ProgressTracker.parseStages( "[Stage 12:(100 + 16) / 4000]", 0 );
+    Assert.assertEquals( 1, stages.size() );
+    Assert.assertEquals( new ApplicationProgress.StageProgress( 12, 100, 16, 4000 ), stages.get( 0 ) );
+  }
+}
@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PythonEnvironmentBuilderTest {
+  /**
+   * Installs a fixed package instead of running pip
+   */
+  static class FakePipBuilder extends PythonEnvironmentBuilder {
+    int installs;
+
+    FakePipBuilder() {
+      super( null );
+    }
+
+    @Override
+    protected void install( File requirements, File target ) throws IOException {
+      installs++;
+      File module = new File( target, "acme/__init__.py" );
+      module.getParentFile().mkdirs();
+      Files.write( Files.toString( requirements, Charsets.UTF_8 ), module, Charsets.UTF_8 );
+      new File( target, "acme/__pycache__" ).mkdirs();
+      Files.write( "compiled", new File( target, "acme/__pycache__/__init__.cpython-36.pyc" ), Charsets.UTF_8 );
+      Files.write( "Name: acme", new File( target, "acme-1.0.dist-info" ), Charsets.UTF_8 );
+    }
+  }
+
+  private static List<String> list( File archive ) throws IOException {
+    List<String> names = new ArrayList<String>();
+    ZipFile zip = new ZipFile( archive );
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while ( entries.hasMoreElements() ) {
+        names.add( entries.nextElement().getName() );
+      }
+    } finally {
+      zip.close();
+    }
+    return names;
+  }
+
+  @Test
+  public void testBuild() throws Exception {
+    File dir = Files.createTempDir();
+    File requirements = new File( dir, "requirements.txt" );
+    Files.write( "acme==1.0\n", requirements, Charsets.UTF_8 );
+    File archive = new File( dir, "pyenv.zip" );
+    new FakePipBuilder().build( requirements, new File( dir, "site" ), archive );
+    Assert.assertEquals( Arrays.asList( "acme/", "acme/__init__.py", "acme-1.0.dist-info" ), list( archive ) );
+  }
+
+  @Test
+  public void testBuildIsReproducible() throws Exception {
+    File dir = Files.createTempDir();
+    File requirements = new File( dir, "requirements.txt" );
+    Files.write( "acme==1.0\n", requirements, Charsets.UTF_8 );
+    File first = new File( dir, "first.zip" );
+    File second = new File( dir, "second.zip" );
+    new FakePipBuilder().build( requirements, new File( dir, "first" ), first );
+    Thread.sleep( 1100 );
+    new FakePipBuilder().build( requirements, new File( dir, "second" ), second );
+    Assert.assertArrayEquals( Files.toByteArray( first ), Files.toByteArray( second ) );
+  }
+}
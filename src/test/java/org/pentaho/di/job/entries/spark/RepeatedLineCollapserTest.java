@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RepeatedLineCollapserTest {
+  private static final String REPORT =
+      "15/04/01 10:%02d:%02d INFO Client: Application report for application_1427875242006_0029 (state: %s)";
+
+  private List<String> logged = new ArrayList<String>();
+  private long now;
+
+  private RepeatedLineCollapser createTestee( long summaryInterval ) {
+    return new RepeatedLineCollapser( new PatternMatchingStreamLogger.LineListener() {
+      @Override
+      public void onLine( String line ) {
+        logged.add( line );
+      }
+    }, summaryInterval ) {
+      @Override
+      protected long now() {
+        return now;
+      }
+    };
+  }
+
+  private static String report( int second, String state ) {
+    return String.format( REPORT, second / 60, second % 60, state );
+  }
+
+  @Test
+  public void testCollapsesReportsKeepingTransitions() {
+    RepeatedLineCollapser testee = createTestee( Long.MAX_VALUE );
+    testee.onLine( report( 0, "ACCEPTED" ) );
+    testee.onLine( report( 1, "ACCEPTED" ) );
+    testee.onLine( report( 2, "RUNNING" ) );
+    for ( int i = 3; i < 3600; i++ ) {
+      testee.onLine( report( i, "RUNNING" ) );
+    }
+    testee.onLine( report( 3600, "FINISHED" ) );
+    testee.flush();
+
+    Assert.assertEquals( Arrays.asList( report( 0, "ACCEPTED" ), report( 1, "ACCEPTED" ) + " (repeated once)",
+        report( 2, "RUNNING" ), String.format( "%s (repeated %,d times)", report( 3599, "RUNNING" ), 3597 ),
+        report( 3600, "FINISHED" ) ), logged );
+  }
+
+  @Test
+  public void testPeriodicSummary() {
+    RepeatedLineCollapser testee = createTestee( 60000 );
+    for ( int i = 0; i <= 150; i++ ) {
+      now = i * 1000L;
+      testee.onLine( report( i, "RUNNING" ) );
+    }
+    Assert.assertEquals( 3, logged.size() );
+    Assert.assertEquals( report( 60, "RUNNING" ) + " (repeated 60 times)", logged.get( 1 ) );
+    Assert.assertEquals( report( 120, "RUNNING" ) + " (repeated 60 times)", logged.get( 2 ) );
+    testee.flush();
+    Assert.assertEquals( report( 150, "RUNNING" ) + " (repeated 30 times)", logged.get( 3 ) );
+    testee.flush();
+    Assert.assertEquals( 4, logged.size() );
+  }
+
+  @Test
+  public void testDistinctLinesPassThrough() {
+    RepeatedLineCollapser testee = createTestee( Long.MAX_VALUE );
+    List<String> lines = Arrays.asList( "Uploading resource app.jar", "Uploading resource conf.zip",
+        "Submitting application", "", "Submitting application 2" );
+    for ( String line : lines ) {
+      testee.onLine( line );
+    }
+    testee.flush();
+    Assert.assertEquals( Arrays.asList( "Uploading resource app.jar", "Uploading resource conf.zip",
+        "Submitting application", "", "Submitting application 2" ), logged );
+  }
+
+  @Test
+  public void testHashFoldsDigitRuns() {
+    Assert.assertEquals( RepeatedLineCollapser.hash( "took 5 ms" ), RepeatedLineCollapser.hash( "took 12345 ms" ) );
+    Assert.assertFalse( RepeatedLineCollapser.hash( "took 5 ms" ) == RepeatedLineCollapser.hash( "took 5 s" ) );
+    Assert.assertFalse( RepeatedLineCollapser.hash( "a1b" ) == RepeatedLineCollapser.hash( "ab" ) );
+  }
+
+  @Test
+  public void testKeepsStagesAndTasksApart() {
+    Assert.assertFalse( RepeatedLineCollapser.hash( "Submitting ResultStage 3 (MapPartitionsRDD[7])" )
+        == RepeatedLineCollapser.hash( "Submitting ResultStage 4 (MapPartitionsRDD[7])" ) );
+    Assert.assertFalse( RepeatedLineCollapser.hash( "Finished task 12.0 in stage 4.0 (TID 48) in 120 ms" )
+        == RepeatedLineCollapser.hash( "Finished task 13.0 in stage 4.0 (TID 49) in 120 ms" ) );
+    Assert.assertFalse( RepeatedLineCollapser.hash( "Lost task 1.0 in stage 2.0 (TID 7)" )
+        == RepeatedLineCollapser.hash( "Lost task 1.0 in stage 2.0 (TID 8)" ) );
+    // durations and the attempt number of a task still fold
+    Assert.assertEquals( RepeatedLineCollapser.hash( "Finished task 12.0 in stage 4.0 (TID 48) in 120 ms" ),
+        RepeatedLineCollapser.hash( "Finished task 12.1 in stage 4.0 (TID 48) in 95 ms" ) );
+
+    RepeatedLineCollapser testee = createTestee( Long.MAX_VALUE );
+    for ( int i = 0; i < 3; i++ ) {
+      testee.onLine( "INFO TaskSetManager: Finished task " + i + ".0 in stage 1.0 (TID " + i + ") in 15 ms" );
+    }
+    testee.flush();
+    Assert.assertEquals( 3, logged.size() );
+  }
+}
@@ -0,0 +1,90 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.RowMetaAndData;
+
+public class ResultChannelTest {
+  private final Map<String, String> variables = new HashMap<String, String>();
+
+  private final ResultChannel.VariableListener listener = new ResultChannel.VariableListener() {
+    @Override
+    public void onVariable( String name, String value ) {
+      variables.put( name, value );
+    }
+  };
+
+  @Test
+  public void testMarkerLines() throws Exception {
+    ResultChannel channel = new ResultChannel( "PDI_RESULT", null, listener );
+    channel.start();
+    Assert.assertTrue( channel.isLogged( "19/10/01 12:00:00 INFO SparkContext: Running Spark version 2.4.4" ) );
+    Assert.assertFalse( channel.isLogged( "PDI_RESULT rowCount = 42" ) );
+    Assert.assertFalse( channel.isLogged( "PDI_RESULT {\"partition\":\"2019-10-01\",\"rows\":42,\"ratio\":0.5,"
+        + "\"late\":false,\"tags\":[\"a\"]}" ) );
+    Assert.assertFalse( channel.isLogged( "PDI_RESULT {broken" ) );
+    Assert.assertEquals( "42", variables.get( "rowCount" ) );
+
+    List<RowMetaAndData> rows = channel.close();
+    Assert.assertEquals( 1, rows.size() );
+    RowMetaAndData row = rows.get( 0 );
+    Assert.assertEquals( "2019-10-01", row.getString( "partition", null ) );
+    Assert.assertEquals( Long.valueOf( 42 ), row.getData()[1] );
+    Assert.assertEquals( Double.valueOf( 0.5 ), row.getData()[2] );
+    Assert.assertEquals( Boolean.FALSE, row.getData()[3] );
+    Assert.assertEquals( "[\"a\"]", row.getData()[4] );
+  }
+
+  @Test
+  public void testResultFile() throws Exception {
+    File file = new File( Files.createTempDir(), "results" );
+    Files.write( "stale=1\n", file, Charsets.UTF_8 );
+    ResultChannel channel = new ResultChannel( null, file, listener );
+    channel.start();
+    Assert.assertTrue( channel.isLogged( "PDI_RESULT {\"rows\":1}" ) );
+
+    Files.append( "outputPath=/data/out\n{\"rows\":1}\n", file, Charsets.UTF_8 );
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( !variables.containsKey( "outputPath" ) && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 20 );
+    }
+    Assert.assertEquals( "/data/out", variables.get( "outputPath" ) );
+
+    // the last record doesn't need to be terminated
+    Files.append( "{\"rows\":2}", file, Charsets.UTF_8 );
+    List<RowMetaAndData> rows = channel.close();
+    Assert.assertEquals( 2, rows.size() );
+    Assert.assertEquals( "2", rows.get( 1 ).getString( "rows", null ) );
+    Assert.assertFalse( variables.containsKey( "stale" ) );
+  }
+}
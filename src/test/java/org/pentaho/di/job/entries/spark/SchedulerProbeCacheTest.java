@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+public class SchedulerProbeCacheTest {
+  private AtomicInteger probes = new AtomicInteger();
+
+  private SchedulerProbe createProbe( final String id ) {
+    return new SchedulerProbe() {
+      @Override
+      public String getId() {
+        return id;
+      }
+
+      @Override
+      public List<QueueCapacity> probe() throws KettleException {
+        probes.incrementAndGet();
+        try {
+          Thread.sleep( 100 );
+        } catch ( InterruptedException e ) {
+          throw new KettleException( e );
+        }
+        return Collections.singletonList( new QueueCapacity( id, 1024, 1 ) );
+      }
+    };
+  }
+
+  @Before
+  public void setUp() {
+    SchedulerProbeCache.clear();
+  }
+
+  @Test
+  public void testConcurrentRequestsProbeOnce() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool( 20 );
+    List<Future<List<QueueCapacity>>> futures = new ArrayList<Future<List<QueueCapacity>>>();
+    for ( int i = 0; i < 100; i++ ) {
+      final SchedulerProbe probe = createProbe( "http://rm:8088" );
+      futures.add( executor.submit( new Callable<List<QueueCapacity>>() {
+        @Override
+        public List<QueueCapacity> call() throws Exception {
+          return SchedulerProbeCache.probe( probe );
+        }
+      } ) );
+    }
+    for ( Future<List<QueueCapacity>> future : futures ) {
+      Assert.assertEquals( "http://rm:8088", future.get( 5, TimeUnit.SECONDS ).get( 0 ).getQueueName() );
+    }
+    executor.shutdown();
+    Assert.assertEquals( 1, probes.get() );
+
+    SchedulerProbeCache.probe( createProbe( "http://other-rm:8088" ) );
+    Assert.assertEquals( 2, probes.get() );
+  }
+
+  @Test
+  public void testFailureIsNotCached() throws Exception {
+    SchedulerProbe failing = new SchedulerProbe() {
+      @Override
+      public String getId() {
+        return "failing";
+      }
+
+      @Override
+      public List<QueueCapacity> probe() throws KettleException {
+        probes.incrementAndGet();
+        throw new KettleException( "unreachable" );
+      }
+    };
+    for ( int i = 0; i < 2; i++ ) {
+      try {
+        SchedulerProbeCache.probe( failing );
+        Assert.fail();
+      } catch ( KettleException e ) {
+        // expected
+      }
+    }
+    Assert.assertEquals( 2, probes.get() );
+  }
+}
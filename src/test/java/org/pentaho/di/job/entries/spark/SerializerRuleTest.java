@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.CheckResultInterface;
+
+public class SerializerRuleTest {
+  private final PerformanceRuleChecker rule = new PerformanceRuleChecker( new SerializerRule() );
+
+  @Test
+  public void testSerializer() {
+    JobEntrySparkSubmit entry = new JobEntrySparkSubmit();
+    List<CheckResultInterface> remarks =
+        rule.check( entry, "spark.serializer=org.apache.spark.serializer.JavaSerializer" );
+    Assert.assertEquals( 1, remarks.size() );
+    Assert.assertEquals( CheckResultInterface.TYPE_RESULT_WARNING, remarks.get( 0 ).getType() );
+
+    // the default serializer only matters to applications shuffling or caching a lot
+    Assert.assertTrue( rule.check( entry ).isEmpty() );
+    remarks = rule.check( entry, "spark.sql.shuffle.partitions=2000" );
+    Assert.assertEquals( 1, remarks.size() );
+    Assert.assertEquals( CheckResultInterface.TYPE_RESULT_COMMENT, remarks.get( 0 ).getType() );
+
+    Assert.assertTrue( rule.check( entry, "spark.serializer=org.apache.spark.serializer.KryoSerializer" ).isEmpty() );
+    entry.setRegisterKryo( true );
+    Assert.assertTrue( rule.check( entry, "spark.sql.shuffle.partitions=2000" ).isEmpty() );
+  }
+}
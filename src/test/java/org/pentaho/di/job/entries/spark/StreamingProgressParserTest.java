@@ -0,0 +1,100 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingProgressParserTest {
+  static final String[] LOGGED_PROGRESS = new String[] {
+    "19/10/01 12:00:00 INFO MicroBatchExecution: Streaming query made progress: {",
+    "  \"id\" : \"8c5f3b6e-1f1e-4f55-a8c2-000000000001\",",
+    "  \"name\" : \"orders\",",
+    "  \"batchId\" : 7,",
+    "  \"numInputRows\" : 1200,",
+    "  \"inputRowsPerSecond\" : 400.0,",
+    "  \"processedRowsPerSecond\" : 300.5,",
+    "  \"durationMs\" : {",
+    "    \"getBatch\" : 12,",
+    "    \"triggerExecution\" : 3993",
+    "  },",
+    "  \"stateOperators\" : [ {",
+    "    \"numRowsTotal\" : 10,",
+    "    \"memoryUsedBytes\" : 2048",
+    "  }, {",
+    "    \"numRowsTotal\" : 5,",
+    "    \"memoryUsedBytes\" : 1024",
+    "  } ],",
+    "  \"sources\" : [ {",
+    "    \"description\" : \"KafkaV2[Subscribe[orders]] {weird}\"",
+    "  } ]",
+    "}" };
+
+  @Test
+  public void testLoggedReport() {
+    final List<StreamingProgress> reports = new ArrayList<StreamingProgress>();
+    StreamingProgressParser parser = new StreamingProgressParser( new StreamingProgressParser.ProgressListener() {
+      @Override
+      public void onProgress( StreamingProgress progress ) {
+        reports.add( progress );
+      }
+    } );
+    Assert.assertTrue( parser.isLogged( "19/10/01 12:00:00 INFO SparkContext: Running Spark version 2.4.4" ) );
+    for ( String line : LOGGED_PROGRESS ) {
+      Assert.assertFalse( parser.isLogged( line ) );
+    }
+    Assert.assertTrue( parser.isLogged( "19/10/01 12:00:01 INFO Executor: Finished task" ) );
+
+    Assert.assertEquals( 1, reports.size() );
+    StreamingProgress progress = reports.get( 0 );
+    Assert.assertEquals( "orders", progress.getName() );
+    Assert.assertEquals( 7, progress.getBatchId() );
+    Assert.assertEquals( 400.0, progress.getInputRowsPerSecond(), 0.001 );
+    Assert.assertEquals( 300.5, progress.getProcessedRowsPerSecond(), 0.001 );
+    Assert.assertEquals( 3993, progress.getBatchDurationMs() );
+    Assert.assertEquals( 3072, progress.getStateMemoryBytes() );
+    Assert.assertTrue( progress.isLagging() );
+  }
+
+  @Test
+  public void testSingleLineReport() {
+    final List<StreamingProgress> reports = new ArrayList<StreamingProgress>();
+    StreamingProgressParser parser = new StreamingProgressParser( new StreamingProgressParser.ProgressListener() {
+      @Override
+      public void onProgress( StreamingProgress progress ) {
+        reports.add( progress );
+      }
+    } );
+    Assert.assertFalse( parser.isLogged( "{\"id\":\"q\",\"batchId\":1,\"numInputRows\":0,"
+        + "\"processedRowsPerSecond\":0.0}" ) );
+    // JSON which isn't a progress report is consumed but ignored
+    Assert.assertFalse( parser.isLogged( "{\"processedRowsPerSecond\":1.0}" ) );
+    Assert.assertEquals( 1, reports.size() );
+    Assert.assertEquals( 1, reports.get( 0 ).getBatchId() );
+    Assert.assertFalse( reports.get( 0 ).isLagging() );
+  }
+}
@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+public class StreamingSupervisorTest {
+  private LogChannelInterface log = mock( LogChannelInterface.class );
+
+  private static class RecordingListener implements StreamingSupervisor.Listener {
+    List<Long> batches = new ArrayList<Long>();
+    List<Integer> lags = new ArrayList<Integer>();
+    List<Long> delays = new ArrayList<Long>();
+
+    @Override
+    public synchronized void onProgress( StreamingProgress progress ) {
+      batches.add( progress.getBatchId() );
+    }
+
+    @Override
+    public synchronized void onLag( StreamingProgress progress, int batches ) {
+      lags.add( batches );
+    }
+
+    @Override
+    public synchronized void onRestart( int restart, int exitCode, long delayMs ) {
+      delays.add( delayMs );
+    }
+  }
+
+  private static String progress( long batchId, double inputRate, double processedRate ) {
+    return "{\"id\":\"q\",\"batchId\":" + batchId + ",\"numInputRows\":10,\"inputRowsPerSecond\":" + inputRate
+        + ",\"processedRowsPerSecond\":" + processedRate + "}";
+  }
+
+  private StreamingSupervisor.Launcher launcher( final FakeSparkSubmitProcess... processes ) {
+    final LinkedList<FakeSparkSubmitProcess> queue = new LinkedList<FakeSparkSubmitProcess>( Arrays.asList(
+        processes ) );
+    return new StreamingSupervisor.Launcher() {
+      @Override
+      public SparkSubmission launch() throws KettleException {
+        return new SparkSubmission( "test", log, queue.removeFirst(), new String[0] );
+      }
+    };
+  }
+
+  @Test
+  public void testRestartWithBackoff() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    StreamingSupervisor supervisor = new StreamingSupervisor( log, launcher( new FakeSparkSubmitProcess( 1 ),
+        new FakeSparkSubmitProcess( 1 ), new FakeSparkSubmitProcess( 1 ) ), listener, null, 2, 10, 15, 0, 0 );
+    Assert.assertEquals( 1, supervisor.run() );
+    Assert.assertEquals( 2, supervisor.getRestarts() );
+    Assert.assertEquals( Arrays.asList( 10L, 15L ), listener.delays );
+  }
+
+  @Test
+  public void testProgressResetsFailures() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    StreamingSupervisor supervisor = new StreamingSupervisor( log, launcher( new FakeSparkSubmitProcess( 1 ),
+        new FakeSparkSubmitProcess( 1, progress( 1, 10, 5 ), progress( 2, 10, 5 ), progress( 3, 10, 20 ),
+            progress( 4, 10, 5 ) ), new FakeSparkSubmitProcess( 0 ) ), listener, null, 1, 10, 100, 2, 0 );
+    Assert.assertEquals( 0, supervisor.run() );
+    Assert.assertEquals( 2, supervisor.getRestarts() );
+    // backoff starts over once the application made progress
+    Assert.assertEquals( Arrays.asList( 10L, 10L ), listener.delays );
+    Assert.assertEquals( Arrays.asList( 1L, 2L, 3L, 4L ), listener.batches );
+    // reported once per lag episode
+    Assert.assertEquals( Arrays.asList( 2 ), listener.lags );
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "sleep 10000" );
+    final StreamingSupervisor supervisor = new StreamingSupervisor( log, launcher( process ), listener, null, 5, 10,
+        100, 0, 0 );
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 100 );
+        } catch ( InterruptedException e ) {
+          return;
+        }
+        supervisor.stop();
+      }
+    } ).start();
+    Assert.assertEquals( 143, supervisor.run() );
+    Assert.assertTrue( process.isDestroyed() );
+    Assert.assertEquals( 0, supervisor.getRestarts() );
+  }
+}
@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local stand-in for the cluster manager. Every status request returns the next status queued for the application,
+ * the last one is repeated.
+ */
+public class StubApplicationClient implements SparkApplicationClient {
+  private Map<String, LinkedList<ApplicationStatus>> statuses = new HashMap<String, LinkedList<ApplicationStatus>>();
+  private List<String> killed = new ArrayList<String>();
+
+  public synchronized StubApplicationClient addStatus( String applicationId, String state, String finalStatus ) {
+    return addStatus( new ApplicationStatus( applicationId, state, finalStatus ) );
+  }
+
+  public synchronized StubApplicationClient addStatus( ApplicationStatus status ) {
+    LinkedList<ApplicationStatus> queue = statuses.get( status.getApplicationId() );
+    if ( queue == null ) {
+      queue = new LinkedList<ApplicationStatus>();
+      statuses.put( status.getApplicationId(), queue );
+    }
+    queue.add( status );
+    return this;
+  }
+
+  @Override
+  public synchronized ApplicationStatus getApplicationStatus( String applicationId ) {
+    LinkedList<ApplicationStatus> queue = statuses.get( applicationId );
+    if ( queue == null ) {
+      return null;
+    }
+    return queue.size() > 1 ? queue.removeFirst() : queue.getFirst();
+  }
+
+  @Override
+  public synchronized void killApplication( String applicationId ) {
+    killed.add( applicationId );
+    statuses.remove( applicationId );
+    addStatus( applicationId, ApplicationReportParser.STATE_KILLED, "KILLED" );
+  }
+
+  public synchronized List<String> getKilled() {
+    return killed;
+  }
+}
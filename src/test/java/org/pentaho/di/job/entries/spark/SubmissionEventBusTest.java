@@ -0,0 +1,205 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+public class SubmissionEventBusTest {
+  private static SubmissionEvent event( String value ) {
+    return new SubmissionEvent( SubmissionEvent.Type.STATE_CHANGED, null, value );
+  }
+
+  private static List<String> drain( SubmissionEventBus.Subscription subscription ) {
+    List<String> values = new ArrayList<String>();
+    SubmissionEvent event;
+    while ( ( event = subscription.poll() ) != null ) {
+      values.add( event.getValue() );
+    }
+    return values;
+  }
+
+  @Test
+  public void testIndependentCursors() {
+    SubmissionEventBus bus = new SubmissionEventBus();
+    SubmissionEventBus.Subscription first = bus.subscribe();
+    bus.publish( event( "a" ) );
+    bus.publish( event( "b" ) );
+    Assert.assertEquals( "a", first.poll().getValue() );
+
+    SubmissionEventBus.Subscription second = bus.subscribe();
+    bus.publish( event( "c" ) );
+    Assert.assertEquals( Arrays.asList( "b", "c" ), drain( first ) );
+    Assert.assertEquals( Arrays.asList( "a", "b", "c" ), drain( second ) );
+    Assert.assertNull( first.poll() );
+    Assert.assertEquals( 3, bus.getPublished() );
+  }
+
+  @Test
+  public void testLappedSubscriberSkipsAhead() {
+    SubmissionEventBus bus = new SubmissionEventBus( 3 );
+    SubmissionEventBus.Subscription subscription = bus.subscribe();
+    for ( int i = 0; i < 10; i++ ) {
+      bus.publish( event( String.valueOf( i ) ) );
+    }
+    Assert.assertEquals( Arrays.asList( "6", "7", "8", "9" ), drain( subscription ) );
+    Assert.assertEquals( 6, subscription.getMissed() );
+  }
+
+  @Test
+  public void testConcurrentPublishers() throws Exception {
+    final int threads = 4;
+    final int events = 10000;
+    final SubmissionEventBus bus = new SubmissionEventBus( threads * events );
+    SubmissionEventBus.Subscription subscription = bus.subscribe();
+    List<Thread> publishers = new ArrayList<Thread>();
+    for ( int t = 0; t < threads; t++ ) {
+      final int thread = t;
+      publishers.add( new Thread( new Runnable() {
+        @Override
+        public void run() {
+          for ( int i = 0; i < events; i++ ) {
+            bus.publish( event( thread + ":" + i ) );
+          }
+        }
+      } ) );
+    }
+    for ( Thread publisher : publishers ) {
+      publisher.start();
+    }
+
+    int[] next = new int[threads];
+    for ( int i = 0; i < threads * events; i++ ) {
+      SubmissionEvent event = subscription.poll( 5, TimeUnit.SECONDS );
+      Assert.assertNotNull( event );
+      String[] value = event.getValue().split( ":" );
+      // every publisher's events come in the order published
+      Assert.assertEquals( next[Integer.parseInt( value[0] )]++, Integer.parseInt( value[1] ) );
+    }
+    Assert.assertNull( subscription.poll() );
+    Assert.assertEquals( 0, subscription.getMissed() );
+  }
+
+  @Test
+  public void testDispatcherEndsWithoutListeners() throws Exception {
+    final List<String> received = new CopyOnWriteArrayList<String>();
+    SubmissionEventBus.Listener listener = new SubmissionEventBus.Listener() {
+      @Override
+      public void onEvent( SubmissionEvent event ) {
+        received.add( event.getValue() );
+      }
+    };
+    SubmissionEventBus bus = new SubmissionEventBus();
+    // a run failing before FINISHED closes its subscription, events published so far are still delivered
+    SubmissionEventBus.Subscription subscription = bus.subscribe( listener );
+    bus.publish( event( "a" ) );
+    subscription.closeWhenDrained();
+    for ( int i = 0; i < 200 && SubmissionEventBus.isDispatching(); i++ ) {
+      Thread.sleep( 10 );
+    }
+    Assert.assertFalse( SubmissionEventBus.isDispatching() );
+    Assert.assertTrue( subscription.isClosed() );
+    Assert.assertEquals( Arrays.asList( "a" ), received );
+
+    // started again by the next listener, which gets the retained events too
+    subscription = bus.subscribe( listener );
+    bus.publish( event( "b" ) );
+    for ( int i = 0; i < 200 && received.size() < 3; i++ ) {
+      Thread.sleep( 10 );
+    }
+    Assert.assertEquals( Arrays.asList( "a", "a", "b" ), received );
+    subscription.close();
+  }
+
+  @Test
+  public void testSlowListenerDoesNotBlockPublisher() throws Exception {
+    SubmissionEventBus bus = new SubmissionEventBus( 16 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final List<String> received = new CopyOnWriteArrayList<String>();
+    SubmissionEventBus.Subscription subscription = bus.subscribe( new SubmissionEventBus.Listener() {
+      @Override
+      public void onEvent( SubmissionEvent event ) {
+        try {
+          release.await();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+        received.add( event.getValue() );
+      }
+    } );
+
+    long start = System.currentTimeMillis();
+    for ( int i = 0; i < 1000; i++ ) {
+      bus.publish( event( String.valueOf( i ) ) );
+    }
+    Assert.assertTrue( System.currentTimeMillis() - start < 1000 );
+    bus.publish( new SubmissionEvent( SubmissionEvent.Type.FINISHED, null, "0" ) );
+    release.countDown();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( !subscription.isClosed() && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    Assert.assertTrue( subscription.isClosed() );
+    Assert.assertTrue( subscription.getMissed() > 0 );
+    Assert.assertEquals( "0", received.get( received.size() - 1 ) );
+  }
+
+  @Test
+  public void testSubmissionLifecycle() throws Exception {
+    final List<String> events = new CopyOnWriteArrayList<String>();
+    final CountDownLatch finished = new CountDownLatch( 1 );
+    SparkSubmission submission = new SparkSubmission( "test", mock( LogChannelInterface.class ),
+        new FakeSparkSubmitProcess( 0, "Application report for application_1_0001 (state: ACCEPTED)",
+            "tracking URL: http://rm:8088/proxy/application_1_0001/",
+            "Application report for application_1_0001 (state: RUNNING)" ), new String[] { "tracking URL:" } );
+    submission.getEvents().subscribe( new SubmissionEventBus.Listener() {
+      @Override
+      public void onEvent( SubmissionEvent event ) {
+        events.add( event.toString() );
+        if ( event.getType() == SubmissionEvent.Type.FINISHED ) {
+          finished.countDown();
+        }
+      }
+    } );
+    SubmissionEventBus.Subscription polled = submission.getEvents().subscribe();
+
+    submission.start();
+    Assert.assertEquals( 0, submission.waitFor() );
+    Assert.assertTrue( finished.await( 5, TimeUnit.SECONDS ) );
+    Assert.assertEquals( Arrays.asList( "STARTED", "APPLICATION_ID application_1_0001", "STATE_CHANGED ACCEPTED",
+        "PATTERN_MATCHED tracking URL:", "STATE_CHANGED RUNNING", "FINISHED 0" ), events );
+    Assert.assertEquals( SubmissionEvent.Type.STARTED, polled.poll().getType() );
+  }
+}
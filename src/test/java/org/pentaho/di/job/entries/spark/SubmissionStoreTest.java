@@ -0,0 +1,77 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubmissionStoreTest {
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    for ( File file : dir.listFiles() ) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testKey() {
+    String key = SubmissionStore.key( Arrays.asList( "spark-submit", "--master", "yarn-cluster", "job.jar" ) );
+    Assert.assertEquals( key, SubmissionStore.key( Arrays.asList( "spark-submit", "--master", "yarn-cluster",
+        "job.jar" ) ) );
+    Assert.assertFalse( key.equals( SubmissionStore.key( Arrays.asList( "spark-submit", "--master",
+        "yarn-clusterjob.jar", "" ) ) ) );
+    Assert.assertEquals( 64, key.length() );
+  }
+
+  @Test
+  public void testPutGetRemove() throws Exception {
+    SubmissionStore store = new SubmissionStore( dir );
+    Assert.assertNull( store.getApplicationId( "key" ) );
+
+    store.put( "key", "application_1_0001" );
+    Assert.assertEquals( "application_1_0001", store.getApplicationId( "key" ) );
+    Assert.assertEquals( "application_1_0001", new SubmissionStore( dir ).getApplicationId( "key" ) );
+
+    store.put( "key", "application_1_0002" );
+    Assert.assertEquals( "application_1_0002", store.getApplicationId( "key" ) );
+    Assert.assertEquals( 1, dir.listFiles().length );
+
+    store.remove( "key" );
+    Assert.assertNull( store.getApplicationId( "key" ) );
+  }
+}
@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+public class SubmissionWatchdogTest {
+  private LogChannelInterface log = mock( LogChannelInterface.class );
+  private BlockingQueue<SubmissionWatchdog.Reason> timeouts = new ArrayBlockingQueue<SubmissionWatchdog.Reason>( 10 );
+  private SubmissionWatchdog.TimeoutListener listener = new SubmissionWatchdog.TimeoutListener() {
+    @Override
+    public void onTimeout( SparkSubmission submission, SubmissionWatchdog.Reason reason, long elapsed ) {
+      submission.cancel( null );
+      timeouts.add( reason );
+    }
+  };
+
+  private SparkSubmission start( FakeSparkSubmitProcess process ) {
+    SparkSubmission submission = new SparkSubmission( "test", log, process, new String[0] );
+    submission.start();
+    return submission;
+  }
+
+  @Test
+  public void testDeadline() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "line 1", "sleep 10000" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 200, 0, listener );
+
+    Assert.assertEquals( SubmissionWatchdog.Reason.DEADLINE, timeouts.poll( 5, TimeUnit.SECONDS ) );
+    submission.waitFor();
+    Assert.assertTrue( process.isDestroyed() );
+  }
+
+  @Test
+  public void testHang() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "line 1", "sleep 10000" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 0, 200, listener );
+
+    Assert.assertEquals( SubmissionWatchdog.Reason.HANG, timeouts.poll( 5, TimeUnit.SECONDS ) );
+    Assert.assertTrue( process.isDestroyed() );
+  }
+
+  @Test
+  public void testActivityPostponesHang() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "starting", "sleep 150", "uploading jar",
+        "sleep 150", "submitting application", "sleep 150", "application accepted", "sleep 150", "finished" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.Watch watch = SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 0, 400,
+        listener );
+
+    Assert.assertEquals( 0, submission.waitFor() );
+    watch.cancel();
+    Assert.assertNull( timeouts.poll( 600, TimeUnit.MILLISECONDS ) );
+    Assert.assertFalse( process.isDestroyed() );
+  }
+
+  @Test
+  public void testRepeatedReportsDontCountAsActivity() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "report 1 (state: ACCEPTED)", "sleep 150",
+        "report 2 (state: ACCEPTED)", "sleep 150", "report 3 (state: ACCEPTED)", "sleep 150",
+        "report 4 (state: ACCEPTED)", "sleep 10000" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 0, 250, listener );
+
+    Assert.assertEquals( SubmissionWatchdog.Reason.HANG, timeouts.poll( 5, TimeUnit.SECONDS ) );
+    Assert.assertTrue( process.isDestroyed() );
+  }
+
+  @Test
+  public void testRunningReportsCountAsActivity() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "report 1 (state: RUNNING)", "sleep 150",
+        "report 2 (state: RUNNING)", "sleep 150", "report 3 (state: RUNNING)", "sleep 150",
+        "report 4 (state: RUNNING)", "sleep 150", "report 5 (state: FINISHED)" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.Watch watch = SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 0, 250,
+        listener );
+
+    Assert.assertEquals( 0, submission.waitFor() );
+    watch.cancel();
+    Assert.assertNull( timeouts.poll( 300, TimeUnit.MILLISECONDS ) );
+    Assert.assertFalse( process.isDestroyed() );
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "line 1", "sleep 1000" );
+    SparkSubmission submission = start( process );
+    SubmissionWatchdog.watch( submission, System.currentTimeMillis(), 200, 200, listener ).cancel();
+
+    Assert.assertNull( timeouts.poll( 500, TimeUnit.MILLISECONDS ) );
+    Assert.assertFalse( process.isDestroyed() );
+    submission.cancel( null );
+  }
+
+  @Test
+  public void testDiagnostics() throws Exception {
+    FakeSparkSubmitProcess process = new FakeSparkSubmitProcess( 0, "first line", "last line", "sleep 10000" );
+    SparkSubmission submission = start( process );
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( submission.getLastLines().size() < 2 && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+
+    String report = SubmissionDiagnostics.capture( submission, "Hung" );
+    submission.cancel( null );
+
+    Assert.assertTrue( report, report.startsWith( "Hung\n" ) );
+    Assert.assertTrue( report, report.contains( "first line\nlast line\n" ) );
+    Assert.assertTrue( report, report.contains( "Thread dump unavailable" ) );
+  }
+}
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThinJarBuilderTest {
+  private static File writeFatJar( File jar ) throws Exception {
+    return ClassFileBuilder.writeJar( jar, new ClassFileBuilder( "com/acme/Main" ), new ClassFileBuilder(
+        "org/apache/spark/SparkContext" ), new ClassFileBuilder( "scala/Function1" ), new ClassFileBuilder(
+        "scalax/Util" ), new ClassFileBuilder( "com/google/common/base/Joiner" ) );
+  }
+
+  private static List<String> list( File jar ) throws Exception {
+    List<String> names = new ArrayList<String>();
+    ZipFile zip = new ZipFile( jar );
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while ( entries.hasMoreElements() ) {
+        names.add( entries.nextElement().getName() );
+      }
+    } finally {
+      zip.close();
+    }
+    Collections.sort( names );
+    return names;
+  }
+
+  @Test
+  public void testProvidedPackages() throws Exception {
+    File dir = Files.createTempDir();
+    File fat = writeFatJar( new File( dir, "fat.jar" ) );
+    File thin = new File( dir, "thin.jar" );
+    ThinJarBuilder builder = new ThinJarBuilder( ThinJarBuilder.DEFAULT_PROVIDED_PACKAGES, Collections
+        .<String>emptySet() );
+    InputStream is = new FileInputStream( fat );
+    try {
+      Assert.assertEquals( 2, builder.build( is, thin ) );
+    } finally {
+      is.close();
+    }
+    Assert.assertEquals( Arrays.asList( "META-INF/MANIFEST.MF", "com/acme/Main.class",
+        "com/google/common/base/Joiner.class", "scalax/Util.class" ), list( thin ) );
+    Assert.assertTrue( thin.length() < fat.length() );
+  }
+
+  @Test
+  public void testSparkJarDirectory() throws Exception {
+    File home = Files.createTempDir();
+    new File( home, "bin" ).mkdirs();
+    File jars = new File( home, "jars" );
+    jars.mkdirs();
+    ClassFileBuilder.writeJar( new File( jars, "guava.jar" ), new ClassFileBuilder( "com/google/common/base/Joiner" ) );
+    String sparkSubmit = new File( home, "bin/spark-submit" ).getPath();
+
+    List<File> dirs = ThinJarBuilder.getSparkJarDirectories( sparkSubmit );
+    Assert.assertEquals( Arrays.asList( jars.getAbsoluteFile() ), dirs );
+    Set<String> provided = ThinJarBuilder.getProvidedClasses( dirs );
+    Assert.assertTrue( provided.contains( "com/google/common/base/Joiner.class" ) );
+
+    ThinJarBuilder builder = new ThinJarBuilder( Arrays.asList( "org.apache.spark" ), provided );
+    Assert.assertTrue( builder.isProvided( "com/google/common/base/Joiner.class" ) );
+    Assert.assertTrue( builder.isProvided( "org/apache/spark/SparkContext.class" ) );
+    Assert.assertTrue( builder.isProvided( "META-INF/ACME.SF" ) );
+    Assert.assertFalse( builder.isProvided( "scala/Function1.class" ) );
+    Assert.assertFalse( builder.isProvided( "org/apache/spark/log4j.properties" ) );
+    Assert.assertFalse( builder.isProvided( "META-INF/MANIFEST.MF" ) );
+
+    // the signature changes with the jars
+    String signature = ThinJarBuilder.getSignature( dirs );
+    ClassFileBuilder.writeJar( new File( jars, "extra.jar" ), new ClassFileBuilder( "com/acme/Extra" ) );
+    Assert.assertFalse( signature.equals( ThinJarBuilder.getSignature( dirs ) ) );
+    Assert.assertTrue( ThinJarBuilder.getProvidedClasses( dirs ).contains( "com/acme/Extra.class" ) );
+  }
+}
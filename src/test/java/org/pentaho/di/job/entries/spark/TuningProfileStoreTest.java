@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.metastore.stores.memory.MemoryMetaStore;
+
+public class TuningProfileStoreTest {
+  @Test
+  public void testSaveLoad() throws Exception {
+    TuningProfileStore store = new TuningProfileStore( new MemoryMetaStore() );
+    TuningProfile profile = new TuningProfile( "large" );
+    profile.setExecutorMemory( "8g" );
+    profile.setExecutorCores( "4" );
+    profile.setConfigParams( Arrays.asList( "spark.sql.shuffle.partitions=800" ) );
+    store.save( profile );
+
+    Assert.assertEquals( Arrays.asList( "large" ), store.getNames() );
+    Assert.assertEquals( Arrays.asList( "spark.executor.memory=8g", "spark.executor.cores=4",
+        "spark.sql.shuffle.partitions=800" ), store.load( "large" ).toConfigParams() );
+    Assert.assertNull( store.load( "small" ) );
+    store.delete( "large" );
+    Assert.assertTrue( store.getNames().isEmpty() );
+  }
+
+  @Test
+  public void testResolveOncePerRun() throws Exception {
+    TuningProfileStore store = new TuningProfileStore( new MemoryMetaStore() );
+    TuningProfile profile = new TuningProfile( "large" );
+    profile.setNumExecutors( "10" );
+    store.save( profile );
+    Assert.assertEquals( "10", store.resolve( "run1", "large" ).getNumExecutors() );
+
+    // retuning applies to the next run only
+    TuningProfile retuned = new TuningProfile( "large" );
+    retuned.setNumExecutors( "20" );
+    store.save( retuned );
+    Assert.assertEquals( "10", store.resolve( "run1", "large" ).getNumExecutors() );
+    Assert.assertEquals( "20", store.resolve( "run2", "large" ).getNumExecutors() );
+    Assert.assertEquals( "20", store.resolve( null, "large" ).getNumExecutors() );
+
+    try {
+      store.resolve( "run1", "missing" );
+      Assert.fail();
+    } catch ( KettleException e ) {
+      Assert.assertTrue( e.getMessage().contains( "missing" ) );
+    }
+  }
+}
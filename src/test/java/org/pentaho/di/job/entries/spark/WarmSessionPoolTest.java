@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import static org.mockito.Mockito.mock;
+
+public class WarmSessionPoolTest {
+  private final LogChannelInterface log = mock( LogChannelInterface.class );
+  private final List<FakeSessionDriverProcess> drivers = new ArrayList<FakeSessionDriverProcess>();
+
+  private WarmSessionPool.Launcher launcher( final long idleTimeoutMs ) {
+    return new WarmSessionPool.Launcher() {
+      @Override
+      public WarmSession launch() throws KettleException {
+        try {
+          FakeSessionDriverProcess driver = FakeSessionDriverProcess.start( "token", 2, 0 );
+          drivers.add( driver );
+          return WarmSession.launch( new SparkSubmission( "session", log, driver, new String[0] ), "token", 5000,
+              idleTimeoutMs );
+        } catch ( IOException e ) {
+          throw new KettleException( e );
+        }
+      }
+    };
+  }
+
+  @Test
+  public void testReuseAndEviction() throws Exception {
+    WarmSession first = WarmSessionPool.acquire( "reuse", launcher( 5000 ) );
+    WarmSession second = WarmSessionPool.acquire( "reuse", launcher( 5000 ) );
+    Assert.assertSame( first, second );
+    Assert.assertEquals( 1, drivers.size() );
+    Assert.assertEquals( 2, first.getLeaseCount() );
+
+    // leased sessions are never evicted
+    WarmSessionPool.evict( System.currentTimeMillis() + 120000 );
+    Assert.assertTrue( first.isAlive() );
+
+    first.release();
+    second.release();
+    WarmSessionPool.evict( System.currentTimeMillis() + 1000 );
+    Assert.assertTrue( first.isAlive() );
+
+    WarmSessionPool.evict( System.currentTimeMillis() + 120000 );
+    Assert.assertTrue( drivers.get( 0 ).isServerStopped() );
+    Assert.assertFalse( first.isAlive() );
+    Assert.assertFalse( first.acquire() );
+
+    WarmSession third = WarmSessionPool.acquire( "reuse", launcher( 5000 ) );
+    Assert.assertNotSame( first, third );
+    Assert.assertEquals( 2, drivers.size() );
+    third.release();
+  }
+
+  @Test
+  public void testDeadSessionReplaced() throws Exception {
+    WarmSession first = WarmSessionPool.acquire( "dead", launcher( 5000 ) );
+    first.release();
+    drivers.get( 0 ).destroy();
+
+    WarmSession second = WarmSessionPool.acquire( "dead", launcher( 5000 ) );
+    Assert.assertNotSame( first, second );
+    Assert.assertTrue( second.isAlive() );
+    second.release();
+  }
+
+  @Test
+  public void testLaunchFailure() throws Exception {
+    try {
+      WarmSessionPool.acquire( "failure", new WarmSessionPool.Launcher() {
+        @Override
+        public WarmSession launch() throws KettleException {
+          throw new KettleException( "spark-submit not found" );
+        }
+      } );
+      Assert.fail();
+    } catch ( KettleException e ) {
+      Assert.assertTrue( e.getMessage().contains( "spark-submit not found" ) );
+    }
+    WarmSession session = WarmSessionPool.acquire( "failure", launcher( 5000 ) );
+    Assert.assertTrue( session.isAlive() );
+    session.release();
+  }
+}
@@ -0,0 +1,185 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WarmSessionServerTest {
+  public static class CountingJob {
+    static final List<List<String>> RUNS = Collections.synchronizedList( new ArrayList<List<String>>() );
+
+    public static void main( String[] args ) {
+      RUNS.add( Arrays.asList( args ) );
+    }
+  }
+
+  public static class FailingJob {
+    public static void main( String[] args ) {
+      throw new IllegalArgumentException( "no input" );
+    }
+  }
+
+  public static class BlockingJob {
+    static final AtomicInteger RUNNING = new AtomicInteger();
+    static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+    static volatile CountDownLatch release = new CountDownLatch( 0 );
+
+    public static void main( String[] args ) throws InterruptedException {
+      int running = RUNNING.incrementAndGet();
+      synchronized ( BlockingJob.class ) {
+        MAX_RUNNING.set( Math.max( MAX_RUNNING.get(), running ) );
+      }
+      try {
+        release.await( 5, TimeUnit.SECONDS );
+      } finally {
+        RUNNING.decrementAndGet();
+      }
+    }
+  }
+
+  private WarmSessionServer server;
+  private int port;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new WarmSessionServer( "secret", 2, 0, null );
+    port = server.start();
+    new Thread( new Runnable() {
+      @Override
+      public void run() {
+        server.serve();
+      }
+    } ).start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  private List<String> request( String... fields ) throws Exception {
+    Socket socket = new Socket( InetAddress.getLoopbackAddress(), port );
+    try {
+      Writer writer = new OutputStreamWriter( socket.getOutputStream(), "UTF-8" );
+      writer.write( SessionProtocol.encode( Arrays.asList( fields ) ) + "\n" );
+      writer.flush();
+      return SessionProtocol.decode( new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) )
+          .readLine() );
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testRun() throws Exception {
+    CountingJob.RUNS.clear();
+    Assert.assertEquals( Arrays.asList( "SUCCEEDED" ), request( "secret", "run", "group", CountingJob.class
+        .getName(), "in put", "out\tput" ) );
+    Assert.assertEquals( Arrays.asList( Arrays.asList( "in put", "out\tput" ) ), CountingJob.RUNS );
+  }
+
+  @Test
+  public void testFailures() throws Exception {
+    List<String> response = request( "secret", "run", "group", FailingJob.class.getName() );
+    Assert.assertEquals( "FAILED", response.get( 0 ) );
+    Assert.assertTrue( response.get( 1 ).contains( "no input" ) );
+
+    Assert.assertEquals( "FAILED", request( "secret", "run", "group", "org.example.Missing" ).get( 0 ) );
+    Assert.assertEquals( "FAILED", request( "wrong", "ping" ).get( 0 ) );
+    Assert.assertEquals( "FAILED", request( "secret", "unknown" ).get( 0 ) );
+  }
+
+  @Test
+  public void testConcurrencyLimit() throws Exception {
+    BlockingJob.release = new CountDownLatch( 1 );
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( int i = 0; i < 4; i++ ) {
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            request( "secret", "run", "group", BlockingJob.class.getName() );
+          } catch ( Exception e ) {
+            throw new IllegalStateException( e );
+          }
+        }
+      } );
+      thread.start();
+      threads.add( thread );
+    }
+    Thread.sleep( 500 );
+    Assert.assertEquals( 2, BlockingJob.RUNNING.get() );
+    BlockingJob.release.countDown();
+    for ( Thread thread : threads ) {
+      thread.join( 5000 );
+    }
+    Assert.assertEquals( 2, BlockingJob.MAX_RUNNING.get() );
+    Assert.assertEquals( 0, BlockingJob.RUNNING.get() );
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    Assert.assertEquals( Arrays.asList( "SUCCEEDED" ), request( "secret", "ping" ) );
+    Assert.assertEquals( Arrays.asList( "SUCCEEDED" ), request( "secret", "shutdown" ) );
+    Assert.assertTrue( server.isStopped() );
+  }
+
+  @Test
+  public void testIdleTimeout() throws Exception {
+    final WarmSessionServer idle = new WarmSessionServer( "secret", 1, 200, null );
+    idle.start();
+    Thread serving = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        idle.serve();
+      }
+    } );
+    serving.start();
+    serving.join( 5000 );
+    Assert.assertTrue( idle.isStopped() );
+  }
+
+  @Test
+  public void testParsePort() {
+    Assert.assertEquals( 40123, SessionProtocol.parsePort( "SPARK_SESSION_PORT 40123" ) );
+    Assert.assertEquals( -1, SessionProtocol.parsePort( "15/04/08 INFO Client: state: RUNNING" ) );
+  }
+}
@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class YarnRestApplicationClientTest {
+  private YarnRestApplicationClient stub( final String app ) {
+    return new YarnRestApplicationClient( "http://rm-host:8088/" ) {
+      @Override
+      protected JSONObject getJson( String path, String root ) {
+        Assert.assertEquals( "/ws/v1/cluster/apps/application_1_0001", path );
+        return (JSONObject) JSONValue.parse( app );
+      }
+    };
+  }
+
+  @Test
+  public void testResourceUsage() throws Exception {
+    ApplicationStatus status = stub( "{\"id\":\"application_1_0001\",\"state\":\"FINISHED\","
+        + "\"finalStatus\":\"SUCCEEDED\",\"memorySeconds\":1843200,\"vcoreSeconds\":900}" )
+        .getApplicationStatus( "application_1_0001" );
+    Assert.assertTrue( status.isSucceeded() );
+    Assert.assertTrue( status.hasResourceUsage() );
+    Assert.assertEquals( 1843200, status.getMemorySeconds() );
+    Assert.assertEquals( 900, status.getVcoreSeconds() );
+  }
+
+  @Test
+  public void testResourceUsageNotReported() throws Exception {
+    ApplicationStatus status = stub( "{\"id\":\"application_1_0001\",\"state\":\"RUNNING\","
+        + "\"finalStatus\":\"UNDEFINED\"}" ).getApplicationStatus( "application_1_0001" );
+    Assert.assertFalse( status.isFinal() );
+    Assert.assertFalse( status.hasResourceUsage() );
+    Assert.assertEquals( -1, status.getMemorySeconds() );
+  }
+}
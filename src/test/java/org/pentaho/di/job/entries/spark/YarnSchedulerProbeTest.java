@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.job.entries.spark;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class YarnSchedulerProbeTest {
+  private List<QueueCapacity> probe( String stub ) throws Exception {
+    return new YarnSchedulerProbe( getClass().getResource( stub ).toString() ).probe();
+  }
+
+  private QueueCapacity find( List<QueueCapacity> capacities, String queue ) {
+    for ( QueueCapacity capacity : capacities ) {
+      if ( capacity.matches( queue ) ) {
+        return capacity;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testCapacityScheduler() throws Exception {
+    List<QueueCapacity> capacities = probe( "rm-capacity" );
+    Assert.assertEquals( 4, capacities.size() );
+    Assert.assertEquals( 10240, find( capacities, "etl" ).getAvailableMemoryMb() );
+    Assert.assertEquals( 10, find( capacities, "etl" ).getAvailableVcores() );
+    Assert.assertEquals( 30720, find( capacities, "adhoc" ).getAvailableMemoryMb() );
+    Assert.assertEquals( 30, find( capacities, "adhoc" ).getAvailableVcores() );
+    Assert.assertEquals( 10240, find( capacities, "daily" ).getAvailableMemoryMb() );
+  }
+
+  @Test
+  public void testFairScheduler() throws Exception {
+    List<QueueCapacity> capacities = probe( "rm-fair" );
+    Assert.assertEquals( 3, capacities.size() );
+    Assert.assertEquals( 40960, find( capacities, "root" ).getAvailableMemoryMb() );
+    Assert.assertEquals( 0, find( capacities, "etl" ).getAvailableMemoryMb() );
+    Assert.assertEquals( "root.adhoc", find( capacities, "adhoc" ).getQueueName() );
+    Assert.assertEquals( 30, find( capacities, "adhoc" ).getAvailableVcores() );
+  }
+
+  @Test
+  public void testSelect() throws Exception {
+    List<QueueCapacity> capacities = probe( "rm-capacity" );
+    Assert.assertEquals( "adhoc", QueueSelector.select( Arrays.asList( "etl", "adhoc" ), capacities, 4096, 4 ) );
+    Assert.assertEquals( "reporting", QueueSelector.select( Arrays.asList( "daily", "reporting" ), capacities, 1024, 1 ) );
+    Assert.assertEquals( "etl", QueueSelector.select( Arrays.asList( "etl", "daily" ), capacities, 1024, 1 ) );
+    Assert.assertNull( QueueSelector.select( Arrays.asList( "etl" ), probe( "rm-fair" ), 1024, 1 ) );
+    Assert.assertNull( QueueSelector.select( Arrays.asList( "unknown" ), capacities, 1024, 1 ) );
+  }
+
+  @Test( expected = org.pentaho.di.core.exception.KettleException.class )
+  public void testUnreachable() throws Exception {
+    new YarnSchedulerProbe( getClass().getResource( "rm-capacity" ).toString() + "/missing" ).probe();
+  }
+}
@@ -0,0 +1,281 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class ArrowStreamWriterTest {
+  private static final List<ArrowColumn> COLUMNS = Arrays.asList( new ArrowColumn( "id", ArrowColumn.Type.INT64 ),
+      new ArrowColumn( "price", ArrowColumn.Type.FLOAT64 ), new ArrowColumn( "name", ArrowColumn.Type.UTF8 ),
+      new ArrowColumn( "flag", ArrowColumn.Type.BOOL ), new ArrowColumn( "ts", ArrowColumn.Type.TIMESTAMP ),
+      new ArrowColumn( "raw", ArrowColumn.Type.BINARY ) );
+
+  @Test
+  public void testStream() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ArrowStreamWriter writer = new ArrowStreamWriter( bytes, COLUMNS );
+    ColumnBatch batch = new ColumnBatch( COLUMNS, 2, Long.MAX_VALUE );
+    batch.add( new Object[] { 1L, 1.5, "aé", true, new Date( 1000 ), new byte[] { 1, 2 } } );
+    batch.add( new Object[] { null, null, null, null, null, null } );
+    assertTrue( batch.isFull() );
+    writer.writeBatch( batch );
+    batch.clear();
+    batch.add( new Object[] { -7L, -0.25, "", false, 2000L, new byte[0] } );
+    writer.writeBatch( batch );
+    writer.close();
+    assertEquals( 3, writer.getRowsWritten() );
+    assertEquals( 2, writer.getBatchesWritten() );
+    assertEquals( bytes.size(), writer.getBytesWritten() );
+    assertEquals( 0, bytes.size() % 8 );
+
+    List<Message> messages = readStream( bytes.toByteArray() );
+    assertEquals( 3, messages.size() );
+
+    Table schema = messages.get( 0 ).header( 1 );
+    assertEquals( 6, schema.vectorLength( 1 ) );
+    String[] names = { "id", "price", "name", "flag", "ts", "raw" };
+    int[] typeIds = { 2, 3, 5, 6, 10, 4 };
+    for ( int i = 0; i < names.length; i++ ) {
+      Table field = schema.vectorTable( 1, i );
+      assertEquals( names[i], field.getString( 0 ) );
+      assertEquals( 1, field.getByte( 1 ) );
+      assertEquals( typeIds[i], field.getByte( 2 ) );
+      assertEquals( 0, field.vectorLength( 5 ) );
+    }
+    Table intType = schema.vectorTable( 1, 0 ).getTable( 3 );
+    assertEquals( 64, intType.getInt( 0 ) );
+    assertEquals( 1, intType.getByte( 1 ) );
+    assertEquals( 2, schema.vectorTable( 1, 1 ).getTable( 3 ).getShort( 0 ) );
+    Table timestampType = schema.vectorTable( 1, 4 ).getTable( 3 );
+    assertEquals( 1, timestampType.getShort( 0 ) );
+    assertEquals( "UTC", timestampType.getString( 1 ) );
+
+    Message first = messages.get( 1 );
+    Table recordBatch = first.header( 3 );
+    assertEquals( 2, recordBatch.getLong( 0 ) );
+    assertEquals( 6, recordBatch.vectorLength( 1 ) );
+    for ( int i = 0; i < 6; i++ ) {
+      assertEquals( 2, recordBatch.vectorLong( 1, i, 0 ) );
+      assertEquals( 1, recordBatch.vectorLong( 1, i, 1 ) );
+    }
+    assertEquals( 14, recordBatch.vectorLength( 2 ) );
+    assertEquals( 1L, first.bodyBuffer( recordBatch, 1 ).getLong( 0 ) );
+    assertEquals( 1.5, first.bodyBuffer( recordBatch, 3 ).getDouble( 0 ), 0 );
+    ByteBuffer offsets = first.bodyBuffer( recordBatch, 5 );
+    assertEquals( 0, offsets.getInt( 0 ) );
+    assertEquals( 3, offsets.getInt( 4 ) );
+    assertEquals( 3, offsets.getInt( 8 ) );
+    assertEquals( "aé", Charsets.UTF_8.decode( first.bodyBuffer( recordBatch, 6 ) ).toString() );
+    assertEquals( 1, first.bodyBuffer( recordBatch, 7 ).get( 0 ) ); // validity of flag
+    assertEquals( 1, first.bodyBuffer( recordBatch, 8 ).get( 0 ) ); // value of flag
+    assertEquals( 1000L, first.bodyBuffer( recordBatch, 10 ).getLong( 0 ) );
+    assertArrayEquals( new byte[] { 1, 2 }, toArray( first.bodyBuffer( recordBatch, 13 ) ) );
+
+    Message second = messages.get( 2 );
+    recordBatch = second.header( 3 );
+    assertEquals( 1, recordBatch.getLong( 0 ) );
+    assertEquals( 0, recordBatch.vectorLong( 1, 0, 1 ) );
+    // no nulls, validity bitmaps are left out
+    assertEquals( 0, recordBatch.vectorLong( 2, 0, 1 ) );
+    assertEquals( -7L, second.bodyBuffer( recordBatch, 1 ).getLong( 0 ) );
+    assertEquals( -0.25, second.bodyBuffer( recordBatch, 3 ).getDouble( 0 ), 0 );
+    assertEquals( 0, second.bodyBuffer( recordBatch, 8 ).get( 0 ) );
+    assertEquals( 2000L, second.bodyBuffer( recordBatch, 10 ).getLong( 0 ) );
+  }
+
+  @Test
+  public void testEmptyStream() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new ArrowStreamWriter( bytes, COLUMNS ).close();
+    List<Message> messages = readStream( bytes.toByteArray() );
+    assertEquals( 1, messages.size() );
+    assertEquals( 6, messages.get( 0 ).header( 1 ).vectorLength( 1 ) );
+  }
+
+  @Test
+  public void testWideSchema() throws Exception {
+    List<ArrowColumn> columns = new ArrayList<ArrowColumn>();
+    for ( int i = 0; i < 300; i++ ) {
+      columns.add( new ArrowColumn( "column_with_a_long_name_" + i, ArrowColumn.Type.values()[i % 6] ) );
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ArrowStreamWriter writer = new ArrowStreamWriter( bytes, columns );
+    ColumnBatch batch = new ColumnBatch( columns, 10, Long.MAX_VALUE );
+    batch.add( new Object[0] );
+    writer.writeBatch( batch );
+    writer.close();
+    List<Message> messages = readStream( bytes.toByteArray() );
+    Table schema = messages.get( 0 ).header( 1 );
+    assertEquals( 300, schema.vectorLength( 1 ) );
+    assertEquals( "column_with_a_long_name_299", schema.vectorTable( 1, 299 ).getString( 0 ) );
+    assertEquals( 300, messages.get( 1 ).header( 3 ).vectorLength( 1 ) );
+    assertNull( schema.vectorTable( 1, 0 ).getTable( 4 ) );
+    assertFalse( messages.get( 1 ).body.length == 0 );
+  }
+
+  private static byte[] toArray( ByteBuffer buffer ) {
+    byte[] result = new byte[buffer.remaining()];
+    buffer.get( result );
+    return result;
+  }
+
+  /**
+   * Reads encapsulated messages until the end-of-stream marker
+   */
+  private static List<Message> readStream( byte[] stream ) {
+    ByteBuffer in = ByteBuffer.wrap( stream ).order( ByteOrder.LITTLE_ENDIAN );
+    List<Message> messages = new ArrayList<Message>();
+    while ( true ) {
+      assertEquals( -1, in.getInt() );
+      int length = in.getInt();
+      if ( length == 0 ) {
+        assertFalse( in.hasRemaining() );
+        return messages;
+      }
+      assertEquals( 0, ( in.position() + length ) % 8 );
+      byte[] metadata = new byte[length];
+      in.get( metadata );
+      ByteBuffer bb = ByteBuffer.wrap( metadata ).order( ByteOrder.LITTLE_ENDIAN );
+      Table message = new Table( bb, bb.getInt( 0 ) );
+      assertEquals( 4, message.getShort( 0 ) );
+      byte[] body = new byte[(int) message.getLong( 3 )];
+      in.get( body );
+      messages.add( new Message( message, body ) );
+    }
+  }
+
+  private static class Message {
+    final Table table;
+    final byte[] body;
+
+    Message( Table table, byte[] body ) {
+      this.table = table;
+      this.body = body;
+    }
+
+    Table header( int expectedType ) {
+      assertEquals( expectedType, table.getByte( 1 ) );
+      return table.getTable( 2 );
+    }
+
+    ByteBuffer bodyBuffer( Table recordBatch, int buffer ) {
+      int offset = (int) recordBatch.vectorLong( 2, buffer, 0 );
+      int length = (int) recordBatch.vectorLong( 2, buffer, 1 );
+      assertEquals( 0, offset % 8 );
+      return ByteBuffer.wrap( body, offset, length ).slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+  }
+
+  /**
+   * FlatBuffers table accessor following the format rules, independent of the builder
+   */
+  private static class Table {
+    final ByteBuffer bb;
+    final int position;
+
+    Table( ByteBuffer bb, int position ) {
+      this.bb = bb;
+      this.position = position;
+    }
+
+    int field( int id ) {
+      int vtable = position - bb.getInt( position );
+      int vtableSize = bb.getShort( vtable );
+      int offset = 4 + id * 2 < vtableSize ? bb.getShort( vtable + 4 + id * 2 ) : 0;
+      return offset == 0 ? 0 : position + offset;
+    }
+
+    byte getByte( int id ) {
+      int field = field( id );
+      return field == 0 ? 0 : bb.get( field );
+    }
+
+    short getShort( int id ) {
+      int field = field( id );
+      return field == 0 ? 0 : bb.getShort( field );
+    }
+
+    int getInt( int id ) {
+      int field = field( id );
+      return field == 0 ? 0 : bb.getInt( field );
+    }
+
+    long getLong( int id ) {
+      int field = field( id );
+      return field == 0 ? 0 : bb.getLong( field );
+    }
+
+    Table getTable( int id ) {
+      int field = field( id );
+      return field == 0 ? null : new Table( bb, field + bb.getInt( field ) );
+    }
+
+    String getString( int id ) {
+      int start = vectorStart( id );
+      int length = bb.getInt( start - 4 );
+      assertEquals( 0, bb.get( start + length ) );
+      byte[] bytes = new byte[length];
+      for ( int i = 0; i < length; i++ ) {
+        bytes[i] = bb.get( start + i );
+      }
+      return new String( bytes, Charsets.UTF_8 );
+    }
+
+    private int vectorStart( int id ) {
+      int field = field( id );
+      return field + bb.getInt( field ) + 4;
+    }
+
+    int vectorLength( int id ) {
+      return bb.getInt( vectorStart( id ) - 4 );
+    }
+
+    Table vectorTable( int id, int index ) {
+      int element = vectorStart( id ) + index * 4;
+      return new Table( bb, element + bb.getInt( element ) );
+    }
+
+    long vectorLong( int id, int index, int member ) {
+      int start = vectorStart( id );
+      assertEquals( 0, start % 8 );
+      return bb.getLong( start + index * 16 + member * 8 );
+    }
+  }
+}
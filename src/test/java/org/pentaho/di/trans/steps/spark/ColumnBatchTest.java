@@ -0,0 +1,76 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnBatchTest {
+  private static final List<ArrowColumn> COLUMNS = Arrays.asList( new ArrowColumn( "id", ArrowColumn.Type.INT64 ),
+      new ArrowColumn( "name", ArrowColumn.Type.UTF8 ) );
+
+  @Test
+  public void testFullByRows() {
+    ColumnBatch batch = new ColumnBatch( COLUMNS, 3000, Long.MAX_VALUE );
+    for ( int i = 0; i < 2999; i++ ) {
+      batch.add( new Object[] { (long) i, "row" + i } );
+      assertFalse( batch.isFull() );
+    }
+    batch.add( new Object[] { 2999L, "last" } );
+    assertTrue( batch.isFull() );
+    assertEquals( 3000, batch.getRowCount() );
+    assertEquals( 2999L, batch.getVector( 0 ).longs[2999] );
+  }
+
+  @Test
+  public void testFullByBytes() {
+    ColumnBatch batch = new ColumnBatch( COLUMNS, 1000, 100 );
+    batch.add( new Object[] { 1L, "a" } );
+    // 8 bytes of id, 8 bytes of offsets, 1 byte of data
+    assertEquals( 17, batch.getSizeBytes() );
+    assertFalse( batch.isFull() );
+    batch.add( new Object[] { 2L, new String( new char[80] ) } );
+    assertTrue( batch.isFull() );
+  }
+
+  @Test
+  public void testClear() {
+    ColumnBatch batch = new ColumnBatch( COLUMNS, 10, Long.MAX_VALUE );
+    batch.add( new Object[] { null, "a" } );
+    assertEquals( 1, batch.getVector( 0 ).nullCount );
+    batch.clear();
+    assertTrue( batch.isEmpty() );
+    batch.add( new Object[] { 5L, null } );
+    assertEquals( 0, batch.getVector( 0 ).nullCount );
+    assertEquals( 1, batch.getVector( 0 ).validity[0] );
+    assertEquals( 1, batch.getVector( 1 ).nullCount );
+    assertEquals( 0, batch.getVector( 1 ).offsets[1] );
+  }
+}
@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import static java.util.Arrays.asList;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
+import org.pentaho.di.trans.steps.loadsave.validator.ArrayLoadSaveValidator;
+import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidator;
+import org.pentaho.di.trans.steps.loadsave.validator.StringLoadSaveValidator;
+
+public class SparkArrowSubmitMetaTest {
+  @Test
+  public void testRoundTrip() throws KettleException {
+    List<String> attributes = asList( "scriptPath", "master", "jar", "className", "args", "configParams",
+        "driverMemory", "executorMemory", "stagingDirectory", "batchRows", "batchMemory", "readResults",
+        "resultMarker", "resultFieldNames", "resultFieldTypes" );
+
+    // result field names and types are parallel arrays
+    Map<String, FieldLoadSaveValidator<?>> attributeValidators = new HashMap<String, FieldLoadSaveValidator<?>>();
+    attributeValidators.put( "resultFieldNames", new ArrayLoadSaveValidator<String>( new StringLoadSaveValidator(),
+        3 ) );
+    attributeValidators.put( "resultFieldTypes", new ArrayLoadSaveValidator<String>( new StringLoadSaveValidator(),
+        3 ) );
+
+    LoadSaveTester<SparkArrowSubmitMeta> tester = new LoadSaveTester<SparkArrowSubmitMeta>(
+        SparkArrowSubmitMeta.class, attributes, Collections.<String, String>emptyMap(), Collections
+            .<String, String>emptyMap(), attributeValidators, Collections
+                .<String, FieldLoadSaveValidator<?>>emptyMap() );
+    tester.testXmlRoundTrip();
+    tester.testRepoRoundTrip();
+  }
+}
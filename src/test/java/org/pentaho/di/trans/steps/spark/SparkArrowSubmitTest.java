@@ -0,0 +1,44 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.spark;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class SparkArrowSubmitTest {
+  @Test
+  public void testArrowType() {
+    assertEquals( ArrowColumn.Type.INT64, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_INTEGER ) );
+    assertEquals( ArrowColumn.Type.FLOAT64, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_NUMBER ) );
+    assertEquals( ArrowColumn.Type.BOOL, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_BOOLEAN ) );
+    assertEquals( ArrowColumn.Type.TIMESTAMP, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_DATE ) );
+    assertEquals( ArrowColumn.Type.TIMESTAMP, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_TIMESTAMP ) );
+    assertEquals( ArrowColumn.Type.BINARY, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_BINARY ) );
+    assertEquals( ArrowColumn.Type.UTF8, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_STRING ) );
+    // no lossless Arrow equivalent without the decimal width, staged as text
+    assertEquals( ArrowColumn.Type.UTF8, SparkArrowSubmit.getArrowType( ValueMetaInterface.TYPE_BIGNUMBER ) );
+  }
+}